@@ -0,0 +1,164 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import net.preibisch.mvrecon.Threads;
+import net.preibisch.mvrecon.process.cuda.Block;
+import net.preibisch.mvrecon.process.deconvolution.DeconView;
+import net.preibisch.mvrecon.process.deconvolution.DeconViews;
+import net.preibisch.mvrecon.process.deconvolution.MultiViewDeconvolution;
+import net.preibisch.mvrecon.process.deconvolution.iteration.ComputeBlockThread.IterationStatistics;
+import net.preibisch.mvrecon.process.deconvolution.iteration.sequential.ComputeBlockSeqThreadCPU;
+
+/**
+ * One Richardson-Lucy update of a single block (ComputeBlockSeqThreadCPU) on a simulated view with a
+ * synthetic Gaussian PSF.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class DeconvolutionBenchmark
+{
+	@Param( { "64,64,64", "128,128,128", "256,256,128" } )
+	public String blockSize;
+
+	@Param( { "1", "4", "8" } )
+	public int numThreads;
+
+	@Param( { "0.0006" } )
+	public float lambda;
+
+	@Param( { "19" } )
+	public int kernelSize;
+
+	ExecutorService service;
+	DeconView view;
+	Block block;
+	ArrayImg< FloatType, ? > psi;
+	ComputeBlockSeqThreadCPU thread;
+	float maxIntensity;
+
+	@Setup( Level.Trial )
+	public void setup()
+	{
+		final int[] blockSize = SyntheticData.parseBlockSize( this.blockSize );
+
+		service = Threads.createFixedExecutorService( numThreads );
+
+		final ArrayImg< FloatType, ? > img = SyntheticData.floatImage( SyntheticData.viewIds().get( 0 ) );
+
+		maxIntensity = 0;
+		for ( final FloatType t : img )
+		{
+			t.set( t.get() + MultiViewDeconvolution.minValueImg );
+			maxIntensity = Math.max( maxIntensity, t.get() );
+		}
+
+		view = new DeconView( service, img, Views.interval( Views.extendValue( new FloatType( 1 ), img ), img ), gaussianKernel( kernelSize, kernelSize / 6.0 ), blockSize );
+
+		final ArrayList< DeconView > views = new ArrayList<>();
+		views.add( view );
+		new DeconViews( views, service );
+
+		block = view.getNonInterferingBlocks().get( 0 ).get( 0 );
+
+		// the initial guess is the input image
+		psi = img.copy();
+
+		thread = new ComputeBlockSeqThreadCPU( service, MultiViewDeconvolution.minValue, lambda, 0, blockSize, new ArrayImgFactory<>( new FloatType() ) );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown()
+	{
+		service.shutdown();
+	}
+
+	@Setup( Level.Invocation )
+	public void copyBlock()
+	{
+		// runIteration updates the block in place
+		block.copyBlock( Views.extendMirrorSingle( psi ), thread.getPsiBlockTmp() );
+	}
+
+	@Benchmark
+	public IterationStatistics iteration()
+	{
+		return thread.runIteration(
+				view,
+				block,
+				Views.zeroMin( Views.interval( Views.extendZero( view.getImage() ), block ) ),
+				Views.zeroMin( Views.interval( Views.extendZero( view.getWeight() ), block ) ),
+				maxIntensity,
+				view.getPSF().getKernel1(),
+				view.getPSF().getKernel2() );
+	}
+
+	protected static ArrayImg< FloatType, FloatArray > gaussianKernel( final int size, final double sigma )
+	{
+		final ArrayImg< FloatType, FloatArray > kernel = ArrayImgs.floats( size, size, size );
+		final Cursor< FloatType > c = kernel.localizingCursor();
+		final double center = size / 2;
+
+		while ( c.hasNext() )
+		{
+			c.fwd();
+
+			double d2 = 0;
+			for ( int d = 0; d < 3; ++d )
+				d2 += ( c.getDoublePosition( d ) - center ) * ( c.getDoublePosition( d ) - center );
+
+			c.get().set( (float)Math.exp( -d2 / ( 2 * sigma * sigma ) ) );
+		}
+
+		return kernel;
+	}
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import net.preibisch.mvrecon.Threads;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
+import net.preibisch.mvrecon.process.interestpointdetection.methods.dog.DoGImgLib2;
+import net.preibisch.mvrecon.process.interestpointdetection.methods.lazygauss.SeparableFloatGauss;
+
+/**
+ * Difference-of-Gaussian detection on one simulated view held in memory, comparing the primitive float
+ * kernel of {@link SeparableFloatGauss} with Gauss3.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class DoGBenchmark
+{
+	@Param( { "64,64,32", "96,96,64", "128,128,64" } )
+	public String blockSize;
+
+	@Param( { "1", "4", "8" } )
+	public int numThreads;
+
+	@Param( { "true", "false" } )
+	public boolean primitiveKernel;
+
+	@Param( { "1.8" } )
+	public double sigma;
+
+	@Param( { "0.008" } )
+	public double threshold;
+
+	ArrayImg< FloatType, ? > img;
+	double minIntensity, maxIntensity;
+	ExecutorService service;
+
+	boolean usePrimitiveKernel, silent;
+
+	@Setup( Level.Trial )
+	public void setup()
+	{
+		img = SyntheticData.floatImage( SyntheticData.viewIds().get( 0 ) );
+
+		minIntensity = Double.MAX_VALUE;
+		maxIntensity = -Double.MAX_VALUE;
+
+		for ( final FloatType t : img )
+		{
+			minIntensity = Math.min( minIntensity, t.get() );
+			maxIntensity = Math.max( maxIntensity, t.get() );
+		}
+
+		service = Threads.createFixedExecutorService( numThreads );
+
+		usePrimitiveKernel = SeparableFloatGauss.usePrimitiveKernel;
+		silent = DoGImgLib2.silent;
+
+		SeparableFloatGauss.usePrimitiveKernel = primitiveKernel;
+		DoGImgLib2.silent = true;
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown()
+	{
+		service.shutdown();
+
+		SeparableFloatGauss.usePrimitiveKernel = usePrimitiveKernel;
+		DoGImgLib2.silent = silent;
+	}
+
+	@Benchmark
+	public ArrayList< InterestPoint > detect()
+	{
+		return DoGImgLib2.computeDoG(
+				Views.extendMirrorSingle( img ),
+				null,
+				img,
+				sigma,
+				threshold,
+				1, // quadratic localization
+				false,
+				true,
+				minIntensity,
+				maxIntensity,
+				SyntheticData.parseBlockSize( blockSize ),
+				service,
+				null,
+				null,
+				false,
+				0.0 );
+	}
+}
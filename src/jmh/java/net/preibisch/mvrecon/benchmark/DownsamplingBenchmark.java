@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.preibisch.mvrecon.Threads;
+import net.preibisch.mvrecon.process.n5api.N5ApiTools;
+import net.preibisch.mvrecon.process.n5api.N5ApiTools.DownsampleContext;
+import net.preibisch.mvrecon.process.n5api.N5ApiTools.MultiResolutionLevelInfo;
+
+/**
+ * Computes s1 of a multi-resolution pyramid from s0 (a simulated view) block by block using
+ * N5ApiTools.writeDownsampledBlock with one DownsampleContext shared by all threads, writing into a temporary N5 container.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class DownsamplingBenchmark
+{
+	@Param( { "64,64,64", "128,128,64", "256,256,32" } )
+	public String blockSize;
+
+	@Param( { "1", "4", "8" } )
+	public int numThreads;
+
+	@Param( { "2,2,1", "2,2,2" } )
+	public String downsampling;
+
+	N5FSWriter n5;
+	MultiResolutionLevelInfo[] mrInfo;
+	DownsampleContext< FloatType > context;
+	List< long[][] > jobs;
+	ExecutorService service;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException
+	{
+		final ArrayImg< FloatType, ? > img = SyntheticData.floatImage( SyntheticData.viewIds().get( 0 ) );
+		final int[] blockSize = SyntheticData.parseBlockSize( this.blockSize );
+
+		n5 = new N5FSWriter( Files.createTempDirectory( "mvr-benchmark" ).toFile().getAbsolutePath() );
+
+		mrInfo = N5ApiTools.setupMultiResolutionPyramid(
+				n5,
+				level -> "s" + level,
+				DataType.FLOAT32,
+				Intervals.dimensionsAsLongArray( img ),
+				new RawCompression(),
+				blockSize,
+				new int[][]{ { 1, 1, 1 }, SyntheticData.parseBlockSize( downsampling ) } );
+
+		N5Utils.save( img, n5, mrInfo[ 0 ].dataset, blockSize, new RawCompression() );
+
+		jobs = N5ApiTools.assembleJobs( mrInfo[ 1 ] );
+		context = N5ApiTools.createDownsampleContext( n5, mrInfo[ 1 ], mrInfo[ 0 ] );
+		service = Threads.createFixedExecutorService( numThreads );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown()
+	{
+		service.shutdown();
+
+		n5.remove();
+		n5.close();
+	}
+
+	@Benchmark
+	public int downsample() throws InterruptedException, ExecutionException
+	{
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>();
+
+		for ( final long[][] gridBlock : jobs )
+			tasks.add( () ->
+			{
+				N5ApiTools.writeDownsampledBlock( context, gridBlock );
+				return null;
+			});
+
+		for ( final Future< Void > future : service.invokeAll( tasks ) )
+			future.get();
+
+		return jobs.size();
+	}
+}
@@ -0,0 +1,144 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mpicbg.spim.data.sequence.ViewId;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.real.FloatType;
+import net.preibisch.mvrecon.Threads;
+import net.preibisch.mvrecon.fiji.plugin.fusion.FusionGUI.FusionType;
+import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
+import net.preibisch.mvrecon.process.boundingbox.BoundingBoxMaximal;
+import net.preibisch.mvrecon.process.fusion.FusionTools;
+import net.preibisch.mvrecon.process.fusion.blk.BlkAffineFusion;
+import net.preibisch.mvrecon.process.fusion.lazy.LazyAffineFusion;
+import net.preibisch.mvrecon.process.fusion.transformed.TransformVirtual;
+
+/**
+ * Affine fusion of all simulated views into memory, BlkAffineFusion vs. LazyAffineFusion.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class FusionBenchmark
+{
+	public enum Method { BLK, LAZY }
+
+	@Param( { "BLK", "LAZY" } )
+	public Method method;
+
+	@Param( { "64,64,64", "128,128,64", "256,256,32" } )
+	public String blockSize;
+
+	@Param( { "1", "4", "8" } )
+	public int numThreads;
+
+	List< ViewId > viewIds;
+	HashMap< ViewId, AffineTransform3D > registrations;
+	Interval boundingBox;
+	ExecutorService service;
+
+	@Setup( Level.Trial )
+	public void setup()
+	{
+		final SpimData2 spimData = SyntheticData.spimData();
+
+		viewIds = SyntheticData.viewIds();
+		registrations = TransformVirtual.adjustAllTransforms(
+				viewIds,
+				spimData.getViewRegistrations().getViewRegistrations(),
+				Double.NaN,
+				Double.NaN );
+		boundingBox = new BoundingBoxMaximal( viewIds, spimData ).estimate( "benchmark" );
+		service = Threads.createFixedExecutorService( numThreads );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown()
+	{
+		service.shutdown();
+	}
+
+	@Benchmark
+	public RandomAccessibleInterval< FloatType > fuse()
+	{
+		final SpimData2 spimData = SyntheticData.spimData();
+		final int[] blockSize = SyntheticData.parseBlockSize( this.blockSize );
+
+		final RandomAccessibleInterval< FloatType > virtual;
+
+		if ( method == Method.BLK )
+			virtual = BlkAffineFusion.init(
+					null,
+					spimData.getSequenceDescription().getImgLoader(),
+					viewIds,
+					registrations,
+					spimData.getSequenceDescription().getViewDescriptions(),
+					FusionType.AVG_BLEND,
+					1, // linear interpolation
+					null,
+					boundingBox,
+					new FloatType(),
+					blockSize );
+		else
+			virtual = LazyAffineFusion.init(
+					null,
+					spimData.getSequenceDescription().getImgLoader(),
+					viewIds,
+					registrations,
+					spimData.getSequenceDescription().getViewDescriptions(),
+					FusionType.AVG_BLEND,
+					1, // linear interpolation
+					null,
+					boundingBox,
+					new FloatType(),
+					blockSize );
+
+		return FusionTools.copyImg( virtual, new ArrayImgFactory<>( new FloatType() ), new FloatType(), service );
+	}
+}
@@ -0,0 +1,81 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mpicbg.spim.data.sequence.ViewId;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
+import net.preibisch.mvrecon.process.fusion.FusionTools;
+import net.preibisch.simulation.imgloader.SimulatedBeadsImgLoader;
+
+/**
+ * Synthetic multi-view data shared by the benchmarks, the simulated beads dataset is only created once per JVM.
+ */
+public class SyntheticData
+{
+	public static int[] defaultAngles = new int[]{ 0, 90, 135 };
+
+	private static SpimData2 spimData = null;
+
+	public static synchronized SpimData2 spimData()
+	{
+		if ( spimData == null )
+			spimData = SpimData2.convert( SimulatedBeadsImgLoader.spimdataExample( defaultAngles ) );
+
+		return spimData;
+	}
+
+	public static List< ViewId > viewIds()
+	{
+		return new ArrayList<>( spimData().getSequenceDescription().getViewDescriptions().keySet() );
+	}
+
+	/**
+	 * @param viewId - the view
+	 * @return the simulated image of the view copied into memory, so loading is not part of the measurement
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static ArrayImg< FloatType, ? > floatImage( final ViewId viewId )
+	{
+		final RandomAccessibleInterval< FloatType > img =
+				spimData().getSequenceDescription().getImgLoader().getSetupImgLoader( viewId.getViewSetupId() ).getFloatImage( viewId.getTimePointId(), false );
+
+		return (ArrayImg< FloatType, ? >)FusionTools.copyImgNoTranslation( img, new ArrayImgFactory<>( new FloatType() ), new FloatType(), null );
+	}
+
+	/**
+	 * @param blockSize - e.g. "64,64,64"
+	 * @return the parsed block size
+	 */
+	public static int[] parseBlockSize( final String blockSize )
+	{
+		return Arrays.stream( blockSize.split( "," ) ).mapToInt( s -> Integer.parseInt( s.trim() ) ).toArray();
+	}
+}
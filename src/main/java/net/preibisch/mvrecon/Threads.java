@@ -23,10 +23,15 @@
 package net.preibisch.mvrecon;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ij.Prefs;
 import net.preibisch.mvrecon.process.fusion.FusionTools;
@@ -45,6 +50,103 @@ public class Threads
 	public static ExecutorService createFixedExecutorService( final int nThreads ) { return Executors.newFixedThreadPool( nThreads ); }
 	public static ExecutorService createFixedExecutorService() { return createFixedExecutorService( numThreads() ); }
 
+	private static SharedPool sharedPool = null;
+
+	/**
+	 * A process-wide work-stealing pool with one thread per core (Prefs.getThreads()), created once and never shut
+	 * down (calling shutdown() on it has no effect). Nested invokeAll()/Future.get() calls from within tasks of this
+	 * pool help executing the pending tasks instead of blocking a thread, so hierarchical multithreading does not
+	 * oversubscribe the cores or stall. Tasks that block on something else (e.g. I/O of another pool) should do so
+	 * through {@link #managedBlock(Callable)}.
+	 *
+	 * @return the shared ExecutorService
+	 */
+	public static synchronized ExecutorService sharedExecutorService()
+	{
+		if ( sharedPool == null )
+			sharedPool = new SharedPool( Math.max( 1, Prefs.getThreads() ) );
+
+		return sharedPool;
+	}
+
+	/**
+	 * Runs a blocking operation, if called from within a ForkJoinPool (e.g. the shared pool) it temporarily adds a
+	 * thread so the parallelism of the pool is maintained while this one is blocked.
+	 *
+	 * @param blocking - the blocking operation
+	 * @param <T> - the result type
+	 * @return the result of the operation
+	 * @throws InterruptedException if interrupted while blocking
+	 * @throws ExecutionException if the operation threw an exception
+	 */
+	public static < T > T managedBlock( final Callable< T > blocking ) throws InterruptedException, ExecutionException
+	{
+		final ManagedCall< T > call = new ManagedCall<>( blocking );
+
+		ForkJoinPool.managedBlock( call );
+
+		if ( call.exception != null )
+			throw new ExecutionException( call.exception );
+
+		return call.result;
+	}
+
+	private static class ManagedCall< T > implements ForkJoinPool.ManagedBlocker
+	{
+		final Callable< T > blocking;
+		boolean done = false;
+		T result = null;
+		Exception exception = null;
+
+		ManagedCall( final Callable< T > blocking ) { this.blocking = blocking; }
+
+		@Override
+		public boolean block() throws InterruptedException
+		{
+			try
+			{
+				result = blocking.call();
+			}
+			catch ( InterruptedException e )
+			{
+				throw e;
+			}
+			catch ( Exception e )
+			{
+				exception = e;
+			}
+
+			done = true;
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() { return done; }
+	}
+
+	private static class SharedPool extends ForkJoinPool
+	{
+		private static final AtomicInteger count = new AtomicInteger();
+
+		SharedPool( final int parallelism )
+		{
+			super( parallelism, pool ->
+			{
+				final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( pool );
+				t.setName( "mvrecon-shared-" + count.incrementAndGet() );
+				t.setDaemon( true );
+				return t;
+			}, null, false );
+		}
+
+		// the pool is shared by all callers and lives as long as the JVM
+		@Override
+		public void shutdown() {}
+
+		@Override
+		public List< Runnable > shutdownNow() { return Collections.emptyList(); }
+	}
+
 	public static < T > List< ArrayList< Callable< T > > > splitTasks( final List< Callable< T > > tasks, final int batchSize )
 	{
 		if ( tasks == null )
@@ -26,6 +26,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -38,6 +39,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
@@ -61,9 +66,11 @@ import mpicbg.spim.data.sequence.TimePoint;
 import mpicbg.spim.data.sequence.VoxelDimensions;
 import net.imglib2.Dimensions;
 import net.imglib2.FinalDimensions;
+import net.imglib2.util.CloseableThreadLocal;
 import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
 import net.preibisch.legacy.io.IOFunctions;
+import net.preibisch.mvrecon.Threads;
 import net.preibisch.mvrecon.fiji.datasetmanager.metadatarefinement.CZITileOrAngleRefiner;
 import net.preibisch.mvrecon.fiji.datasetmanager.metadatarefinement.NikonND2TileOrAngleRefiner;
 import net.preibisch.mvrecon.fiji.datasetmanager.metadatarefinement.TileOrAngleRefiner;
@@ -1052,37 +1059,70 @@ public class FileListDatasetDefinitionUtil
 
 	public static void detectViewsInFiles(List<File> files,
 										 FileListViewDetectionState state)
+	{
+		detectViewsInFiles( files, state, Threads.numThreads() );
+	}
+
+	/**
+	 * Inspects all files in parallel (every thread re-uses its own BioFormats reader), the per-file results
+	 * are merged in sorted file order so the result is the same as for a sequential scan.
+	 *
+	 * @param files - the files to inspect
+	 * @param state - the state to populate
+	 * @param numThreads - number of files that are inspected concurrently
+	 */
+	public static void detectViewsInFiles(List<File> files,
+										 FileListViewDetectionState state,
+										 int numThreads)
 	{
 		Map<File, Map<Class<? extends Entity>, CheckResult>> multiplicityMapInner = new HashMap<>();
-		List<String> usedFiles = new ArrayList<>();
-		
+		Set<String> usedFiles = new HashSet<>();
+
 		Collections.sort( files );
-		
+
+		// files that are already covered by a finished scan (e.g. other files of a grouped format) are skipped by the workers
+		final Set< String > coveredFiles = ConcurrentHashMap.newKeySet();
+
+		final CloseableThreadLocal< ImageReader > threadLocalReader = CloseableThreadLocal.withInitial( BioformatsReaderUtils::createImageReaderWithSetupHooks );
+		final ExecutorService service = Threads.createFixedExecutorService( Math.max( 1, Math.min( numThreads, files.size() ) ) );
+
+		final ArrayList< Future< FileScanResult > > futures = new ArrayList<>();
+
 		for (File file : files)
-			if (!usedFiles.contains( file.getAbsolutePath() ))
+			futures.add( service.submit( () ->
 			{
-				ImageReader reader = BioformatsReaderUtils.createImageReaderWithSetupHooks();
-				reader.setMetadataStore( new OMEXMLMetadataImpl() );
-				detectViewsInFile( 	file,
-									multiplicityMapInner,
-									state,
-									usedFiles,
-									reader);
-
-				detectDimensionsInFile (file, state.getDimensionMap(), reader);
-				
-				try
-				{
-					reader.close();
-				}
-				catch ( IOException e )
-				{
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+				if ( coveredFiles.contains( file.getAbsolutePath() ) )
+					return null;
+
+				final FileScanResult result = scanFile( file, threadLocalReader.get() );
+				coveredFiles.addAll( result.usedFiles );
+
+				return result;
+			}));
+
+		try
+		{
+			for ( int i = 0; i < files.size(); ++i )
+			{
+				final File file = files.get( i );
+				FileScanResult result = getResult( futures.get( i ) );
+
+				if ( usedFiles.contains( file.getAbsolutePath() ) )
+					continue;
+
+				// a worker skipped the file, but none of the files merged so far covers it -> scan it now
+				if ( result == null )
+					result = scanFile( file, BioformatsReaderUtils.createImageReaderWithSetupHooks() );
+
+				mergeScanResult( result, state, multiplicityMapInner, usedFiles );
 			}
-		
-		
+		}
+		finally
+		{
+			service.shutdownNow();
+			threadLocalReader.close();
+		}
+
 		for (Map<Class<? extends Entity>, CheckResult> cr : multiplicityMapInner.values())
 		{
 			for (Class<? extends Entity> cl : cr.keySet() )
@@ -1103,10 +1143,97 @@ public class FileListDatasetDefinitionUtil
 	
 	
 	
+	/*
+	 * result of inspecting a single file
+	 */
+	private static class FileScanResult
+	{
+		final FileListViewDetectionState state = new FileListViewDetectionState();
+		final Map<File, Map<Class<? extends Entity>, CheckResult>> multiplicityMap = new HashMap<>();
+		final Set<String> usedFiles = new HashSet<>();
+	}
+
+	private static FileScanResult scanFile( final File file, final ImageReader reader )
+	{
+		final FileScanResult result = new FileScanResult();
+
+		try
+		{
+			// make sure the reader is not initialized anymore, otherwise we cannot set a new metadata store
+			reader.close();
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+		}
+
+		reader.setMetadataStore( new OMEXMLMetadataImpl() );
+
+		detectViewsInFile( file, result.multiplicityMap, result.state, result.usedFiles, reader );
+		detectDimensionsInFile( file, result.state.getDimensionMap(), reader );
+
+		try
+		{
+			reader.close();
+		}
+		catch ( IOException e )
+		{
+			e.printStackTrace();
+		}
+
+		return result;
+	}
+
+	private static FileScanResult getResult( final Future< FileScanResult > future )
+	{
+		try
+		{
+			return future.get();
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( ExecutionException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+				throw (RuntimeException)e.getCause();
+			else
+				throw new RuntimeException( e.getCause() );
+		}
+	}
+
+	private static void mergeScanResult(
+			final FileScanResult result,
+			final FileListViewDetectionState state,
+			final Map<File, Map<Class<? extends Entity>, CheckResult>> multiplicityMap,
+			final Set<String> usedFiles )
+	{
+		multiplicityMap.putAll( result.multiplicityMap );
+		usedFiles.addAll( result.usedFiles );
+
+		state.getDimensionMap().putAll( result.state.getDimensionMap() );
+		state.getGroupUsageMap().putAll( result.state.getGroupUsageMap() );
+
+		if ( result.state.getGroupedFormat() )
+			state.setGroupedFormat( true );
+
+		if ( result.state.getAmbiguousAngleTile() )
+			state.setAmbiguousAngleTile( true );
+
+		if ( result.state.getAmbiguousIllumChannel() )
+			state.setAmbiguousIllumChannel( true );
+
+		for (Class<? extends Entity> cl : new Class[] {Angle.class, TimePoint.class, Illumination.class, Tile.class, Channel.class})
+			result.state.getAccumulateMap( cl ).forEach( (id, entries) ->
+				state.getAccumulateMap( cl ).computeIfAbsent( id, k -> new ArrayList<>() ).addAll( entries ) );
+	}
+
 	public static void detectViewsInFile(final File file,
 										 Map<File, Map<Class<? extends Entity>, CheckResult>> multiplicityMap,
 										 FileListViewDetectionState state,
-										 List<String> usedFiles,
+										 Collection<String> usedFiles,
 										 ImageReader reader)
 	{
 		
@@ -87,6 +87,7 @@ import net.preibisch.mvrecon.process.interestpointdetection.InterestPointTools;
 import net.preibisch.mvrecon.process.interestpointregistration.TransformationTools;
 import net.preibisch.mvrecon.process.interestpointregistration.global.GlobalOpt;
 import net.preibisch.mvrecon.process.interestpointregistration.global.GlobalOptIterative;
+import net.preibisch.mvrecon.process.interestpointregistration.global.GlobalOptSlidingWindow;
 import net.preibisch.mvrecon.process.interestpointregistration.global.GlobalOptTwoRound;
 import net.preibisch.mvrecon.process.interestpointregistration.global.convergence.ConvergenceStrategy;
 import net.preibisch.mvrecon.process.interestpointregistration.global.convergence.IterativeConvergenceStrategy;
@@ -97,6 +98,7 @@ import net.preibisch.mvrecon.process.interestpointregistration.global.pointmatch
 import net.preibisch.mvrecon.process.interestpointregistration.global.pointmatchcreating.strong.InterestPointMatchCreator;
 import net.preibisch.mvrecon.process.interestpointregistration.global.pointmatchcreating.weak.MetaDataWeakLinkFactory;
 import net.preibisch.mvrecon.process.interestpointregistration.global.pointmatchcreating.weak.WeakLinkFactory;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.IncrementalPairwiseMatching;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.MatcherPairwiseTools;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.PairwiseResult;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.PairwiseSetup;
@@ -146,6 +148,7 @@ public class Interest_Point_Registration implements PlugIn
 	public static int defaultFixViews = 0;
 	public static int defaultMapBack = 0;
 	public static boolean defaultShowStatistics = true;
+	public static boolean defaultIncremental = false;
 
 	// fix and map back dialog
 	public static boolean defaultSameFixedViews = true;
@@ -249,6 +252,7 @@ public class Interest_Point_Registration implements PlugIn
 				brp.labelMap,
 				arp.globalOptParams,
 				brp.matchAcrossLabels,
+				arp.incremental,
 				arp.showStatistics ) )
 			return false;
 
@@ -284,6 +288,35 @@ public class Interest_Point_Registration implements PlugIn
 			final GlobalOptimizationParameters globalOptParameters,
 			final boolean matchAcrossLabels,
 			final boolean collectStatistics )
+	{
+		return processRegistration(
+				setup, viewSetups, pairwiseMatching, groupingType, interestPointOverlapType, interestPointMergeDistance,
+				viewsToFix, mapBackModel, mapBackViews, registrations, viewDescriptions, interestpointLists, labelMap,
+				globalOptParameters, matchAcrossLabels, false, collectStatistics );
+	}
+
+	/**
+	 * @param incremental - only match pairs whose interest points, registrations or parameters changed since their stored
+	 * correspondences were computed, the stored correspondences of all other pairs are reused (only without grouping)
+	 */
+	public < M extends AbstractModel<M> & Affine3D<M>> boolean processRegistration(
+			final PairwiseSetup< ViewId > setup,
+			final Map< Integer, ? extends BasicViewSetup > viewSetups,
+			final PairwiseGUI pairwiseMatching,
+			final InterestpointGroupingType groupingType,
+			final InterestPointOverlapType interestPointOverlapType,
+			final double interestPointMergeDistance,
+			final Set< ViewId > viewsToFix,
+			final Model< ? > mapBackModel,
+			final Map< Subset< ViewId >, Pair< ViewId, Dimensions > > mapBackViews,
+			final Map< ViewId, ViewRegistration > registrations,
+			final Map< ViewId, ViewDescription > viewDescriptions,
+			final Map< ViewId, ViewInterestPointLists > interestpointLists,
+			final Map< ViewId, HashMap< String, Double > > labelMap,
+			final GlobalOptimizationParameters globalOptParameters,
+			final boolean matchAcrossLabels,
+			final boolean incremental,
+			final boolean collectStatistics )
 	{
 		final List< ViewId > viewIds = setup.getViews();
 		final ArrayList< Subset< ViewId > > subsets = setup.getSubsets();
@@ -317,6 +350,18 @@ public class Interest_Point_Registration implements PlugIn
 		if ( collectStatistics )
 			this.statistics = new ArrayList<>();
 
+		final IncrementalPairwiseMatching incrementalMatching;
+
+		if ( incremental && groupingType == InterestpointGroupingType.DO_NOT_GROUP )
+			incrementalMatching = new IncrementalPairwiseMatching( interestpointLists, registrations, pairwiseMatching.getParameterFingerprint() );
+		else
+		{
+			if ( incremental )
+				IOFunctions.println( "Incremental matching is not supported when grouping interest points, matching all pairs." );
+
+			incrementalMatching = null;
+		}
+
 		for ( final Subset< ViewId > subset : subsets )
 		{
 			// fix view(s)
@@ -336,29 +381,42 @@ public class Interest_Point_Registration implements PlugIn
 				for ( final Pair< ViewId, ViewId > pair : pairs )
 					System.out.println( Group.pvid( pair.getA() ) + " <=> " + Group.pvid( pair.getB() ) );
 
-				// compute all pairwise matchings
-				final List< Pair< Pair< ViewId, ViewId >, PairwiseResult< InterestPoint > > > result =
-						MatcherPairwiseTools.computePairs( pairs, interestpoints, pairwiseMatching.pairwiseMatchingInstance(), matchAcrossLabels );
+				final List< Pair< Pair< ViewId, ViewId >, PairwiseResult< InterestPoint > > > result;
 
-				// clear correspondences
-				MatcherPairwiseTools.clearCorrespondences( subset.getViews(), interestpointLists, labelMap );
+				if ( incrementalMatching != null )
+				{
+					// compute the changed pairwise matchings, update the correspondences and reuse all others
+					result = incrementalMatching.computePairs(
+							pairs, subset.getViews(), interestpoints, labelMap, pairwiseMatching.pairwiseMatchingInstance(), matchAcrossLabels, null );
 
-				// add the corresponding detections and output result
-				for ( final Pair< Pair< ViewId, ViewId >, PairwiseResult< InterestPoint > > p : result )
+					if ( collectStatistics )
+						statistics.addAll( result );
+				}
+				else
 				{
-					final ViewId vA = p.getA().getA();
-					final ViewId vB = p.getA().getB();
+					// compute all pairwise matchings
+					result = MatcherPairwiseTools.computePairs( pairs, interestpoints, pairwiseMatching.pairwiseMatchingInstance(), matchAcrossLabels );
 
-					final String labelA = p.getB().getLabelA();
-					final String labelB = p.getB().getLabelB();
+					// clear correspondences
+					MatcherPairwiseTools.clearCorrespondences( subset.getViews(), interestpointLists, labelMap );
 
-					final InterestPoints listA = interestpointLists.get( vA ).getInterestPointList( labelA );
-					final InterestPoints listB = interestpointLists.get( vB ).getInterestPointList( labelB );
+					// add the corresponding detections and output result
+					for ( final Pair< Pair< ViewId, ViewId >, PairwiseResult< InterestPoint > > p : result )
+					{
+						final ViewId vA = p.getA().getA();
+						final ViewId vB = p.getA().getB();
 
-					MatcherPairwiseTools.addCorrespondences( p.getB().getInliers(), vA, vB, labelA, labelB, listA, listB );
+						final String labelA = p.getB().getLabelA();
+						final String labelB = p.getB().getLabelB();
 
-					if ( collectStatistics )
-						statistics.add( p );
+						final InterestPoints listA = interestpointLists.get( vA ).getInterestPointList( labelA );
+						final InterestPoints listB = interestpointLists.get( vB ).getInterestPointList( labelB );
+
+						MatcherPairwiseTools.addCorrespondences( p.getB().getInliers(), vA, vB, labelA, labelB, listA, listB );
+
+						if ( collectStatistics )
+							statistics.add( p );
+					}
 				}
 
 				// run global optimization
@@ -387,6 +445,18 @@ public class Interest_Point_Registration implements PlugIn
 									fixedViews,
 									subset.getGroups() );
 				}
+				else if ( globalOptParameters.method == GlobalOptType.SLIDING_WINDOW )
+				{
+					models = GlobalOptSlidingWindow.computeTiles(
+									model,
+									result,
+									labelMap,
+									new ConvergenceStrategy( pairwiseMatching.globalOptError() ),
+									fixedViews,
+									subset.getGroups(),
+									globalOptParameters.windowSize,
+									null );
+				}
 				else //if ( globalOptParameters.method == GlobalOptType.TWO_ROUND_SIMPLE || globalOptParameters.method == GlobalOptType.TWO_ROUND_ITERATIVE )
 				{
 					models = GlobalOptTwoRound.computeTiles(
@@ -486,6 +556,18 @@ public class Interest_Point_Registration implements PlugIn
 									fixedViews,
 									groups );
 				}
+				else if ( globalOptParameters.method == GlobalOptType.SLIDING_WINDOW )
+				{
+					models = GlobalOptSlidingWindow.computeTiles(
+									model,
+									resultTransformed,
+									labelMap,
+									new ConvergenceStrategy( pairwiseMatching.globalOptError() ),
+									fixedViews,
+									groups,
+									globalOptParameters.windowSize,
+									null );
+				}
 				else //if ( globalOptParameters.method == GlobalOptType.TWO_ROUND_SIMPLE || globalOptParameters.method == GlobalOptType.TWO_ROUND_ITERATIVE )
 				{
 					// TODO: returns HashMap< ViewId, AffineModel3D>????
@@ -550,6 +632,10 @@ public class Interest_Point_Registration implements PlugIn
 				else
 					IOFunctions.println( output + ", " + TransformationTools.getScaling( (Affine3D<?>)tile.getModel() ) );
 			}
+
+			// the stored correspondences of this subset are consistent with the new registrations
+			if ( incrementalMatching != null )
+				incrementalMatching.updateFingerprints();
 		}
 
 		IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): DONE." );
@@ -677,6 +763,8 @@ public class Interest_Point_Registration implements PlugIn
 
 		GlobalOptimizationParameters.addSimpleParametersToDialog( gd );
 
+		gd.addCheckbox( "Only_match_changed_pairs (reuse stored correspondences)", defaultIncremental );
+
 		if ( timepointToProcess.size() > 1 )
 			gd.addCheckbox( "Show_timeseries_statistics", defaultShowStatistics );
 
@@ -735,6 +823,8 @@ public class Interest_Point_Registration implements PlugIn
 
 		arp.globalOptParams = GlobalOptimizationParameters.parseSimpleParametersFromDialog( gd );
 
+		arp.incremental = defaultIncremental = gd.getNextBoolean();
+
 		if ( timepointToProcess.size() > 1 )
 			defaultShowStatistics = arp.showStatistics = gd.getNextBoolean();
 		else
@@ -159,7 +159,7 @@ public class PSF_Extract implements PlugIn
 		{
 			IOFunctions.println( "(" + new Date(System.currentTimeMillis()) + "): Extracting PSF for " + Group.pvid( viewId ) + " ... " );
 
-			final PSFExtraction< FloatType > psf = new PSFExtraction< FloatType >( spimData, viewId, label, corresponding, new FloatType(), new long[]{ psfSizeX, psfSizeY, psfSizeZ } );
+			final PSFExtraction< FloatType > psf = new PSFExtraction< FloatType >( spimData, viewId, label, corresponding, new FloatType(), new long[]{ psfSizeX, psfSizeY, psfSizeZ }, true );
 
 			if ( psf.hadDetections() )
 			{
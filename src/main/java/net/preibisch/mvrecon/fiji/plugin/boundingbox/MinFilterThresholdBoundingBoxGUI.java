@@ -44,6 +44,7 @@ public class MinFilterThresholdBoundingBoxGUI extends BoundingBoxGUI
 	public static double defaultBackgroundIntensity = 5;
 	public static int defaultDiscardedObjectSize = 25;
 	public static boolean defaultDisplaySegmentationImage = false;
+	public static boolean defaultEstimateFromViews = false;
 
 	public MinFilterThresholdBoundingBoxGUI( final SpimData2 spimData, final List< ViewId > viewIdsToProcess )
 	{
@@ -86,6 +87,7 @@ public class MinFilterThresholdBoundingBoxGUI extends BoundingBoxGUI
 		gd.addMessage( "" );
 		gd.addSlider( "Downsampling", 1.0, 10.0, defaultDownsamplingAutomatic );
 		gd.addCheckbox( "Display_image_used for segmentation", defaultDisplaySegmentationImage );
+		gd.addCheckbox( "Estimate_from_views without fusing (threshold relative to the views)", defaultEstimateFromViews );
 		gd.addMessage( "Image size: ???x???x??? pixels", GUIHelper.mediumstatusfont, GUIHelper.good );
 		Label l = (Label)gd.getMessage();
 
@@ -102,9 +104,10 @@ public class MinFilterThresholdBoundingBoxGUI extends BoundingBoxGUI
 
 		final int downsampling = defaultDownsamplingAutomatic = (int)Math.round( gd.getNextNumber() );
 		final boolean displaySegmentationImage = defaultDisplaySegmentationImage = gd.getNextBoolean();
+		final boolean estimateFromViews = defaultEstimateFromViews = gd.getNextBoolean();
 		
 		// compute approx bounding box
-		final BoundingBox bbEstimate = new BoundingBoxMinFilterThreshold(
+		final BoundingBoxMinFilterThreshold estimation = new BoundingBoxMinFilterThreshold(
 				spimData,
 				null,
 				viewIdsToProcess,
@@ -112,7 +115,11 @@ public class MinFilterThresholdBoundingBoxGUI extends BoundingBoxGUI
 				background,
 				discardedObjectSize,
 				displaySegmentationImage,
-				downsampling ).estimate( "test" );
+				downsampling );
+
+		estimation.setUseViews( estimateFromViews );
+
+		final BoundingBox bbEstimate = estimation.estimate( "test" );
 
 		if ( bbEstimate == null )
 		{
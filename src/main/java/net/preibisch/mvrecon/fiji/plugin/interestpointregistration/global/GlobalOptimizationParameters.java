@@ -23,6 +23,7 @@
 package net.preibisch.mvrecon.fiji.plugin.interestpointregistration.global;
 
 import ij.gui.GenericDialog;
+import net.preibisch.mvrecon.process.interestpointregistration.global.GlobalOptSlidingWindow;
 
 public class GlobalOptimizationParameters
 {
@@ -42,14 +43,16 @@ public class GlobalOptimizationParameters
 		ONE_ROUND_SIMPLE,
 		ONE_ROUND_ITERATIVE,
 		TWO_ROUND_SIMPLE,
-		TWO_ROUND_ITERATIVE
+		TWO_ROUND_ITERATIVE,
+		SLIDING_WINDOW
 	}
 
 	private final static String[] methodDescriptions = {
 			"One-Round",
 			"One-Round with iterative dropping of bad links",
 			"Two-Round using metadata to align unconnected Tiles",
-			"Two-Round using Metadata to align unconnected Tiles and iterative dropping of bad links" // default
+			"Two-Round using Metadata to align unconnected Tiles and iterative dropping of bad links", // default
+			"One-Round in sliding windows of timepoints (long time-lapses)"
 	};
 
 	private final static String[] methodDescriptionsSimple = {
@@ -59,6 +62,7 @@ public class GlobalOptimizationParameters
 			"Two-Round: Handle unconnected tiles, DO NOT remove wrong links",
 			"Two-Round: Handle unconnected tiles, remove wrong links STRICT (2.5x / 3.5px)", // default
 			"Two-Round: Handle unconnected tiles, remove wrong links RELAXED (5.0x / 7.0px)",
+			"Sliding window: Solve windows of timepoints one after the other (long time-lapses), DO NOT remove wrong links",
 			"Show full options dialog"
 	};
 
@@ -66,6 +70,7 @@ public class GlobalOptimizationParameters
 	public double relativeThreshold;
 	public double absoluteThreshold;
 	public boolean showExpertGrouping;
+	public int windowSize = GlobalOptSlidingWindow.defaultWindowSize;
 
 	public GlobalOptimizationParameters()
 	{
@@ -92,8 +97,10 @@ public class GlobalOptimizationParameters
 
 	public static GlobalOptimizationParameters getGlobalOptimizationParametersForSelection( final int selected )
 	{
-		if ( selected == 6 )
+		if ( selected == 7 )
 			return askUserForParameters( false );
+		else if ( selected == 6 )
+			return new GlobalOptimizationParameters( Double.MAX_VALUE, Double.MAX_VALUE, GlobalOptType.SLIDING_WINDOW, false );
 		else if ( selected == 0 )
 			return new GlobalOptimizationParameters( Double.MAX_VALUE, Double.MAX_VALUE, GlobalOptType.ONE_ROUND_SIMPLE, false );
 		else if ( selected == 1 )
@@ -149,6 +156,7 @@ public class GlobalOptimizationParameters
 		gd.addChoice( "Global_optimization_strategy", methodDescriptions, methodDescriptions[ defaultGlobalOpt ] );
 		gd.addNumericField( "relative error threshold (for handling wrong links)", 2.5, 3 );
 		gd.addNumericField( "absolute error threshold (for handling wrong links)", 3.5, 3 );
+		gd.addNumericField( "timepoints per window (for sliding window)", GlobalOptSlidingWindow.defaultWindowSize, 0 );
 		if (askForGrouping )
 			gd.addCheckbox( "show_expert_grouping_options", defaultExpertGrouping );
 		gd.showDialog();
@@ -158,6 +166,7 @@ public class GlobalOptimizationParameters
 
 		double relTh = gd.getNextNumber();
 		double absTh = gd.getNextNumber();
+		final int windowSize = GlobalOptSlidingWindow.defaultWindowSize = Math.max( 1, (int)Math.round( gd.getNextNumber() ) );
 		final int methodIdx = defaultGlobalOpt = gd.getNextChoiceIndex();
 		final boolean expertGrouping = askForGrouping ? gd.getNextBoolean() : false;
 
@@ -171,9 +180,17 @@ public class GlobalOptimizationParameters
 			method = GlobalOptType.TWO_ROUND_SIMPLE;
 			relTh = absTh = Double.MAX_VALUE;
 		}
+		else if (methodIdx == 4)
+		{
+			method = GlobalOptType.SLIDING_WINDOW;
+			relTh = absTh = Double.MAX_VALUE;
+		}
 		else
 			method = GlobalOptType.TWO_ROUND_ITERATIVE;
 
-		return new GlobalOptimizationParameters(relTh, absTh, method, expertGrouping);
+		final GlobalOptimizationParameters params = new GlobalOptimizationParameters(relTh, absTh, method, expertGrouping);
+		params.windowSize = windowSize;
+
+		return params;
 	}
 }
@@ -84,6 +84,12 @@ public class CenterOfMassGUI extends PairwiseGUI
 	@Override
 	public double getMaxError() { return Double.NaN; }
 
+	@Override
+	public String getParameterFingerprint()
+	{
+		return getDescription() + ", " + new CenterOfMassParameters( centerType );
+	}
+
 	@Override
 	public double globalOptError() { return 5.0; }
 }
@@ -139,6 +139,12 @@ public class GeometricHashingGUI extends PairwiseGUI
 	@Override
 	public double getMaxError() { return ransacParams.getMaxEpsilon(); }
 
+	@Override
+	public String getParameterFingerprint()
+	{
+		return getDescription() + ", model=" + model.getDescription() + ", " + ghParams + ", " + ransacParams;
+	}
+
 	@Override
 	public double globalOptError() { return ransacParams.getMaxEpsilon(); }
 }
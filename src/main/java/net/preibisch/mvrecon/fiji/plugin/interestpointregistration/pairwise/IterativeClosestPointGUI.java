@@ -118,6 +118,13 @@ public class IterativeClosestPointGUI extends PairwiseGUI
 	@Override
 	public double getMaxError() { return parameters.getMaxDistance(); }
 
+	@Override
+	public String getParameterFingerprint()
+	{
+		// the matcher instances are created from the static defaults
+		return getDescription() + ", model=" + model.getDescription() + ", " + new IterativeClosestPointParameters( model.getModel() );
+	}
+
 	@Override
 	public double globalOptError() { return parameters.getMaxDistance(); }
 }
@@ -88,6 +88,14 @@ public abstract class PairwiseGUI
 	 */
 	public abstract double globalOptError();
 
+	/**
+	 * Used to decide if stored correspondences can be reused for an incremental registration,
+	 * so it must contain every parameter the pairwise matching depends on.
+	 *
+	 * @return - a description of all parameters that the pairwise matching depends on
+	 */
+	public abstract String getParameterFingerprint();
+
 	/**
 	 * @param model - predefines a transformation model to use (if applicable)
 	 */
@@ -160,6 +160,12 @@ public class RGLDMGUI extends PairwiseGUI
 	@Override
 	public double getMaxError() { return ransacParams.getMaxEpsilon(); }
 
+	@Override
+	public String getParameterFingerprint()
+	{
+		return getDescription() + ", model=" + model.getDescription() + ", " + parameters + ", " + ransacParams;
+	}
+
 	@Override
 	public double globalOptError() { return ransacParams.getMaxEpsilon(); }
 }
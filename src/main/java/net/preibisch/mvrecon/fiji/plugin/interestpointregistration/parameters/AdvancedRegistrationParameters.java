@@ -49,7 +49,7 @@ import mpicbg.spim.data.sequence.ViewId;
 public class AdvancedRegistrationParameters
 {
 	public int range, referenceTimePoint, fixViewsIndex, mapBackIndex;
-	public boolean groupTimePoints, showStatistics;
+	public boolean groupTimePoints, showStatistics, incremental;
 	public GlobalOptimizationParameters globalOptParams;
 
 	public PairwiseSetup< ViewId > pairwiseSetupInstance(
@@ -235,15 +235,19 @@ public class Resave_N5Api implements PlugIn
 
 			time = System.currentTimeMillis();
 
+			// one context per view, the previous scale is opened once and shared by all threads
+			final HashMap< ViewId, N5ApiTools.DownsampleContext< ? > > contexts = new HashMap<>();
+
+			for ( final ViewId viewId : vidsToResave )
+				contexts.put( viewId, N5ApiTools.createDownsampleContext( n5Writer, viewIdToMrInfo.get( viewId )[ s ], viewIdToMrInfo.get( viewId )[ s - 1 ] ) );
+
 			try
 			{
 				myPool.submit(() -> allBlocks.parallelStream().forEach(
 						gridBlock -> 
 						{
 							N5ApiTools.writeDownsampledBlock(
-								n5Writer,
-								viewIdToMrInfo.get( N5ApiTools.gridBlockToViewId( gridBlock ) )[ s ], //N5ResaveTools.gridToDatasetBdv( s, StorageType.N5 ),
-								viewIdToMrInfo.get( N5ApiTools.gridBlockToViewId( gridBlock ) )[ s - 1 ],//N5ResaveTools.gridToDatasetBdv( s - 1, StorageType.N5 ),
+								contexts.get( N5ApiTools.gridBlockToViewId( gridBlock ) ),
 								gridBlock );
 
 							IJ.showProgress( progress.incrementAndGet(), allBlocks.size() );
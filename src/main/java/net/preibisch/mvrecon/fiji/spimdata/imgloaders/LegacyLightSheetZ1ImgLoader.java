@@ -25,6 +25,8 @@ package net.preibisch.mvrecon.fiji.spimdata.imgloaders;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import ij.IJ;
 import loci.common.services.DependencyException;
@@ -53,9 +55,11 @@ import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.CloseableThreadLocal;
 import net.imglib2.view.Views;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.datasetmanager.LightSheetZ1;
+import net.preibisch.mvrecon.fiji.spimdata.imgloaders.util.LazyPlaneImgTools;
 import net.preibisch.mvrecon.headless.definedataset.LightSheetZ1MetaData;
 import util.ImgLib2Tools;
 
@@ -68,6 +72,29 @@ public class LegacyLightSheetZ1ImgLoader extends AbstractImgFactoryImgLoader
 	LightSheetZ1MetaData meta;
 	boolean isClosed = true;
 
+	// if lazy, every view is a cached cell img whose z-planes are only read when accessed
+	boolean lazy = false;
+	int planesPerCell = 1;
+
+	final Map< ViewId, RandomAccessibleInterval< UnsignedShortType > > lazyImgs = new ConcurrentHashMap<>();
+
+	// BioFormats readers are not thread-safe, every thread that loads planes gets its own
+	final CloseableThreadLocal< IFormatReader > threadLocalReader = CloseableThreadLocal.withInitial( () ->
+	{
+		final IFormatReader r = instantiateImageReader();
+
+		try
+		{
+			r.setId( getCZIFile().getAbsolutePath() );
+		}
+		catch ( Exception e )
+		{
+			throw new RuntimeException( "Could not open '" + getCZIFile() + "' for lazy loading: " + e );
+		}
+
+		return r;
+	});
+
 	public LegacyLightSheetZ1ImgLoader(
 			final File cziFile,
 			final ImgFactory< ? extends NativeType< ? > > imgFactory,
@@ -82,6 +109,12 @@ public class LegacyLightSheetZ1ImgLoader extends AbstractImgFactoryImgLoader
 
 	public File getCZIFile() { return cziFile; }
 
+	public boolean isLazy() { return lazy; }
+	public void setLazy( final boolean lazy ) { this.lazy = lazy; }
+
+	public int getPlanesPerCell() { return planesPerCell; }
+	public void setPlanesPerCell( final int planesPerCell ) { this.planesPerCell = planesPerCell; }
+
 	@Override
 	public RandomAccessibleInterval< FloatType > getFloatImage( final ViewId view, final boolean normalize )
 	{
@@ -94,6 +127,9 @@ public class LegacyLightSheetZ1ImgLoader extends AbstractImgFactoryImgLoader
 	@Override
 	public RandomAccessibleInterval< UnsignedShortType > getImage( final ViewId view )
 	{
+		if ( lazy )
+			return lazyImgs.computeIfAbsent( view, this::openCZILazy );
+
 		try
 		{
 			final Img< UnsignedShortType > img = openCZI( new UnsignedShortType(), view );
@@ -129,28 +165,95 @@ public class LegacyLightSheetZ1ImgLoader extends AbstractImgFactoryImgLoader
 			}
 		}
 		catch (IOException e) {}
+
+		threadLocalReader.close();
 	}
 
-	protected < T extends RealType< T > & NativeType< T > > Img< T > openCZI( final T type, final ViewId view ) throws Exception
+	protected synchronized boolean loadMetaDataIfNecessary()
 	{
 		if ( meta == null )
 		{
 			IOFunctions.println( new Date( System.currentTimeMillis() ) + ": Investigating file '" + cziFile.getAbsolutePath() + "' (loading metadata)." );
 
-			meta = new LightSheetZ1MetaData();
+			final LightSheetZ1MetaData meta = new LightSheetZ1MetaData();
 
 			if ( !meta.loadMetaData( cziFile, true ) )
 			{
 				IOFunctions.println( "Failed to analyze file: '" + cziFile.getAbsolutePath() + "'." );
-				meta = null;
 				isClosed = true;
-				return null;
-			}
-			else
-			{
-				isClosed = false;
+				return false;
 			}
+
+			this.meta = meta;
+			isClosed = false;
+		}
+
+		return true;
+	}
+
+	/*
+	 * Creates a cached cell img for a view, z-planes are read through a thread-local reader and decoded
+	 * directly into the primitive cell arrays when a cell is first accessed.
+	 */
+	protected RandomAccessibleInterval< UnsignedShortType > openCZILazy( final ViewId view )
+	{
+		if ( !loadMetaDataIfNecessary() )
+			throw new RuntimeException( "Could not load '" + cziFile + "' viewId=" + view.getViewSetupId() + ", tpId=" + view.getTimePointId() );
+
+		final BasicViewDescription< ? > vd = sequenceDescription.getViewDescriptions().get( view );
+		final BasicViewSetup vs = vd.getViewSetup();
+
+		final TimePoint t = vd.getTimePoint();
+		final Angle a = getAngle( vd );
+		final Channel c = getChannel( vd );
+		final Illumination i = getIllumination( vd );
+		final Tile tile = getTile( vd );
+
+		final long[] dim;
+
+		if ( vs.hasSize() )
+		{
+			dim = vs.getSize().dimensionsAsLongArray();
 		}
+		else
+		{
+			final int[] d = meta.imageSizes().get( a.getId() );
+			dim = new long[] { d[ 0 ], d[ 1 ], d[ 2 ] };
+		}
+
+		final boolean isLittleEndian = meta.isLittleEndian();
+		final int pixelType = meta.pixelType();
+		final int bytesPerPixel = meta.bytesPerPixel();
+		final int numPx = (int)( dim[ 0 ] * dim[ 1 ] );
+		final int series = tile.getId();
+		final int tp = t.getId();
+
+		// see openCZI()
+		final int ch = i.getId() * meta.numChannels() + c.getId(); // i0( c0, c1, c2 ), i1( c0, c1, c2 )
+
+		IOFunctions.println(
+				new Date( System.currentTimeMillis() ) + ": Lazily loading image data from '" + cziFile.getName() + "' [" + dim[ 0 ] + "x" + dim[ 1 ] + "x" + dim[ 2 ] +
+				" angle=" + a.getName() + " ch=" + c.getName() + " illum=" + i.getName() + " tp=" + t.getName() + " type=" + meta.pixelTypeString() +
+				" planesPerCell=" + planesPerCell + "]" );
+
+		return LazyPlaneImgTools.createUnsignedShortImg( dim, planesPerCell, ( z, target, offset ) ->
+		{
+			final IFormatReader r = threadLocalReader.get();
+
+			if ( r.getSeries() != series )
+				r.setSeries( series );
+
+			final byte[] b = new byte[ numPx * bytesPerPixel ];
+			r.openBytes( r.getIndex( z, ch, tp ), b );
+
+			LazyPlaneImgTools.decodePlane( b, pixelType, isLittleEndian, target, offset, numPx );
+		});
+	}
+
+	protected < T extends RealType< T > & NativeType< T > > Img< T > openCZI( final T type, final ViewId view ) throws Exception
+	{
+		if ( !loadMetaDataIfNecessary() )
+			return null;
 
 		final BasicViewDescription< ? > vd = sequenceDescription.getViewDescriptions().get( view );
 		final BasicViewSetup vs = vd.getViewSetup();
@@ -443,6 +546,6 @@ public class LegacyLightSheetZ1ImgLoader extends AbstractImgFactoryImgLoader
 	@Override
 	public String toString()
 	{
-		return new LightSheetZ1().getTitle() + ", ImgFactory=" + getImgFactory().getClass().getSimpleName();
+		return new LightSheetZ1().getTitle() + ", ImgFactory=" + ( lazy ? "lazy" : getImgFactory().getClass().getSimpleName() );
 	}
 }
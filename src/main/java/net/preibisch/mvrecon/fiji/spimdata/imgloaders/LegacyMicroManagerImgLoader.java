@@ -23,9 +23,14 @@
 package net.preibisch.mvrecon.fiji.spimdata.imgloaders;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import mpicbg.spim.data.generic.sequence.AbstractSequenceDescription;
 import mpicbg.spim.data.generic.sequence.BasicViewDescription;
@@ -36,9 +41,15 @@ import mpicbg.spim.data.sequence.Illumination;
 import mpicbg.spim.data.sequence.ViewId;
 import net.imglib2.Cursor;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.ref.GuardedStrongRefLoaderCache;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
 import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.LazyCellImg;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
@@ -48,6 +59,7 @@ import net.imglib2.view.Views;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.ImgLib2Temp.Pair;
 import net.preibisch.mvrecon.fiji.datasetmanager.MicroManager;
+import net.preibisch.mvrecon.fiji.spimdata.imgloaders.util.LazyPlaneImgTools;
 import util.ImgLib2Tools;
 
 public class LegacyMicroManagerImgLoader extends AbstractImgLoader
@@ -55,6 +67,23 @@ public class LegacyMicroManagerImgLoader extends AbstractImgLoader
 	final File mmFile;
 	final AbstractSequenceDescription< ?, ?, ? > sequenceDescription;
 
+	// if lazy, every view is a cached cell img whose z-planes are only read when accessed
+	boolean lazy = false;
+	int planesPerCell = 1;
+
+	final Map< ViewId, RandomAccessibleInterval< UnsignedShortType > > lazyImgs = new ConcurrentHashMap<>();
+
+	// if memory-mapped, the z-planes of 16 bit data are mapped from the files and wrapped without copying
+	boolean memoryMapped = false;
+
+	final Map< ViewId, RandomAccessibleInterval< UnsignedShortType > > mappedImgs = new ConcurrentHashMap<>();
+
+	// upper bound of mapped z-planes per view that are kept, least recently used planes are mapped again when needed
+	public static int MAX_MAPPED_PLANES = 256;
+
+	// shared by all lazy and memory-mapped images, MultipageTiffReader only does positional reads on its FileChannels
+	MultipageTiffReader lazyReader = null;
+
 	public LegacyMicroManagerImgLoader(
 			final File mmFile,
 			final AbstractSequenceDescription< ?, ?, ? > sequenceDescription )
@@ -67,6 +96,15 @@ public class LegacyMicroManagerImgLoader extends AbstractImgLoader
 
 	public File getFile() { return mmFile; }
 
+	public boolean isLazy() { return lazy; }
+	public void setLazy( final boolean lazy ) { this.lazy = lazy; }
+
+	public boolean isMemoryMapped() { return memoryMapped; }
+	public void setMemoryMapped( final boolean memoryMapped ) { this.memoryMapped = memoryMapped; }
+
+	public int getPlanesPerCell() { return planesPerCell; }
+	public void setPlanesPerCell( final int planesPerCell ) { this.planesPerCell = planesPerCell; }
+
 	final public static < T extends RealType< T > & NativeType< T > > void populateImage( final Img< T > img, final BasicViewDescription< ? > vd, final MultipageTiffReader r )
 	{
 		final Cursor< T > cursor = Views.flatIterable( img ).cursor();
@@ -129,6 +167,12 @@ public class LegacyMicroManagerImgLoader extends AbstractImgLoader
 	@Override
 	public RandomAccessibleInterval< UnsignedShortType > getImage( final ViewId view )
 	{
+		if ( memoryMapped )
+			return mappedImgs.computeIfAbsent( view, this::openMapped );
+
+		if ( lazy )
+			return lazyImgs.computeIfAbsent( view, this::openLazy );
+
 		try
 		{
 			final MultipageTiffReader r = new MultipageTiffReader( mmFile );
@@ -162,6 +206,171 @@ public class LegacyMicroManagerImgLoader extends AbstractImgLoader
 		}
 	}
 
+	protected synchronized MultipageTiffReader getLazyReader() throws IOException
+	{
+		if ( lazyReader == null )
+			lazyReader = new MultipageTiffReader( mmFile );
+
+		return lazyReader;
+	}
+
+	/**
+	 * Drops all lazy and memory-mapped images and closes the shared reader, images that are requested
+	 * afterwards are opened again.
+	 */
+	public synchronized void close()
+	{
+		lazyImgs.clear();
+		mappedImgs.clear();
+
+		if ( lazyReader != null )
+		{
+			try
+			{
+				lazyReader.close();
+			}
+			catch ( IOException e )
+			{
+				IOFunctions.println( "Failed to close '" + mmFile + "': " + e );
+			}
+
+			lazyReader = null;
+		}
+	}
+
+	@Override
+	public void finalize()
+	{
+		close();
+	}
+
+	/*
+	 * Creates a cached cell img for a view, z-planes are only read when a cell is first accessed.
+	 * Dropped frames are left empty.
+	 */
+	protected RandomAccessibleInterval< UnsignedShortType > openLazy( final ViewId view )
+	{
+		try
+		{
+			final MultipageTiffReader r = getLazyReader();
+			final BasicViewDescription< ? > vd = sequenceDescription.getViewDescriptions().get( view );
+
+			final int t = vd.getTimePoint().getId();
+			final int a = vd.getViewSetup().getAttribute( Angle.class ).getId();
+			final int c = vd.getViewSetup().getAttribute( Channel.class ).getId();
+			final int i = vd.getViewSetup().getAttribute( Illumination.class ).getId();
+			final int interleavedId = r.interleavedId( c, a );
+			final int numPx = r.width() * r.height();
+
+			updateMetaDataCache( view, r.width(), r.height(), r.depth(), r.calX(), r.calY(), r.calZ() );
+
+			return LazyPlaneImgTools.createUnsignedShortImg( new long[] { r.width(), r.height(), r.depth() }, planesPerCell, ( z, target, offset ) ->
+			{
+				final Pair< Object, HashMap< String, Object > > result = r.readImage( MultipageTiffReader.generateLabel( interleavedId, z, t, i ) );
+
+				if ( result == null )
+				{
+					IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): WARNING!!! DROPPED FRAME in timepoint="  + t + " viewsetup=" + vd.getViewSetupId() + " slice=" + z );
+					return;
+				}
+
+				final Object o = result.getA();
+
+				if ( o instanceof byte[] )
+				{
+					final byte[] b = (byte[])o;
+					for ( int j = 0; j < numPx; ++j )
+						target[ offset + j ] = (short)( b[ j ] & 0xff );
+				}
+				else
+				{
+					System.arraycopy( (short[])o, 0, target, offset, numPx );
+				}
+			});
+		}
+		catch ( Exception e )
+		{
+			IOFunctions.println( "Failed to load viewsetup=" + view.getViewSetupId() + " timepoint=" + view.getTimePointId() + ": " + e );
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/*
+	 * Creates a cell img for a view where every cell wraps the memory-mapped pixels of one z-plane
+	 * (read-only, in the byte order of the file), no pixel data is copied. Planes are only mapped when
+	 * a cell is first accessed and at most MAX_MAPPED_PLANES mappings per view are kept strongly
+	 * referenced. Dropped frames are empty planes. Falls back to lazy loading for data that is not 16 bit.
+	 */
+	protected RandomAccessibleInterval< UnsignedShortType > openMapped( final ViewId view )
+	{
+		try
+		{
+			final MultipageTiffReader r = getLazyReader();
+
+			if ( r.isRGB() || r.bytesPerPixel() != 2 )
+			{
+				IOFunctions.println( "Memory-mapping only supported for 16 bit data, loading viewsetup=" + view.getViewSetupId() + " timepoint=" + view.getTimePointId() + " lazily." );
+				return openLazy( view );
+			}
+
+			final BasicViewDescription< ? > vd = sequenceDescription.getViewDescriptions().get( view );
+
+			final int t = vd.getTimePoint().getId();
+			final int a = vd.getViewSetup().getAttribute( Angle.class ).getId();
+			final int c = vd.getViewSetup().getAttribute( Channel.class ).getId();
+			final int i = vd.getViewSetup().getAttribute( Illumination.class ).getId();
+			final int interleavedId = r.interleavedId( c, a );
+
+			final int w = r.width();
+			final int h = r.height();
+			final int d = r.depth();
+			final int planeBytes = w * h * 2;
+
+			final CellGrid grid = new CellGrid( new long[] { w, h, d }, new int[] { w, h, 1 } );
+
+			final Cache< Long, Cell< ShortBufferAccess > > cells =
+					new GuardedStrongRefLoaderCache< Long, Cell< ShortBufferAccess > >( MAX_MAPPED_PLANES ).withLoader( index ->
+			{
+				final int z = index.intValue();
+
+				ByteBuffer pixels = r.mapImagePixels( MultipageTiffReader.generateLabel( interleavedId, z, t, i ) );
+
+				if ( pixels == null )
+				{
+					IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): WARNING!!! DROPPED FRAME in timepoint="  + t + " viewsetup=" + vd.getViewSetupId() + " slice=" + z );
+					pixels = ByteBuffer.allocate( planeBytes ).order( r.byteOrder() ).asReadOnlyBuffer();
+				}
+				else if ( pixels.capacity() != planeBytes )
+				{
+					throw new IOException( "Plane " + z + " has " + pixels.capacity() + " bytes, expected " + planeBytes + " (compressed data cannot be memory-mapped)." );
+				}
+
+				return new Cell<>( new int[] { w, h, 1 }, new long[] { 0, 0, z }, new ShortBufferAccess( pixels, true ) );
+			});
+
+			updateMetaDataCache( view, w, h, d, r.calX(), r.calY(), r.calZ() );
+
+			return new LazyCellImg<>( grid, new UnsignedShortType(), index ->
+			{
+				try
+				{
+					return cells.get( index );
+				}
+				catch ( ExecutionException e )
+				{
+					throw new RuntimeException( "Failed to map plane " + index + " of viewsetup=" + view.getViewSetupId() + " timepoint=" + view.getTimePointId() + ": " + e.getCause(), e );
+				}
+			});
+		}
+		catch ( Exception e )
+		{
+			IOFunctions.println( "Failed to load viewsetup=" + view.getViewSetupId() + " timepoint=" + view.getTimePointId() + ": " + e );
+			e.printStackTrace();
+			return null;
+		}
+	}
+
 	@Override
 	protected void loadMetaData( final ViewId view )
 	{
@@ -204,6 +413,6 @@ public class LegacyMicroManagerImgLoader extends AbstractImgLoader
 	@Override
 	public String toString()
 	{
-		return new MicroManager().getTitle() + ", ImgFactory=ArrayImgFactory";
+		return new MicroManager().getTitle() + ", ImgFactory=" + ( memoryMapped ? "memory-mapped" : lazy ? "lazy" : "ArrayImgFactory" );
 	}
 }
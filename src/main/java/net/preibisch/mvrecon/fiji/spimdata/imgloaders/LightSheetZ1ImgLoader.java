@@ -43,6 +43,12 @@ public class LightSheetZ1ImgLoader extends LegacyImgLoaderWrapper< UnsignedShort
 	public File getCZIFile() { return legacyImgLoader.getCZIFile(); }
 	public ImgFactory< ? extends NativeType< ? > > getImgFactory() { return legacyImgLoader.getImgFactory(); }
 
+	public boolean isLazy() { return legacyImgLoader.isLazy(); }
+	public void setLazy( final boolean lazy ) { legacyImgLoader.setLazy( lazy ); }
+
+	public int getPlanesPerCell() { return legacyImgLoader.getPlanesPerCell(); }
+	public void setPlanesPerCell( final int planesPerCell ) { legacyImgLoader.setPlanesPerCell( planesPerCell ); }
+
 	@Override
 	public String toString() {
 		return legacyImgLoader.toString();
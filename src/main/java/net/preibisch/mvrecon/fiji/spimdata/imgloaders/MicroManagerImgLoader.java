@@ -41,6 +41,20 @@ public class MicroManagerImgLoader extends LegacyImgLoaderWrapper< UnsignedShort
 
 	public File getFile() { return legacyImgLoader.getFile(); }
 
+	public boolean isLazy() { return legacyImgLoader.isLazy(); }
+	public void setLazy( final boolean lazy ) { legacyImgLoader.setLazy( lazy ); }
+
+	public boolean isMemoryMapped() { return legacyImgLoader.isMemoryMapped(); }
+	public void setMemoryMapped( final boolean memoryMapped ) { legacyImgLoader.setMemoryMapped( memoryMapped ); }
+
+	public int getPlanesPerCell() { return legacyImgLoader.getPlanesPerCell(); }
+	public void setPlanesPerCell( final int planesPerCell ) { legacyImgLoader.setPlanesPerCell( planesPerCell ); }
+
+	/**
+	 * Closes the reader shared by lazy and memory-mapped images and drops them
+	 */
+	public void close() { legacyImgLoader.close(); }
+
 	@Override
 	public String toString() {
 		return legacyImgLoader.toString();
@@ -285,6 +285,44 @@ public class MultipageTiffReader
 		}
 	}
 
+	/**
+	 * Maps the pixels of an image directly from the file instead of copying them, the data is only paged
+	 * in by the OS when accessed. Only makes sense for uncompressed, non-RGB images (which MicroManager writes).
+	 *
+	 * @param label - the label of the image, see {@link #generateLabel(int, int, int, int)}
+	 * @return a read-only buffer in the byte order of the file, or null if the image is not present
+	 * @throws IOException if the IFD cannot be read or mapping fails
+	 */
+	public ByteBuffer mapImagePixels( final String label ) throws IOException
+	{
+		final Pair< Long, FileChannel > entry = indexMap_.get( label );
+
+		if ( entry == null || entry.getB() == null )
+			return null;
+
+		final IFDData data = readIFD( entry.getA(), entry.getB() );
+
+		return entry.getB().map( FileChannel.MapMode.READ_ONLY, data.pixelOffset, data.bytesPerImage ).order( byteOrder_ );
+	}
+
+	public ByteOrder byteOrder() { return byteOrder_; }
+
+	public int bytesPerPixel()
+	{
+		if ( byteDepth_ == 0 )
+			getRGBAndByteDepth( summaryMetadata_ );
+
+		return byteDepth_;
+	}
+
+	public boolean isRGB()
+	{
+		if ( byteDepth_ == 0 )
+			getRGBAndByteDepth( summaryMetadata_ );
+
+		return rgb_;
+	}
+
 	public Set<String> getIndexKeys() {
 		if (indexMap_ == null)
 			return null;
@@ -46,6 +46,8 @@ public class XmlIoLightSheetZ1ImgLoader implements XmlIoBasicImgLoader< LightShe
 	public static final String DIRECTORY_TAG = "imagedirectory";
 	public static final String MASTER_FILE_TAG = "masterfile";
 	public static final String IMGLIB2CONTAINER_PATTERN_TAG = "imglib2container";
+	public static final String LAZY_TAG = "lazy";
+	public static final String PLANES_PER_CELL_TAG = "planesPerCell";
 
 	@Override
 	public Element toXml( final LightSheetZ1ImgLoader imgLoader, final File basePath )
@@ -56,6 +58,8 @@ public class XmlIoLightSheetZ1ImgLoader implements XmlIoBasicImgLoader< LightShe
 		elem.addContent( XmlHelpers.pathElement( DIRECTORY_TAG, imgLoader.getCZIFile().getParentFile(), basePath ) );
 		elem.addContent( XmlHelpers.textElement( MASTER_FILE_TAG, imgLoader.getCZIFile().getName() ) );
 		elem.addContent( XmlHelpers.textElement( IMGLIB2CONTAINER_PATTERN_TAG, imgLoader.getImgFactory().getClass().getSimpleName() ) );
+		elem.addContent( XmlHelpers.booleanElement( LAZY_TAG, imgLoader.isLazy() ) );
+		elem.addContent( XmlHelpers.intElement( PLANES_PER_CELL_TAG, imgLoader.getPlanesPerCell() ) );
 		
 		return elem;
 	}
@@ -103,7 +107,11 @@ public class XmlIoLightSheetZ1ImgLoader implements XmlIoBasicImgLoader< LightShe
 				}
 			}
 
-			return new LightSheetZ1ImgLoader( new File( path, masterFile ), imgFactory, sequenceDescription );
+			final LightSheetZ1ImgLoader imgLoader = new LightSheetZ1ImgLoader( new File( path, masterFile ), imgFactory, sequenceDescription );
+			imgLoader.setLazy( XmlHelpers.getBoolean( elem, LAZY_TAG, false ) );
+			imgLoader.setPlanesPerCell( XmlHelpers.getInt( elem, PLANES_PER_CELL_TAG, 1 ) );
+
+			return imgLoader;
 		}
 		catch ( final Exception e )
 		{
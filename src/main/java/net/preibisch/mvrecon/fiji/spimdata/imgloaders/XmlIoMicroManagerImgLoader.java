@@ -41,6 +41,9 @@ public class XmlIoMicroManagerImgLoader implements XmlIoBasicImgLoader< MicroMan
 	public static final String DIRECTORY_TAG = "imagedirectory";
 	public static final String MASTER_FILE_TAG = "masterfile";
 	public static final String IMGLIB2CONTAINER_PATTERN_TAG = "imglib2container";
+	public static final String LAZY_TAG = "lazy";
+	public static final String MEMORY_MAPPED_TAG = "memoryMapped";
+	public static final String PLANES_PER_CELL_TAG = "planesPerCell";
 
 	@Override
 	public Element toXml( final MicroManagerImgLoader imgLoader, final File basePath )
@@ -51,6 +54,9 @@ public class XmlIoMicroManagerImgLoader implements XmlIoBasicImgLoader< MicroMan
 		elem.addContent( XmlHelpers.pathElement( DIRECTORY_TAG, imgLoader.getFile().getParentFile(), basePath ) );
 		elem.addContent( XmlHelpers.textElement( MASTER_FILE_TAG, imgLoader.getFile().getName() ) );
 		elem.addContent( XmlHelpers.textElement( IMGLIB2CONTAINER_PATTERN_TAG, ArrayImgFactory.class.getSimpleName() ) );
+		elem.addContent( XmlHelpers.booleanElement( LAZY_TAG, imgLoader.isLazy() ) );
+		elem.addContent( XmlHelpers.booleanElement( MEMORY_MAPPED_TAG, imgLoader.isMemoryMapped() ) );
+		elem.addContent( XmlHelpers.intElement( PLANES_PER_CELL_TAG, imgLoader.getPlanesPerCell() ) );
 		
 		return elem;
 	}
@@ -71,7 +77,12 @@ public class XmlIoMicroManagerImgLoader implements XmlIoBasicImgLoader< MicroMan
 			else if ( !container.toLowerCase().contains( "arrayimg" ) )
 				System.out.println( "WARNING: Only ArrayImg supported for MicroManager ImgLoader, using ArrayImg." );
 
-			return new MicroManagerImgLoader( new File( path, masterFile ), sequenceDescription );
+			final MicroManagerImgLoader imgLoader = new MicroManagerImgLoader( new File( path, masterFile ), sequenceDescription );
+			imgLoader.setLazy( XmlHelpers.getBoolean( elem, LAZY_TAG, false ) );
+			imgLoader.setMemoryMapped( XmlHelpers.getBoolean( elem, MEMORY_MAPPED_TAG, false ) );
+			imgLoader.setPlanesPerCell( XmlHelpers.getInt( elem, PLANES_PER_CELL_TAG, 1 ) );
+
+			return imgLoader;
 		}
 		catch ( final Exception e )
 		{
@@ -71,6 +71,9 @@ public class FileMapImgLoaderLOCI2 implements ImgLoader, FileMapGettable
 
 	private final Map< Integer, SetupImgLoader< ? > > setupImgLoaders = new ConcurrentHashMap<>();
 
+	// reads z-planes ahead asynchronously, shared by all setups
+	private PlanePrefetcher prefetcher = new PlanePrefetcher();
+
 	public FileMapImgLoaderLOCI2(
 			final Map< ? extends ViewId, FileMapEntry > fileMap,
 			final AbstractSequenceDescription< ?, ?, ? > sequenceDescription )
@@ -138,6 +141,20 @@ public class FileMapImgLoaderLOCI2 implements ImgLoader, FileMapGettable
 		return fileMap;
 	}
 
+	/**
+	 * Configures the asynchronous read-ahead of z-planes, only affects images that are created afterwards
+	 * (images that were created before read their planes synchronously from then on).
+	 *
+	 * @param planesAhead - how many planes to read ahead of the last requested one (0 disables prefetching)
+	 * @param numThreads - number of threads reading ahead
+	 * @param maxBytes - maximal amount of memory held by prefetched planes that were not requested yet
+	 */
+	public void setPrefetching( final int planesAhead, final int numThreads, final long maxBytes )
+	{
+		this.prefetcher.shutdown();
+		this.prefetcher = new PlanePrefetcher( planesAhead, numThreads, maxBytes );
+	}
+
 	private final Supplier< IFormatReader > getReader;
 
 	public class FileMapSetupImgLoaderLOCI2< T extends RealType< T > & NativeType< T > > implements SetupImgLoader< T >
@@ -170,7 +187,8 @@ public class FileMapImgLoaderLOCI2 implements ImgLoader, FileMapGettable
 					entry.file(),
 					entry.series(),
 					entry.channel(),
-					allTimepointsInSingleFiles ? 0 : timepointId );
+					allTimepointsInSingleFiles ? 0 : timepointId,
+					prefetcher );
 		}
 
 		@Override
@@ -0,0 +1,252 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.fiji.spimdata.imgloaders.filemap2;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.preibisch.mvrecon.Threads;
+
+/**
+ * Asynchronous read-ahead of z-planes. When a plane is read, the next planes of the same
+ * file/series/channel/timepoint are read on a small I/O pool, so sequential consumers (resaving, fusion,
+ * detection) do not have to wait for storage plane by plane. The memory held by prefetched planes that
+ * were not consumed yet is bounded, the oldest ones are dropped if necessary.
+ */
+class PlanePrefetcher
+{
+	public static int defaultPlanesAhead = 4;
+	public static int defaultNumThreads = 2;
+	public static long defaultMaxBytes = 512l * 1024l * 1024l;
+
+	/**
+	 * Reads a plane
+	 */
+	@FunctionalInterface
+	interface PlaneReader
+	{
+		public ByteBuffer read( final int z ) throws Exception;
+	}
+
+	final int planesAhead;
+	final int numThreads;
+	final long maxBytes;
+
+	// prefetched (or currently loading) planes in insertion order, guarded by 'this'
+	private final LinkedHashMap< PlaneKey, Prefetched > planes = new LinkedHashMap<>();
+	private long bytesHeld = 0;
+
+	private ExecutorService service = null;
+	private boolean isShutdown = false;
+
+	PlanePrefetcher( final int planesAhead, final int numThreads, final long maxBytes )
+	{
+		this.planesAhead = planesAhead;
+		this.numThreads = numThreads;
+		this.maxBytes = maxBytes;
+	}
+
+	PlanePrefetcher()
+	{
+		this( defaultPlanesAhead, defaultNumThreads, defaultMaxBytes );
+	}
+
+	/**
+	 * Returns a plane (prefetched if available, otherwise read synchronously) and schedules reading of the next planes.
+	 *
+	 * @param file - the file
+	 * @param series - the series
+	 * @param channel - the channel
+	 * @param timepoint - the timepoint
+	 * @param z - the plane to read
+	 * @param numPlanes - number of planes of the image
+	 * @param planeBytes - (approximate) size of one plane in bytes
+	 * @param reader - reads a plane, must be thread-safe
+	 * @return the plane
+	 * @throws Exception if reading fails
+	 */
+	ByteBuffer get(
+			final File file,
+			final int series,
+			final int channel,
+			final int timepoint,
+			final int z,
+			final int numPlanes,
+			final long planeBytes,
+			final PlaneReader reader ) throws Exception
+	{
+		if ( planesAhead <= 0 )
+			return reader.read( z );
+
+		final Prefetched prefetched;
+
+		synchronized ( this )
+		{
+			prefetched = planes.remove( new PlaneKey( file, series, channel, timepoint, z ) );
+
+			if ( prefetched != null )
+				bytesHeld -= prefetched.bytes;
+
+			// after shutdown (images created before the prefetcher was replaced still use it) nothing is scheduled
+			// anymore and all planes are read synchronously below
+			for ( int zp = z + 1; !isShutdown && zp <= z + planesAhead && zp < numPlanes; ++zp )
+			{
+				final PlaneKey key = new PlaneKey( file, series, channel, timepoint, zp );
+
+				if ( planes.containsKey( key ) )
+					continue;
+
+				if ( !makeRoom( planeBytes ) )
+					break;
+
+				final int zPrefetch = zp;
+				planes.put( key, new Prefetched( service().submit( (Callable< ByteBuffer >)() -> reader.read( zPrefetch ) ), planeBytes ) );
+				bytesHeld += planeBytes;
+			}
+		}
+
+		if ( prefetched == null )
+			return reader.read( z );
+
+		try
+		{
+			// does not reduce the parallelism if called from the shared pool
+			return Threads.managedBlock( prefetched.future::get );
+		}
+		catch ( ExecutionException e )
+		{
+			// reading ahead failed, try again synchronously to get a meaningful exception
+			return reader.read( z );
+		}
+	}
+
+	/*
+	 * drops the oldest prefetched planes until planeBytes more fit into the budget
+	 */
+	private boolean makeRoom( final long planeBytes )
+	{
+		if ( planeBytes > maxBytes )
+			return false;
+
+		final Iterator< Map.Entry< PlaneKey, Prefetched > > it = planes.entrySet().iterator();
+
+		while ( bytesHeld + planeBytes > maxBytes && it.hasNext() )
+		{
+			final Prefetched oldest = it.next().getValue();
+			oldest.future.cancel( false );
+			bytesHeld -= oldest.bytes;
+			it.remove();
+		}
+
+		return bytesHeld + planeBytes <= maxBytes;
+	}
+
+	private synchronized ExecutorService service()
+	{
+		if ( service == null )
+		{
+			final AtomicInteger count = new AtomicInteger();
+
+			service = Executors.newFixedThreadPool( numThreads, r ->
+			{
+				final Thread t = new Thread( r, "plane-prefetch-" + count.incrementAndGet() );
+				t.setDaemon( true );
+				return t;
+			});
+		}
+
+		return service;
+	}
+
+	synchronized void clear()
+	{
+		planes.values().forEach( p -> p.future.cancel( false ) );
+		planes.clear();
+		bytesHeld = 0;
+	}
+
+	/**
+	 * Cancels pending prefetches and stops the threads, afterwards all planes are read synchronously
+	 */
+	synchronized void shutdown()
+	{
+		clear();
+		isShutdown = true;
+
+		if ( service != null )
+			service.shutdown();
+	}
+
+	private static class Prefetched
+	{
+		final Future< ByteBuffer > future;
+		final long bytes;
+
+		Prefetched( final Future< ByteBuffer > future, final long bytes )
+		{
+			this.future = future;
+			this.bytes = bytes;
+		}
+	}
+
+	private static class PlaneKey
+	{
+		final File file;
+		final int series, channel, timepoint, z;
+
+		PlaneKey( final File file, final int series, final int channel, final int timepoint, final int z )
+		{
+			this.file = file;
+			this.series = series;
+			this.channel = channel;
+			this.timepoint = timepoint;
+			this.z = z;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof PlaneKey ) )
+				return false;
+
+			final PlaneKey k = (PlaneKey)o;
+			return z == k.z && series == k.series && channel == k.channel && timepoint == k.timepoint && file.equals( k.file );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( file, series, channel, timepoint, z );
+		}
+	}
+}
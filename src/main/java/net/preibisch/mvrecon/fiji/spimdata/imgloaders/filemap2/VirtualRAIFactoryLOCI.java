@@ -52,6 +52,8 @@ import net.imglib2.type.numeric.integer.UnsignedIntType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Cast;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 
 class VirtualRAIFactoryLOCI
 {
@@ -93,7 +95,8 @@ class VirtualRAIFactoryLOCI
 			final File file,
 			final int series,
 			final int channel,
-			final int timepoint ) throws IncompatibleTypeException
+			final int timepoint,
+			final PlanePrefetcher prefetcher ) throws IncompatibleTypeException
 	{
 		final IFormatReader reader = threadLocalReader.get();
 		try
@@ -111,6 +114,12 @@ class VirtualRAIFactoryLOCI
 
 		final ByteOrder byteOrder = reader.isLittleEndian() ? LITTLE_ENDIAN : BIG_ENDIAN;
 
+		// planes are read through the prefetcher, which reads the following planes ahead on its own threads
+		// (each of them using its own thread-local reader)
+		final int numPlanes = ( int ) dims[ 2 ];
+		final long planeBytes = ( long ) ( reader.getBitsPerPixel() / 8 ) * dims[ 0 ] * dims[ 1 ] * reader.getRGBChannelCount();
+		final PlanePrefetcher.PlaneReader planeReader = zz -> readIntoBuffer( threadLocalReader.get(), file, series, channel, timepoint, zz );
+
 		final int pixelType = reader.getPixelType();
 		switch ( pixelType )
 		{
@@ -118,7 +127,7 @@ class VirtualRAIFactoryLOCI
 			return Cast.unchecked( factory.create( dims, new UnsignedByteType(),
 					cell -> {
 						final int z = ( int ) cell.min( 2 );
-						final ByteBuffer bytes = readIntoBuffer( threadLocalReader.get(), file, series, channel, timepoint, z );
+						final ByteBuffer bytes = prefetcher.get( file, series, channel, timepoint, z, numPlanes, planeBytes, planeReader );
 						bytes.position( 0 );
 						bytes.get( ( byte[] ) cell.getStorageArray() );
 					} ) );
@@ -126,7 +135,7 @@ class VirtualRAIFactoryLOCI
 			return Cast.unchecked( factory.create( dims, new UnsignedShortType(),
 					cell -> {
 						final int z = ( int ) cell.min( 2 );
-						final ByteBuffer bytes = readIntoBuffer( threadLocalReader.get(), file, series, channel, timepoint, z );
+						final ByteBuffer bytes = prefetcher.get( file, series, channel, timepoint, z, numPlanes, planeBytes, planeReader );
 						final ShortBuffer shorts = bytes.order( byteOrder ).asShortBuffer();
 						shorts.position( 0 );
 						shorts.get( ( short[] ) cell.getStorageArray() );
@@ -135,7 +144,7 @@ class VirtualRAIFactoryLOCI
 			return Cast.unchecked( factory.create( dims, new ShortType(),
 					cell -> {
 						final int z = ( int ) cell.min( 2 );
-						final ByteBuffer bytes = readIntoBuffer( threadLocalReader.get(), file, series, channel, timepoint, z );
+						final ByteBuffer bytes = prefetcher.get( file, series, channel, timepoint, z, numPlanes, planeBytes, planeReader );
 						final ShortBuffer shorts = bytes.order( byteOrder ).asShortBuffer();
 						shorts.position( 0 );
 						shorts.get( ( short[] ) cell.getStorageArray() );
@@ -144,7 +153,7 @@ class VirtualRAIFactoryLOCI
 			return Cast.unchecked( factory.create( dims, new UnsignedIntType(),
 					cell -> {
 						final int z = ( int ) cell.min( 2 );
-						final ByteBuffer bytes = readIntoBuffer( threadLocalReader.get(), file, series, channel, timepoint, z );
+						final ByteBuffer bytes = prefetcher.get( file, series, channel, timepoint, z, numPlanes, planeBytes, planeReader );
 						final IntBuffer ints = bytes.order( byteOrder ).asIntBuffer();
 						ints.position( 0 );
 						ints.get( ( int[] ) cell.getStorageArray() );
@@ -153,7 +162,7 @@ class VirtualRAIFactoryLOCI
 			return Cast.unchecked( factory.create( dims, new FloatType(),
 					cell -> {
 						final int z = ( int ) cell.min( 2 );
-						final ByteBuffer bytes = readIntoBuffer( threadLocalReader.get(), file, series, channel, timepoint, z );
+						final ByteBuffer bytes = prefetcher.get( file, series, channel, timepoint, z, numPlanes, planeBytes, planeReader );
 						final FloatBuffer floats = bytes.order( byteOrder ).asFloatBuffer();
 						floats.position( 0 );
 						floats.get( ( float[] ) cell.getStorageArray() );
@@ -183,6 +192,8 @@ class VirtualRAIFactoryLOCI
 		final int actualTP = flipTAndZ ? z : timepoint;
 		final int actualZ = flipTAndZ ? timepoint : z;
 
+		final Timer.Context time = Metrics.timer( "loader_read_seconds", "loader", "FileMapImgLoaderLOCI2" ).start();
+
 		final int rgbOffset;
 		if ( reader.getRGBChannelCount() == reader.getSizeC() )
 		{
@@ -197,6 +208,9 @@ class VirtualRAIFactoryLOCI
 			rgbOffset = 0;
 		}
 
+		time.stop();
+		Metrics.counter( "loader_bytes_read_total", "loader", "FileMapImgLoaderLOCI2" ).inc( size );
+
 		return ByteBuffer.wrap( buffer, rgbOffset, planeSize );
 	}
 
@@ -113,11 +113,10 @@ public class DefaultFlatfieldCorrectionWrappedImgLoader extends LazyLoadingFlatF
 						hints );
 
 			@SuppressWarnings("unchecked")
-			RandomAccessibleInterval< T > rai = FlatFieldCorrectedRandomAccessibleIntervals.create(
-					(RandomAccessibleInterval< T >) wrappedImgLoader.getSetupImgLoader( setupId ).getImage( timepointId,
-							hints ),
-					getBrightImg( new ViewId( timepointId, setupId ) ),
-					getDarkImg( new ViewId( timepointId, setupId ) ) );
+			final RandomAccessibleInterval< T > source = (RandomAccessibleInterval< T >) wrappedImgLoader.getSetupImgLoader( setupId ).getImage( timepointId,
+							hints );
+
+			RandomAccessibleInterval< T > rai = createCorrected( source, new ViewId( timepointId, setupId ), getImageType().createVariable() );
 
 			boolean loadCompletelyRequested = false;
 			for (ImgLoaderHint hint : hints)
@@ -142,16 +141,6 @@ public class DefaultFlatfieldCorrectionWrappedImgLoader extends LazyLoadingFlatF
 				rai = loadedImg;
 			}
 
-			else if ( cacheResult )
-			{
-				final int[] cellSize = new int[rai.numDimensions()];
-				Arrays.fill( cellSize, 1 );
-				for ( int d = 0; d < rai.numDimensions() - 1; d++ )
-					cellSize[d] = (int) rai.dimension( d );
-				rai = FusionTools.cacheRandomAccessibleInterval( rai, Long.MAX_VALUE,
-						Views.iterable( rai ).firstElement().createVariable(), cellSize );
-			}
-
 			return rai;
 
 		}
@@ -165,11 +154,10 @@ public class DefaultFlatfieldCorrectionWrappedImgLoader extends LazyLoadingFlatF
 						false, hints );
 
 			@SuppressWarnings("unchecked")
-			RandomAccessibleInterval< FloatType > rai = FlatFieldCorrectedRandomAccessibleIntervals.create(
-					(RandomAccessibleInterval< T >) wrappedImgLoader.getSetupImgLoader( setupId ).getImage( timepointId,
-							hints ),
-					getBrightImg( new ViewId( timepointId, setupId ) ),
-					getDarkImg( new ViewId( timepointId, setupId ) ), new FloatType() );
+			final RandomAccessibleInterval< T > source = (RandomAccessibleInterval< T >) wrappedImgLoader.getSetupImgLoader( setupId ).getImage( timepointId,
+							hints );
+
+			RandomAccessibleInterval< FloatType > rai = createCorrected( source, new ViewId( timepointId, setupId ), new FloatType() );
 
 			if ( normalize )
 			{
@@ -232,20 +220,34 @@ public class DefaultFlatfieldCorrectionWrappedImgLoader extends LazyLoadingFlatF
 
 					rai = loadedImg;
 				}
-				else if ( cacheResult )
-				{
-					final int[] cellSize = new int[rai.numDimensions()];
-					Arrays.fill( cellSize, 1 );
-					for ( int d = 0; d < rai.numDimensions() - 1; d++ )
-						cellSize[d] = (int) rai.dimension( d );
-					rai = FusionTools.cacheRandomAccessibleInterval( rai, Long.MAX_VALUE,
-							Views.iterable( rai ).firstElement().createVariable(), cellSize );
-				}
-
 			}
 			return rai;
 		}
 
+		/*
+		 * if results are cached, apply precomputed gain/offset planes to whole cells,
+		 * otherwise correct virtually on every access
+		 */
+		private < O extends RealType< O > & NativeType< O > > RandomAccessibleInterval< O > createCorrected(
+				final RandomAccessibleInterval< T > source,
+				final ViewId viewId,
+				final O outputType )
+		{
+			if ( cacheResult )
+				return FlatFieldCorrectedRandomAccessibleIntervals.createBlockCorrected(
+						source,
+						getGainOffset( viewId, source ),
+						outputType,
+						Long.MAX_VALUE,
+						FlatFieldCorrectedRandomAccessibleIntervals.planeCellDimensions( source ) );
+			else
+				return FlatFieldCorrectedRandomAccessibleIntervals.create(
+						source,
+						getBrightImg( viewId ),
+						getDarkImg( viewId ),
+						outputType );
+		}
+
 		@Override
 		public T getImageType()
 		{
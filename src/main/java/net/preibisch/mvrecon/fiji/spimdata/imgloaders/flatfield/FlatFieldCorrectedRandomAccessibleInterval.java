@@ -90,8 +90,10 @@ public class FlatFieldCorrectedRandomAccessibleInterval <O extends RealType< O >
 		private final RandomAccess< R > darkRA;
 		private final O value;
 
-		private final int nDimBright;
-		private final int nDimDark;
+		private final long[] positionBright;
+		private final long[] positionDark;
+		private final double minValue;
+		private final double maxValue;
 
 		public FlatFieldCorrectedRandomAccess()
 		{
@@ -100,8 +102,10 @@ public class FlatFieldCorrectedRandomAccessibleInterval <O extends RealType< O >
 			brightRA = brightImg.randomAccess();
 			darkRA = darkImg.randomAccess();
 			value = type.createVariable();
-			nDimBright = brightImg.numDimensions();
-			nDimDark = darkImg.numDimensions();
+			positionBright = new long[ brightImg.numDimensions() ];
+			positionDark = new long[ darkImg.numDimensions() ];
+			minValue = value.getMinValue();
+			maxValue = value.getMaxValue();
 		}
 
 		@Override
@@ -109,24 +113,23 @@ public class FlatFieldCorrectedRandomAccessibleInterval <O extends RealType< O >
 		{
 			// NB: the flat field images seem to be 3D with 1 z slice
 			// if they were truly 2D, we would use position.length - 1
-			final long[] positionBright = new long[ nDimBright ];
-			final long[] positionDark = new long[ nDimDark ];
 			// only copy position of n-1 dimensions
-			System.arraycopy( position, 0, positionBright, 0, nDimBright );
-			System.arraycopy( position, 0, positionDark, 0, nDimDark );
+			System.arraycopy( position, 0, positionBright, 0, positionBright.length );
+			System.arraycopy( position, 0, positionDark, 0, positionDark.length );
 
 			sourceRA.setPosition( position );
 			brightRA.setPosition( positionBright );
 			darkRA.setPosition( positionDark );
 
-			final double corrBright = brightRA.get().getRealDouble() - darkRA.get().getRealDouble();
-			final double corrImg = sourceRA.get().getRealDouble() - darkRA.get().getRealDouble();
+			final double dark = darkRA.get().getRealDouble();
+			final double corrBright = brightRA.get().getRealDouble() - dark;
+			final double corrImg = sourceRA.get().getRealDouble() - dark;
 
 			if (corrBright == 0)
 				value.setReal( 0.0 );
 			else
 			{
-				final double corr = Math.min( Math.max( corrImg * meanBrightCorrected / corrBright, value.getMinValue() ), value.getMaxValue() );
+				final double corr = Math.min( Math.max( corrImg * meanBrightCorrected / corrBright, minValue ), maxValue );
 				value.setReal( corr );
 			}
 
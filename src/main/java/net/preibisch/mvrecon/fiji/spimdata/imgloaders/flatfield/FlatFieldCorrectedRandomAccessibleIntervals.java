@@ -22,15 +22,23 @@
  */
 package net.preibisch.mvrecon.fiji.spimdata.imgloaders.flatfield;
 
+import static net.imglib2.cache.img.ReadOnlyCachedCellImgOptions.options;
+
 import java.util.Arrays;
 
 import bdv.util.ConstantRandomAccessible;
 import bdv.viewer.overlay.SourceInfoOverlayRenderer;
+import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.optional.CacheOptions.CacheType;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.view.Views;
+import net.preibisch.mvrecon.process.fusion.FusionTools;
 
 public class FlatFieldCorrectedRandomAccessibleIntervals
 {
@@ -104,4 +112,100 @@ public class FlatFieldCorrectedRandomAccessibleIntervals
 			
 		return new FlatFieldCorrectedRandomAccessibleInterval<>(outputType, sourceImg, Views.interval( Views.extendBorder( brightImg ), intervalBright ), Views.interval( Views.extendBorder( darkImg ), intervalDark ) );
 	}
+
+	/**
+	 * Create a cached, flat-field corrected image that applies precomputed gain and offset planes to whole cells
+	 * at once, instead of positioning three RandomAccesses for every pixel access.
+	 *
+	 * @param sourceImg - the image to correct (at least 2d)
+	 * @param gainOffset - gain and offset planes computed for the xy-extent of sourceImg
+	 * @param outputType - the output type
+	 * @param maxCacheSize - maximum number of cached cells, or &lt;= 0 for a soft-reference cache
+	 * @param cellDims - the cell size
+	 * @param <O> output pixel type
+	 * @param <R> input pixel type
+	 * @return the corrected, cached image (same interval as sourceImg)
+	 */
+	public static <O extends RealType< O > & NativeType< O >, R extends RealType< R >> RandomAccessibleInterval< O > createBlockCorrected(
+			final RandomAccessibleInterval< R > sourceImg,
+			final FlatFieldGainOffset gainOffset,
+			final O outputType,
+			final long maxCacheSize,
+			final int... cellDims )
+	{
+		final RandomAccessibleInterval< R > source = Views.zeroMin( sourceImg );
+		final long[] dims = source.dimensionsAsLongArray();
+
+		// offset of the source img within the gain/offset planes
+		final long offX = sourceImg.min( 0 ) - gainOffset.minX();
+		final long offY = sourceImg.min( 1 ) - gainOffset.minY();
+
+		final int w = gainOffset.width();
+		final float[] gain = gainOffset.gain();
+		final float[] offset = gainOffset.offset();
+
+		final double minValue = outputType.getMinValue();
+		final double maxValue = outputType.getMaxValue();
+		final boolean isFloat = FloatType.class.isInstance( outputType );
+
+		final ReadOnlyCachedCellImgFactory factory = new ReadOnlyCachedCellImgFactory(
+				options()
+					.cellDimensions( cellDims )
+					.cacheType( maxCacheSize > 0 ? CacheType.BOUNDED : CacheType.SOFTREF )
+					.maxCacheSize( maxCacheSize ) );
+
+		final RandomAccessibleInterval< O > corrected = factory.create( dims, outputType,
+				cell -> {
+					final int cellW = (int)cell.dimension( 0 );
+					final int cellH = (int)cell.dimension( 1 );
+					final long cellMinX = cell.min( 0 ) + offX;
+					final long cellMinY = cell.min( 1 ) + offY;
+
+					final Cursor< R > in = Views.flatIterable( Views.interval( source, cell ) ).cursor();
+					final float[] floatOut = isFloat ? (float[])cell.getStorageArray() : null;
+					final Cursor< O > out = isFloat ? null : Views.flatIterable( cell ).cursor();
+
+					int x = 0, y = 0, i = 0;
+					int planeIndex = (int)( cellMinY * w + cellMinX );
+
+					while ( in.hasNext() )
+					{
+						final double v = ( in.next().getRealDouble() - offset[ planeIndex ] ) * gain[ planeIndex ];
+
+						if ( isFloat )
+							floatOut[ i++ ] = (float)v;
+						else
+							out.next().setReal( Math.min( Math.max( v, minValue ), maxValue ) );
+
+						++planeIndex;
+
+						if ( ++x == cellW )
+						{
+							x = 0;
+							planeIndex += w - cellW;
+
+							if ( ++y == cellH )
+							{
+								y = 0;
+								planeIndex = (int)( cellMinY * w + cellMinX );
+							}
+						}
+					}
+				} );
+
+		return FusionTools.translateIfNecessary( sourceImg, corrected );
+	}
+
+	/**
+	 * @param interval - the image interval
+	 * @return cell dimensions covering full (n-1)-dimensional planes, e.g. one z-slice for 3d images
+	 */
+	public static int[] planeCellDimensions( final Interval interval )
+	{
+		final int[] cellSize = new int[ interval.numDimensions() ];
+		Arrays.fill( cellSize, 1 );
+		for ( int d = 0; d < interval.numDimensions() - 1; d++ )
+			cellSize[ d ] = (int) interval.dimension( d );
+		return cellSize;
+	}
 }
@@ -0,0 +1,148 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.fiji.spimdata.imgloaders.flatfield;
+
+import java.util.Arrays;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Precomputed per-pixel gain and offset planes for flat-field correction, so that
+ * corrected = ( source - offset ) * gain, with offset = dark and
+ * gain = mean( bright - dark ) / ( bright - dark ) (or 0 where bright == dark).
+ *
+ * The planes cover the xy-extent of the source image, the correction is the same for all other dimensions.
+ */
+public class FlatFieldGainOffset
+{
+	private final long minX, minY;
+	private final int width, height;
+	private final float[] gain;
+	private final float[] offset;
+
+	private FlatFieldGainOffset( final long minX, final long minY, final int width, final int height, final float[] gain, final float[] offset )
+	{
+		this.minX = minX;
+		this.minY = minY;
+		this.width = width;
+		this.height = height;
+		this.gain = gain;
+		this.offset = offset;
+	}
+
+	public long minX() { return minX; }
+	public long minY() { return minY; }
+	public int width() { return width; }
+	public int height() { return height; }
+
+	/**
+	 * @return the gain plane, xy in flat order (do not modify)
+	 */
+	public float[] gain() { return gain; }
+
+	/**
+	 * @return the offset plane, xy in flat order (do not modify)
+	 */
+	public float[] offset() { return offset; }
+
+	/**
+	 * Computes gain and offset for the xy-extent of an image. The bright and dark images are border-extended,
+	 * dimensions beyond the second one are sampled at position 0 (like the virtual correction does).
+	 *
+	 * @param brightImg - the bright image, can be null (constant 1)
+	 * @param darkImg - the dark image, can be null (constant 0)
+	 * @param sourceInterval - the interval of the image to correct (at least 2d)
+	 * @param <S> bright pixel type
+	 * @param <R> dark pixel type
+	 * @return gain and offset planes
+	 */
+	public static < S extends RealType< S >, R extends RealType< R > > FlatFieldGainOffset compute(
+			final RandomAccessibleInterval< S > brightImg,
+			final RandomAccessibleInterval< R > darkImg,
+			final Interval sourceInterval )
+	{
+		final long minX = sourceInterval.min( 0 );
+		final long minY = sourceInterval.min( 1 );
+		final int w = (int)sourceInterval.dimension( 0 );
+		final int h = (int)sourceInterval.dimension( 1 );
+
+		final float[] offset = samplePlane( darkImg, minX, minY, w, h, 0.0f );
+		final float[] gain = samplePlane( brightImg, minX, minY, w, h, 1.0f );
+
+		// gain initially holds bright - dark, the mean is computed over the same values
+		double sum = 0;
+
+		for ( int i = 0; i < gain.length; ++i )
+		{
+			gain[ i ] -= offset[ i ];
+			sum += gain[ i ];
+		}
+
+		final double meanBrightCorrected = gain.length == 0 ? 0.0 : sum / gain.length;
+
+		for ( int i = 0; i < gain.length; ++i )
+			gain[ i ] = gain[ i ] == 0 ? 0.0f : (float)( meanBrightCorrected / gain[ i ] );
+
+		return new FlatFieldGainOffset( minX, minY, w, h, gain, offset );
+	}
+
+	private static < P extends RealType< P > > float[] samplePlane(
+			final RandomAccessibleInterval< P > img,
+			final long minX,
+			final long minY,
+			final int w,
+			final int h,
+			final float constant )
+	{
+		final float[] plane = new float[ w * h ];
+
+		if ( img == null )
+		{
+			Arrays.fill( plane, constant );
+			return plane;
+		}
+
+		final RandomAccess< P > ra = Views.extendBorder( img ).randomAccess();
+		final long[] pos = new long[ img.numDimensions() ];
+
+		int i = 0;
+		for ( int y = 0; y < h; ++y )
+		{
+			pos[ 0 ] = minX;
+			pos[ 1 ] = minY + y;
+			ra.setPosition( pos );
+
+			for ( int x = 0; x < w; ++x )
+			{
+				plane[ i++ ] = ra.get().getRealFloat();
+				ra.fwd( 0 );
+			}
+		}
+
+		return plane;
+	}
+}
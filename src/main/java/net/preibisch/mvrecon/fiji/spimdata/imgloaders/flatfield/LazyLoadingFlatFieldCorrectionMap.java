@@ -23,13 +23,17 @@
 package net.preibisch.mvrecon.fiji.spimdata.imgloaders.flatfield;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import ij.IJ;
 import ij.ImagePlus;
 import mpicbg.spim.data.sequence.ImgLoader;
 import mpicbg.spim.data.sequence.ViewId;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.type.numeric.real.FloatType;
@@ -41,31 +45,28 @@ public abstract class LazyLoadingFlatFieldCorrectionMap<IL extends ImgLoader> im
 	
 	protected final Map< File, RandomAccessibleInterval< FloatType > > raiMap;
 	protected final Map<ViewId, Pair<File, File>> fileMap;
-	
+
+	/* precomputed gain/offset planes, key is ( bright file, dark file, additional key, source xy interval ) */
+	protected final Map< List< Object >, FlatFieldGainOffset > gainOffsetMap;
+
 	public LazyLoadingFlatFieldCorrectionMap()
 	{
-		raiMap = new HashMap<>();
-		fileMap = new HashMap<>();
+		// NB: image loaders are queried from many threads at once during fusion/detection
+		raiMap = new ConcurrentHashMap<>();
+		fileMap = new ConcurrentHashMap<>();
+		gainOffsetMap = new ConcurrentHashMap<>();
 	}
 	
 	@Override
 	public void setBrightImage(ViewId vId, File imgFile)
 	{
-		if (!fileMap.containsKey( vId ))
-			fileMap.put( vId, new ValuePair< File, File >( null, null ) );
-
-		final Pair< File, File > oldPair = fileMap.get( vId );
-		fileMap.put( vId, new ValuePair< File, File >( imgFile, oldPair.getB() ) );
+		fileMap.compute( vId, (k, oldPair) -> new ValuePair< File, File >( imgFile, oldPair == null ? null : oldPair.getB() ) );
 	}
 
 	@Override
 	public void setDarkImage(ViewId vId, File imgFile)
 	{
-		if (!fileMap.containsKey( vId ))
-			fileMap.put( vId, new ValuePair< File, File >( null, null ) );
-
-		final Pair< File, File > oldPair = fileMap.get( vId );
-		fileMap.put( vId, new ValuePair< File, File >( oldPair.getA(), imgFile ) );
+		fileMap.compute( vId, (k, oldPair) -> new ValuePair< File, File >( oldPair == null ? null : oldPair.getA(), imgFile ) );
 	}
 	
 	protected RandomAccessibleInterval< FloatType > getBrightImg(ViewId vId)
@@ -98,13 +99,53 @@ public abstract class LazyLoadingFlatFieldCorrectionMap<IL extends ImgLoader> im
 	
 	protected void loadFileIfNecessary(File file)
 	{
-		if (raiMap.containsKey( file ))
-			return;
-		
-		final ImagePlus imp = IJ.openImage( file.getAbsolutePath() );
-		final RandomAccessibleInterval< FloatType > img = ImageJFunctions.convertFloat( imp ).copy();
-		
-		raiMap.put( file, img );
+		// every file is only opened once, even if requested by many threads concurrently
+		raiMap.computeIfAbsent( file, f -> {
+			final ImagePlus imp = IJ.openImage( f.getAbsolutePath() );
+			return ImageJFunctions.convertFloat( imp ).copy();
+		});
+	}
+
+	/**
+	 * Get (or compute once) the gain and offset planes for a view.
+	 *
+	 * @param vId - the view
+	 * @param sourceInterval - interval of the image that will be corrected
+	 * @return gain and offset planes
+	 */
+	protected FlatFieldGainOffset getGainOffset( final ViewId vId, final Interval sourceInterval )
+	{
+		return getGainOffset( vId, sourceInterval, "", () -> getBrightImg( vId ), () -> getDarkImg( vId ) );
+	}
+
+	/**
+	 * Get (or compute once) the gain and offset planes for a view, using custom bright and dark images
+	 * (e.g. downsampled versions).
+	 *
+	 * @param vId - the view
+	 * @param sourceInterval - interval of the image that will be corrected
+	 * @param additionalKey - distinguishes different bright/dark images for the same files (e.g. downsampling factors)
+	 * @param brightImg - supplies the bright image (may supply null)
+	 * @param darkImg - supplies the dark image (may supply null)
+	 * @return gain and offset planes
+	 */
+	protected FlatFieldGainOffset getGainOffset(
+			final ViewId vId,
+			final Interval sourceInterval,
+			final Object additionalKey,
+			final Supplier< RandomAccessibleInterval< FloatType > > brightImg,
+			final Supplier< RandomAccessibleInterval< FloatType > > darkImg )
+	{
+		final Pair< File, File > files = fileMap.get( vId );
+
+		final List< Object > key = Arrays.asList(
+				files == null ? null : files.getA(),
+				files == null ? null : files.getB(),
+				additionalKey,
+				sourceInterval.min( 0 ), sourceInterval.min( 1 ),
+				sourceInterval.dimension( 0 ), sourceInterval.dimension( 1 ) );
+
+		return gainOffsetMap.computeIfAbsent( key, k -> FlatFieldGainOffset.compute( brightImg.get(), darkImg.get(), sourceInterval ) );
 	}
 	
 	public static void main(String[] args)
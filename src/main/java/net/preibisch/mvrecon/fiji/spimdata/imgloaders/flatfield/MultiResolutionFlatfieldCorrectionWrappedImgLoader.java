@@ -25,9 +25,9 @@ package net.preibisch.mvrecon.fiji.spimdata.imgloaders.flatfield;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import bdv.export.WriteSequenceToHdf5;
 import ij.ImageJ;
@@ -86,7 +86,7 @@ public class MultiResolutionFlatfieldCorrectionWrappedImgLoader
 		this.active = true;
 		this.cacheResult = cacheResult;
 
-		dsRaiMap = new HashMap<>();
+		dsRaiMap = new ConcurrentHashMap<>();
 	}
 
 	protected RandomAccessibleInterval< FloatType > getOrCreateBrightImgDownsampled(ViewId vId,
@@ -199,10 +199,9 @@ public class MultiResolutionFlatfieldCorrectionWrappedImgLoader
 			dsFactors[n - 1] = 1;
 
 			@SuppressWarnings("unchecked")
-			RandomAccessibleInterval< T > rai = FlatFieldCorrectedRandomAccessibleIntervals.create(
-					(RandomAccessibleInterval< T >) wrpSetupIL.getImage( timepointId, level, hints ),
-					getOrCreateBrightImgDownsampled( new ViewId( timepointId, setupId ), dsFactors ),
-					getOrCreateDarkImgDownsampled( new ViewId( timepointId, setupId ), dsFactors ) );
+			final RandomAccessibleInterval< T > source = (RandomAccessibleInterval< T >) wrpSetupIL.getImage( timepointId, level, hints );
+
+			RandomAccessibleInterval< T > rai = createCorrected( source, new ViewId( timepointId, setupId ), dsFactors, getImageType().createVariable() );
 
 			boolean loadCompletelyRequested = false;
 			for (ImgLoaderHint hint : hints)
@@ -226,15 +225,6 @@ public class MultiResolutionFlatfieldCorrectionWrappedImgLoader
 
 				rai = loadedImg;
 			}
-			else if ( cacheResult )
-			{
-				final int[] cellSize = new int[rai.numDimensions()];
-				Arrays.fill( cellSize, 1 );
-				for ( int d = 0; d < rai.numDimensions() - 1; d++ )
-					cellSize[d] = (int) rai.dimension( d );
-				rai =  FusionTools.cacheRandomAccessibleInterval( rai, Long.MAX_VALUE,
-						Views.iterable( rai ).firstElement().createVariable(), cellSize );
-			}
 			return rai;
 		}
 
@@ -258,10 +248,9 @@ public class MultiResolutionFlatfieldCorrectionWrappedImgLoader
 			dsFactors[n - 1] = 1;
 
 			@SuppressWarnings("unchecked")
-			RandomAccessibleInterval< FloatType > rai = FlatFieldCorrectedRandomAccessibleIntervals.create(
-					(RandomAccessibleInterval< T >) wrpSetupIL.getImage( timepointId, level, hints ),
-					getOrCreateBrightImgDownsampled( new ViewId( timepointId, setupId ), dsFactors ),
-					getOrCreateDarkImgDownsampled( new ViewId( timepointId, setupId ), dsFactors ), new FloatType() );
+			final RandomAccessibleInterval< T > source = (RandomAccessibleInterval< T >) wrpSetupIL.getImage( timepointId, level, hints );
+
+			RandomAccessibleInterval< FloatType > rai = createCorrected( source, new ViewId( timepointId, setupId ), dsFactors, new FloatType() );
 
 			if ( normalize )
 			{
@@ -324,20 +313,40 @@ public class MultiResolutionFlatfieldCorrectionWrappedImgLoader
 
 					rai = loadedImg;
 				}
-				else if ( cacheResult )
-				{
-					final int[] cellSize = new int[rai.numDimensions()];
-					Arrays.fill( cellSize, 1 );
-					for ( int d = 0; d < rai.numDimensions() - 1; d++ )
-						cellSize[d] = (int) rai.dimension( d );
-					rai = FusionTools.cacheRandomAccessibleInterval( rai, Long.MAX_VALUE,
-							Views.iterable( rai ).firstElement().createVariable(), cellSize );
-				}
-
 			}
 			return rai;
 		}
 
+		/*
+		 * if results are cached, apply precomputed gain/offset planes (of the downsampled bright/dark images)
+		 * to whole cells, otherwise correct virtually on every access
+		 */
+		private < O extends RealType< O > & NativeType< O > > RandomAccessibleInterval< O > createCorrected(
+				final RandomAccessibleInterval< T > source,
+				final ViewId viewId,
+				final int[] dsFactors,
+				final O outputType )
+		{
+			if ( cacheResult )
+				return FlatFieldCorrectedRandomAccessibleIntervals.createBlockCorrected(
+						source,
+						getGainOffset(
+								viewId,
+								source,
+								Arrays.toString( dsFactors ),
+								() -> getOrCreateBrightImgDownsampled( viewId, dsFactors ),
+								() -> getOrCreateDarkImgDownsampled( viewId, dsFactors ) ),
+						outputType,
+						Long.MAX_VALUE,
+						FlatFieldCorrectedRandomAccessibleIntervals.planeCellDimensions( source ) );
+			else
+				return FlatFieldCorrectedRandomAccessibleIntervals.create(
+						source,
+						getOrCreateBrightImgDownsampled( viewId, dsFactors ),
+						getOrCreateDarkImgDownsampled( viewId, dsFactors ),
+						outputType );
+		}
+
 		@Override
 		public RandomAccessibleInterval< T > getImage(int timepointId, ImgLoaderHint... hints)
 		{
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.fiji.spimdata.imgloaders.util;
+
+import static net.imglib2.cache.img.ReadOnlyCachedCellImgOptions.options;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import loci.formats.FormatTools;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Creates lazily loaded, cached 3d images where every cell is a z-plane (or a slab of z-planes) that is
+ * decoded directly into the primitive cell array when it is first accessed.
+ */
+public class LazyPlaneImgTools
+{
+	/**
+	 * Loads one z-plane into a short array (w*h values starting at offset)
+	 */
+	@FunctionalInterface
+	public interface PlaneLoader
+	{
+		public void loadPlane( final int z, final short[] target, final int offset ) throws Exception;
+	}
+
+	/**
+	 * @param dim - dimensions of the image (w, h, d)
+	 * @param planesPerCell - how many z-planes form one cell
+	 * @param loader - loads individual planes, must be thread-safe
+	 * @return a lazily loaded, cached image
+	 */
+	public static RandomAccessibleInterval< UnsignedShortType > createUnsignedShortImg(
+			final long[] dim,
+			final int planesPerCell,
+			final PlaneLoader loader )
+	{
+		final int[] cellDims = new int[] { (int)dim[ 0 ], (int)dim[ 1 ], Math.max( 1, Math.min( planesPerCell, (int)dim[ 2 ] ) ) };
+		final int planeSize = cellDims[ 0 ] * cellDims[ 1 ];
+
+		final ReadOnlyCachedCellImgFactory factory = new ReadOnlyCachedCellImgFactory( options().cellDimensions( cellDims ) );
+
+		return factory.create( dim, new UnsignedShortType(),
+				cell -> {
+					final short[] data = (short[])cell.getStorageArray();
+					final int minZ = (int)cell.min( 2 );
+					final int maxZ = (int)cell.max( 2 );
+
+					for ( int z = minZ; z <= maxZ; ++z )
+						loader.loadPlane( z, data, ( z - minZ ) * planeSize );
+				} );
+	}
+
+	/**
+	 * Decodes a raw plane as read by BioFormats into a short array, 16 bit data is copied in bulk
+	 *
+	 * @param b - the raw bytes
+	 * @param pixelType - BioFormats pixel type, e.g. {@link FormatTools#UINT16}
+	 * @param isLittleEndian - byte order of b
+	 * @param target - the target array
+	 * @param offset - offset in the target array
+	 * @param numPx - number of pixels to decode
+	 */
+	public static void decodePlane(
+			final byte[] b,
+			final int pixelType,
+			final boolean isLittleEndian,
+			final short[] target,
+			final int offset,
+			final int numPx )
+	{
+		final ByteBuffer buffer = ByteBuffer.wrap( b ).order( isLittleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN );
+
+		if ( pixelType == FormatTools.UINT16 || pixelType == FormatTools.INT16 )
+		{
+			buffer.asShortBuffer().get( target, offset, numPx );
+		}
+		else if ( pixelType == FormatTools.UINT8 )
+		{
+			for ( int i = 0; i < numPx; ++i )
+				target[ offset + i ] = (short)( b[ i ] & 0xff );
+		}
+		else if ( pixelType == FormatTools.UINT32 )
+		{
+			for ( int i = 0; i < numPx; ++i )
+				target[ offset + i ] = (short)buffer.getInt( i * 4 );
+		}
+		else if ( pixelType == FormatTools.FLOAT )
+		{
+			for ( int i = 0; i < numPx; ++i )
+				target[ offset + i ] = (short)Math.round( buffer.getFloat( i * 4 ) );
+		}
+		else
+		{
+			throw new RuntimeException( "Pixel type " + FormatTools.getPixelTypeString( pixelType ) + " not supported for lazy loading." );
+		}
+	}
+}
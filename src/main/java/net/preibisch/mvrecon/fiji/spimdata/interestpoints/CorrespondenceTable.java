@@ -0,0 +1,288 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.fiji.spimdata.interestpoints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import mpicbg.spim.data.sequence.ViewId;
+
+/**
+ * Immutable, compact in-memory form of all {@link CorrespondingInterestPoints} of one {@link InterestPoints} (view and label).
+ *
+ * The (ViewId, label) combinations that the correspondences point to are interned once (partners), the links are stored
+ * in primitive arrays sorted by detection id (CSR), so that all correspondences of a detection are a contiguous range
+ * of links that is found in O(1) for (mostly) dense detection ids.
+ */
+public class CorrespondenceTable
+{
+	// the interned (ViewId, label) the corresponding interest points belong to
+	final int[] partnerTP, partnerSetup;
+	final String[] partnerLabel;
+	final HashMap< String, Integer > partnerLookup;
+
+	// the links of detectionIds[ row ] are offsets[ row ] ... offsets[ row + 1 ] - 1
+	final int[] detectionIds, offsets;
+	final int[] linkDetectionId, linkPartner, linkCorrespondingId;
+
+	// row for (detectionId - minId) if the ids are dense enough, otherwise binary search in detectionIds
+	final int[] idToRow;
+	final int minId;
+
+	private CorrespondenceTable(
+			final int[] partnerTP,
+			final int[] partnerSetup,
+			final String[] partnerLabel,
+			final int[] linkDetectionId,
+			final int[] linkPartner,
+			final int[] linkCorrespondingId )
+	{
+		this.partnerTP = partnerTP;
+		this.partnerSetup = partnerSetup;
+		this.partnerLabel = partnerLabel;
+		this.partnerLookup = new HashMap<>();
+
+		for ( int p = 0; p < partnerLabel.length; ++p )
+			partnerLookup.put( key( partnerTP[ p ], partnerSetup[ p ], partnerLabel[ p ] ), p );
+
+		final int numLinks = linkDetectionId.length;
+
+		// sort the links by detection id (stable)
+		final long[] order = new long[ numLinks ];
+
+		for ( int i = 0; i < numLinks; ++i )
+			order[ i ] = ( (long)linkDetectionId[ i ] << 32 ) | i;
+
+		Arrays.sort( order );
+
+		this.linkDetectionId = new int[ numLinks ];
+		this.linkPartner = new int[ numLinks ];
+		this.linkCorrespondingId = new int[ numLinks ];
+
+		int numRows = 0;
+
+		for ( int l = 0; l < numLinks; ++l )
+		{
+			final int i = (int)( order[ l ] & 0xffffffffL );
+
+			this.linkDetectionId[ l ] = linkDetectionId[ i ];
+			this.linkPartner[ l ] = linkPartner[ i ];
+			this.linkCorrespondingId[ l ] = linkCorrespondingId[ i ];
+
+			if ( l == 0 || this.linkDetectionId[ l ] != this.linkDetectionId[ l - 1 ] )
+				++numRows;
+		}
+
+		this.detectionIds = new int[ numRows ];
+		this.offsets = new int[ numRows + 1 ];
+
+		int row = -1;
+
+		for ( int l = 0; l < numLinks; ++l )
+		{
+			if ( l == 0 || this.linkDetectionId[ l ] != this.linkDetectionId[ l - 1 ] )
+			{
+				detectionIds[ ++row ] = this.linkDetectionId[ l ];
+				offsets[ row ] = l;
+			}
+		}
+
+		offsets[ numRows ] = numLinks;
+
+		// direct lookup unless the ids are very sparse
+		final long range = numRows == 0 ? 0 : (long)detectionIds[ numRows - 1 ] - detectionIds[ 0 ] + 1;
+
+		if ( numRows > 0 && range <= 4l * numRows + 1024 )
+		{
+			this.minId = detectionIds[ 0 ];
+			this.idToRow = new int[ (int)range ];
+
+			Arrays.fill( idToRow, -1 );
+
+			for ( int r = 0; r < numRows; ++r )
+				idToRow[ detectionIds[ r ] - minId ] = r;
+		}
+		else
+		{
+			this.minId = 0;
+			this.idToRow = null;
+		}
+	}
+
+	/**
+	 * @param correspondences - the correspondences of one view and label
+	 * @return the table
+	 */
+	public static CorrespondenceTable fromList( final List< ? extends CorrespondingInterestPoints > correspondences )
+	{
+		final int numLinks = correspondences.size();
+
+		final int[] linkDetectionId = new int[ numLinks ];
+		final int[] linkPartner = new int[ numLinks ];
+		final int[] linkCorrespondingId = new int[ numLinks ];
+
+		final HashMap< String, Integer > partners = new HashMap<>();
+		final ArrayList< CorrespondingInterestPoints > firstOfPartner = new ArrayList<>();
+
+		for ( int i = 0; i < numLinks; ++i )
+		{
+			final CorrespondingInterestPoints c = correspondences.get( i );
+
+			final String key = key( c.correspondingViewIdTP, c.correspondingViewIdSetup, c.correspondingLabel );
+			Integer p = partners.get( key );
+
+			if ( p == null )
+			{
+				p = firstOfPartner.size();
+				partners.put( key, p );
+				firstOfPartner.add( c );
+			}
+
+			linkDetectionId[ i ] = c.detectionId;
+			linkPartner[ i ] = p;
+			linkCorrespondingId[ i ] = c.correspondingDetectionId;
+		}
+
+		final int[] partnerTP = new int[ firstOfPartner.size() ];
+		final int[] partnerSetup = new int[ firstOfPartner.size() ];
+		final String[] partnerLabel = new String[ firstOfPartner.size() ];
+
+		for ( int p = 0; p < partnerLabel.length; ++p )
+		{
+			partnerTP[ p ] = firstOfPartner.get( p ).correspondingViewIdTP;
+			partnerSetup[ p ] = firstOfPartner.get( p ).correspondingViewIdSetup;
+			partnerLabel[ p ] = firstOfPartner.get( p ).correspondingLabel;
+		}
+
+		return new CorrespondenceTable( partnerTP, partnerSetup, partnerLabel, linkDetectionId, linkPartner, linkCorrespondingId );
+	}
+
+	/**
+	 * @param partnerTP - timepoint id of each partner
+	 * @param partnerSetup - viewsetup id of each partner
+	 * @param partnerLabel - label of each partner
+	 * @param linkDetectionId - detection id of each link (in this view)
+	 * @param linkPartner - the partner index of each link
+	 * @param linkCorrespondingId - detection id of the corresponding interest point of each link
+	 * @return the table (the arrays are not copied, except for the link arrays which are sorted into new arrays)
+	 */
+	public static CorrespondenceTable fromArrays(
+			final int[] partnerTP,
+			final int[] partnerSetup,
+			final String[] partnerLabel,
+			final int[] linkDetectionId,
+			final int[] linkPartner,
+			final int[] linkCorrespondingId )
+	{
+		return new CorrespondenceTable( partnerTP, partnerSetup, partnerLabel, linkDetectionId, linkPartner, linkCorrespondingId );
+	}
+
+	public static CorrespondenceTable empty()
+	{
+		return fromArrays( new int[ 0 ], new int[ 0 ], new String[ 0 ], new int[ 0 ], new int[ 0 ], new int[ 0 ] );
+	}
+
+	public int numLinks() { return linkDetectionId.length; }
+	public int numDetections() { return detectionIds.length; }
+	public int numPartners() { return partnerLabel.length; }
+
+	public ViewId partnerViewId( final int partner ) { return new ViewId( partnerTP[ partner ], partnerSetup[ partner ] ); }
+	public int partnerTimePointId( final int partner ) { return partnerTP[ partner ]; }
+	public int partnerViewSetupId( final int partner ) { return partnerSetup[ partner ]; }
+	public String partnerLabel( final int partner ) { return partnerLabel[ partner ]; }
+
+	/**
+	 * @param viewId - the corresponding view
+	 * @param label - the corresponding label
+	 * @return the partner index or -1 if there are no correspondences with this view and label
+	 */
+	public int partnerIndex( final ViewId viewId, final String label )
+	{
+		final Integer p = partnerLookup.get( key( viewId.getTimePointId(), viewId.getViewSetupId(), label ) );
+		return p == null ? -1 : p;
+	}
+
+	/**
+	 * @param detectionId - the detection id of an interest point of this view
+	 * @return the index of its first link, or -1 if it has no correspondences
+	 */
+	public int firstLink( final int detectionId )
+	{
+		final int row = row( detectionId );
+		return row < 0 ? -1 : offsets[ row ];
+	}
+
+	/**
+	 * @param detectionId - the detection id of an interest point of this view
+	 * @return the number of correspondences of this interest point, its links are firstLink() ... firstLink() + numLinks() - 1
+	 */
+	public int numLinks( final int detectionId )
+	{
+		final int row = row( detectionId );
+		return row < 0 ? 0 : offsets[ row + 1 ] - offsets[ row ];
+	}
+
+	public int linkDetectionId( final int link ) { return linkDetectionId[ link ]; }
+	public int linkPartner( final int link ) { return linkPartner[ link ]; }
+	public int linkCorrespondingId( final int link ) { return linkCorrespondingId[ link ]; }
+
+	public CorrespondingInterestPoints get( final int link )
+	{
+		final int p = linkPartner[ link ];
+		return new CorrespondingInterestPoints( linkDetectionId[ link ], partnerTP[ p ], partnerSetup[ p ], partnerLabel[ p ], linkCorrespondingId[ link ] );
+	}
+
+	/**
+	 * @return all correspondences as new objects, sorted by detection id
+	 */
+	public ArrayList< CorrespondingInterestPoints > toList()
+	{
+		final ArrayList< CorrespondingInterestPoints > list = new ArrayList<>( numLinks() );
+
+		for ( int l = 0; l < numLinks(); ++l )
+			list.add( get( l ) );
+
+		return list;
+	}
+
+	protected int row( final int detectionId )
+	{
+		if ( idToRow != null )
+		{
+			final long i = (long)detectionId - minId;
+			return i < 0 || i >= idToRow.length ? -1 : idToRow[ (int)i ];
+		}
+		else
+		{
+			final int r = Arrays.binarySearch( detectionIds, detectionId );
+			return r < 0 ? -1 : r;
+		}
+	}
+
+	protected static String key( final int tp, final int setup, final String label )
+	{
+		return tp + "," + setup + "," + label;
+	}
+}
@@ -24,7 +24,10 @@ package net.preibisch.mvrecon.fiji.spimdata.interestpoints;
 
 import java.io.File;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import mpicbg.spim.data.sequence.ViewId;
 import util.URITools;
@@ -44,6 +47,12 @@ public abstract class InterestPoints
 
 	boolean modifiedInterestPoints, modifiedCorrespondingInterestPoints;
 
+	// incremented whenever the interest points are replaced, allows to invalidate derived data (e.g. NearestNeighborDistances)
+	private final AtomicLong interestPointsVersion = new AtomicLong();
+
+	// fingerprints of the inputs the correspondences with each (viewId, label) were computed from, null if not loaded yet
+	Map< String, String > correspondenceFingerprints = null;
+
 	protected InterestPoints(final URI baseDir)
 	{
 		this.baseDir = baseDir;
@@ -84,6 +93,7 @@ public abstract class InterestPoints
 
 	public boolean hasModifiedInterestPoints() { return modifiedInterestPoints; }
 	public boolean hasModifiedCorrespondingInterestPoints() { return modifiedCorrespondingInterestPoints; }
+	public long getInterestPointsVersion() { return interestPointsVersion.get(); }
 
 	public URI getBaseDir() { return baseDir; }
 	public void setBaseDir( final URI baseDir )
@@ -125,15 +135,55 @@ public abstract class InterestPoints
 	 */
 	public abstract List< CorrespondingInterestPoints > getCorrespondingInterestPointsCopy();
 
+	/**
+	 * @return - the corresponding interest points as an id-indexed table (built from a copy of the list, implementations
+	 * that store a table may return it directly)
+	 */
+	public CorrespondenceTable getCorrespondenceTable()
+	{
+		return CorrespondenceTable.fromList( getCorrespondingInterestPointsCopy() );
+	}
+
 	public void setInterestPoints( final List< InterestPoint > list )
 	{
 		this.modifiedInterestPoints = true;
 		setInterestPointsLocal( list );
+		interestPointsVersion.incrementAndGet();
 	}
 	public void setCorrespondingInterestPoints( final List< CorrespondingInterestPoints > list )
 	{
 		this.modifiedCorrespondingInterestPoints = true;
 		setCorrespondingInterestPointsLocal( list );
+
+		// the fingerprints do not necessarily describe the new correspondences anymore
+		this.correspondenceFingerprints = new HashMap<>();
+	}
+
+	/**
+	 * @return - the fingerprints of the pairwise matchings the corresponding interest points were computed from (copied),
+	 * key is "timepointId,viewSetupId,label" of the other view, tries to load from disc if necessary
+	 */
+	public Map< String, String > getCorrespondenceFingerprintsCopy()
+	{
+		// loaded together with the corresponding interest points
+		if ( this.correspondenceFingerprints == null )
+			loadCorrespondencesIfNecessary();
+
+		if ( this.correspondenceFingerprints == null )
+			return new HashMap<>();
+		else
+			return new HashMap<>( this.correspondenceFingerprints );
+	}
+
+	/**
+	 * Needs to be called after the corresponding interest points were set, as setting them resets the fingerprints
+	 *
+	 * @param fingerprints - key is "timepointId,viewSetupId,label" of the other view
+	 */
+	public void setCorrespondenceFingerprints( final Map< String, String > fingerprints )
+	{
+		this.modifiedCorrespondingInterestPoints = true;
+		this.correspondenceFingerprints = new HashMap<>( fingerprints );
 	}
 
 	protected abstract void setInterestPointsLocal( final List< InterestPoint > list );
@@ -143,5 +193,10 @@ public abstract class InterestPoints
 	public abstract boolean saveCorrespondingInterestPoints( final boolean forceWrite );
 
 	protected abstract boolean loadCorrespondences();
+
+	/**
+	 * Loads the corresponding interest points (and their fingerprints) from disc if they were not loaded yet
+	 */
+	protected abstract void loadCorrespondencesIfNecessary();
 	protected abstract boolean loadInterestPoints();
 }
@@ -26,7 +26,6 @@ import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -39,13 +38,12 @@ import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
 import org.janelia.saalfeldlab.n5.universe.N5Factory.StorageFormat;
 
 import mpicbg.spim.data.sequence.ViewId;
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.position.FunctionRandomAccessible;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
 import net.imglib2.type.numeric.real.DoubleType;
-import net.imglib2.util.Pair;
-import net.imglib2.util.ValuePair;
 import net.imglib2.view.Views;
 import net.preibisch.legacy.io.IOFunctions;
 import util.URITools;
@@ -57,7 +55,7 @@ public class InterestPointsN5 extends InterestPoints
 
 	final String n5path;
 	ArrayList< InterestPoint > interestPoints;
-	ArrayList< CorrespondingInterestPoints > correspondingInterestPoints;
+	CorrespondenceTable correspondences;
 
 	protected InterestPointsN5( final URI baseDir, final String n5path )
 	{
@@ -97,19 +95,36 @@ public class InterestPointsN5 extends InterestPoints
 	}
 
 	/**
+	 * Note: the list is sorted by detection id (links of the same detection keep their stored order), not in
+	 * the order the correspondences were stored.
+	 *
 	 * @return - the list of corresponding interest points (copied), tries to load from disc if null
 	 */
 	public synchronized List< CorrespondingInterestPoints > getCorrespondingInterestPointsCopy()
 	{
-		if ( this.correspondingInterestPoints == null )
+		return getCorrespondenceTable().toList();
+	}
+
+	/**
+	 * @return - the corresponding interest points (immutable, not copied), tries to load from disc if null
+	 */
+	@Override
+	public synchronized CorrespondenceTable getCorrespondenceTable()
+	{
+		if ( this.correspondences == null )
 			loadCorrespondences();
 
-		final ArrayList< CorrespondingInterestPoints > list = new ArrayList< CorrespondingInterestPoints >();
+		if ( this.correspondences == null )
+			return CorrespondenceTable.empty();
 
-		for ( final CorrespondingInterestPoints p : this.correspondingInterestPoints )
-			list.add( new CorrespondingInterestPoints( p ) );
+		return this.correspondences;
+	}
 
-		return list;
+	@Override
+	protected synchronized void loadCorrespondencesIfNecessary()
+	{
+		if ( this.correspondences == null )
+			loadCorrespondences();
 	}
 
 	@Override
@@ -124,10 +139,7 @@ public class InterestPointsN5 extends InterestPoints
 	@Override
 	protected void setCorrespondingInterestPointsLocal( final List< CorrespondingInterestPoints > list )
 	{
-		if ( list.getClass().isInstance( ArrayList.class ))
-			this.correspondingInterestPoints = (ArrayList<CorrespondingInterestPoints>)list;
-		else
-			this.correspondingInterestPoints = new ArrayList<>( list );
+		this.correspondences = CorrespondenceTable.fromList( list );
 	}
 
 	public String ipDataset() { return new File( getN5path(), "interestpoints" ).getPath(); }
@@ -239,9 +251,9 @@ public class InterestPointsN5 extends InterestPoints
 		if ( !modifiedCorrespondingInterestPoints && !forceWrite )
 			return true;
 
-		final ArrayList< CorrespondingInterestPoints > list = this.correspondingInterestPoints;
+		final CorrespondenceTable table = this.correspondences;
 
-		if ( list == null )
+		if ( table == null )
 			return false;
 
 		final String dataset = corrDataset();
@@ -264,44 +276,26 @@ public class InterestPointsN5 extends InterestPoints
 
 			n5Writer.setAttribute( dataset, "correspondences", "1.0.0");
 
+			// also for views without correspondences, which tells that matching them found nothing
+			if ( correspondenceFingerprints != null && correspondenceFingerprints.size() > 0 )
+				n5Writer.setAttribute( dataset, "fingerprints", correspondenceFingerprints );
+
 			final String corrDataset = dataset + "/data";
 
-			if ( list.size() == 0 )
+			if ( table.numLinks() == 0 )
 			{
 				n5Writer.setAttribute( dataset, "idMap", new HashMap< String, Long >() );
 				return true;
 			}
 
 			//
-			// assemble all ViewIds+Labels that there are correspondences with
-			// each combination of (ViewId, label) is assigned an ID, this mapping is stored in the attributes
-			// the dataset itself only stores the ID as UINT64
+			// each combination of (ViewId, label) that there are correspondences with is assigned an ID (the interned partner index),
+			// this mapping is stored in the attributes, the dataset itself only stores the ID as UINT64
 			//
-			final HashMap<ViewId, HashSet<String>> viewidToLabels = new HashMap<>();
-
-			for ( final CorrespondingInterestPoints cip : list )
-			{
-				final ViewId viewId = cip.getCorrespondingViewId();
-				final String label = cip.getCorrespodingLabel();
-				viewidToLabels.computeIfAbsent( viewId, id -> new HashSet<>() ).add( label );
-			}
-
 			final HashMap< String, Long > idMap = new HashMap<>(); // to store ID
-			final HashMap< ViewId, HashMap<String, Long>> quickLookup = new HashMap<>(); // to quickly lookup ID while saving
-			long id = 0;
-
-			for ( final ViewId viewId : viewidToLabels.keySet() )
-			{
-				final HashMap<String, Long > map = new HashMap<>();
-				quickLookup.put( viewId, map );
 
-				for ( final String label : viewidToLabels.get( viewId ) )
-				{
-					idMap.put( viewId.getTimePointId() + "," + viewId.getViewSetupId() + "," + label, id );
-					map.put( label, id );
-					id++;
-				}
-			}
+			for ( int p = 0; p < table.numPartners(); ++p )
+				idMap.put( table.partnerTimePointId( p ) + "," + table.partnerViewSetupId( p ) + "," + table.partnerLabel( p ), (long)p );
 
 			n5Writer.setAttribute( dataset, "idMap", idMap );
 
@@ -310,19 +304,19 @@ public class InterestPointsN5 extends InterestPoints
 					new FunctionRandomAccessible<>(
 							2,
 							(location, value) -> {
-								final CorrespondingInterestPoints cip = list.get( location.getIntPosition( 1 ) );
+								final int link = location.getIntPosition( 1 );
 								final int x = location.getIntPosition( 0 );
 								if ( x == 0 )
-									value.set( cip.getDetectionId() );
+									value.set( table.linkDetectionId( link ) );
 								else if ( x == 1 )
-									value.set( cip.getCorrespondingDetectionId() );
+									value.set( table.linkCorrespondingId( link ) );
 								else
-									value.set( quickLookup.get( cip.getCorrespondingViewId() ).get( cip.getCorrespodingLabel() ) );
+									value.set( table.linkPartner( link ) );
 							},
 							UnsignedLongType::new );
 
 			final RandomAccessibleInterval< UnsignedLongType > corrIdData =
-					Views.interval( corrId, new long[] { 0, 0 }, new long[] { 2, list.size() - 1 } );
+					Views.interval( corrId, new long[] { 0, 0 }, new long[] { 2, table.numLinks() - 1 } );
 
 			N5Utils.save( corrIdData, n5Writer, corrDataset, new int[] { 1, defaultBlockSize }, new GzipCompression() );
 
@@ -498,15 +492,27 @@ public class InterestPointsN5 extends InterestPoints
 
 			System.out.println( "Version: " + version + ", " + idMap.size() + " correspondence codes" );
 
+			@SuppressWarnings("unchecked")
+			final Map< String, String > fingerprints = n5.getAttribute(dataset, "fingerprints", Map.class );
+			this.correspondenceFingerprints = fingerprints == null ? new HashMap<>() : new HashMap<>( fingerprints );
+
 			if ( idMap.size() == 0 )
 			{
-				this.correspondingInterestPoints = new ArrayList<>();
+				this.correspondences = CorrespondenceTable.empty();
 				modifiedCorrespondingInterestPoints = false;
 
 				return true;
 			}
 
-			final Map< Long, Pair<ViewId, String> > quickLookup = new HashMap<>();
+			// intern all (ViewId, label) combinations, the partner index replaces the stored ID
+			final int numPartners = idMap.size();
+			final int[] partnerTP = new int[ numPartners ];
+			final int[] partnerSetup = new int[ numPartners ];
+			final String[] partnerLabel = new String[ numPartners ];
+			final long[] partnerCode = new long[ numPartners ];
+
+			int partner = 0;
+
 			for ( final Entry<String, Long> entry : idMap.entrySet() )
 			{
 				final int firstComma = entry.getKey().indexOf( "," );
@@ -516,9 +522,6 @@ public class InterestPointsN5 extends InterestPoints
 				final String setup = remaining.substring( 0, secondComma );
 				final String label = remaining.substring( secondComma + 1, remaining.length() );
 
-				final int tpInt = Integer.parseInt(tp);
-				final int setupInt = Integer.parseInt(setup);
-
 				final long id;
 
 				if ( Double.class.isInstance((Object)entry.getValue()))
@@ -526,44 +529,55 @@ public class InterestPointsN5 extends InterestPoints
 				else
 					id = entry.getValue();
 
-				final Pair<ViewId, String> value = new ValuePair<>( new ViewId( tpInt, setupInt ), label );
-				quickLookup.put( id , value );
+				partnerTP[ partner ] = Integer.parseInt( tp );
+				partnerSetup[ partner ] = Integer.parseInt( setup );
+				partnerLabel[ partner ] = label;
+				partnerCode[ partner ] = id;
+				++partner;
 			}
-			
+
+			// the IDs are 0...n-1 when written by this class, otherwise use a map
+			final HashMap< Long, Integer > codeToPartner = new HashMap<>();
+			boolean dense = true;
+
+			for ( int p = 0; p < numPartners; ++p )
+			{
+				codeToPartner.put( partnerCode[ p ], p );
+				dense &= partnerCode[ p ] >= 0 && partnerCode[ p ] < numPartners;
+			}
+
+			final int[] denseCodeToPartner = new int[ dense ? numPartners : 0 ];
+
+			if ( dense )
+				for ( int p = 0; p < numPartners; ++p )
+					denseCodeToPartner[ (int)partnerCode[ p ] ] = p;
+
 			final String corrDataset = dataset + "/data";
 
 			// 3 x N array (which is a 2D array, ID_a, ID_b, ID)
 			final RandomAccessibleInterval< UnsignedLongType > corrData = N5Utils.open( n5, corrDataset );
 
-			final RandomAccess< UnsignedLongType > corrRA = corrData.randomAccess();
-
-			final ArrayList< CorrespondingInterestPoints > correspondingInterestPoints = new ArrayList<>();
+			final int numLinks = (int)corrData.dimension( 1 );
+			final int[] linkDetectionId = new int[ numLinks ];
+			final int[] linkCorrespondingId = new int[ numLinks ];
+			final int[] linkPartner = new int[ numLinks ];
 
-			corrRA.setPosition( 0, 0 );
-			corrRA.setPosition( 0, 1 );
+			final Cursor< UnsignedLongType > cursor = Views.flatIterable( corrData ).cursor();
 
-			for ( int i = 0; i < corrData.dimension( 1 ); ++ i )
+			for ( int i = 0; i < numLinks; ++i )
 			{
-				final long idA = corrRA.get().get();
-				corrRA.fwd(0);
-				final long idB = corrRA.get().get();
-				corrRA.fwd(0);
-				final long id = corrRA.get().get();
-
-				corrRA.bck(0);
-				corrRA.bck(0);
+				linkDetectionId[ i ] = (int)cursor.next().get();
+				linkCorrespondingId[ i ] = (int)cursor.next().get();
 
-				if ( i != corrData.dimension( 1 ) - 1 )
-					corrRA.fwd( 1 );
+				final long id = cursor.next().get();
 
-				// final int detectionId, final ViewId correspondingViewId, final String correspondingLabel, final int correspondingDetectionId
-				final Pair<ViewId, String> value = quickLookup.get( id );
-				final CorrespondingInterestPoints cip = new CorrespondingInterestPoints( (int)idA, value.getA(), value.getB(), (int)idB );
-
-				correspondingInterestPoints.add( cip );
+				if ( dense )
+					linkPartner[ i ] = denseCodeToPartner[ (int)id ];
+				else
+					linkPartner[ i ] = codeToPartner.get( id );
 			}
 
-			this.correspondingInterestPoints = correspondingInterestPoints;
+			this.correspondences = CorrespondenceTable.fromArrays( partnerTP, partnerSetup, partnerLabel, linkDetectionId, linkPartner, linkCorrespondingId );
 			modifiedCorrespondingInterestPoints = false;
 
 			n5.close();
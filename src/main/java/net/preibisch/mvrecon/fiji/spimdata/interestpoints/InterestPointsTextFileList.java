@@ -110,6 +110,13 @@ public class InterestPointsTextFileList extends InterestPoints
 		return list;
 	}
 
+	@Override
+	protected synchronized void loadCorrespondencesIfNecessary()
+	{
+		if ( this.correspondingInterestPoints == null )
+			loadCorrespondences();
+	}
+
 	public File getFile() { return file; }
 
 	@Override
@@ -23,6 +23,7 @@
 package net.preibisch.mvrecon.process.boundingbox;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -34,11 +35,15 @@ import java.util.concurrent.Future;
 
 import ij.ImageJ;
 import ij.ImagePlus;
+import mpicbg.spim.data.registration.ViewRegistration;
+import mpicbg.spim.data.sequence.ImgLoader;
 import mpicbg.spim.data.sequence.ViewId;
 import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
@@ -46,6 +51,7 @@ import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Pair;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 import net.preibisch.legacy.io.IOFunctions;
@@ -53,6 +59,7 @@ import net.preibisch.mvrecon.Threads;
 import net.preibisch.mvrecon.fiji.plugin.fusion.FusionGUI.FusionType;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
 import net.preibisch.mvrecon.fiji.spimdata.boundingbox.BoundingBox;
+import net.preibisch.mvrecon.process.downsampling.DownsampleTools;
 import net.preibisch.mvrecon.process.export.DisplayImage;
 import net.preibisch.mvrecon.process.fusion.FusionTools;
 import net.preibisch.mvrecon.process.fusion.ImagePortion;
@@ -73,6 +80,24 @@ public class BoundingBoxMinFilterThreshold implements BoundingBoxEstimation
 	double extraSpaceFactor = 3;
 	float[] minmax;
 
+	// estimate from the (downsampled) views instead of a fused image (unless it is displayed), the threshold is then
+	// relative to the intensity range of the views, not of the fused image
+	boolean useViews = false;
+
+	// number of z-planes per block when streaming the views
+	int blockDepth = 16;
+
+	/**
+	 * @param spimData - the SpimData
+	 * @param service - the ExecutorService (null uses the shared one)
+	 * @param views - the views to use
+	 * @param imgFactory - ImgFactory for the fused image
+	 * @param background - the threshold in percent of the intensity range
+	 * @param discardedObjectSize - size of the objects removed by the min filter (in global coordinates)
+	 * @param displaySegmentationImage - fuse and display the image used for segmentation
+	 * @param downsampling - pixel size of the image used for segmentation in global coordinates, unless the image is
+	 * displayed the views are downsampled (by powers of two) to approximately this size instead of fusing
+	 */
 	public BoundingBoxMinFilterThreshold(
 			final SpimData2 spimData,
 			final ExecutorService service,
@@ -100,6 +125,10 @@ public class BoundingBoxMinFilterThreshold implements BoundingBoxEstimation
 	@Override
 	public BoundingBox estimate( final String title )
 	{
+		// the fused image is only needed if it should be displayed
+		if ( useViews && !displaySegmentationImage )
+			return estimateFromViews( title );
+
 		// defines the range for the BDV bounding box
 		final BoundingBox maxBB = new BoundingBoxMaximal( views, spimData ).estimate( "Maximum bounding box used for initalization" );
 		IOFunctions.println( maxBB );
@@ -180,6 +209,362 @@ public class BoundingBoxMinFilterThreshold implements BoundingBoxEstimation
 		return new BoundingBox( title, min, max );
 	}
 
+	/**
+	 * Estimates the bounding box without fusing. Every view is opened at (approximately) the requested downsampling in
+	 * global coordinates, using the closest precomputed resolution level, and read in blocks of z-planes (in
+	 * parallel). A first pass only computes the intensity range of all views, in a second pass each block is min-filtered
+	 * separably (van Herk/Gil-Werman, O(1) per pixel, the radius is scaled to the resolution of the view), thresholded and
+	 * reduced to the global extent of its foreground right away, so no filtered data is kept. Since the transformation is
+	 * affine, only the first and last foreground pixel of every line need to be transformed.
+	 *
+	 * Note that the threshold is computed from the intensity range of the views, not of a fused image.
+	 *
+	 * @param title - name of the bounding box
+	 * @return the bounding box or null
+	 */
+	protected BoundingBox estimateFromViews( final String title )
+	{
+		final ImgLoader imgLoader = spimData.getSequenceDescription().getImgLoader();
+		final ExecutorService taskExecutor = service == null ? Threads.sharedExecutorService() : service;
+
+		final ArrayList< RandomAccessibleInterval< ? extends RealType< ? > > > imgs = new ArrayList<>();
+		final ArrayList< AffineTransform3D > models = new ArrayList<>();
+		final ArrayList< int[] > radii = new ArrayList<>();
+
+		for ( final ViewId view : views )
+		{
+			final ViewRegistration vr = spimData.getViewRegistrations().getViewRegistration( view );
+			vr.updateModel();
+
+			// the largest power of two per dimension so that a pixel is not larger than 'downsampling' in global coordinates
+			final long[] factors = new long[ 3 ];
+			for ( int d = 0; d < 3; ++d )
+			{
+				factors[ d ] = 1;
+				while ( factors[ d ] * 2 * pixelStep( vr.getModel(), d ) <= downsampling )
+					factors[ d ] *= 2;
+			}
+
+			@SuppressWarnings( "rawtypes" )
+			final Pair< RandomAccessibleInterval, AffineTransform3D > opened =
+					DownsampleTools.openAndDownsample( imgLoader, view, factors, false );
+
+			@SuppressWarnings( "unchecked" )
+			final RandomAccessibleInterval< ? extends RealType< ? > > img = opened.getA();
+
+			final AffineTransform3D model = vr.getModel().copy();
+			model.concatenate( opened.getB() );
+
+			// the radius is defined in global coordinates, scale it by the length of a pixel step in each dimension
+			final int[] r = new int[ 3 ];
+			for ( int d = 0; d < 3; ++d )
+				r[ d ] = Math.max( 1, (int)Math.round( radiusMin / pixelStep( model, d ) ) );
+
+			imgs.add( img );
+			models.add( model );
+			radii.add( r );
+		}
+
+		try
+		{
+			// intensity range of all views
+			final ArrayList< Callable< float[] > > rangeTasks = new ArrayList<>();
+
+			for ( final RandomAccessibleInterval< ? extends RealType< ? > > img : imgs )
+			{
+				final int depth = (int)img.dimension( 2 );
+
+				for ( int z = 0; z < depth; z += blockDepth )
+				{
+					final int z0 = z, z1 = Math.min( depth, z + blockDepth );
+
+					rangeTasks.add( () -> rangeOfBlock( img, z0, z1 ) );
+				}
+			}
+
+			final float[] minmax = new float[] { Float.MAX_VALUE, -Float.MAX_VALUE };
+
+			for ( final Future< float[] > future : taskExecutor.invokeAll( rangeTasks ) )
+			{
+				final float[] range = future.get();
+				minmax[ 0 ] = Math.min( minmax[ 0 ], range[ 0 ] );
+				minmax[ 1 ] = Math.max( minmax[ 1 ], range[ 1 ] );
+			}
+
+			final double threshold = (minmax[ 1 ] - minmax[ 0 ]) * ( background / 100.0 ) + minmax[ 0 ];
+
+			IOFunctions.println( "Views minimum: " + minmax[ 0 ] );
+			IOFunctions.println( "Views maximum: " + minmax[ 1 ] );
+			IOFunctions.println( "Threshold: " + threshold );
+
+			// min filter, threshold & extent of the foreground in global coordinates, every block is discarded once reduced
+			final ArrayList< Callable< double[][] > > tasks = new ArrayList<>();
+
+			for ( int i = 0; i < imgs.size(); ++i )
+			{
+				final RandomAccessibleInterval< ? extends RealType< ? > > img = imgs.get( i );
+				final AffineTransform3D model = models.get( i );
+				final int[] r = radii.get( i );
+				final int depth = (int)img.dimension( 2 );
+
+				for ( int z = 0; z < depth; z += blockDepth )
+				{
+					final int z0 = z, z1 = Math.min( depth, z + blockDepth );
+
+					tasks.add( () -> extentOfBlock( img, model, filterBlock( img, r, z0, z1 ), threshold ) );
+				}
+			}
+
+			final double[] min = new double[ 3 ];
+			final double[] max = new double[ 3 ];
+			Arrays.fill( min, Double.MAX_VALUE );
+			Arrays.fill( max, -Double.MAX_VALUE );
+
+			for ( final Future< double[][] > future : taskExecutor.invokeAll( tasks ) )
+			{
+				final double[][] extent = future.get();
+
+				if ( extent == null )
+					continue;
+
+				for ( int d = 0; d < 3; ++d )
+				{
+					min[ d ] = Math.min( min[ d ], extent[ 0 ][ d ] );
+					max[ d ] = Math.max( max[ d ], extent[ 1 ][ d ] );
+				}
+			}
+
+			if ( min[ 0 ] > max[ 0 ] )
+			{
+				IOFunctions.println( "No pixel above the threshold, cannot estimate bounding box." );
+				return null;
+			}
+
+			final int[] minBB = new int[ 3 ];
+			final int[] maxBB = new int[ 3 ];
+
+			for ( int d = 0; d < 3; ++d )
+			{
+				// effect of the min filter + extra space
+				minBB[ d ] = (int)Math.floor( min[ d ] - radiusMin * extraSpaceFactor );
+				maxBB[ d ] = (int)Math.ceil( max[ d ] + radiusMin * extraSpaceFactor );
+			}
+
+			IOFunctions.println( "Bounding box dim global: [" + Util.printCoordinates( minBB ) + "] >> [" + Util.printCoordinates( maxBB ) + "]" );
+
+			// maybe reuse it
+			this.minmax = minmax.clone();
+
+			return new BoundingBox( title, minBB, maxBB );
+		}
+		catch ( final Exception e )
+		{
+			IOFunctions.println( "Failed to compute bounding box from the views: " + e );
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/*
+	 * length of a pixel step along dimension d in global coordinates
+	 */
+	private static double pixelStep( final AffineTransform3D model, final int d )
+	{
+		return Math.sqrt( model.get( 0, d ) * model.get( 0, d ) + model.get( 1, d ) * model.get( 1, d ) + model.get( 2, d ) * model.get( 2, d ) );
+	}
+
+	/*
+	 * min filtered planes [z0, z1) of an image
+	 */
+	protected static class FilteredBlock
+	{
+		final float[] data;
+		final int[] dim;
+		final int z0;
+
+		FilteredBlock( final float[] data, final int[] dim, final int z0 )
+		{
+			this.data = data;
+			this.dim = dim;
+			this.z0 = z0;
+		}
+	}
+
+	/*
+	 * intensity range { min, max } of planes [z0, z1) of a 3d image
+	 */
+	protected static float[] rangeOfBlock( final RandomAccessibleInterval< ? extends RealType< ? > > img, final int z0, final int z1 )
+	{
+		final long[] min = new long[] { img.min( 0 ), img.min( 1 ), img.min( 2 ) + z0 };
+		final long[] max = new long[] { img.max( 0 ), img.max( 1 ), img.min( 2 ) + z1 - 1 };
+
+		float minI = Float.MAX_VALUE, maxI = -Float.MAX_VALUE;
+
+		for ( final RealType< ? > t : Views.flatIterable( Views.interval( img, new FinalInterval( min, max ) ) ) )
+		{
+			final float v = t.getRealFloat();
+			minI = Math.min( minI, v );
+			maxI = Math.max( maxI, v );
+		}
+
+		return new float[] { minI, maxI };
+	}
+
+	/*
+	 * loads planes [z0-r, z1+r) of a 3d image, min filters all planes and keeps planes [z0, z1)
+	 */
+	protected static FilteredBlock filterBlock(
+			final RandomAccessibleInterval< ? extends RealType< ? > > img,
+			final int[] r,
+			final int z0,
+			final int z1 )
+	{
+		final int zs = Math.max( 0, z0 - r[ 2 ] );
+		final int ze = (int)Math.min( img.dimension( 2 ), z1 + r[ 2 ] );
+		final int[] dim = new int[] { (int)img.dimension( 0 ), (int)img.dimension( 1 ), ze - zs };
+		final int planeSize = dim[ 0 ] * dim[ 1 ];
+
+		final float[] data = loadBlock( img, zs, ze );
+
+		for ( int d = 0; d < 3; ++d )
+			minFilter( data, dim, d, r[ d ] );
+
+		final float[] planes = Arrays.copyOfRange( data, ( z0 - zs ) * planeSize, ( z1 - zs ) * planeSize );
+
+		return new FilteredBlock( planes, new int[] { dim[ 0 ], dim[ 1 ], z1 - z0 }, z0 );
+	}
+
+	/*
+	 * returns the global extent of the pixels of a min filtered block that are above the threshold, or null
+	 */
+	protected static double[][] extentOfBlock(
+			final RandomAccessibleInterval< ? extends RealType< ? > > img,
+			final AffineTransform3D model,
+			final FilteredBlock block,
+			final double threshold )
+	{
+		final float[] data = block.data;
+		final int[] dim = block.dim;
+
+		final double[] min = new double[] { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		final double[] max = new double[] { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		final double[] l = new double[ 3 ];
+		final double[] g = new double[ 3 ];
+
+		boolean found = false;
+
+		for ( int z = 0; z < dim[ 2 ]; ++z )
+			for ( int y = 0; y < dim[ 1 ]; ++y )
+			{
+				final int offset = ( z * dim[ 1 ] + y ) * dim[ 0 ];
+
+				int first = 0;
+				while ( first < dim[ 0 ] && data[ offset + first ] <= threshold )
+					++first;
+
+				if ( first == dim[ 0 ] )
+					continue;
+
+				int last = dim[ 0 ] - 1;
+				while ( data[ offset + last ] <= threshold )
+					--last;
+
+				found = true;
+
+				// the transform is affine, the extremes along a line are at its ends
+				for ( final int x : new int[] { first, last } )
+				{
+					l[ 0 ] = x + img.min( 0 );
+					l[ 1 ] = y + img.min( 1 );
+					l[ 2 ] = block.z0 + z + img.min( 2 );
+
+					model.apply( l, g );
+
+					for ( int d = 0; d < 3; ++d )
+					{
+						min[ d ] = Math.min( min[ d ], g[ d ] );
+						max[ d ] = Math.max( max[ d ], g[ d ] );
+					}
+				}
+			}
+
+		return found ? new double[][] { min, max } : null;
+	}
+
+	protected static float[] loadBlock( final RandomAccessibleInterval< ? extends RealType< ? > > img, final int z0, final int z1 )
+	{
+		final long[] min = new long[] { img.min( 0 ), img.min( 1 ), img.min( 2 ) + z0 };
+		final long[] max = new long[] { img.max( 0 ), img.max( 1 ), img.min( 2 ) + z1 - 1 };
+
+		final float[] data = new float[ (int)( img.dimension( 0 ) * img.dimension( 1 ) * ( z1 - z0 ) ) ];
+		final Cursor< ? extends RealType< ? > > c = Views.flatIterable( Views.interval( img, new FinalInterval( min, max ) ) ).cursor();
+
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = c.next().getRealFloat();
+
+		return data;
+	}
+
+	/**
+	 * In-place separable min filter along one dimension of a 3d block (van Herk/Gil-Werman, three comparisons
+	 * per pixel independent of the radius). Values outside the block are ignored.
+	 *
+	 * @param data - the block, x fastest
+	 * @param dim - dimensions of the block
+	 * @param d - the dimension to filter
+	 * @param r - the radius
+	 */
+	public static void minFilter( final float[] data, final int[] dim, final int d, final int r )
+	{
+		final int n = dim[ d ];
+
+		if ( r < 1 || n == 0 )
+			return;
+
+		final int w = 2 * r + 1;
+		final int m = n + 2 * r;
+		final int stride = d == 0 ? 1 : d == 1 ? dim[ 0 ] : dim[ 0 ] * dim[ 1 ];
+		final int numLines = data.length / n;
+
+		final float[] p = new float[ m ];
+		final float[] g = new float[ m ];
+		final float[] h = new float[ m ];
+
+		Arrays.fill( p, 0, r, Float.MAX_VALUE );
+		Arrays.fill( p, r + n, m, Float.MAX_VALUE );
+
+		for ( int line = 0; line < numLines; ++line )
+		{
+			final int start;
+
+			if ( d == 0 )
+				start = line * n;
+			else if ( d == 1 )
+				start = ( line / dim[ 0 ] ) * dim[ 0 ] * dim[ 1 ] + line % dim[ 0 ];
+			else
+				start = line;
+
+			for ( int i = 0; i < n; ++i )
+				p[ r + i ] = data[ start + i * stride ];
+
+			// running minima from the left and from the right within blocks of size w
+			for ( int k = 0; k < m; ++k )
+				g[ k ] = ( k % w == 0 ) ? p[ k ] : Math.min( g[ k - 1 ], p[ k ] );
+
+			for ( int k = m - 1; k >= 0; --k )
+				h[ k ] = ( k == m - 1 || k % w == w - 1 ) ? p[ k ] : Math.min( h[ k + 1 ], p[ k ] );
+
+			for ( int i = 0; i < n; ++i )
+				data[ start + i * stride ] = Math.min( h[ i ], g[ i + 2 * r ] );
+		}
+	}
+
+	public boolean useViews() { return useViews; }
+	public void setUseViews( final boolean useViews ) { this.useViews = useViews; }
+
+	public int getBlockDepth() { return blockDepth; }
+	public void setBlockDepth( final int blockDepth ) { this.blockDepth = blockDepth; }
+
 	public double getExtraSpaceFactor() { return extraSpaceFactor; }
 	public void setExtraSpaceFactor( final double esf ) { this.extraSpaceFactor = esf; }
 
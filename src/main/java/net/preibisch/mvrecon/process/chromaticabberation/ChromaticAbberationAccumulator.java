@@ -0,0 +1,259 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.chromaticabberation;
+
+import mpicbg.models.AffineModel3D;
+import mpicbg.models.IllDefinedDataPointsException;
+import mpicbg.models.NotEnoughDataPointsException;
+import mpicbg.models.TranslationModel3D;
+
+/**
+ * Accumulates corresponding points (p in the first, q in the second channel) of one channel pair without storing
+ * them: only the weighted means and the centered second moments are kept, which is all that is needed for a
+ * least-squares translation or affine model and its error. Partial sums (e.g. of one tile) are merged using
+ * the numerically stable update of Chan et al.
+ */
+public class ChromaticAbberationAccumulator
+{
+	private double sumW = 0;
+	private long numMatches = 0;
+	private int numTiles = 0;
+
+	private final double[] meanP = new double[ 3 ];
+	private final double[] meanQ = new double[ 3 ];
+
+	// centered co-moments, [ row ][ column ] = sum w * ( a - meanA )[ row ] * ( b - meanB )[ column ]
+	private final double[][] cPP = new double[ 3 ][ 3 ];
+	private final double[][] cPQ = new double[ 3 ][ 3 ];
+	private final double[][] cQQ = new double[ 3 ][ 3 ];
+
+	public void add( final double[] p, final double[] q, final double w )
+	{
+		if ( w <= 0 )
+			return;
+
+		final double sum = sumW + w;
+		final double f = sumW * w / sum;
+
+		final double[] dp = new double[ 3 ];
+		final double[] dq = new double[ 3 ];
+
+		for ( int d = 0; d < 3; ++d )
+		{
+			dp[ d ] = p[ d ] - meanP[ d ];
+			dq[ d ] = q[ d ] - meanQ[ d ];
+		}
+
+		addOuter( cPP, dp, dp, f );
+		addOuter( cPQ, dp, dq, f );
+		addOuter( cQQ, dq, dq, f );
+
+		for ( int d = 0; d < 3; ++d )
+		{
+			meanP[ d ] += dp[ d ] * w / sum;
+			meanQ[ d ] += dq[ d ] * w / sum;
+		}
+
+		sumW = sum;
+		++numMatches;
+	}
+
+	public void add( final ChromaticAbberationAccumulator other )
+	{
+		numTiles += other.numTiles;
+
+		if ( other.sumW <= 0 )
+			return;
+
+		final double sum = sumW + other.sumW;
+		final double f = sumW * other.sumW / sum;
+
+		final double[] dp = new double[ 3 ];
+		final double[] dq = new double[ 3 ];
+
+		for ( int d = 0; d < 3; ++d )
+		{
+			dp[ d ] = other.meanP[ d ] - meanP[ d ];
+			dq[ d ] = other.meanQ[ d ] - meanQ[ d ];
+		}
+
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 3; ++c )
+			{
+				cPP[ r ][ c ] += other.cPP[ r ][ c ] + dp[ r ] * dp[ c ] * f;
+				cPQ[ r ][ c ] += other.cPQ[ r ][ c ] + dp[ r ] * dq[ c ] * f;
+				cQQ[ r ][ c ] += other.cQQ[ r ][ c ] + dq[ r ] * dq[ c ] * f;
+			}
+
+		for ( int d = 0; d < 3; ++d )
+		{
+			meanP[ d ] += dp[ d ] * other.sumW / sum;
+			meanQ[ d ] += dq[ d ] * other.sumW / sum;
+		}
+
+		sumW = sum;
+		numMatches += other.numMatches;
+	}
+
+	/**
+	 * Counts one more tile that contributed to this channel pair
+	 */
+	public void addTile() { ++numTiles; }
+
+	public long getNumMatches() { return numMatches; }
+	public int getNumTiles() { return numTiles; }
+
+	/**
+	 * @return the least-squares translation from the first to the second channel
+	 * @throws NotEnoughDataPointsException if there are no matches
+	 */
+	public TranslationModel3D fitTranslation() throws NotEnoughDataPointsException
+	{
+		if ( numMatches < 1 )
+			throw new NotEnoughDataPointsException( "No corresponding points to fit a translation." );
+
+		final TranslationModel3D model = new TranslationModel3D();
+		model.set( meanQ[ 0 ] - meanP[ 0 ], meanQ[ 1 ] - meanP[ 1 ], meanQ[ 2 ] - meanP[ 2 ] );
+
+		return model;
+	}
+
+	/**
+	 * @return the least-squares affine transformation from the first to the second channel
+	 * @throws NotEnoughDataPointsException if there are less than 4 matches
+	 * @throws IllDefinedDataPointsException if the points of the first channel are (close to) coplanar
+	 */
+	public AffineModel3D fitAffine() throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		if ( numMatches < 4 )
+			throw new NotEnoughDataPointsException( numMatches + " corresponding points are not enough to fit an affine model, at least 4 required." );
+
+		final double[][] a = fitLinear();
+
+		// t = meanQ - A * meanP
+		final double[] t = new double[ 3 ];
+
+		for ( int r = 0; r < 3; ++r )
+			t[ r ] = meanQ[ r ] - ( a[ r ][ 0 ] * meanP[ 0 ] + a[ r ][ 1 ] * meanP[ 1 ] + a[ r ][ 2 ] * meanP[ 2 ] );
+
+		final AffineModel3D model = new AffineModel3D();
+		model.set(
+				a[ 0 ][ 0 ], a[ 0 ][ 1 ], a[ 0 ][ 2 ], t[ 0 ],
+				a[ 1 ][ 0 ], a[ 1 ][ 1 ], a[ 1 ][ 2 ], t[ 1 ],
+				a[ 2 ][ 0 ], a[ 2 ][ 1 ], a[ 2 ][ 2 ], t[ 2 ] );
+
+		return model;
+	}
+
+	/**
+	 * @param a - the linear part of a model (3x3), identity for a translation
+	 * @return the weighted RMS distance of the corresponding points after the least-squares fit with this linear part
+	 */
+	public double rmsError( final double[][] a )
+	{
+		if ( sumW <= 0 )
+			return Double.NaN;
+
+		// sum w |A p' - q'|^2 = tr( A cPP A^T ) - 2 tr( A cPQ ) + tr( cQQ )
+		double e = 0;
+
+		for ( int r = 0; r < 3; ++r )
+		{
+			for ( int i = 0; i < 3; ++i )
+				for ( int j = 0; j < 3; ++j )
+					e += a[ r ][ i ] * cPP[ i ][ j ] * a[ r ][ j ];
+
+			for ( int k = 0; k < 3; ++k )
+				e -= 2 * a[ r ][ k ] * cPQ[ k ][ r ];
+
+			e += cQQ[ r ][ r ];
+		}
+
+		return Math.sqrt( Math.max( 0, e ) / sumW );
+	}
+
+	public double rmsErrorTranslation()
+	{
+		return rmsError( new double[][] { { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 } } );
+	}
+
+	public double rmsErrorAffine() throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		if ( numMatches < 4 )
+			throw new NotEnoughDataPointsException( numMatches + " corresponding points are not enough to fit an affine model, at least 4 required." );
+
+		return rmsError( fitLinear() );
+	}
+
+	/*
+	 * A = cPQ^T * cPP^-1
+	 */
+	private double[][] fitLinear() throws IllDefinedDataPointsException
+	{
+		final double[][] inv = invert( cPP );
+
+		if ( inv == null )
+			throw new IllDefinedDataPointsException();
+
+		final double[][] a = new double[ 3 ][ 3 ];
+
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 3; ++c )
+				for ( int k = 0; k < 3; ++k )
+					a[ r ][ c ] += cPQ[ k ][ r ] * inv[ k ][ c ];
+
+		return a;
+	}
+
+	private static void addOuter( final double[][] m, final double[] a, final double[] b, final double f )
+	{
+		for ( int r = 0; r < 3; ++r )
+			for ( int c = 0; c < 3; ++c )
+				m[ r ][ c ] += a[ r ] * b[ c ] * f;
+	}
+
+	/*
+	 * inverse of a 3x3 matrix, null if it is (close to) singular
+	 */
+	private static double[][] invert( final double[][] m )
+	{
+		final double c00 = m[ 1 ][ 1 ] * m[ 2 ][ 2 ] - m[ 1 ][ 2 ] * m[ 2 ][ 1 ];
+		final double c01 = m[ 1 ][ 2 ] * m[ 2 ][ 0 ] - m[ 1 ][ 0 ] * m[ 2 ][ 2 ];
+		final double c02 = m[ 1 ][ 0 ] * m[ 2 ][ 1 ] - m[ 1 ][ 1 ] * m[ 2 ][ 0 ];
+
+		final double det = m[ 0 ][ 0 ] * c00 + m[ 0 ][ 1 ] * c01 + m[ 0 ][ 2 ] * c02;
+
+		double scale = 0;
+		for ( int r = 0; r < 3; ++r )
+			scale = Math.max( scale, Math.abs( m[ r ][ r ] ) );
+
+		if ( scale == 0 || Math.abs( det ) <= 1e-12 * scale * scale * scale )
+			return null;
+
+		return new double[][] {
+			{ c00 / det, ( m[ 0 ][ 2 ] * m[ 2 ][ 1 ] - m[ 0 ][ 1 ] * m[ 2 ][ 2 ] ) / det, ( m[ 0 ][ 1 ] * m[ 1 ][ 2 ] - m[ 0 ][ 2 ] * m[ 1 ][ 1 ] ) / det },
+			{ c01 / det, ( m[ 0 ][ 0 ] * m[ 2 ][ 2 ] - m[ 0 ][ 2 ] * m[ 2 ][ 0 ] ) / det, ( m[ 0 ][ 2 ] * m[ 1 ][ 0 ] - m[ 0 ][ 0 ] * m[ 1 ][ 2 ] ) / det },
+			{ c02 / det, ( m[ 0 ][ 1 ] * m[ 2 ][ 0 ] - m[ 0 ][ 0 ] * m[ 2 ][ 1 ] ) / det, ( m[ 0 ][ 0 ] * m[ 1 ][ 1 ] - m[ 0 ][ 1 ] * m[ 1 ][ 0 ] ) / det }
+		};
+	}
+}
@@ -26,15 +26,23 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import ij.ImageJ;
 import mpicbg.models.AffineModel3D;
+import mpicbg.models.IllDefinedDataPointsException;
 import mpicbg.models.NotEnoughDataPointsException;
 import mpicbg.models.TranslationModel3D;
 import mpicbg.spim.data.SpimDataException;
 import mpicbg.spim.data.generic.base.Entity;
+import mpicbg.spim.data.registration.ViewRegistration;
 import mpicbg.spim.data.sequence.Channel;
 import mpicbg.spim.data.sequence.SequenceDescription;
 import mpicbg.spim.data.sequence.ViewDescription;
@@ -42,10 +50,14 @@ import mpicbg.spim.data.sequence.ViewId;
 import net.imglib2.util.Pair;
 import net.imglib2.util.Util;
 import net.imglib2.util.ValuePair;
+import net.preibisch.legacy.io.IOFunctions;
+import net.preibisch.legacy.mpicbg.PointMatchGeneric;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
 import net.preibisch.mvrecon.fiji.spimdata.XmlIoSpimData2;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.ViewInterestPointLists;
 import net.preibisch.mvrecon.process.interestpointregistration.TransformationTools;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.CachingMatcherPairwise;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.MatcherPairwiseTools;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.PairwiseResult;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
@@ -123,4 +135,165 @@ public class DetectChromaticAbberation
 		return channelPairs;
 	}
 
+	/**
+	 * Streaming estimation of the chromatic abberation between all pairs of channels. Views are grouped into tiles
+	 * (same timepoint and same attributes except the channel). Tile by tile, the interest points of each channel
+	 * are loaded (and transformed into world coordinates) once and prepared once by the matcher (e.g. descriptors and
+	 * k-d trees), all channel pairs of the tile are matched in parallel from these shared per-channel indices, and
+	 * the inliers are added to one accumulator per channel pair. Only the data of one tile is held in memory.
+	 *
+	 * @param spimData - the SpimData2
+	 * @param viewIds - the views to use
+	 * @param label - the interest point label
+	 * @param matcher - the pairwise matching
+	 * @param service - the ExecutorService
+	 * @param <V> - view id type
+	 * @param <C> - the per-view data of the matcher
+	 * @return the accumulated corresponding points of each channel pair (first to second channel)
+	 */
+	public static < V extends ViewId, C > LinkedHashMap< Pair< Channel, Channel >, ChromaticAbberationAccumulator > estimateStreaming(
+			final SpimData2 spimData,
+			final List< V > viewIds,
+			final String label,
+			final CachingMatcherPairwise< InterestPoint, C > matcher,
+			final ExecutorService service )
+	{
+		final Map< ViewId, ViewRegistration > registrations = spimData.getViewRegistrations().getViewRegistrations();
+		final Map< ViewId, ViewInterestPointLists > interestPoints = spimData.getViewInterestPoints().getViewInterestPoints();
+
+		final HashMap< String, Double > labels = new HashMap<>();
+		labels.put( label, 1.0 );
+
+		final LinkedHashMap< Pair< Channel, Channel >, ChromaticAbberationAccumulator > result = new LinkedHashMap<>();
+
+		for ( final Pair< Channel, Channel > channelPair : identifyChannelPairs( spimData, viewIds ) )
+			result.put( channelPair, new ChromaticAbberationAccumulator() );
+
+		final Map< String, Map< Channel, V > > tiles = identifyTiles( spimData, viewIds );
+
+		int tileCount = 0;
+
+		for ( final Map< Channel, V > tile : tiles.values() )
+		{
+			++tileCount;
+
+			if ( tile.size() < 2 )
+				continue;
+
+			try
+			{
+				// load and prepare every channel of the tile once
+				final ArrayList< Channel > channels = new ArrayList<>( tile.keySet() );
+				final ArrayList< Callable< C > > prepareTasks = new ArrayList<>();
+
+				for ( final Channel channel : channels )
+				{
+					final ViewId viewId = tile.get( channel );
+
+					prepareTasks.add( () ->
+					{
+						if ( !interestPoints.containsKey( viewId ) || interestPoints.get( viewId ).getInterestPointList( label ) == null )
+							return null;
+
+						final HashMap< ViewId, HashMap< String, Double > > labelMap = new HashMap<>();
+						labelMap.put( viewId, labels );
+
+						return matcher.prepare( TransformationTools.getInterestPoints( viewId, registrations, interestPoints, labelMap, true ).get( label ) );
+					});
+				}
+
+				final HashMap< Channel, C > prepared = new HashMap<>();
+				final List< Future< C > > preparedFutures = service.invokeAll( prepareTasks );
+
+				for ( int i = 0; i < channels.size(); ++i )
+					prepared.put( channels.get( i ), preparedFutures.get( i ).get() );
+
+				// match all channel pairs of the tile from the shared per-channel data
+				final ArrayList< Pair< Channel, Channel > > tilePairs = new ArrayList<>();
+				final ArrayList< Callable< PairwiseResult< InterestPoint > > > matchTasks = new ArrayList<>();
+
+				for ( final Pair< Channel, Channel > channelPair : result.keySet() )
+				{
+					final C a = prepared.get( channelPair.getA() );
+					final C b = prepared.get( channelPair.getB() );
+
+					if ( a == null || b == null )
+						continue;
+
+					tilePairs.add( channelPair );
+					matchTasks.add( () -> matcher.matchPrepared( a, b ) );
+				}
+
+				final List< Future< PairwiseResult< InterestPoint > > > matchFutures = service.invokeAll( matchTasks );
+
+				for ( int i = 0; i < tilePairs.size(); ++i )
+				{
+					final PairwiseResult< InterestPoint > pairResult = matchFutures.get( i ).get();
+					final ChromaticAbberationAccumulator tileAccumulator = new ChromaticAbberationAccumulator();
+
+					tileAccumulator.addTile();
+
+					for ( final PointMatchGeneric< InterestPoint > pm : pairResult.getInliers() )
+						tileAccumulator.add( pm.getPoint1().getL(), pm.getPoint2().getL(), pm.getWeight() );
+
+					result.get( tilePairs.get( i ) ).add( tileAccumulator );
+				}
+			}
+			catch ( InterruptedException | ExecutionException e )
+			{
+				IOFunctions.println( "Failed to estimate chromatic abberation for tile " + tileCount + "/" + tiles.size() + ": " + e );
+				e.printStackTrace();
+			}
+		}
+
+		result.forEach( ( channelPair, acc ) ->
+		{
+			String errors;
+
+			try
+			{
+				errors = "RMS error translation=" + acc.rmsErrorTranslation() + ", affine=" + acc.rmsErrorAffine();
+			}
+			catch ( NotEnoughDataPointsException | IllDefinedDataPointsException e )
+			{
+				errors = "RMS error translation=" + acc.rmsErrorTranslation() + ", affine: " + e;
+			}
+
+			IOFunctions.println(
+					"Channel " + channelPair.getA().getName() + " > " + channelPair.getB().getName() + ": " +
+					acc.getNumMatches() + " corresponding points in " + acc.getNumTiles() + " tiles, " + errors );
+		});
+
+		return result;
+	}
+
+	/**
+	 * @param spimData - the SpimData2
+	 * @param viewIds - the views
+	 * @param <V> - view id type
+	 * @return views of the same timepoint and the same attributes except the channel, by channel
+	 */
+	public static < V extends ViewId > LinkedHashMap< String, Map< Channel, V > > identifyTiles(
+			final SpimData2 spimData,
+			final List< V > viewIds )
+	{
+		final SequenceDescription seq = spimData.getSequenceDescription();
+		final LinkedHashMap< String, Map< Channel, V > > tiles = new LinkedHashMap<>();
+
+		for ( final V viewId : viewIds )
+		{
+			final ViewDescription vd = seq.getViewDescription( viewId );
+			final TreeMap< String, Integer > attributes = new TreeMap<>();
+
+			for ( final Entity e : vd.getViewSetup().getAttributes().values() )
+				if ( !Channel.class.isInstance( e ) )
+					attributes.put( e.getClass().getSimpleName(), e.getId() );
+
+			final String key = "tp=" + viewId.getTimePointId() + " " + attributes;
+
+			tiles.computeIfAbsent( key, k -> new HashMap<>() ).put( vd.getViewSetup().getChannel(), viewId );
+		}
+
+		return tiles;
+	}
 }
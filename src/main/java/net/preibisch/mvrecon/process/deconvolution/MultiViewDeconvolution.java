@@ -25,6 +25,7 @@ package net.preibisch.mvrecon.process.deconvolution;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
 
 import ij.CompositeImage;
 import ij.IJ;
@@ -41,6 +42,7 @@ import net.preibisch.mvrecon.process.deconvolution.init.PsiInitFactory;
 import net.preibisch.mvrecon.process.deconvolution.iteration.ComputeBlockThread;
 import net.preibisch.mvrecon.process.deconvolution.iteration.ComputeBlockThreadFactory;
 import net.preibisch.mvrecon.process.export.DisplayImage;
+import net.preibisch.mvrecon.process.metrics.Metrics;
 
 public abstract class MultiViewDeconvolution< C extends ComputeBlockThread >
 {
@@ -189,7 +191,9 @@ public abstract class MultiViewDeconvolution< C extends ComputeBlockThread >
 				}
 			}
 
+			final long time = System.currentTimeMillis();
 			runNextIteration();
+			Metrics.timer( "deconvolution_iteration_seconds" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 		}
 
 		// TODO: IOFunctions.println( "Masking never updated pixels." );
@@ -206,6 +210,7 @@ public abstract class MultiViewDeconvolution< C extends ComputeBlockThread >
 		{
 			long time = System.currentTimeMillis();
 			writeBackBlock.getA().getB().pasteBlock( psi, writeBackBlock.getB() );
+			Metrics.timer( "deconvolution_block_seconds", "stage", "paste" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 			System.out.println( " block " + writeBackBlock.getA().getA() + ", (CPU): paste " + (System.currentTimeMillis() - time) );
 		}
 	}
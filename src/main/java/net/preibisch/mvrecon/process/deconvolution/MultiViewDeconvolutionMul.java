@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.imglib2.RandomAccessibleInterval;
@@ -44,6 +45,7 @@ import net.preibisch.mvrecon.process.deconvolution.iteration.ComputeBlockThread.
 import net.preibisch.mvrecon.process.deconvolution.iteration.ComputeBlockThreadFactory;
 import net.preibisch.mvrecon.process.deconvolution.iteration.mul.ComputeBlockMulThread;
 import net.preibisch.mvrecon.process.fusion.FusionTools;
+import net.preibisch.mvrecon.process.metrics.Metrics;
 
 public class MultiViewDeconvolutionMul extends MultiViewDeconvolution< ComputeBlockMulThread >
 {
@@ -167,6 +169,7 @@ public class MultiViewDeconvolutionMul extends MultiViewDeconvolution< ComputeBl
 
 							long time = System.currentTimeMillis();
 							blockStruct.copyBlock( Views.extendMirrorSingle( psi ), blockThread.getPsiBlockTmp() );
+							Metrics.timer( "deconvolution_block_seconds", "stage", "copy" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 							System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): copy " + (System.currentTimeMillis() - time) );
 
 							final List< DeconView > view = new ArrayList<>();
@@ -194,12 +197,14 @@ public class MultiViewDeconvolutionMul extends MultiViewDeconvolution< ComputeBl
 									maxIntensityView,
 									kernel1,
 									kernel2 ) );
+							Metrics.timer( "deconvolution_block_seconds", "stage", "compute" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 							System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): compute " + (System.currentTimeMillis() - time) );
 
 							time = System.currentTimeMillis();
 							if ( totalNumBlocks == 1 )
 							{
 								blockStruct.pasteBlock( psi, blockThread.getPsiBlockTmp() );
+								Metrics.timer( "deconvolution_block_seconds", "stage", "paste" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 								System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): paste " + (System.currentTimeMillis() - time) );
 							}
 							else
@@ -209,6 +214,7 @@ public class MultiViewDeconvolutionMul extends MultiViewDeconvolution< ComputeBl
 								FusionTools.copyImg( blockThread.getPsiBlockTmp(), tmp, views.getExecutorService(), false );
 								currentBlockWritebackQueue.add( new ValuePair<>( new ValuePair<>( blockIdOut, blockStruct ), tmp ) );
 
+								Metrics.timer( "deconvolution_block_seconds", "stage", "queue" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 								System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): saving for later pasting " + (System.currentTimeMillis() - time) );
 							}
 						}
@@ -25,6 +25,7 @@ package net.preibisch.mvrecon.process.deconvolution;
 import java.util.Date;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.imglib2.img.Img;
@@ -41,6 +42,7 @@ import net.preibisch.mvrecon.process.deconvolution.iteration.ComputeBlockThread.
 import net.preibisch.mvrecon.process.deconvolution.iteration.ComputeBlockThreadFactory;
 import net.preibisch.mvrecon.process.deconvolution.iteration.sequential.ComputeBlockSeqThread;
 import net.preibisch.mvrecon.process.fusion.FusionTools;
+import net.preibisch.mvrecon.process.metrics.Metrics;
 
 public class MultiViewDeconvolutionSeq extends MultiViewDeconvolution< ComputeBlockSeqThread >
 {
@@ -113,6 +115,7 @@ public class MultiViewDeconvolutionSeq extends MultiViewDeconvolution< ComputeBl
 
 								long time = System.currentTimeMillis();
 								blockStruct.copyBlock( Views.extendMirrorSingle( psi ), blockThread.getPsiBlockTmp() );
+								Metrics.timer( "deconvolution_block_seconds", "stage", "copy" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 								System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): copy " + (System.currentTimeMillis() - time) );
 
 								time = System.currentTimeMillis();
@@ -124,12 +127,14 @@ public class MultiViewDeconvolutionSeq extends MultiViewDeconvolution< ComputeBl
 										max[ viewNum ],
 										view.getPSF().getKernel1(),
 										view.getPSF().getKernel2() ) );
+								Metrics.timer( "deconvolution_block_seconds", "stage", "compute" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 								System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): compute " + (System.currentTimeMillis() - time) );
 	
 								time = System.currentTimeMillis();
 								if ( totalNumBlocks == 1 )
 								{
 									blockStruct.pasteBlock( psi, blockThread.getPsiBlockTmp() );
+									Metrics.timer( "deconvolution_block_seconds", "stage", "paste" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 									System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): paste " + (System.currentTimeMillis() - time) );
 								}
 								else
@@ -139,6 +144,7 @@ public class MultiViewDeconvolutionSeq extends MultiViewDeconvolution< ComputeBl
 									FusionTools.copyImg( blockThread.getPsiBlockTmp(), tmp, views.getExecutorService(), false );
 									currentBlockWritebackQueue.add( new ValuePair<>( new ValuePair<>( blockIdOut, blockStruct ), tmp ) );
 
+									Metrics.timer( "deconvolution_block_seconds", "stage", "queue" ).record( System.currentTimeMillis() - time, TimeUnit.MILLISECONDS );
 									System.out.println( " block " + blockIdOut + ", thread (" + (threadId+1) + "/" + threads.length + "), (CPU): saving for later pasting " + (System.currentTimeMillis() - time) );
 								}
 							}
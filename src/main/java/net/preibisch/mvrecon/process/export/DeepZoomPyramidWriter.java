@@ -0,0 +1,333 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.view.Views;
+import net.preibisch.mvrecon.Threads;
+
+/**
+ * Writes a DeepZoom pyramid (as read by OpenSeaDragon) of a 2d ARGB image.
+ *
+ * The full resolution is fused strip by strip (one row of tiles at a time, split across threads) into
+ * primitive int rows, tiles are encoded straight from the DataBufferByte of their raster, and every coarser
+ * level is computed by 2x2 averaging of the rows of the next finer level while they are still in memory. Thus
+ * the image is fused only once and only a few rows of tiles per level are held in memory.
+ */
+public class DeepZoomPyramidWriter
+{
+	final RandomAccessibleInterval< ARGBType > img;
+	final int tileSize, tileOverlap;
+	final String format;
+	final int numThreads;
+
+	ExecutorService service;
+
+	/**
+	 * @param img - the 2d image to export
+	 * @param tileSize - size of the tiles
+	 * @param tileOverlap - overlap of the tiles
+	 * @param format - image format of the tiles, e.g. "png" or "jpg"
+	 * @param numThreads - number of threads for fusion and encoding
+	 */
+	public DeepZoomPyramidWriter(
+			final RandomAccessibleInterval< ARGBType > img,
+			final int tileSize,
+			final int tileOverlap,
+			final String format,
+			final int numThreads )
+	{
+		this.img = img;
+		this.tileSize = tileSize;
+		this.tileOverlap = tileOverlap;
+		this.format = format;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Writes dir/name.dzi and all tiles into dir/name_files/
+	 *
+	 * @param dir - output directory
+	 * @param name - name of the dataset
+	 * @throws IOException if writing fails
+	 */
+	public void write( final File dir, final String name ) throws IOException
+	{
+		final int w = (int)img.dimension( 0 );
+		final int h = (int)img.dimension( 1 );
+
+		// ceil( log2( max( w, h ) ) )
+		final int maxLevel = 32 - Integer.numberOfLeadingZeros( Math.max( w, h ) - 1 );
+
+		final File filesDir = new File( dir, name + "_files" );
+
+		Level coarser = null;
+		for ( int l = 0; l <= maxLevel; ++l )
+		{
+			final int s = maxLevel - l;
+			coarser = new Level(
+					(int)( ( w + ( 1l << s ) - 1 ) >> s ),
+					(int)( ( h + ( 1l << s ) - 1 ) >> s ),
+					new File( filesDir, Integer.toString( l ) ),
+					coarser );
+		}
+
+		final Level finest = coarser;
+
+		service = Threads.createFixedExecutorService( numThreads );
+
+		try
+		{
+			// tiles of the previous strip are written while the next one is fused
+			List< Future< ? > > previousWrites = new ArrayList<>();
+
+			for ( int y = 0; y < h; y += tileSize )
+			{
+				final List< Future< ? > > writes = new ArrayList<>();
+
+				for ( final int[] row : fuseRows( y, Math.min( h, y + tileSize ) ) )
+					finest.add( row, writes );
+
+				waitFor( previousWrites );
+				previousWrites = writes;
+			}
+
+			waitFor( previousWrites );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+
+		try ( final PrintWriter out = new PrintWriter( new File( dir, name + ".dzi" ), "UTF-8" ) )
+		{
+			out.println( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" );
+			out.println( "<Image TileSize=\"" + tileSize + "\" Overlap=\"" + tileOverlap + "\" Format=\"" + format + "\" xmlns=\"http://schemas.microsoft.com/deepzoom/2008\">" );
+			out.println( "  <Size Width=\"" + w + "\" Height=\"" + h + "\"/>" );
+			out.println( "</Image>" );
+		}
+	}
+
+	/*
+	 * fuses rows [y0, y1) of the image in parallel, one int[] (ARGB) per row
+	 */
+	protected int[][] fuseRows( final int y0, final int y1 ) throws IOException
+	{
+		final int w = (int)img.dimension( 0 );
+		final int[][] rows = new int[ y1 - y0 ][ w ];
+		final int rowsPerTask = Math.max( 1, ( rows.length + numThreads - 1 ) / numThreads );
+
+		final List< Future< ? > > tasks = new ArrayList<>();
+
+		for ( int start = 0; start < rows.length; start += rowsPerTask )
+		{
+			final int from = start;
+			final int to = Math.min( rows.length, start + rowsPerTask );
+
+			tasks.add( service.submit( () ->
+			{
+				final Cursor< ARGBType > c = Views.flatIterable( Views.interval( img, new FinalInterval(
+						new long[] { img.min( 0 ), img.min( 1 ) + y0 + from },
+						new long[] { img.max( 0 ), img.min( 1 ) + y0 + to - 1 } ) ) ).cursor();
+
+				for ( int r = from; r < to; ++r )
+				{
+					final int[] row = rows[ r ];
+
+					for ( int x = 0; x < w; ++x )
+						row[ x ] = c.next().get();
+				}
+			}));
+		}
+
+		waitFor( tasks );
+
+		return rows;
+	}
+
+	protected void writeTile( final List< int[] > rows, final int x0, final int x1, final File file ) throws IOException
+	{
+		final BufferedImage bi = new BufferedImage( x1 - x0, rows.size(), BufferedImage.TYPE_3BYTE_BGR );
+		final byte[] data = ( (DataBufferByte)bi.getRaster().getDataBuffer() ).getData();
+
+		int i = 0;
+
+		for ( final int[] row : rows )
+			for ( int x = x0; x < x1; ++x )
+			{
+				final int argb = row[ x ];
+
+				data[ i++ ] = (byte)argb;
+				data[ i++ ] = (byte)( argb >> 8 );
+				data[ i++ ] = (byte)( argb >> 16 );
+			}
+
+		if ( !ImageIO.write( bi, format, file ) )
+			throw new IOException( "No writer available for format '" + format + "'." );
+	}
+
+	protected static void waitFor( final List< Future< ? > > futures ) throws IOException
+	{
+		try
+		{
+			for ( final Future< ? > future : futures )
+				future.get();
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			throw new IOException( "Failed to write DeepZoom pyramid: " + e, e );
+		}
+	}
+
+	/*
+	 * One level of the pyramid that receives its rows in order, writes a row of tiles as soon as all its rows
+	 * (including the overlap) are present, and passes 2x2 averaged rows on to the next coarser level.
+	 */
+	private class Level
+	{
+		final int width, height;
+		final File dir;
+		final Level coarser;
+
+		// the rows from firstRow on, which are still needed by tiles that were not written yet
+		final ArrayList< int[] > rows = new ArrayList<>();
+		int firstRow = 0;
+		int numRows = 0;
+		int nextTileRow = 0;
+
+		// an even row waiting for the odd row to be averaged with
+		int[] evenRow = null;
+
+		Level( final int width, final int height, final File dir, final Level coarser ) throws IOException
+		{
+			this.width = width;
+			this.height = height;
+			this.dir = dir;
+			this.coarser = coarser;
+
+			if ( !dir.exists() && !dir.mkdirs() )
+				throw new IOException( "Cannot create directory '" + dir.getAbsolutePath() + "'." );
+		}
+
+		void add( final int[] row, final List< Future< ? > > writes )
+		{
+			rows.add( row );
+			++numRows;
+
+			while ( nextTileRow * tileSize < height && numRows >= Math.min( height, ( nextTileRow + 1 ) * tileSize + tileOverlap ) )
+				writeTileRow( writes );
+
+			if ( coarser == null )
+				return;
+
+			if ( evenRow == null )
+			{
+				evenRow = row;
+
+				// the last row of an odd height is averaged with itself
+				if ( numRows == height )
+				{
+					coarser.add( downsample( row, row ), writes );
+					evenRow = null;
+				}
+			}
+			else
+			{
+				coarser.add( downsample( evenRow, row ), writes );
+				evenRow = null;
+			}
+		}
+
+		void writeTileRow( final List< Future< ? > > writes )
+		{
+			final int r = nextTileRow++;
+			final int y0 = Math.max( 0, r * tileSize - tileOverlap );
+			final int y1 = Math.min( height, ( r + 1 ) * tileSize + tileOverlap );
+
+			// the row arrays are not modified anymore, the tasks can safely use them after they left the buffer
+			final List< int[] > tileRows = new ArrayList<>( rows.subList( y0 - firstRow, y1 - firstRow ) );
+
+			for ( int c = 0; c * tileSize < width; ++c )
+			{
+				final int x0 = Math.max( 0, c * tileSize - tileOverlap );
+				final int x1 = Math.min( width, ( c + 1 ) * tileSize + tileOverlap );
+				final File file = new File( dir, c + "_" + r + "." + format );
+
+				writes.add( service.submit( () ->
+				{
+					writeTile( tileRows, x0, x1, file );
+					return null;
+				}));
+			}
+
+			// drop the rows that the next row of tiles does not need
+			final int keepFrom = Math.min( numRows, Math.max( 0, ( r + 1 ) * tileSize - tileOverlap ) );
+
+			if ( keepFrom > firstRow )
+			{
+				rows.subList( 0, keepFrom - firstRow ).clear();
+				firstRow = keepFrom;
+			}
+		}
+
+		int[] downsample( final int[] a, final int[] b )
+		{
+			final int[] out = new int[ coarser.width ];
+
+			for ( int x = 0; x < out.length; ++x )
+			{
+				final int x0 = 2 * x;
+				final int x1 = Math.min( x0 + 1, width - 1 );
+
+				out[ x ] = average( a[ x0 ], a[ x1 ], b[ x0 ], b[ x1 ] );
+			}
+
+			return out;
+		}
+	}
+
+	private static int average( final int p0, final int p1, final int p2, final int p3 )
+	{
+		final int r = ( ( ( p0 >> 16 ) & 0xff ) + ( ( p1 >> 16 ) & 0xff ) + ( ( p2 >> 16 ) & 0xff ) + ( ( p3 >> 16 ) & 0xff ) + 2 ) >> 2;
+		final int g = ( ( ( p0 >> 8 ) & 0xff ) + ( ( p1 >> 8 ) & 0xff ) + ( ( p2 >> 8 ) & 0xff ) + ( ( p3 >> 8 ) & 0xff ) + 2 ) >> 2;
+		final int b = ( ( p0 & 0xff ) + ( p1 & 0xff ) + ( p2 & 0xff ) + ( p3 & 0xff ) + 2 ) >> 2;
+
+		return ARGBType.rgba( r, g, b, 255 );
+	}
+}
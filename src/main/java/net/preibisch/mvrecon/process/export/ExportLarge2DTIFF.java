@@ -56,12 +56,11 @@ import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.Threads;
 import net.preibisch.mvrecon.fiji.plugin.fusion.FusionExportInterface;
 import net.preibisch.mvrecon.fiji.plugin.util.PluginHelper;
-import net.preibisch.mvrecon.process.deconvolution.DeconViews;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
 
 public class ExportLarge2DTIFF implements ImgExport
 {
-	public static ExecutorService service = DeconViews.createExecutorService();
+	public static ExecutorService service = Threads.sharedExecutorService();
 	public static String defaultPath = null;
 
 	final static String noCompression = "No compression";
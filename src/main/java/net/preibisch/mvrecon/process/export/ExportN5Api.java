@@ -70,6 +70,8 @@ import net.preibisch.mvrecon.fiji.plugin.fusion.FusionExportInterface;
 import net.preibisch.mvrecon.fiji.plugin.util.GUIHelper;
 import net.preibisch.mvrecon.fiji.plugin.util.PluginHelper;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 import net.preibisch.mvrecon.process.n5api.N5ApiTools;
 import net.preibisch.mvrecon.process.n5api.N5ApiTools.MultiResolutionLevelInfo;
 import net.preibisch.mvrecon.process.n5api.SpimData2Tools;
@@ -294,9 +296,14 @@ public class ExportN5Api implements ImgExport
 		
 								final RandomAccessibleInterval< T > source = Views.interval( img, block );
 		
+								final Timer.Context timeBlock = Metrics.timer( "export_block_seconds", "stage", "fusion" ).start();
+
 								final RandomAccessibleInterval sourceGridBlock = Views.offsetInterval(source, gridBlock[0], gridBlock[1]);
 								N5Utils.saveBlock(sourceGridBlock, driverVolumeWriter, mrInfo[ 0 ].dataset, gridBlock[2]);
 
+								timeBlock.stop();
+								Metrics.counter( "export_uncompressed_bytes_total" ).inc( N5ApiTools.numBytes( gridBlock[ 1 ], mrInfo[ 0 ].dataType ) );
+
 								IJ.showProgress( progress.incrementAndGet(), grid.size() );
 							}
 							catch (Exception e) 
@@ -335,16 +342,15 @@ public class ExportN5Api implements ImgExport
 
 			time = System.currentTimeMillis();
 
+			// opened once per level, shared by all threads
+			final N5ApiTools.DownsampleContext< ? > context = N5ApiTools.createDownsampleContext( driverVolumeWriter, mrInfo[ s ], mrInfo[ s - 1 ] );
+
 			try
 			{
 				myPool.submit( () -> allBlocks.parallelStream().forEach(
 						gridBlock ->
 						{
-							N5ApiTools.writeDownsampledBlock(
-								driverVolumeWriter,
-								mrInfo[ s ],
-								mrInfo[ s - 1 ],
-								gridBlock );
+							N5ApiTools.writeDownsampledBlock( context, gridBlock );
 
 							IJ.showProgress( progress.incrementAndGet(), allBlocks.size() );
 						})).get();
@@ -24,6 +24,7 @@ package net.preibisch.mvrecon.process.export;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -32,9 +33,7 @@ import java.util.List;
 
 import bdv.util.ConstantRandomAccessible;
 import fiji.util.gui.GenericDialogPlus;
-import gov.nist.isg.archiver.DirectoryArchiver;
 import gov.nist.isg.pyramidio.PartialImageReader;
-import gov.nist.isg.pyramidio.ScalablePyramidBuilder;
 import mpicbg.spim.data.sequence.ViewDescription;
 import mpicbg.spim.data.sequence.ViewId;
 import net.imglib2.Cursor;
@@ -121,14 +120,11 @@ public class OpenSeaDragon implements ImgExport
 		final RandomAccessibleInterval<ARGBType> rgb =
 				Converters.mergeARGB( Views.stack( virtualR, virtualG, virtualB ) , ColorChannelOrder.RGB );
 
-		final OpenSeaDragonImgLib2 osd = new OpenSeaDragonImgLib2( rgb );
-
 		long time = System.currentTimeMillis();
 
 		try
 		{
-			ScalablePyramidBuilder spb = new ScalablePyramidBuilder(tileSize, tileOverlap, exportFormats[ format ], "dzi");
-			spb.buildPyramid(osd, this.dataset, new DirectoryArchiver( this.path ), Threads.numThreads() );
+			new DeepZoomPyramidWriter( rgb, tileSize, tileOverlap, exportFormats[ format ], Threads.numThreads() ).write( this.path, this.dataset );
 		}
 		catch (IOException e)
 		{
@@ -311,14 +307,17 @@ public class OpenSeaDragon implements ImgExport
 			final BufferedImage bi = new BufferedImage( rectangle.width, rectangle.height, BufferedImage.TYPE_3BYTE_BGR );
 			final Cursor<ARGBType> c = Views.flatIterable( block ).cursor();
 
-			for ( int y = 0; y < rectangle.height; ++y )
-				for ( int x = 0; x < rectangle.width; ++x )
-				{
-					//final int rgb = c.next().get();
-					//bi.setRGB(x, y, new Color(ARGBType.red( rgb ),ARGBType.green( rgb ),ARGBType.blue( rgb )).getRGB() );
-					
-					bi.setRGB(x, y, c.next().get() );
-				}
+			// write directly into the BGR raster instead of going through setRGB() & the ColorModel
+			final byte[] data = ( (DataBufferByte)bi.getRaster().getDataBuffer() ).getData();
+
+			for ( int i = 0; i < data.length; i += 3 )
+			{
+				final int rgb = c.next().get();
+
+				data[ i ] = (byte)rgb;
+				data[ i + 1 ] = (byte)( rgb >> 8 );
+				data[ i + 2 ] = (byte)( rgb >> 16 );
+			}
 
 			//displayImage( "test", bi);
 
@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.export;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import ij.VirtualStack;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import net.preibisch.mvrecon.Threads;
+
+/**
+ * A virtual stack for sequential consumers (e.g. the TiffEncoder) that fuses z-slabs ahead of the slice that
+ * is currently requested. Tasks in the shared pool ({@link Threads#sharedExecutorService()}) convert each slab into
+ * primitive plane buffers, the consuming thread only takes them out of the bounded window of pending slabs, so
+ * writing overlaps with fusion on all cores.
+ *
+ * Random access works as well, but is only fast in increasing z-order.
+ */
+public class PipelinedVirtualStack< T extends RealType< T > > extends VirtualStack
+{
+	public static long defaultMaxBytesAhead = 2l * 1024l * 1024l * 1024l;
+	public static int defaultMaxSlabSize = 8;
+
+	final RandomAccessibleInterval< T > img;
+	final int bitDepth, width, height, depth;
+	final int slabSize, slabsAhead;
+
+	// slabs that are fused or being fused, only accessed by the consuming thread
+	final Map< Integer, Future< Object[] > > slabs = new HashMap<>();
+	int nextSlabToSubmit = 0;
+
+	/**
+	 * @param img - the 3d image
+	 * @param bitDepth - 8, 16 or 32 (ByteProcessor, ShortProcessor or FloatProcessor)
+	 * @param numThreads - number of slabs that should be fused in parallel (determines the slab size)
+	 * @param maxBytesAhead - upper bound for the memory of fused planes that were not consumed yet
+	 */
+	public PipelinedVirtualStack(
+			final RandomAccessibleInterval< T > img,
+			final int bitDepth,
+			final int numThreads,
+			final long maxBytesAhead )
+	{
+		super( (int)img.dimension( 0 ), (int)img.dimension( 1 ), null, null );
+
+		if ( bitDepth != 8 && bitDepth != 16 && bitDepth != 32 )
+			throw new RuntimeException( "Unsupported bit depth: " + bitDepth );
+
+		this.img = img;
+		this.bitDepth = bitDepth;
+		this.width = (int)img.dimension( 0 );
+		this.height = (int)img.dimension( 1 );
+		this.depth = (int)img.dimension( 2 );
+
+		final long planeBytes = (long)width * height * ( bitDepth / 8 );
+		final int planesAhead = (int)Math.max( 1, Math.min( depth, maxBytesAhead / Math.max( 1, planeBytes ) ) );
+
+		this.slabSize = Math.max( 1, Math.min( defaultMaxSlabSize, planesAhead / numThreads ) );
+		this.slabsAhead = Math.max( 1, planesAhead / slabSize );
+
+		setBitDepth( bitDepth );
+	}
+
+	public PipelinedVirtualStack( final RandomAccessibleInterval< T > img, final int bitDepth )
+	{
+		this( img, bitDepth, Threads.numThreads(), defaultMaxBytesAhead );
+	}
+
+	@Override
+	public int getSize() { return depth; }
+
+	@Override
+	public String getSliceLabel( final int n ) { return null; }
+
+	@Override
+	public ImageProcessor getProcessor( final int n )
+	{
+		final int z = n - 1;
+		final int slab = z / slabSize;
+
+		// slabs before the current one will not be requested again (sequential access)
+		slabs.keySet().removeIf( s -> s < slab );
+
+		if ( slab < nextSlabToSubmit && !slabs.containsKey( slab ) )
+			nextSlabToSubmit = slab; // going backwards, restart the window here
+
+		while ( nextSlabToSubmit <= slab + slabsAhead && nextSlabToSubmit * slabSize < depth )
+		{
+			final int s = nextSlabToSubmit++;
+
+			if ( !slabs.containsKey( s ) )
+				slabs.put( s, Threads.sharedExecutorService().submit( () -> fuseSlab( s ) ) );
+		}
+
+		final Object[] planes;
+
+		try
+		{
+			final Future< Object[] > future = slabs.get( slab );
+			planes = Threads.managedBlock( future::get );
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			throw new RuntimeException( "Failed to fuse slice " + n + ": " + e, e );
+		}
+
+		final Object pixels = planes[ z - slab * slabSize ];
+
+		if ( z == depth - 1 )
+			close();
+
+		if ( bitDepth == 8 )
+			return new ByteProcessor( width, height, (byte[])pixels, null );
+		else if ( bitDepth == 16 )
+			return new ShortProcessor( width, height, (short[])pixels, null );
+		else
+			return new FloatProcessor( width, height, (float[])pixels );
+	}
+
+	/**
+	 * Cancels pending slabs, called automatically once the last slice was requested (slabs are submitted again if
+	 * further slices are requested). The shared pool is not shut down.
+	 */
+	public void close()
+	{
+		slabs.values().forEach( f -> f.cancel( true ) );
+		slabs.clear();
+	}
+
+	protected Object[] fuseSlab( final int slab )
+	{
+		final int z0 = slab * slabSize;
+		final int z1 = Math.min( depth, z0 + slabSize );
+		final Object[] planes = new Object[ z1 - z0 ];
+		final int numPx = width * height;
+
+		for ( int z = z0; z < z1; ++z )
+		{
+			final Cursor< T > c = Views.flatIterable( Views.hyperSlice( img, 2, img.min( 2 ) + z ) ).cursor();
+
+			if ( bitDepth == 8 )
+			{
+				final byte[] p = new byte[ numPx ];
+				for ( int i = 0; i < numPx; ++i )
+					p[ i ] = (byte)(int)c.next().getRealFloat();
+				planes[ z - z0 ] = p;
+			}
+			else if ( bitDepth == 16 )
+			{
+				final short[] p = new short[ numPx ];
+				for ( int i = 0; i < numPx; ++i )
+					p[ i ] = (short)(int)c.next().getRealFloat();
+				planes[ z - z0 ] = p;
+			}
+			else
+			{
+				final float[] p = new float[ numPx ];
+				for ( int i = 0; i < numPx; ++i )
+					p[ i ] = c.next().getRealFloat();
+				planes[ z - z0 ] = p;
+			}
+		}
+
+		return planes;
+	}
+}
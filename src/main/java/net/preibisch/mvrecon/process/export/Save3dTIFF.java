@@ -28,6 +28,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import fiji.util.gui.GenericDialogPlus;
 import ij.ImagePlus;
@@ -117,12 +119,13 @@ public class Save3dTIFF implements ImgExport, Calibrateable
 
 		IOFunctions.println( new Date( System.currentTimeMillis() ) + ": Saving file " + fileName );
 
-		final boolean success;
+		// slices are fused ahead by all threads while the TiffEncoder writes (and compresses) on this thread
+		final PipelinedVirtualStack< T > pipelinedStack = imp.getStackSize() > 1 ? new PipelinedVirtualStack<>( img, imp.getBitDepth() ) : null;
 
-		if ( compress )
-			success = new FileSaver( imp ).saveAsZip( fileName );
-		else
-			success = saveTiffStack( imp, fileName ); //new FileSaver( imp ).saveAsTiffStack( fileName );
+		final boolean success = saveTiffStack( imp, pipelinedStack, fileName, compress ); //new FileSaver( imp ).saveAsTiffStack( fileName );
+
+		if ( pipelinedStack != null )
+			pipelinedStack.close();
 
 		if ( success )
 			IOFunctions.println( new Date( System.currentTimeMillis() ) + ": Saved file " + fileName );
@@ -137,17 +140,42 @@ public class Save3dTIFF implements ImgExport, Calibrateable
 	 * slice labels, which takes forever in this case.
 	 */
 	public static boolean saveTiffStack( final ImagePlus imp, final String path )
+	{
+		return saveTiffStack( imp, null, path, false );
+	}
+
+	/*
+	 * Same as above, optionally writing the slices of another virtual stack (e.g. a {@link PipelinedVirtualStack})
+	 * and optionally into a ZIP file (like FileSaver.saveAsZip, which also traverses all slice labels).
+	 */
+	public static boolean saveTiffStack( final ImagePlus imp, final VirtualStack stack, final String path, final boolean zip )
 	{
 		FileInfo fi = imp.getFileInfo();
 		boolean virtualStack = imp.getStack().isVirtual();
-		if (virtualStack)
+		if ( stack != null )
+			fi.virtualStack = stack;
+		else if (virtualStack)
 			fi.virtualStack = (VirtualStack)imp.getStack();
 		fi.info = imp.getInfoProperty();
 		fi.description = new FileSaver( imp ).getDescriptionString();
 		DataOutputStream out = null;
 		try {
 			TiffEncoder file = new TiffEncoder(fi);
-			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+			if ( zip )
+			{
+				final ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( path ) );
+				String name = new File( path ).getName();
+				if ( name.endsWith( ".zip" ) )
+					name = name.substring( 0, name.length() - 4 );
+				if ( !name.endsWith( ".tif" ) )
+					name = name + ".tif";
+				zos.putNextEntry( new ZipEntry( name ) );
+				out = new DataOutputStream(new BufferedOutputStream(zos, 4096 * 1024));
+			}
+			else
+			{
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+			}
 			file.write(out);
 			out.close();
 		} catch (IOException e) {
@@ -876,7 +876,6 @@ public class FusionTools
 	public static < T extends Type< T > > void copyImg( final RandomAccessibleInterval< T > input, final RandomAccessibleInterval< T > output, final ExecutorService service, final boolean showProgress )
 	{
 		final long numPixels = Views.iterable( input ).size();
-		final int nThreads = Threads.numThreads();
 		final Vector< ImagePortion > portions = divideIntoPortions( numPixels );
 		final ArrayList< Callable< Void > > tasks = new ArrayList< Callable< Void > >();
 
@@ -902,10 +901,7 @@ public class FusionTools
 		if ( showProgress )
 			IJ.showProgress( 0.01 );
 
-		if ( service == null )
-			execTasks( tasks, nThreads, "copy image" );
-		else
-			execTasks( tasks, service, "copy image" );
+		execTasks( tasks, service == null ? Threads.sharedExecutorService() : service, "copy image" );
 	}
 
 	public static final void execTasks( final ArrayList< Callable< Void > > tasks, final int nThreads, final String jobDescription )
@@ -979,10 +975,7 @@ public class FusionTools
 
 	public static < T extends RealType< T > > float[] minMax( final RandomAccessibleInterval< T > img )
 	{
-		final ExecutorService taskExecutor = Executors.newFixedThreadPool( Threads.numThreads() );
-		final float[] minmax = minMax(img, taskExecutor);
-		taskExecutor.shutdown();
-		return minmax;
+		return minMax( img, Threads.sharedExecutorService() );
 	}
 
 	public static < T extends RealType< T > > float[] minMax( final RandomAccessibleInterval< T > img, final ExecutorService service )
@@ -1175,12 +1168,7 @@ public class FusionTools
 		final Vector< ImagePortion > portions = divideIntoPortions( iterable.size() );
 
 		// set up executor service
-		final ExecutorService taskExecutor;
-
-		if ( service == null )
-			taskExecutor = Executors.newFixedThreadPool( Threads.numThreads() );
-		else
-			taskExecutor = service;
+		final ExecutorService taskExecutor = service == null ? Threads.sharedExecutorService() : service;
 
 		final ArrayList< Callable< String > > tasks = new ArrayList< Callable< String > >();
 
@@ -1219,10 +1207,6 @@ public class FusionTools
 			return false;
 		}
 
-		// was locally created
-		if ( service == null )
-			taskExecutor.shutdown();
-
 		return true;
 	}
 
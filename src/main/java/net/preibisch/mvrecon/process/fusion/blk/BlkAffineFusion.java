@@ -181,7 +181,7 @@ public class BlkAffineFusion
 		}
 
 		final BlockSupplier< T > blocks = convertToOutputType(
-				floatBlocks,
+				Metered.of( floatBlocks ),
 				converter, type )
 				.tile( 32 );
 		return BlockAlgoUtils.cellImg( blocks, fusionInterval.dimensionsAsLongArray(), blockSize );
@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.fusion.blk;
+
+import net.imglib2.algorithm.blocks.AbstractBlockSupplier;
+import net.imglib2.algorithm.blocks.BlockSupplier;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.preibisch.mvrecon.process.metrics.Counter;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
+
+/**
+ * Records the time spent fusing each requested block and the number of fused pixels.
+ */
+class Metered
+{
+	private static final Timer timer = Metrics.timer( "fusion_tile_seconds", "method", "blk" );
+	private static final Counter pixels = Metrics.counter( "fusion_pixels_total", "method", "blk" );
+
+	public static BlockSupplier< FloatType > of( final BlockSupplier< FloatType > blocks )
+	{
+		return new MeteredBlockSupplier( blocks );
+	}
+
+	private static class MeteredBlockSupplier extends AbstractBlockSupplier< FloatType >
+	{
+		private final BlockSupplier< FloatType > blocks;
+
+		MeteredBlockSupplier( final BlockSupplier< FloatType > blocks )
+		{
+			this.blocks = blocks;
+		}
+
+		@Override
+		public void copy( final long[] srcPos, final Object dest, final int[] size )
+		{
+			final Timer.Context time = timer.start();
+			blocks.copy( srcPos, dest, size );
+			time.stop();
+
+			pixels.inc( Intervals.numElements( size ) );
+		}
+
+		@Override
+		public BlockSupplier< FloatType > independentCopy()
+		{
+			return new MeteredBlockSupplier( blocks.independentCopy() );
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return blocks.numDimensions();
+		}
+
+		@Override
+		public FloatType getType()
+		{
+			return blocks.getType();
+		}
+	}
+}
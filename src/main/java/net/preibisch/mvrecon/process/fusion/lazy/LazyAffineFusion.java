@@ -56,6 +56,8 @@ import net.preibisch.mvrecon.fiji.spimdata.XmlIoSpimData2;
 import net.preibisch.mvrecon.process.deconvolution.DeconViews;
 import net.preibisch.mvrecon.process.fusion.FusionTools;
 import net.preibisch.mvrecon.process.fusion.transformed.TransformVirtual;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 
 /**
  * BigStitcher Affine Fusion in blocks
@@ -124,6 +126,8 @@ public class LazyAffineFusion<T extends RealType<T> & NativeType<T>> implements
 	@Override
 	public void accept( final RandomAccessibleInterval<T> output )
 	{
+		final Timer.Context time = Metrics.timer( "fusion_block_seconds", "method", "lazy" ).start();
+
 		// in world coordinates
 		final Interval targetBlock = Intervals.translate( new FinalInterval( output ), globalMin );
 
@@ -140,6 +144,9 @@ public class LazyAffineFusion<T extends RealType<T> & NativeType<T>> implements
 						intensityAdjustments ); // intensity adjustments
 
 		finish( fused, output, converter, type );
+
+		time.stop();
+		Metrics.counter( "fusion_pixels_total", "method", "lazy" ).inc( Intervals.numElements( output ) );
 	}
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -60,6 +60,7 @@ import net.imglib2.view.Views;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.plugin.fusion.FusionGUI.FusionType;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.CorrespondenceTable;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.CorrespondingInterestPoints;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoints;
@@ -272,10 +273,10 @@ public class NonRigidTools
 				{
 					final InterestPoints ipList = viewInterestPoints.get( viewId ).getInterestPointList( label );
 
-					final List< CorrespondingInterestPoints > cipList = ipList.getCorrespondingInterestPointsCopy();
-					IOFunctions.println( new Date( System.currentTimeMillis() ) + ": There are " + cipList.size() + " corresponding interest points in total (to all views)." );
+					final CorrespondenceTable cipTable = ipList.getCorrespondenceTable();
+					IOFunctions.println( new Date( System.currentTimeMillis() ) + ": There are " + cipTable.numLinks() + " corresponding interest points in total (to all views)." );
 
-					final ArrayList< CorrespondingIP > aipsTmp = NonRigidTools.assembleAllCorrespondingPoints( viewId, ipList, cipList, viewsToUse, viewInterestPoints );
+					final ArrayList< CorrespondingIP > aipsTmp = NonRigidTools.assembleAllCorrespondingPoints( viewId, ipList, cipTable, viewsToUse, viewInterestPoints );
 
 					if ( aipsTmp == null )
 						IOFunctions.println( new Date( System.currentTimeMillis() ) + ": FAILED to assemble pairs of corresponding interest points for label " + label + " in view " + Group.pvid( viewId ) );
@@ -863,6 +864,16 @@ public class NonRigidTools
 			final List< ? extends CorrespondingInterestPoints > cipList,
 			final Collection< ? extends ViewId > viewsToUse,
 			final Map< ? extends ViewId, ? extends ViewInterestPointLists > interestPointLists )
+	{
+		return assembleAllCorrespondingPoints( viewId, ipList, CorrespondenceTable.fromList( cipList ), viewsToUse, interestPointLists );
+	}
+
+	public static ArrayList< CorrespondingIP > assembleAllCorrespondingPoints(
+			final ViewId viewId,
+			final InterestPoints ipList,
+			final CorrespondenceTable cipTable,
+			final Collection< ? extends ViewId > viewsToUse,
+			final Map< ? extends ViewId, ? extends ViewInterestPointLists > interestPointLists )
 	{
 		// result
 		final ArrayList< CorrespondingIP > ipPairs = new ArrayList<>();
@@ -876,43 +887,37 @@ public class NonRigidTools
 		for ( final InterestPoint ip : ipList.getInterestPointsCopy() )
 			ips.put( ip.getId(), ip );
 
-		// sort all corresponding interest points into a HashMap
-		final HashMap< ViewId, List< IPL > > loadedIps = new HashMap<>();
+		// the interest points of each corresponding (ViewId, label), loaded without reloading all the time
+		final int numPartners = cipTable.numPartners();
+		final boolean[] usePartner = new boolean[ numPartners ];
+		final IPL[] loadedIps = new IPL[ numPartners ];
+
+		// only processing those views that are requested
+		for ( int p = 0; p < numPartners; ++p )
+			usePartner[ p ] = views.contains( cipTable.partnerViewId( p ) );
 
-		for ( final CorrespondingInterestPoints cip : cipList )
+		for ( int link = 0; link < cipTable.numLinks(); ++link )
 		{
+			final int partner = cipTable.linkPartner( link );
+
+			if ( !usePartner[ partner ] )
+				continue;
+
 			// local interest point
-			final InterestPoint ip = ips.get( cip.getDetectionId() );
+			final int id = cipTable.linkDetectionId( link );
+			final InterestPoint ip = ips.get( id );
 
 			if ( ip == null )
 			{
-				IOFunctions.println( new Date( System.currentTimeMillis() ) + ": Instance for id=" + ip + " of local interest point does not exist. Stopping." );
+				IOFunctions.println( new Date( System.currentTimeMillis() ) + ": Instance for id=" + id + " of local interest point does not exist. Stopping." );
 				return null;
 			}
 
-			// get corresponding interest point instance without reloading all the time
-			final ViewId corrViewId = cip.getCorrespondingViewId();
-			final String corrLabel = cip.getCorrespodingLabel();
-
-			// only processing those views that are requested
-			if ( !views.contains( corrViewId ) )
-				continue;
-
-			final List< IPL > ipls;
-
-			// were there ever any interest points for this corresponding ViewId loaded?
-			if ( loadedIps.containsKey( corrViewId )  )
-			{
-				ipls = loadedIps.get( corrViewId );
-			}
-			else
-			{
-				ipls = new ArrayList<>();
-				loadedIps.put( corrViewId, ipls );
-			}
+			final ViewId corrViewId = cipTable.partnerViewId( partner );
+			final String corrLabel = cipTable.partnerLabel( partner );
 
 			// were the interest points for this corresponding label of this corresponding ViewId loaded?
-			IPL ipl = getIPL( ipls, corrLabel );
+			IPL ipl = loadedIps[ partner ];
 
 			if ( ipl == null )
 			{
@@ -939,12 +944,10 @@ public class NonRigidTools
 				for ( final InterestPoint corrIp : corrIpList.getInterestPointsCopy() )
 					corrIps.put( corrIp.getId(), corrIp );
 
-				ipl = new IPL( corrLabel, corrIps );
-
-				ipls.add( ipl );
+				ipl = loadedIps[ partner ] = new IPL( corrLabel, corrIps );
 			}
 
-			final int corrId = cip.getCorrespondingDetectionId();
+			final int corrId = cipTable.linkCorrespondingId( link );
 			final InterestPoint corrIp = ipl.map.get( corrId );
 
 			if ( corrIp == null )
@@ -977,13 +980,4 @@ public class NonRigidTools
 		return counts;
 	}
 
-	protected static IPL getIPL( final Collection< IPL > ipls, final String label )
-	{
-		for ( final IPL ipl : ipls )
-			if ( ipl.label.equals( label ) )
-				return ipl;
-
-		return null;
-	}
-
 }
@@ -22,31 +22,29 @@
  */
 package net.preibisch.mvrecon.process.fusion.transformed.nonrigid.grid;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 
-import mpicbg.models.AffineModel3D;
 import mpicbg.models.IllDefinedDataPointsException;
-import mpicbg.models.MovingLeastSquaresTransform2;
 import mpicbg.models.NotEnoughDataPointsException;
-import mpicbg.models.Point;
-import mpicbg.models.PointMatch;
 import net.imglib2.Interval;
 import net.imglib2.Localizable;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealInterval;
 import net.imglib2.RealRandomAccess;
 import net.imglib2.RealRandomAccessible;
-import net.imglib2.img.list.ListImg;
-import net.imglib2.img.list.ListLocalizingCursor;
 import net.preibisch.legacy.io.IOFunctions;
+import net.preibisch.mvrecon.Threads;
 import net.preibisch.mvrecon.fiji.plugin.fusion.FusionGUI;
 import net.preibisch.mvrecon.process.fusion.FusionTools;
 import net.preibisch.mvrecon.process.fusion.transformed.nonrigid.NonrigidIP;
 
 public class ModelGrid implements RealRandomAccessible< NumericAffineModel3D >
 {
+	// number of closest points (and their max distance) used to fit each control point of a non-virtual grid, <= 0 means all points
+	public static int defaultNumNeighbors = 100;
+	public static double defaultMaxDistance = Double.POSITIVE_INFINITY;
+
 	final int n;
 	final long[] dim, min, controlPointDistance;
 	final double alpha;
@@ -59,6 +57,8 @@ public class ModelGrid implements RealRandomAccessible< NumericAffineModel3D >
 			final Interval boundingBox,
 			final Collection< ? extends NonrigidIP > ips,
 			final double alpha,
+			final int numNeighbors,
+			final double maxDistance,
 			final boolean virtual ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
 	{
 		this.n = boundingBox.numDimensions();
@@ -96,48 +96,32 @@ public class ModelGrid implements RealRandomAccessible< NumericAffineModel3D >
 		}
 		else
 		{
-			final MovingLeastSquaresTransform2 transform = new MovingLeastSquaresTransform2();
-			final ArrayList< PointMatch > matches = new ArrayList<>();
-	
-			for ( final NonrigidIP ip : ips )
-				matches.add( new PointMatch( new Point( ip.getTargetW().clone() ), new Point( ip.getL().clone() ) ) );
-	
-			final AffineModel3D model = new AffineModel3D();
-	
-			transform.setAlpha( alpha );
-			transform.setModel( model );
-			transform.setMatches( matches );
-	
-	
-			// iterate over all control points
-			this.grid = new ListImg< NumericAffineModel3D >( dim, new NumericAffineModel3D( new AffineModel3D() ) );
-	
-			final ListLocalizingCursor< NumericAffineModel3D > it = ( (ListImg< NumericAffineModel3D >)grid ).localizingCursor();
-			final double[] pos = new double[ n ];
-	
-			long time = System.currentTimeMillis();
-	
-			while ( it.hasNext() )
-			{
-				it.fwd();
-	
-				//System.out.print( Util.printCoordinates( it ) + " >>> " );
-	
-				getWorldCoordinates( pos, it, min, controlPointDistance, n );
-	
-				//System.out.print( Util.printCoordinates( pos ) );
-	
-				transform.applyInPlace( pos ); // also modifies the model
-	
-				it.set( new NumericAffineModel3D( model.copy() ) );
-	
-				//System.out.println( " >>> " + Util.printCoordinates( pos ) + ": " + model );
-			}
-	
+			final long time = System.currentTimeMillis();
+
+			this.grid = ModelGridTools.computeGrid(
+					this.dim,
+					this.min,
+					this.controlPointDistance,
+					ips,
+					this.alpha,
+					numNeighbors,
+					maxDistance,
+					Threads.sharedExecutorService() );
+
 			IOFunctions.println( new Date( System.currentTimeMillis() ) + ": computed grid [" + (System.currentTimeMillis() - time ) + " ms]." );
 		}
 	}
 
+	public ModelGrid(
+			final long[] controlPointDistance,
+			final Interval boundingBox,
+			final Collection< ? extends NonrigidIP > ips,
+			final double alpha,
+			final boolean virtual ) throws NotEnoughDataPointsException, IllDefinedDataPointsException
+	{
+		this( controlPointDistance, boundingBox, ips, alpha, defaultNumNeighbors, defaultMaxDistance, virtual );
+	}
+
 	public double getAlpha() { return alpha; }
 
 	protected static final void getWorldCoordinates( final double[] pos, final Localizable l, final long[] min, final long[] controlPointDistance, final int n )
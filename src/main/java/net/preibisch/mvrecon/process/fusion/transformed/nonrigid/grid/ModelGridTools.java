@@ -22,7 +22,236 @@
  */
 package net.preibisch.mvrecon.process.fusion.transformed.nonrigid.grid;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mpicbg.models.AffineModel3D;
+import mpicbg.models.IllDefinedDataPointsException;
+import mpicbg.models.NotEnoughDataPointsException;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.preibisch.legacy.io.IOFunctions;
+import net.preibisch.mvrecon.process.fusion.FusionTools;
+import net.preibisch.mvrecon.process.fusion.ImagePortion;
+import net.preibisch.mvrecon.process.fusion.transformed.nonrigid.NonrigidIP;
+
 public class ModelGridTools
 {
+	// squared distance used if a control point coincides with an interest point (the weight would be infinite)
+	public static double minSquareDistance = 1e-8;
+
+	/**
+	 * Computes the moving least squares affine models of all nodes of a grid in parallel. In contrast to
+	 * MovingLeastSquaresTransform2, every node is only fit to the numNeighbors closest interest points
+	 * (found using a k-d tree) that are within maxDistance. As the weights decay with 1/d^(2*alpha), the
+	 * result is very close to using all points, but the cost per node no longer grows with the number of points.
+	 *
+	 * The 12 parameters of each node (as in AffineModel3D.toArray()) are stored in one primitive double[].
+	 *
+	 * @param dim - number of control points in each dimension
+	 * @param min - world coordinate of the first control point
+	 * @param controlPointDistance - distance between control points in world coordinates
+	 * @param ips - the corresponding points (target world coordinates &gt; local coordinates)
+	 * @param alpha - the MLS alpha
+	 * @param numNeighbors - maximal number of points per node (&lt;= 0 means all points)
+	 * @param maxDistance - maximal distance of points to a node, closer points are always used if there are less than 4 (Double.POSITIVE_INFINITY means unlimited)
+	 * @param service - the ExecutorService
+	 * @return the grid of affine models
+	 * @throws NotEnoughDataPointsException - if there are less than 4 points
+	 */
+	public static ArrayImg< NumericAffineModel3D, DoubleArray > computeGrid(
+			final long[] dim,
+			final long[] min,
+			final long[] controlPointDistance,
+			final Collection< ? extends NonrigidIP > ips,
+			final double alpha,
+			final int numNeighbors,
+			final double maxDistance,
+			final ExecutorService service ) throws NotEnoughDataPointsException
+	{
+		final int n = dim.length;
+		final int minNumPoints = new AffineModel3D().getMinNumMatches();
+
+		if ( ips.size() < minNumPoints )
+			throw new NotEnoughDataPointsException( ips.size() + " data points are not enough to compute a non-rigid grid, at least " + minNumPoints + " data points required." );
+
+		// p (target world) and q (local) of all points, indexed by the payload of the k-d tree
+		final double[][] p = new double[ ips.size() ][];
+		final double[][] q = new double[ ips.size() ][];
+		final ArrayList< Integer > indices = new ArrayList<>( ips.size() );
+		final ArrayList< RealPoint > positions = new ArrayList<>( ips.size() );
+
+		int i = 0;
+		for ( final NonrigidIP ip : ips )
+		{
+			p[ i ] = ip.getTargetW().clone();
+			q[ i ] = ip.getL().clone();
+			indices.add( i );
+			positions.add( new RealPoint( p[ i ] ) );
+			++i;
+		}
+
+		final KDTree< Integer > tree = new KDTree<>( indices, positions );
+		final int k = numNeighbors <= 0 ? p.length : Math.max( minNumPoints, Math.min( p.length, numNeighbors ) );
+		final double maxSquareDistance = maxDistance * maxDistance;
+
+		final long numNodes = Intervals.numElements( dim );
+
+		if ( numNodes * 12 > Integer.MAX_VALUE )
+			throw new RuntimeException( "Non-rigid grid of " + numNodes + " control points is too large, increase the control point distance." );
+
+		final double[] data = new double[ (int)numNodes * 12 ];
+		final AtomicLong numFailed = new AtomicLong();
+
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>();
+
+		for ( final ImagePortion portion : FusionTools.divideIntoPortions( numNodes ) )
+		{
+			tasks.add( () ->
+			{
+				final LocalFit fit = new LocalFit( tree, p, q, alpha, k, maxSquareDistance, minNumPoints );
+				final long[] l = new long[ n ];
+				final double[] pos = new double[ n ];
+				final double[] tmp = new double[ 12 ];
+
+				final int start = (int)portion.getStartPosition();
+				final int end = start + (int)portion.getLoopSize();
+
+				for ( int node = start; node < end; ++node )
+				{
+					IntervalIndexer.indexToPosition( node, dim, l );
+
+					for ( int d = 0; d < n; ++d )
+						pos[ d ] = l[ d ] * controlPointDistance[ d ] + min[ d ];
+
+					if ( !fit.fit( pos ) )
+						numFailed.incrementAndGet();
+
+					fit.model.toArray( tmp );
+					System.arraycopy( tmp, 0, data, node * 12, 12 );
+				}
+
+				return null;
+			});
+		}
+
+		FusionTools.execTasks( tasks, service, "compute non-rigid grid" );
+
+		if ( numFailed.get() > 0 )
+			IOFunctions.println( "WARNING: " + numFailed.get() + " of " + numNodes + " control points could not be fit, using identity transform for them." );
+
+		final ArrayImg< NumericAffineModel3D, DoubleArray > grid = new ArrayImg<>( new DoubleArray( data ), dim.clone(), new Fraction( 12, 1 ) );
+		grid.setLinkedType( new NumericAffineModel3D( grid ) );
+
+		return grid;
+	}
+
+	/*
+	 * Fits the weighted affine model of one node, not thread-safe (one instance per thread)
+	 */
+	protected static class LocalFit
+	{
+		final double[][] p, q;
+		final double alpha, maxSquareDistance;
+		final int k, minNumPoints;
+		final KDTree< Integer > tree;
+
+		final AffineModel3D model = new AffineModel3D();
+		final List< KNearestNeighborSearchOnKDTree< Integer > > searches = new ArrayList<>();
+
+		public LocalFit(
+				final KDTree< Integer > tree,
+				final double[][] p,
+				final double[][] q,
+				final double alpha,
+				final int k,
+				final double maxSquareDistance,
+				final int minNumPoints )
+		{
+			this.tree = tree;
+			this.p = p;
+			this.q = q;
+			this.alpha = alpha;
+			this.k = k;
+			this.maxSquareDistance = maxSquareDistance;
+			this.minNumPoints = minNumPoints;
+		}
+
+		/*
+		 * @return false if no model could be fit even using all points (the model is the identity then)
+		 */
+		public boolean fit( final double[] pos )
+		{
+			int numPoints = k;
+			double maxSqDist = maxSquareDistance;
+
+			// if the closest points are degenerate (e.g. coplanar), use more of them
+			for ( int level = 0; ; ++level )
+			{
+				if ( level == searches.size() )
+					searches.add( new KNearestNeighborSearchOnKDTree<>( tree, numPoints ) );
+
+				if ( fit( pos, searches.get( level ), numPoints, maxSqDist ) )
+					return true;
+
+				if ( numPoints == p.length && maxSqDist == Double.POSITIVE_INFINITY )
+				{
+					model.set( new AffineModel3D() );
+					return false;
+				}
+
+				numPoints = Math.min( p.length, numPoints * 2 );
+				maxSqDist = Double.POSITIVE_INFINITY;
+			}
+		}
+
+		protected boolean fit( final double[] pos, final KNearestNeighborSearchOnKDTree< Integer > search, final int numPoints, final double maxSqDist )
+		{
+			search.search( RealPoint.wrap( pos ) );
+
+			// the points are sorted by distance, keep the ones within maxDistance (but at least minNumPoints)
+			int m = numPoints;
+			while ( m > minNumPoints && search.getSquareDistance( m - 1 ) > maxSqDist )
+				--m;
+
+			final int n = pos.length;
+			final double[][] ps = new double[ n ][ m ];
+			final double[][] qs = new double[ n ][ m ];
+			final double[] w = new double[ m ];
+
+			for ( int j = 0; j < m; ++j )
+			{
+				final int index = search.getSampler( j ).get();
+
+				for ( int d = 0; d < n; ++d )
+				{
+					ps[ d ][ j ] = p[ index ][ d ];
+					qs[ d ][ j ] = q[ index ][ d ];
+				}
+
+				// same weighting as MovingLeastSquaresTransform2
+				w[ j ] = 1.0 / Math.pow( Math.max( minSquareDistance, search.getSquareDistance( j ) ), alpha );
+			}
 
+			try
+			{
+				model.fit( ps, qs, w );
+				return true;
+			}
+			catch ( NotEnoughDataPointsException | IllDefinedDataPointsException e )
+			{
+				return false;
+			}
+		}
+	}
 }
@@ -141,7 +141,7 @@ public class DoG
 				if ( !vd.isPresent() )
 					continue;
 
-				final ExecutorService service = Threads.createFixedExecutorService( Threads.numThreads() );
+				final ExecutorService service = Threads.sharedExecutorService();
 
 				// downsampling is not virtual!
 				@SuppressWarnings({"rawtypes" })
@@ -170,8 +170,6 @@ public class DoG
 							dog.accurateCUDA,
 							dog.percentGPUMem );
 
-				service.shutdown();
-
 				if ( dog.limitDetections )
 					ips = InterestPointTools.limitList( dog.maxDetections, dog.maxDetectionsTypeIndex, ips );
 
@@ -81,6 +81,8 @@ import net.preibisch.mvrecon.process.fusion.ImagePortion;
 import net.preibisch.mvrecon.process.interestpointdetection.Localization;
 import net.preibisch.mvrecon.process.interestpointdetection.methods.lazygauss.LazyGauss;
 import net.preibisch.mvrecon.process.interestpointdetection.methods.lazygauss.LazyWeightedGauss;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 import util.ImgLib2Tools;
 
 public class DoGImgLib2
@@ -173,6 +175,8 @@ public class DoGImgLib2
 			final boolean accurateCUDA,
 			final double percentGPUMem )
 	{
+		final Timer.Context timeDoG = Metrics.timer( "detection_seconds", "stage", "dog" ).start();
+
 		float initialSigma = (float)sigma;
 		
 		final float minPeakValue = (float)threshold;
@@ -257,12 +261,16 @@ public class DoGImgLib2
 		if ( !silent )
 			IOFunctions.println("(" + new Date(System.currentTimeMillis()) + "): Detecting peaks." );
 
+		// the Gaussian convolutions are lazy, they are computed while finding the peaks
+		final Timer.Context timePeaks = Metrics.timer( "detection_seconds", "stage", "findPeaks" ).start();
 		final ArrayList< SimplePeak > peaks = findPeaks( dogCached, maskFloat == null ? null : Views.interval( maskFloat, interval ), minInitialPeakValue, service );
+		timePeaks.stop();
 
 		if ( !silent )
 			IOFunctions.println("(" + new Date(System.currentTimeMillis()) + "): Found " + peaks.size() + " initial peaks (before refinement)." );
 
 		final ArrayList< InterestPoint > finalPeaks;
+		final Timer.Context timeLocalization = Metrics.timer( "detection_seconds", "stage", "localization" ).start();
 
 		if ( localization == 0 )
 		{
@@ -295,6 +303,10 @@ public class DoGImgLib2
 			finalPeaks = Localization.computeGaussLocalization( peaks, null, sigma, findMin, findMax, minPeakValue, true );
 		}
 		
+		timeLocalization.stop();
+		timeDoG.stop();
+		Metrics.histogram( "detection_points" ).record( finalPeaks.size() );
+
 		if ( !silent )
 			IOFunctions.println("(" + new Date(System.currentTimeMillis()) + "): Found " + finalPeaks.size() + " final peaks." );
 
@@ -31,7 +31,6 @@ import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.algorithm.gauss3.Gauss3;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.basictypeaccess.AccessFlags;
 import net.imglib2.img.display.imagej.ImageJFunctions;
@@ -77,7 +76,7 @@ public class LazyGauss<T extends RealType<T> & NativeType<T>> implements Consume
 	{
 		try
 		{
-			Gauss3.gauss(sigmas, source, Views.translate( output, globalMin ), 1 );
+			SeparableFloatGauss.gauss( sigmas, source, Views.translate( output, globalMin ) );
 		}
 		catch (final IncompatibleTypeException e)
 		{
@@ -96,8 +96,8 @@ public class LazyWeightedGauss<T extends RealType<T> & NativeType<T>> implements
 			final RandomAccessibleInterval< T > sourceTmp = Views.translate( new ArrayImgFactory<>(type).create( output ), min );
 			final RandomAccessibleInterval< T > weightTmp = Views.translate( new ArrayImgFactory<>(type).create( output ), min );
 
-			Gauss3.gauss(sigmas, weightedSource, sourceTmp, 1 );
-			Gauss3.gauss(sigmas, weight, weightTmp, 1 );
+			SeparableFloatGauss.gauss( sigmas, weightedSource, sourceTmp );
+			SeparableFloatGauss.gauss( sigmas, weight, weightTmp );
 
 			/*
 			final ExecutorService service = Executors.newFixedThreadPool( 1 );
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.interestpointdetection.methods.lazygauss;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.gauss3.Gauss3;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Separable Gaussian convolution of a (small) block on primitive float arrays, same kernels as {@link Gauss3}.
+ *
+ * The block plus the kernel overhang is copied into one float[], which is then convolved dimension by dimension.
+ * For every dimension the convolution is written as a sequence of loops of the form
+ * out[ t ] += k * ( in[ a + t ] + in[ b + t ] ) over contiguous memory (whole rows/planes at a time for
+ * dimensions &gt; 0), which the JIT compiles to SIMD instructions. No imglib2 accesses happen in the inner loops.
+ */
+public class SeparableFloatGauss
+{
+	/**
+	 * Use the primitive kernel for FloatType blocks in LazyGauss and LazyWeightedGauss (otherwise Gauss3)
+	 */
+	public static boolean usePrimitiveKernel = true;
+
+	/**
+	 * @param type - the type of the blocks
+	 * @return whether the primitive kernel will be used for this type
+	 */
+	public static boolean isSupported( final RealType< ? > type )
+	{
+		return usePrimitiveKernel && FloatType.class.isInstance( type );
+	}
+
+	/**
+	 * Convolves target with a Gaussian, using Gauss3 if the primitive kernel is not supported for this type
+	 *
+	 * @param sigmas - sigma per dimension
+	 * @param source - the input, must be defined around target plus the kernel size
+	 * @param target - the output block
+	 * @param <S> input type
+	 * @param <T> output type
+	 * @throws IncompatibleTypeException if Gauss3 cannot handle the types
+	 */
+	public static < S extends RealType< S >, T extends RealType< T > & NativeType< T > > void gauss(
+			final double[] sigmas,
+			final RandomAccessible< S > source,
+			final RandomAccessibleInterval< T > target ) throws IncompatibleTypeException
+	{
+		if ( !isSupported( target.getType() ) || !gaussPrimitive( sigmas, source, target ) )
+			Gauss3.gauss( sigmas, source, target, 1 );
+	}
+
+	/**
+	 * @param sigmas - sigma per dimension
+	 * @param source - the input, must be defined around target plus the kernel size
+	 * @param target - the output block
+	 * @param <S> input type
+	 * @param <T> output type
+	 * @return false if the block is too large for a single array (nothing was computed)
+	 */
+	public static < S extends RealType< S >, T extends RealType< T > > boolean gaussPrimitive(
+			final double[] sigmas,
+			final RandomAccessible< S > source,
+			final RandomAccessibleInterval< T > target )
+	{
+		final int n = target.numDimensions();
+		final double[][] halfkernels = Gauss3.halfkernels( sigmas );
+
+		final float[][] kernels = new float[ n ][];
+		int[] dim = new int[ n ];
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		long size = 1;
+
+		for ( int d = 0; d < n; ++d )
+		{
+			kernels[ d ] = new float[ halfkernels[ d ].length ];
+			for ( int i = 0; i < kernels[ d ].length; ++i )
+				kernels[ d ][ i ] = (float)halfkernels[ d ][ i ];
+
+			final int r = kernels[ d ].length - 1;
+
+			min[ d ] = target.min( d ) - r;
+			max[ d ] = target.max( d ) + r;
+			dim[ d ] = (int)( max[ d ] - min[ d ] + 1 );
+			size *= dim[ d ];
+		}
+
+		if ( size > Integer.MAX_VALUE - 8 )
+			return false;
+
+		float[] in = new float[ (int)size ];
+
+		final Cursor< S > c = Views.flatIterable( Views.interval( source, new FinalInterval( min, max ) ) ).cursor();
+
+		for ( int i = 0; i < in.length; ++i )
+			in[ i ] = c.next().getRealFloat();
+
+		for ( int d = 0; d < n; ++d )
+		{
+			final int[] outDim = dim.clone();
+			outDim[ d ] -= 2 * ( kernels[ d ].length - 1 );
+
+			final float[] out = new float[ (int)( in.length / dim[ d ] * outDim[ d ] ) ];
+			convolve( in, dim, out, outDim, d, kernels[ d ] );
+
+			in = out;
+			dim = outDim;
+		}
+
+		final Cursor< T > t = Views.flatIterable( target ).cursor();
+
+		for ( int i = 0; i < in.length; ++i )
+			t.next().setReal( in[ i ] );
+
+		return true;
+	}
+
+	/**
+	 * Convolves in (dimensions inDim) along dimension d with a symmetric half-kernel into out (dimensions outDim,
+	 * which is inDim shrunk by 2 * ( kernel.length - 1 ) in dimension d).
+	 *
+	 * @param in - input
+	 * @param inDim - input dimensions
+	 * @param out - output
+	 * @param outDim - output dimensions
+	 * @param d - the dimension
+	 * @param kernel - the half-kernel, kernel[ 0 ] is the center
+	 */
+	public static void convolve( final float[] in, final int[] inDim, final float[] out, final int[] outDim, final int d, final float[] kernel )
+	{
+		// all dimensions except d are identical for in and out
+		int inner = 1;
+		for ( int e = 0; e < d; ++e )
+			inner *= inDim[ e ];
+
+		int outer = 1;
+		for ( int e = d + 1; e < inDim.length; ++e )
+			outer *= inDim[ e ];
+
+		final int r = kernel.length - 1;
+		final int inBlock = inDim[ d ] * inner;
+		final int outBlock = outDim[ d ] * inner;
+		final float k0 = kernel[ 0 ];
+
+		for ( int o = 0; o < outer; ++o )
+		{
+			final int outOffset = o * outBlock;
+			final int center = o * inBlock + r * inner;
+
+			for ( int t = 0; t < outBlock; ++t )
+				out[ outOffset + t ] = k0 * in[ center + t ];
+
+			for ( int j = 1; j <= r; ++j )
+			{
+				final float k = kernel[ j ];
+				final int minus = center - j * inner;
+				final int plus = center + j * inner;
+
+				for ( int t = 0; t < outBlock; ++t )
+					out[ outOffset + t ] += k * ( in[ minus + t ] + in[ plus + t ] );
+			}
+		}
+	}
+}
@@ -48,6 +48,8 @@ import net.preibisch.mvrecon.process.interestpointregistration.TransformationToo
 import net.preibisch.mvrecon.process.interestpointregistration.global.convergence.ConvergenceStrategy;
 import net.preibisch.mvrecon.process.interestpointregistration.global.pointmatchcreating.PointMatchCreator;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 
 /**
  * 
@@ -56,6 +58,9 @@ import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constell
  */
 public class GlobalOpt
 {
+	// buckets (in px) of the average error recorded after each optimization
+	public static double[] errorBuckets = new double[] { 0.1, 0.25, 0.5, 1, 2, 5, 10, 50, 100 };
+
 	public static < M extends Model< M > > HashMap< ViewId, M > computeModels(
 			final M model,
 			final PointMatchCreator pmc,
@@ -101,7 +106,10 @@ public class GlobalOpt
 		// now perform the global optimization
 		try 
 		{
+			final Timer.Context timePreAlign = Metrics.timer( "global_optimization_seconds", "stage", "preAlign" ).start();
 			int unaligned = tc.preAlign().size();
+			timePreAlign.stop();
+
 			if ( unaligned > 0 )
 				IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): pre-aligned all tiles but " + unaligned );
 			else
@@ -109,7 +117,10 @@ public class GlobalOpt
 
 			System.out.println( "new code ... ");
 
+			final Timer.Context timeOptimize = Metrics.timer( "global_optimization_seconds", "stage", "optimize" ).start();
 			tc.optimizeSilently(new ErrorStatistic( cs.getMaxPlateauWidth() + 1 ), cs.getMaxError(), cs.getMaxIterations(), cs.getMaxPlateauWidth() );
+			timeOptimize.stop();
+			Metrics.histogram( "global_optimization_error", errorBuckets ).record( tc.getError() );
 			//tc.optimize( cs.getMaxError(), cs.getMaxIterations(), cs.getMaxPlateauWidth() );
 
 			IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): Global optimization of " + 
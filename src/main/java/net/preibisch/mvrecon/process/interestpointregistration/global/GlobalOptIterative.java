@@ -43,6 +43,8 @@ import net.preibisch.mvrecon.process.interestpointregistration.global.convergenc
 import net.preibisch.mvrecon.process.interestpointregistration.global.linkremoval.LinkRemovalStrategy;
 import net.preibisch.mvrecon.process.interestpointregistration.global.pointmatchcreating.PointMatchCreator;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 
 public class GlobalOptIterative
 {
@@ -101,13 +103,19 @@ public class GlobalOptIterative
 		{
 			try 
 			{
+				final Timer.Context timePreAlign = Metrics.timer( "global_optimization_seconds", "stage", "preAlign" ).start();
 				int unaligned = tc.preAlign().size();
+				timePreAlign.stop();
+
 				if ( unaligned > 0 )
 					IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): pre-aligned all tiles but " + unaligned );
 				else
 					IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): prealigned all tiles" );
 
+				final Timer.Context timeOptimize = Metrics.timer( "global_optimization_seconds", "stage", "optimize" ).start();
 				tc.optimizeSilently(new ErrorStatistic( ics.getMaxPlateauWidth() + 1 ), ics.getMaxError(), ics.getMaxIterations(), ics.getMaxPlateauWidth() );
+				timeOptimize.stop();
+				Metrics.histogram( "global_optimization_error", GlobalOpt.errorBuckets ).record( tc.getError() );
 				/*TileUtil.optimizeConcurrently(
 						new ErrorStatistic( ics.getMaxPlateauWidth() + 1 ),  ics.getMaxError(), ics.getMaxIterations(), ics.getMaxPlateauWidth(), 1.0f,
 						tc, tc.getTiles(), tc.getFixedTiles(), Runtime.getRuntime().availableProcessors());*/
@@ -0,0 +1,345 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.interestpointregistration.global;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import mpicbg.models.ErrorStatistic;
+import mpicbg.models.IllDefinedDataPointsException;
+import mpicbg.models.Model;
+import mpicbg.models.NotEnoughDataPointsException;
+import mpicbg.models.Tile;
+import mpicbg.models.TileConfiguration;
+import mpicbg.spim.data.sequence.ViewId;
+import net.imglib2.util.Pair;
+import net.preibisch.legacy.io.IOFunctions;
+import net.preibisch.mvrecon.process.interestpointregistration.global.convergence.ConvergenceStrategy;
+import net.preibisch.mvrecon.process.interestpointregistration.global.pointmatchcreating.strong.InterestPointMatchCreator;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.PairwiseResult;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
+
+/**
+ * Global optimization of long time-lapses in windows of consecutive timepoints instead of one big tile configuration.
+ *
+ * Each window contains the views of windowSize consecutive timepoints. The windows are solved starting with the window
+ * of the first fixed view (or the first window if no view is fixed), first forward and then backward in time, so the
+ * gauge is defined by the fixed views. Every pair that links a view of a window to a view of a window solved before is
+ * solved in this window too. Those views form the overlap with the previous windows: their tiles are fixed to the
+ * models already computed, so the window is registered consistently with everything before it. Once a view is part of
+ * a solved tile configuration its model is final and can be streamed out, views that are not (yet) connected in their
+ * own window stay free until a later window links them.
+ *
+ * Only the tiles and point matches of one window are held by the solver at any time, and the solve time is linear in
+ * the number of timepoints for a fixed window size and pair range (e.g. AllToAllRange or ReferenceTimepoint).
+ */
+public class GlobalOptSlidingWindow
+{
+	public static int defaultWindowSize = 20;
+
+	/**
+	 * @param model - the transformation model
+	 * @param pairs - the pairwise results (inliers are used)
+	 * @param labelMap - the weights of the labels per view
+	 * @param cs - the convergence strategy of each window
+	 * @param fixedViews - views that are fixed
+	 * @param groupsIn - groups of views that are transformed together
+	 * @param windowSize - number of timepoints solved per window
+	 * @param finished - is called for every view as soon as its model is final, can be null
+	 * @param <M> model type
+	 * @return the tiles of all views (without point matches), or null if there were no connected tiles
+	 */
+	public static < M extends Model< M > > HashMap< ViewId, Tile< M > > computeTiles(
+			final M model,
+			final List< ? extends Pair< ? extends Pair< ViewId, ViewId >, ? extends PairwiseResult< ? > > > pairs,
+			final Map< ViewId, ? extends Map< String, Double > > labelMap,
+			final ConvergenceStrategy cs,
+			final Collection< ViewId > fixedViews,
+			final Collection< Group< ViewId > > groupsIn,
+			final int windowSize,
+			final BiConsumer< ViewId, M > finished )
+	{
+		final ArrayList< Group< ViewId > > groups = Group.mergeAllOverlappingGroups( groupsIn );
+		Group.removeEmptyGroups( groups );
+
+		// all views and the window each one is solved in
+		final HashSet< ViewId > allViews = new HashSet<>();
+
+		for ( final Pair< ? extends Pair< ViewId, ViewId >, ? extends PairwiseResult< ? > > pair : pairs )
+		{
+			allViews.add( pair.getA().getA() );
+			allViews.add( pair.getA().getB() );
+		}
+
+		for ( final Group< ViewId > group : groups )
+			allViews.addAll( group.getViews() );
+
+		final TreeSet< Integer > timepoints = new TreeSet<>();
+		allViews.forEach( viewId -> timepoints.add( viewId.getTimePointId() ) );
+
+		final HashMap< Integer, Integer > tpToWindow = new HashMap<>();
+		int index = 0;
+		for ( final int tp : timepoints )
+			tpToWindow.put( tp, index++ / Math.max( 1, windowSize ) );
+
+		final int numWindows = timepoints.size() == 0 ? 0 : tpToWindow.get( timepoints.last() ) + 1;
+
+		// start with the window of the first fixed view and grow outward from it, first forward then backward in time
+		final int anchor = fixedViews.stream().filter( allViews::contains ).mapToInt( viewId -> window( viewId, tpToWindow ) ).min().orElse( 0 );
+		final int[] order = new int[ numWindows ];
+		final int[] rank = new int[ numWindows ];
+
+		index = 0;
+		for ( int w = anchor; w < numWindows; ++w )
+			order[ index++ ] = w;
+		for ( int w = anchor - 1; w >= 0; --w )
+			order[ index++ ] = w;
+		for ( int k = 0; k < numWindows; ++k )
+			rank[ order[ k ] ] = k;
+
+		// every pair is solved in the window of the view that is solved later
+		final ArrayList< ArrayList< Pair< ? extends Pair< ViewId, ViewId >, ? extends PairwiseResult< ? > > > > windowPairs = new ArrayList<>();
+		final ArrayList< ArrayList< ViewId > > windowViews = new ArrayList<>();
+
+		for ( int w = 0; w < numWindows; ++w )
+		{
+			windowPairs.add( new ArrayList<>() );
+			windowViews.add( new ArrayList<>() );
+		}
+
+		for ( final Pair< ? extends Pair< ViewId, ViewId >, ? extends PairwiseResult< ? > > pair : pairs )
+		{
+			final int wA = window( pair.getA().getA(), tpToWindow );
+			final int wB = window( pair.getA().getB(), tpToWindow );
+
+			windowPairs.get( rank[ wA ] >= rank[ wB ] ? wA : wB ).add( pair );
+		}
+
+		for ( final ViewId viewId : allViews )
+			windowViews.get( window( viewId, tpToWindow ) ).add( viewId );
+
+		final HashMap< ViewId, M > finalModels = new HashMap<>();
+		final ArrayList< ViewId > failedViews = new ArrayList<>();
+		boolean anyConnected = false;
+
+		// views that were not connected in the window(s) solved so far, they are solved again once a window links them
+		final HashSet< ViewId > pending = new HashSet<>();
+
+		for ( int k = 0; k < numWindows; ++k )
+		{
+			final int w = order[ k ];
+			final ArrayList< ViewId > newViews = windowViews.get( w );
+			Collections.sort( newViews );
+
+			// views of earlier solved windows that are linked to this window, their models are known and fixed
+			final HashSet< ViewId > boundary = new HashSet<>();
+
+			for ( final Pair< ? extends Pair< ViewId, ViewId >, ? extends PairwiseResult< ? > > pair : windowPairs.get( w ) )
+			{
+				if ( finalModels.containsKey( pair.getA().getA() ) )
+					boundary.add( pair.getA().getA() );
+
+				if ( finalModels.containsKey( pair.getA().getB() ) )
+					boundary.add( pair.getA().getB() );
+			}
+
+			// groups are restricted to the views solved so far, final views of earlier windows fix the group
+			final HashSet< ViewId > newViewSet = new HashSet<>( newViews );
+			final ArrayList< Group< ViewId > > groupsWindow = new ArrayList<>();
+
+			for ( final Group< ViewId > group : groups )
+			{
+				if ( !group.getViews().stream().anyMatch( newViewSet::contains ) )
+					continue;
+
+				final ArrayList< ViewId > groupWindow = new ArrayList<>();
+
+				for ( final ViewId viewId : group.getViews() )
+				{
+					if ( finalModels.containsKey( viewId ) )
+						boundary.add( viewId );
+
+					if ( rank[ window( viewId, tpToWindow ) ] <= k )
+						groupWindow.add( viewId );
+				}
+
+				groupsWindow.add( new Group<>( groupWindow ) );
+			}
+
+			final HashSet< ViewId > fixedWindow = new HashSet<>( boundary );
+
+			for ( final ViewId viewId : newViews )
+				if ( fixedViews.contains( viewId ) )
+					fixedWindow.add( viewId );
+
+			IOFunctions.println(
+					"(" + new Date( System.currentTimeMillis() ) + "): Sliding window " + ( w + 1 ) + "/" + numWindows + ": " +
+					newViews.size() + " views, " + boundary.size() + " fixed views of previous windows, " + windowPairs.get( w ).size() + " pairs." );
+
+			final Pair< HashMap< ViewId, Tile< M > >, ArrayList< Group< ViewId > > > globalOpt =
+					GlobalOpt.initGlobalOpt( model, new InterestPointMatchCreator( windowPairs.get( w ), labelMap ), fixedWindow, groupsWindow );
+
+			final HashMap< ViewId, Tile< M > > map = globalOpt.getA();
+
+			// the overlap with the previous windows is fixed to the models computed there
+			for ( final ViewId viewId : boundary )
+			{
+				final Tile< M > tile = map.get( viewId );
+
+				if ( tile != null )
+				{
+					tile.getModel().set( finalModels.get( viewId ) );
+					tile.apply();
+				}
+			}
+
+			final ArrayList< ViewId > views = new ArrayList<>( map.keySet() );
+			Collections.sort( views );
+
+			final TileConfiguration tc = GlobalOpt.addAndFixTiles( views, map, fixedWindow, globalOpt.getB() );
+			boolean failed = false;
+
+			if ( tc.getTiles().size() > 0 )
+			{
+				anyConnected = true;
+				failed = !solve( tc, cs );
+			}
+
+			// only views that are part of the solved configuration are final, the others wait for a later window
+			final ArrayList< ViewId > solvedViews = new ArrayList<>();
+
+			for ( final ViewId viewId : views )
+			{
+				if ( finalModels.containsKey( viewId ) || !( newViewSet.contains( viewId ) || pending.contains( viewId ) ) )
+					continue;
+
+				final Tile< M > tile = map.get( viewId );
+
+				if ( tc.getTiles().contains( tile ) )
+				{
+					final M m = tile.getModel().copy();
+
+					finalModels.put( viewId, m );
+					pending.remove( viewId );
+					solvedViews.add( viewId );
+
+					if ( finished != null )
+						finished.accept( viewId, m );
+				}
+			}
+
+			for ( final ViewId viewId : newViews )
+				if ( !finalModels.containsKey( viewId ) )
+					pending.add( viewId );
+
+			if ( failed )
+			{
+				// like GlobalOpt.computeTiles() the models are still used, but later windows are fixed to them
+				IOFunctions.println(
+						"(" + new Date( System.currentTimeMillis() ) + "): WARNING: Sliding window " + ( w + 1 ) + "/" + numWindows +
+						" failed, the models of these views may be wrong and later windows are aligned to them: " +
+						solvedViews.stream().map( Group::pvid ).collect( Collectors.joining( ", " ) ) );
+
+				failedViews.addAll( solvedViews );
+			}
+
+			// the solver state of this window is not needed anymore
+			for ( final Pair< ? extends Pair< ViewId, ViewId >, ? extends PairwiseResult< ? > > pair : windowPairs.get( w ) )
+				pair.getB().setFlippedMatches( new ArrayList<>() );
+
+			windowPairs.set( w, null );
+		}
+
+		// views that are not connected in any window keep the initial model (as in GlobalOpt.computeTiles())
+		for ( final ViewId viewId : pending )
+		{
+			final M m = model.copy();
+
+			finalModels.put( viewId, m );
+
+			if ( finished != null )
+				finished.accept( viewId, m );
+		}
+
+		if ( !anyConnected )
+		{
+			IOFunctions.println( "There are no connected tiles, cannot do an optimization. Quitting." );
+			return null;
+		}
+
+		if ( failedViews.size() > 0 )
+			IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): WARNING: Global optimization failed for " + failedViews.size() + " views, see above." );
+
+		final HashMap< ViewId, Tile< M > > tiles = new HashMap<>();
+		finalModels.forEach( ( viewId, m ) -> tiles.put( viewId, new Tile< M >( m ) ) );
+
+		return tiles;
+	}
+
+	/*
+	 * @return false if the optimization failed
+	 */
+	protected static boolean solve( final TileConfiguration tc, final ConvergenceStrategy cs )
+	{
+		try
+		{
+			final Timer.Context timePreAlign = Metrics.timer( "global_optimization_seconds", "stage", "preAlign" ).start();
+			tc.preAlign();
+			timePreAlign.stop();
+
+			final Timer.Context timeOptimize = Metrics.timer( "global_optimization_seconds", "stage", "optimize" ).start();
+			tc.optimizeSilently( new ErrorStatistic( cs.getMaxPlateauWidth() + 1 ), cs.getMaxError(), cs.getMaxIterations(), cs.getMaxPlateauWidth() );
+			timeOptimize.stop();
+			Metrics.histogram( "global_optimization_error", GlobalOpt.errorBuckets ).record( tc.getError() );
+
+			IOFunctions.println(
+					"(" + new Date( System.currentTimeMillis() ) + "):    " + tc.getTiles().size() + " view-tiles, Avg Error: " + tc.getError() +
+					"px, Min Error: " + tc.getMinError() + "px, Max Error: " + tc.getMaxError() + "px" );
+
+			return true;
+		}
+		catch ( NotEnoughDataPointsException | IllDefinedDataPointsException e )
+		{
+			IOFunctions.println( "Global optimization of window failed: " + e );
+			e.printStackTrace();
+
+			return false;
+		}
+	}
+
+	private static int window( final ViewId viewId, final Map< Integer, Integer > tpToWindow )
+	{
+		return tpToWindow.get( viewId.getTimePointId() );
+	}
+}
@@ -0,0 +1,64 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.interestpointregistration.pairwise;
+
+import java.util.List;
+
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
+
+/**
+ * A pairwise matching that is split into a per-view part (e.g. k-d trees and point descriptors) and the actual
+ * comparison of two views, so {@link PairwiseMatchingScheduler} computes the per-view part only once for all
+ * pairs a view takes part in.
+ *
+ * @param <I> interest point type
+ * @param <C> the per-view data
+ */
+public interface CachingMatcherPairwise< I extends InterestPoint, C > extends MatcherPairwise< I >
+{
+	/**
+	 * Computes everything that is needed to match one view.
+	 *
+	 * NOTE: the result is used concurrently by all pairs the view takes part in, so it must not be modified by
+	 * {@link #matchPrepared(Object, Object)}.
+	 *
+	 * @param list interest point list of the view
+	 * @return the per-view data
+	 */
+	public C prepare( final List< I > list );
+
+	/**
+	 * Computes a pairwise matching between two prepared views.
+	 *
+	 * @param a prepared view A
+	 * @param b prepared view B
+	 * @return matched pairwise results
+	 */
+	public PairwiseResult< I > matchPrepared( final C a, final C b );
+
+	@Override
+	public default PairwiseResult< I > match( final List< I > listAIn, final List< I > listBIn )
+	{
+		return matchPrepared( prepare( listAIn ), prepare( listBIn ) );
+	}
+}
@@ -0,0 +1,353 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.interestpointregistration.pairwise;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import mpicbg.spim.data.registration.ViewRegistration;
+import mpicbg.spim.data.sequence.ViewId;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import net.preibisch.legacy.io.IOFunctions;
+import net.preibisch.legacy.mpicbg.PointMatchGeneric;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.CorrespondingInterestPoints;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoints;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.ViewInterestPointLists;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.MatcherPairwiseTools.MatchingTask;
+
+/**
+ * Pairwise matching that only recomputes the pairs whose inputs changed since their stored correspondences were computed.
+ *
+ * For every matched pair of (view, label) a fingerprint of the interest points of both sides, their registrations and the
+ * matching parameters is stored next to the corresponding interest points. Pairs with an unchanged fingerprint are not
+ * matched again, their {@link PairwiseResult} is reconstructed from the stored corresponding interest points instead, so
+ * they take part in the global optimization just like the recomputed ones.
+ *
+ * Call {@link #updateFingerprints()} once the registrations computed from the matches are stored, so the next run compares
+ * against the registrations that the correspondences are consistent with.
+ */
+public class IncrementalPairwiseMatching
+{
+	final Map< ViewId, ViewInterestPointLists > interestpointLists;
+	final Map< ViewId, ViewRegistration > registrations;
+	final long parameterHash;
+
+	// state of the last call to computePairs(), the registration part of the fingerprints is computed on demand
+	final List< MatchingTask< ViewId > > lastTasks = new ArrayList<>();
+	final Map< String, Long > pointHashes = new HashMap<>();
+	final Map< ViewId, Set< String > > lastLabels = new HashMap<>();
+
+	/**
+	 * @param interestpointLists - the interest points and stored correspondences of all views
+	 * @param registrations - the current registrations of all views
+	 * @param parameters - a description of all parameters the matching depends on
+	 */
+	public IncrementalPairwiseMatching(
+			final Map< ViewId, ViewInterestPointLists > interestpointLists,
+			final Map< ViewId, ViewRegistration > registrations,
+			final String parameters )
+	{
+		this.interestpointLists = interestpointLists;
+		this.registrations = registrations;
+
+		long h = 0;
+		for ( int i = 0; i < parameters.length(); ++i )
+			h = combine( h, parameters.charAt( i ) );
+
+		this.parameterHash = h;
+	}
+
+	/**
+	 * Matches all pairs whose fingerprint changed and replaces the corresponding interest points of the views accordingly,
+	 * the stored correspondences of unchanged pairs are kept, correspondences to views that are not matched anymore are removed
+	 * (as {@link MatcherPairwiseTools#clearCorrespondences(Collection, Map, Map)} would).
+	 *
+	 * @param pairs - the pairs of views to match
+	 * @param views - all views of the current subset
+	 * @param interestpoints - the (transformed) interest points used for matching, per view and label
+	 * @param labelMap - the labels of each view
+	 * @param matcher - the pairwise matching
+	 * @param matchAcrossLabels - match different labels
+	 * @param exec - the ExecutorService or null
+	 * @return the results of all pairs, recomputed and reconstructed from stored correspondences
+	 */
+	public List< Pair< Pair< ViewId, ViewId >, PairwiseResult< InterestPoint > > > computePairs(
+			final List< Pair< ViewId, ViewId > > pairs,
+			final Collection< ViewId > views,
+			final Map< ViewId, ? extends Map< String, ? extends List< InterestPoint > > > interestpoints,
+			final Map< ViewId, HashMap< String, Double > > labelMap,
+			final MatcherPairwise< InterestPoint > matcher,
+			final boolean matchAcrossLabels,
+			final ExecutorService exec )
+	{
+		lastTasks.clear();
+		pointHashes.clear();
+		lastLabels.clear();
+
+		for ( final ViewId view : views )
+			lastLabels.put( view, new HashSet<>( labelMap.get( view ).keySet() ) );
+
+		lastTasks.addAll( MatcherPairwiseTools.getTasksList( pairs, interestpoints, matchAcrossLabels ) );
+
+		for ( final MatchingTask< ViewId > task : lastTasks )
+		{
+			pointHashes.computeIfAbsent( key( task.vA, task.labelA ), k -> hashInterestPoints( task.vA, task.labelA, interestpoints.get( task.vA ).get( task.labelA ) ) );
+			pointHashes.computeIfAbsent( key( task.vB, task.labelB ), k -> hashInterestPoints( task.vB, task.labelB, interestpoints.get( task.vB ).get( task.labelB ) ) );
+		}
+
+		// decide which pairs can be reused, both sides need to have the same fingerprint stored
+		final Map< String, Map< String, String > > storedFingerprints = new HashMap<>();
+
+		for ( final ViewId view : views )
+			for ( final String label : lastLabels.get( view ) )
+				storedFingerprints.put( key( view, label ), interestPoints( view, label ).getCorrespondenceFingerprintsCopy() );
+
+		final List< MatchingTask< ViewId > > reuse = new ArrayList<>();
+		final List< MatchingTask< ViewId > > recompute = new ArrayList<>();
+
+		for ( final MatchingTask< ViewId > task : lastTasks )
+		{
+			final String fingerprint = fingerprint( task );
+			final Map< String, String > storedA = storedFingerprints.get( key( task.vA, task.labelA ) );
+			final Map< String, String > storedB = storedFingerprints.get( key( task.vB, task.labelB ) );
+
+			if ( storedA != null && storedB != null &&
+					fingerprint.equals( storedA.get( key( task.vB, task.labelB ) ) ) &&
+					fingerprint.equals( storedB.get( key( task.vA, task.labelA ) ) ) )
+				reuse.add( task );
+			else
+				recompute.add( task );
+		}
+
+		IOFunctions.println( "Incremental matching: reusing " + reuse.size() + " unchanged pairs, recomputing " + recompute.size() + " of " + lastTasks.size() + " pairs." );
+
+		// only keep the correspondences of the unchanged pairs, grouped by the other (view, label)
+		final Map< String, Set< String > > reusedPartners = new HashMap<>();
+
+		for ( final MatchingTask< ViewId > task : reuse )
+		{
+			reusedPartners.computeIfAbsent( key( task.vA, task.labelA ), k -> new HashSet<>() ).add( key( task.vB, task.labelB ) );
+			reusedPartners.computeIfAbsent( key( task.vB, task.labelB ), k -> new HashSet<>() ).add( key( task.vA, task.labelA ) );
+		}
+
+		final Map< String, Map< String, List< CorrespondingInterestPoints > > > kept = new HashMap<>();
+
+		for ( final ViewId view : views )
+			for ( final String label : lastLabels.get( view ) )
+			{
+				final InterestPoints list = interestPoints( view, label );
+				final Set< String > partners = reusedPartners.getOrDefault( key( view, label ), new HashSet<>() );
+				final Map< String, List< CorrespondingInterestPoints > > perPartner = new HashMap<>();
+				final ArrayList< CorrespondingInterestPoints > keep = new ArrayList<>();
+
+				for ( final CorrespondingInterestPoints c : list.getCorrespondingInterestPointsCopy() )
+				{
+					final String partner = key( c.getCorrespondingViewId(), c.getCorrespodingLabel() );
+
+					if ( partners.contains( partner ) )
+					{
+						keep.add( c );
+						perPartner.computeIfAbsent( partner, k -> new ArrayList<>() ).add( c );
+					}
+				}
+
+				list.setCorrespondingInterestPoints( keep );
+				kept.put( key( view, label ), perPartner );
+			}
+
+		// match the changed pairs
+		final List< Pair< Pair< ViewId, ViewId >, PairwiseResult< InterestPoint > > > result = new ArrayList<>();
+
+		if ( recompute.size() > 0 )
+			result.addAll( MatcherPairwiseTools.computeTasks( recompute, interestpoints, matcher, exec ) );
+
+		for ( final Pair< Pair< ViewId, ViewId >, PairwiseResult< InterestPoint > > p : result )
+		{
+			final ViewId vA = p.getA().getA();
+			final ViewId vB = p.getA().getB();
+
+			final String labelA = p.getB().getLabelA();
+			final String labelB = p.getB().getLabelB();
+
+			MatcherPairwiseTools.addCorrespondences(
+					p.getB().getInliers(), vA, vB, labelA, labelB, interestPoints( vA, labelA ), interestPoints( vB, labelB ) );
+		}
+
+		// reconstruct the unchanged pairs
+		for ( final MatchingTask< ViewId > task : reuse )
+		{
+			final List< CorrespondingInterestPoints > corr =
+					kept.get( key( task.vA, task.labelA ) ).getOrDefault( key( task.vB, task.labelB ), new ArrayList<>() );
+
+			result.add( new ValuePair<>(
+					task.getPair(),
+					reconstruct( task, corr, interestpoints.get( task.vA ).get( task.labelA ), interestpoints.get( task.vB ).get( task.labelB ) ) ) );
+		}
+
+		// setting the correspondences reset the fingerprints
+		updateFingerprints();
+
+		return result;
+	}
+
+	/**
+	 * Stores the fingerprints of all pairs of the last call to computePairs() using the current registrations
+	 */
+	public void updateFingerprints()
+	{
+		final Map< String, Map< String, String > > fingerprints = new HashMap<>();
+
+		for ( final ViewId view : lastLabels.keySet() )
+			for ( final String label : lastLabels.get( view ) )
+				fingerprints.put( key( view, label ), new HashMap<>() );
+
+		for ( final MatchingTask< ViewId > task : lastTasks )
+		{
+			final String fingerprint = fingerprint( task );
+
+			fingerprints.computeIfAbsent( key( task.vA, task.labelA ), k -> new HashMap<>() ).put( key( task.vB, task.labelB ), fingerprint );
+			fingerprints.computeIfAbsent( key( task.vB, task.labelB ), k -> new HashMap<>() ).put( key( task.vA, task.labelA ), fingerprint );
+		}
+
+		for ( final ViewId view : lastLabels.keySet() )
+			for ( final String label : lastLabels.get( view ) )
+				interestPoints( view, label ).setCorrespondenceFingerprints( fingerprints.get( key( view, label ) ) );
+	}
+
+	protected PairwiseResult< InterestPoint > reconstruct(
+			final MatchingTask< ViewId > task,
+			final List< CorrespondingInterestPoints > corr,
+			final List< InterestPoint > listA,
+			final List< InterestPoint > listB )
+	{
+		final HashMap< Integer, InterestPoint > idsA = new HashMap<>();
+		final HashMap< Integer, InterestPoint > idsB = new HashMap<>();
+
+		for ( final InterestPoint ip : listA )
+			idsA.put( ip.getId(), ip );
+
+		for ( final InterestPoint ip : listB )
+			idsB.put( ip.getId(), ip );
+
+		final ArrayList< PointMatchGeneric< InterestPoint > > inliers = new ArrayList<>();
+
+		for ( final CorrespondingInterestPoints c : corr )
+		{
+			final InterestPoint ipA = idsA.get( c.getDetectionId() );
+			final InterestPoint ipB = idsB.get( c.getCorrespondingDetectionId() );
+
+			if ( ipA != null && ipB != null )
+				inliers.add( new PointMatchGeneric<>( ipA, ipB ) );
+		}
+
+		// the candidates are not stored, only the inliers
+		final PairwiseResult< InterestPoint > pwr = new PairwiseResult<>( true );
+		pwr.setLabelA( task.labelA );
+		pwr.setLabelB( task.labelB );
+		pwr.setCandidates( new ArrayList<>( inliers ) );
+		pwr.setInliers( inliers, Double.NaN );
+		pwr.setResult( System.currentTimeMillis(), "Reused " + inliers.size() + " stored corresponding interest points (unchanged)." );
+		MatcherPairwiseTools.assignLoggingDescriptions( task.getPair(), pwr );
+
+		return pwr;
+	}
+
+	/*
+	 * the same fingerprint for A<>B and B<>A
+	 */
+	protected String fingerprint( final MatchingTask< ViewId > task )
+	{
+		final long hashA = combine( pointHashes.get( key( task.vA, task.labelA ) ), hashRegistration( registrations.get( task.vA ) ) );
+		final long hashB = combine( pointHashes.get( key( task.vB, task.labelB ) ), hashRegistration( registrations.get( task.vB ) ) );
+
+		return Long.toHexString( combine( combine( parameterHash, Math.min( hashA, hashB ) ), Math.max( hashA, hashB ) ) );
+	}
+
+	/*
+	 * all interest points as detected (ids and local coordinates) and the ids of those used for matching (e.g. overlapping only)
+	 */
+	protected long hashInterestPoints( final ViewId view, final String label, final List< InterestPoint > used )
+	{
+		long h = combine( 0, label.hashCode() );
+
+		for ( final InterestPoint ip : interestPoints( view, label ).getInterestPointsCopy() )
+		{
+			h = combine( h, ip.getId() );
+
+			for ( final double l : ip.getL() )
+				h = combine( h, Double.doubleToLongBits( l ) );
+		}
+
+		h = combine( h, used.size() );
+
+		for ( final InterestPoint ip : used )
+			h = combine( h, ip.getId() );
+
+		return h;
+	}
+
+	protected static long hashRegistration( final ViewRegistration vr )
+	{
+		long h = 0;
+
+		if ( vr != null )
+			for ( final double v : vr.getModel().getRowPackedCopy() )
+				h = combine( h, Double.doubleToLongBits( v ) );
+
+		return h;
+	}
+
+	protected InterestPoints interestPoints( final ViewId view, final String label )
+	{
+		return interestpointLists.get( view ).getInterestPointList( label );
+	}
+
+	/**
+	 * @param view - the view
+	 * @param label - the label
+	 * @return the key the fingerprints are stored with (same as used for the correspondences in N5)
+	 */
+	public static String key( final ViewId view, final String label )
+	{
+		return view.getTimePointId() + "," + view.getViewSetupId() + "," + label;
+	}
+
+	/*
+	 * order-dependent 64 bit hash, mixing as in SplitMix64
+	 */
+	protected static long combine( final long h, final long value )
+	{
+		long z = ( h ^ value ) + 0x9E3779B97F4A7C15L;
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		return z ^ ( z >>> 31 );
+	}
+}
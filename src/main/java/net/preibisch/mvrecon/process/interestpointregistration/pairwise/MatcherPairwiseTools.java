@@ -47,6 +47,8 @@ import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoints;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.ViewInterestPointLists;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.GroupedInterestPoint;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 
 public class MatcherPairwiseTools
 {
@@ -276,6 +278,16 @@ public class MatcherPairwiseTools
 			final MatcherPairwise< I > matcher,
 			final boolean matchAcrossLabels,
 			final ExecutorService exec )
+	{
+		// each pair of Views that will be compared
+		return computeTasks( getTasksList( pairs, interestpoints, matchAcrossLabels ), interestpoints, matcher, exec );
+	}
+
+	public static < V, I extends InterestPoint > List< Pair< Pair< V, V >, PairwiseResult< I > > > computeTasks(
+			final List< MatchingTask< V > > tasksList,
+			final Map< V, ? extends Map<String, ? extends List< I > > > interestpoints,
+			final MatcherPairwise< I > matcher,
+			final ExecutorService exec )
 	{
 		final ExecutorService taskExecutor;
 		
@@ -284,8 +296,18 @@ public class MatcherPairwiseTools
 		else
 			taskExecutor = exec;
 
-		// each pair of Views that will be compared
-		final ArrayList<MatchingTask<V>> tasksList = getTasksList( pairs, interestpoints, matchAcrossLabels );
+		// per-view descriptors are computed once and shared by all pairs of a view
+		if ( CachingMatcherPairwise.class.isInstance( matcher ) )
+		{
+			final List< Pair< Pair< V, V >, PairwiseResult< I > > > r =
+					computePairsCached( tasksList, interestpoints, (CachingMatcherPairwise< I, ? >)matcher, taskExecutor );
+
+			if ( exec == null )
+				taskExecutor.shutdown();
+
+			return r;
+		}
+
 		final ArrayList< Callable< Pair< Pair< V, V >, PairwiseResult< I > > > > tasks = getCallables( tasksList, interestpoints, matcher );
 
 		final List< Pair< Pair< V, V >, PairwiseResult< I > > > r = new ArrayList<>();
@@ -317,6 +339,15 @@ public class MatcherPairwiseTools
 		return r;
 	}
 
+	public static < V, I extends InterestPoint, C > List< Pair< Pair< V, V >, PairwiseResult< I > > > computePairsCached(
+			final List< MatchingTask< V > > tasks,
+			final Map< V, ? extends Map<String, ? extends List< I > > > interestpoints,
+			final CachingMatcherPairwise< I, C > matcher,
+			final ExecutorService taskExecutor )
+	{
+		return new PairwiseMatchingScheduler<>( interestpoints, matcher ).computePairs( tasks, taskExecutor );
+	}
+
 	public static class MatchingTask< V > implements Serializable
 	{
 		private static final long serialVersionUID = -6809028286920973919L;
@@ -418,7 +449,12 @@ public class MatcherPairwiseTools
 				@Override
 				public Pair< Pair< V, V >, PairwiseResult< I > > call() throws Exception
 				{
+					final Timer.Context time = Metrics.timer( "matching_seconds", "stage", "pair" ).start();
 					final PairwiseResult< I > pwr = matcher.match( listA, listB );
+					time.stop();
+					if ( pwr.getInliers() != null )
+						Metrics.histogram( "matching_inliers" ).record( pwr.getInliers().size() );
+
 					pwr.setLabelA( task.labelA );
 					pwr.setLabelB( task.labelB );
 					assignLoggingDescriptions( task.getPair(), pwr );
@@ -0,0 +1,329 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.interestpointregistration.pairwise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.MatcherPairwiseTools.MatchingTask;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
+
+/**
+ * Runs the pairwise matching for a {@link CachingMatcherPairwise}. The per-view data (k-d trees, descriptors) of
+ * each view and label is computed once by the first pair that needs it and shared with all other pairs of that
+ * view. The pairs are ordered view by view, so the pairs of a view run close together, and the per-view data is
+ * dropped as soon as its last pair is done. The number of interest points held in the cache is bounded, if
+ * necessary the least recently used views are dropped (and recomputed if they are needed again).
+ *
+ * @param <V> view type
+ * @param <I> interest point type
+ * @param <C> per-view data
+ */
+public class PairwiseMatchingScheduler< V, I extends InterestPoint, C >
+{
+	public static long defaultMaxCachedPoints = 10000000;
+
+	final Map< V, ? extends Map< String, ? extends List< I > > > interestpoints;
+	final CachingMatcherPairwise< I, C > matcher;
+	final long maxCachedPoints;
+
+	// prepared views in access order (LRU), and how many pairs still need them; guarded by 'this'
+	private final LinkedHashMap< ViewLabel< V >, Cached< C > > cache = new LinkedHashMap<>( 16, 0.75f, true );
+	private final HashMap< ViewLabel< V >, Integer > remainingUses = new HashMap<>();
+	private long cachedPoints = 0;
+	private int numPrepared = 0;
+
+	public PairwiseMatchingScheduler(
+			final Map< V, ? extends Map< String, ? extends List< I > > > interestpoints,
+			final CachingMatcherPairwise< I, C > matcher,
+			final long maxCachedPoints )
+	{
+		this.interestpoints = interestpoints;
+		this.matcher = matcher;
+		this.maxCachedPoints = maxCachedPoints;
+	}
+
+	public PairwiseMatchingScheduler(
+			final Map< V, ? extends Map< String, ? extends List< I > > > interestpoints,
+			final CachingMatcherPairwise< I, C > matcher )
+	{
+		this( interestpoints, matcher, defaultMaxCachedPoints );
+	}
+
+	/**
+	 * @param tasks - the pairs (and labels) to match
+	 * @param taskExecutor - the executor to use
+	 * @return the results in the order of the tasks
+	 */
+	public List< Pair< Pair< V, V >, PairwiseResult< I > > > computePairs(
+			final List< MatchingTask< V > > tasks,
+			final ExecutorService taskExecutor )
+	{
+		final int[] order = order( tasks );
+
+		synchronized ( this )
+		{
+			for ( final MatchingTask< V > task : tasks )
+			{
+				remainingUses.merge( new ViewLabel<>( task.vA, task.labelA ), 1, Integer::sum );
+				remainingUses.merge( new ViewLabel<>( task.vB, task.labelB ), 1, Integer::sum );
+			}
+		}
+
+		final ArrayList< Callable< Pair< Pair< V, V >, PairwiseResult< I > > > > callables = new ArrayList<>();
+
+		for ( final int i : order )
+		{
+			final MatchingTask< V > task = tasks.get( i );
+
+			callables.add( () ->
+			{
+				final ViewLabel< V > keyA = new ViewLabel<>( task.vA, task.labelA );
+				final ViewLabel< V > keyB = new ViewLabel<>( task.vB, task.labelB );
+
+				final C descriptorsA = get( keyA );
+				final C descriptorsB = get( keyB );
+
+				final Timer.Context time = Metrics.timer( "matching_seconds", "stage", "pair" ).start();
+				final PairwiseResult< I > pwr = matcher.matchPrepared( descriptorsA, descriptorsB );
+				time.stop();
+				if ( pwr.getInliers() != null )
+					Metrics.histogram( "matching_inliers" ).record( pwr.getInliers().size() );
+
+				pwr.setLabelA( task.labelA );
+				pwr.setLabelB( task.labelB );
+				MatcherPairwiseTools.assignLoggingDescriptions( task.getPair(), pwr );
+
+				release( keyA );
+				release( keyB );
+
+				return new ValuePair<>( task.getPair(), pwr );
+			});
+		}
+
+		final ArrayList< Pair< Pair< V, V >, PairwiseResult< I > > > results = new ArrayList<>( tasks.size() );
+
+		for ( int i = 0; i < tasks.size(); ++i )
+			results.add( null );
+
+		try
+		{
+			// invokeAll() returns when all tasks are complete
+			final List< Future< Pair< Pair< V, V >, PairwiseResult< I > > > > futures = taskExecutor.invokeAll( callables );
+
+			for ( int j = 0; j < order.length; ++j )
+				results.set( order[ j ], futures.get( j ).get() );
+		}
+		catch ( final InterruptedException | ExecutionException e )
+		{
+			e.printStackTrace();
+			throw new RuntimeException( e );
+		}
+		finally
+		{
+			synchronized ( this )
+			{
+				cache.clear();
+				remainingUses.clear();
+				cachedPoints = 0;
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * @return how often per-view data was computed in total (more than the number of views and labels if the LRU
+	 * had to drop views that were needed again)
+	 */
+	public synchronized int numPrepared() { return numPrepared; }
+
+	/*
+	 * Orders the tasks view by view (in the order the views first appear): each view is followed by all its
+	 * remaining pairs, so consecutive (i.e. concurrently running) pairs share their views.
+	 */
+	protected static < V > int[] order( final List< MatchingTask< V > > tasks )
+	{
+		final LinkedHashMap< V, ArrayList< Integer > > tasksPerView = new LinkedHashMap<>();
+
+		for ( int i = 0; i < tasks.size(); ++i )
+		{
+			tasksPerView.computeIfAbsent( tasks.get( i ).vA, v -> new ArrayList<>() ).add( i );
+			tasksPerView.computeIfAbsent( tasks.get( i ).vB, v -> new ArrayList<>() ).add( i );
+		}
+
+		final boolean[] scheduled = new boolean[ tasks.size() ];
+		final int[] order = new int[ tasks.size() ];
+		int j = 0;
+
+		for ( final ArrayList< Integer > viewTasks : tasksPerView.values() )
+			for ( final int i : viewTasks )
+				if ( !scheduled[ i ] )
+				{
+					scheduled[ i ] = true;
+					order[ j++ ] = i;
+				}
+
+		return Arrays.copyOf( order, j );
+	}
+
+	protected C get( final ViewLabel< V > key ) throws InterruptedException, ExecutionException
+	{
+		Cached< C > cached;
+
+		synchronized ( this )
+		{
+			cached = cache.get( key );
+
+			if ( cached == null )
+			{
+				final List< I > points = points( key );
+
+				cached = new Cached<>( new FutureTask<>( () ->
+				{
+					final Timer.Context time = Metrics.timer( "matching_seconds", "stage", "descriptors" ).start();
+					final C descriptors = matcher.prepare( points );
+					time.stop();
+					return descriptors;
+				}), points.size() );
+				cache.put( key, cached );
+				cachedPoints += cached.numPoints;
+				++numPrepared;
+
+				evict( key );
+			}
+		}
+
+		// the first thread computes it, all others wait for the result
+		cached.future.run();
+
+		return cached.future.get();
+	}
+
+	protected synchronized void release( final ViewLabel< V > key )
+	{
+		final int remaining = remainingUses.merge( key, -1, Integer::sum );
+
+		if ( remaining <= 0 )
+		{
+			remainingUses.remove( key );
+
+			final Cached< C > cached = cache.remove( key );
+
+			if ( cached != null )
+				cachedPoints -= cached.numPoints;
+		}
+	}
+
+	/*
+	 * drops the least recently used views (except the one that was just added) while the cache is too large,
+	 * pairs that currently use them keep their reference
+	 */
+	private void evict( final ViewLabel< V > keep )
+	{
+		final Iterator< Map.Entry< ViewLabel< V >, Cached< C > > > it = cache.entrySet().iterator();
+
+		while ( cachedPoints > maxCachedPoints && it.hasNext() )
+		{
+			final Map.Entry< ViewLabel< V >, Cached< C > > eldest = it.next();
+
+			if ( eldest.getKey().equals( keep ) )
+				continue;
+
+			cachedPoints -= eldest.getValue().numPoints;
+			it.remove();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List< I > points( final ViewLabel< V > key )
+	{
+		final List< I > list = interestpoints.get( key.view ).get( key.label );
+
+		if ( !matcher.requiresInterestPointDuplication() )
+			return list;
+
+		// duplicated once per view, shared by all pairs of the view
+		final ArrayList< I > copy = new ArrayList<>( list.size() );
+
+		for ( final I ip : list )
+			copy.add( (I)ip.clone() );
+
+		return copy;
+	}
+
+	private static class Cached< C >
+	{
+		final FutureTask< C > future;
+		final long numPoints;
+
+		Cached( final FutureTask< C > future, final long numPoints )
+		{
+			this.future = future;
+			this.numPoints = numPoints;
+		}
+	}
+
+	private static class ViewLabel< V >
+	{
+		final V view;
+		final String label;
+
+		ViewLabel( final V view, final String label )
+		{
+			this.view = view;
+			this.label = label;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof ViewLabel ) )
+				return false;
+
+			final ViewLabel< ? > k = (ViewLabel< ? >)o;
+			return view.equals( k.view ) && label.equals( k.label );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( view, label );
+		}
+	}
+}
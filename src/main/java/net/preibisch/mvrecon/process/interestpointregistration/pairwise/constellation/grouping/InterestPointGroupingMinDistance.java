@@ -23,11 +23,17 @@
 package net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import mpicbg.spim.data.sequence.ViewId;
 import net.imglib2.KDTree;
@@ -35,7 +41,10 @@ import net.imglib2.neighborsearch.RadiusNeighborSearch;
 import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
 import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
+import net.preibisch.mvrecon.Threads;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
+import net.preibisch.mvrecon.process.fusion.FusionTools;
+import net.preibisch.mvrecon.process.fusion.ImagePortion;
 
 /**
  * The simplest way to group interest points, just add them all (this will create problems in overlaps)
@@ -74,52 +83,328 @@ public class InterestPointGroupingMinDistance< V extends ViewId > extends Intere
 			{
 				// pseudo-random shuffling to not give an advantage due to the order the views are in
 				Collections.shuffle( grouped, new Random( 234 ) );
-		
-				//
-				// make a list and a tree at the same time, use the tree to mark points in close proximity as false
-				//
-		
-				// if a certain interestpoint is still valid
-				// (grouped and markedPoints MUST be in the same order for this to work)
-				final ArrayList< Pair< GroupedInterestPoint< V >, Bool > > markedPoints = new ArrayList<>();
-		
-				// all points are true initially, and will be set false if they were within the radius of a selected point
-				for ( final GroupedInterestPoint< V > p : grouped )
-					markedPoints.add( new ValuePair<>( p, new Bool( true ) ) );
-		
-				final KDTree< Pair< GroupedInterestPoint< V >, Bool > > tree = new KDTree<>( markedPoints, grouped );
-				final RadiusNeighborSearch< Pair< GroupedInterestPoint< V >, Bool > > search =
-						new RadiusNeighborSearchOnKDTree<>( tree );
-		
-				// go over all points
-				for ( final Pair< GroupedInterestPoint< V >, Bool > p : markedPoints )
+
+				final boolean[] keep = suppressGrid( grouped, radius, Threads.sharedExecutorService() );
+
+				final ArrayList< GroupedInterestPoint< V > > kept = new ArrayList<>();
+
+				for ( int i = 0; i < keep.length; ++i )
+					if ( keep[ i ] )
+						kept.add( grouped.get( i ) );
+
+				grouped.clear();
+				grouped.addAll( kept );
+			}
+		} );
+
+		return groupedLists;
+	}
+
+	/**
+	 * Goes over all points in the order of the list, every point that was not removed removes all points of other
+	 * views within the radius. Thus a point is kept if and only if no earlier point of another view within the
+	 * radius is kept.
+	 *
+	 * The points are hashed into a grid with a cell size of radius, so only the neighboring cells need to be
+	 * searched. All undecided points are evaluated in parallel in rounds, a point is decided once all earlier
+	 * points in its neighborhood are decided, which gives exactly the same result as the sequential order.
+	 *
+	 * @param points - the points in the order of priority
+	 * @param radius - the radius
+	 * @param service - the ExecutorService
+	 * @param <V> - view id type
+	 * @return for each point if it is kept
+	 */
+	public static < V > boolean[] suppressGrid( final List< GroupedInterestPoint< V > > points, final double radius, final ExecutorService service )
+	{
+		final int numPoints = points.size();
+		final int n = points.get( 0 ).numDimensions();
+
+		// primitive copies of locations, views and grid cells
+		final double[] pos = new double[ numPoints * n ];
+		final int[] view = new int[ numPoints ];
+		final long[] cell = new long[ numPoints * n ];
+
+		final HashMap< V, Integer > viewIndex = new HashMap<>();
+		final long[] minCell = new long[ n ];
+		final long[] maxCell = new long[ n ];
+
+		Arrays.fill( minCell, Long.MAX_VALUE );
+		Arrays.fill( maxCell, Long.MIN_VALUE );
+
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			final GroupedInterestPoint< V > p = points.get( i );
+
+			view[ i ] = viewIndex.computeIfAbsent( p.getV(), v -> viewIndex.size() );
+
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = p.getDoublePosition( d );
+				final long c = (long)Math.floor( x / radius );
+
+				pos[ i * n + d ] = x;
+				cell[ i * n + d ] = c;
+				minCell[ d ] = Math.min( minCell[ d ], c );
+				maxCell[ d ] = Math.max( maxCell[ d ], c );
+			}
+		}
+
+		// linear index of the cells, +2 so that the neighbors of the border cells have valid indices as well
+		final long[] numCells = new long[ n ];
+
+		try
+		{
+			long size = 1;
+
+			for ( int d = 0; d < n; ++d )
+			{
+				numCells[ d ] = Math.addExact( Math.subtractExact( maxCell[ d ], minCell[ d ] ), 3 );
+				size = Math.multiplyExact( size, numCells[ d ] );
+			}
+		}
+		catch ( ArithmeticException e )
+		{
+			// the grid cannot be indexed (e.g. a tiny radius for huge coordinates)
+			return suppressKDTree( points, radius );
+		}
+
+		final long[] key = new long[ numPoints ];
+
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			long k = 0;
+
+			for ( int d = n - 1; d >= 0; --d )
+				k = k * numCells[ d ] + ( cell[ i * n + d ] - minCell[ d ] + 1 );
+
+			key[ i ] = k;
+		}
+
+		// sorted, unique keys of all occupied cells
+		final long[] sortedKeys = key.clone();
+		Arrays.sort( sortedKeys );
+
+		int numOccupied = 0;
+		for ( int i = 0; i < numPoints; ++i )
+			if ( i == 0 || sortedKeys[ i ] != sortedKeys[ i - 1 ] )
+				sortedKeys[ numOccupied++ ] = sortedKeys[ i ];
+
+		final long[] cellKeys = Arrays.copyOf( sortedKeys, numOccupied );
+
+		// points of each cell (CSR), in increasing order within each cell
+		final int[] cellOf = new int[ numPoints ];
+		final int[] cellStart = new int[ numOccupied + 1 ];
+
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			cellOf[ i ] = Arrays.binarySearch( cellKeys, key[ i ] );
+			++cellStart[ cellOf[ i ] + 1 ];
+		}
+
+		for ( int c = 0; c < numOccupied; ++c )
+			cellStart[ c + 1 ] += cellStart[ c ];
+
+		final int[] cellPoints = new int[ numPoints ];
+		final int[] fill = Arrays.copyOf( cellStart, numOccupied );
+
+		for ( int i = 0; i < numPoints; ++i )
+			cellPoints[ fill[ cellOf[ i ] ]++ ] = i;
+
+		// offsets of all 3^n neighboring cells in linear index space
+		final int numOffsets = (int)Math.round( Math.pow( 3, n ) );
+		final long[] offsets = new long[ numOffsets ];
+
+		for ( int o = 0; o < numOffsets; ++o )
+		{
+			long offset = 0;
+
+			for ( int d = n - 1, r = o; d >= 0; --d )
+			{
+				final int step = (int)Math.round( Math.pow( 3, d ) );
+				offset = offset * numCells[ d ] + ( r / step - 1 );
+				r %= step;
+			}
+
+			offsets[ o ] = offset;
+		}
+
+		// 0 = undecided, 1 = kept, 2 = removed
+		final byte[] state = new byte[ numPoints ];
+		final double sqRadius = radius * radius;
+
+		final AtomicLong numUndecided = new AtomicLong( numPoints );
+
+		while ( numUndecided.get() > 0 )
+		{
+			final long undecidedBefore = numUndecided.get();
+			final ArrayList< Callable< Void > > tasks = new ArrayList<>();
+
+			for ( final ImagePortion portion : FusionTools.divideIntoPortions( numOccupied ) )
+			{
+				tasks.add( () ->
 				{
-					if ( p.getB().state )
-					{
-						// radius neighbor search
-						search.search( p.getA(), radius, false );
-		
-						// make sure by comparing ViewId and Id that it is not the one we currently look at
-						for ( int i = 0; i < search.numNeighbors(); ++i )
+					final int start = (int)portion.getStartPosition();
+					final int end = start + (int)portion.getLoopSize();
+
+					long decided = 0;
+
+					for ( int c = start; c < end; ++c )
+						for ( int pi = cellStart[ c ]; pi < cellStart[ c + 1 ]; ++pi )
 						{
-							final Pair< GroupedInterestPoint< V >, Bool > neighbor = search.getSampler( i ).get();
-							final GroupedInterestPoint< V > neighborpoint = neighbor.getA();
-		
-							if ( !neighborpoint.getV().equals( p.getA().getV() )) // do not set false if it is from the same view
-								if ( !neighborpoint.equals( p.getA() ) ) // do not set false if it is the point we searched for
-									neighbor.getB().state = false;
+							final int i = cellPoints[ pi ];
+
+							if ( state[ i ] != 0 )
+								continue;
+
+							final byte s = decide( i, n, pos, view, key[ i ], cellKeys, cellStart, cellPoints, offsets, state, sqRadius );
+
+							if ( s != 0 )
+							{
+								state[ i ] = s;
+								++decided;
+							}
 						}
-					}
+
+					numUndecided.addAndGet( -decided );
+
+					return null;
+				});
+			}
+
+			try
+			{
+				for ( final Future< Void > future : service.invokeAll( tasks ) )
+					future.get();
+			}
+			catch ( InterruptedException | ExecutionException e )
+			{
+				throw new RuntimeException( "Failed to group interest points: " + e, e );
+			}
+
+			// the undecided point with the lowest index is always decided, so every round must make progress
+			if ( numUndecided.get() == undecidedBefore )
+				throw new RuntimeException( "Grouping interest points made no progress, " + undecidedBefore + " points remain undecided." );
+		}
+
+		final boolean[] keep = new boolean[ numPoints ];
+
+		for ( int i = 0; i < numPoints; ++i )
+			keep[ i ] = state[ i ] == 1;
+
+		return keep;
+	}
+
+	/*
+	 * removed (2) if an earlier point of another view in the radius is kept, kept (1) if all of them are
+	 * removed, undecided (0) otherwise. States written by other threads during the same round can only be
+	 * seen late, which just defers the decision to the next round.
+	 */
+	private static byte decide(
+			final int i,
+			final int n,
+			final double[] pos,
+			final int[] view,
+			final long key,
+			final long[] cellKeys,
+			final int[] cellStart,
+			final int[] cellPoints,
+			final long[] offsets,
+			final byte[] state,
+			final double sqRadius )
+	{
+		boolean undecided = false;
+
+		for ( final long offset : offsets )
+		{
+			final int c = Arrays.binarySearch( cellKeys, key + offset );
+
+			if ( c < 0 )
+				continue;
+
+			for ( int pj = cellStart[ c ]; pj < cellStart[ c + 1 ]; ++pj )
+			{
+				final int j = cellPoints[ pj ];
+
+				// points are sorted within a cell, only earlier ones matter
+				if ( j >= i )
+					break;
+
+				if ( view[ j ] == view[ i ] || state[ j ] == 2 )
+					continue;
+
+				double sqDist = 0;
+				for ( int d = 0; d < n; ++d )
+				{
+					final double diff = pos[ i * n + d ] - pos[ j * n + d ];
+					sqDist += diff * diff;
+				}
+
+				if ( sqDist <= sqRadius )
+				{
+					if ( state[ j ] == 1 )
+						return 2;
+					else
+						undecided = true;
 				}
-		
-				grouped.clear();
-		
-				for ( final Pair< GroupedInterestPoint< V >, Bool > p : markedPoints )
-					if ( p.getB().state )
-						grouped.add( p.getA() );
 			}
-		} );
+		}
 
-		return groupedLists;
+		return undecided ? (byte)0 : (byte)1;
+	}
+
+	/**
+	 * The same as suppressGrid using a KDTree, single-threaded
+	 *
+	 * @param points - the points in the order of priority
+	 * @param radius - the radius
+	 * @param <V> - view id type
+	 * @return for each point if it is kept
+	 */
+	public static < V > boolean[] suppressKDTree( final List< GroupedInterestPoint< V > > points, final double radius )
+	{
+		//
+		// make a list and a tree at the same time, use the tree to mark points in close proximity as false
+		//
+
+		// if a certain interestpoint is still valid
+		// (grouped and markedPoints MUST be in the same order for this to work)
+		final ArrayList< Pair< GroupedInterestPoint< V >, Bool > > markedPoints = new ArrayList<>();
+
+		// all points are true initially, and will be set false if they were within the radius of a selected point
+		for ( final GroupedInterestPoint< V > p : points )
+			markedPoints.add( new ValuePair<>( p, new Bool( true ) ) );
+
+		final KDTree< Pair< GroupedInterestPoint< V >, Bool > > tree = new KDTree<>( markedPoints, points );
+		final RadiusNeighborSearch< Pair< GroupedInterestPoint< V >, Bool > > search =
+				new RadiusNeighborSearchOnKDTree<>( tree );
+
+		// go over all points
+		for ( final Pair< GroupedInterestPoint< V >, Bool > p : markedPoints )
+		{
+			if ( p.getB().state )
+			{
+				// radius neighbor search
+				search.search( p.getA(), radius, false );
+
+				// make sure by comparing ViewId and Id that it is not the one we currently look at
+				for ( int i = 0; i < search.numNeighbors(); ++i )
+				{
+					final Pair< GroupedInterestPoint< V >, Bool > neighbor = search.getSampler( i ).get();
+					final GroupedInterestPoint< V > neighborpoint = neighbor.getA();
+
+					if ( !neighborpoint.getV().equals( p.getA().getV() )) // do not set false if it is from the same view
+						if ( !neighborpoint.equals( p.getA() ) ) // do not set false if it is the point we searched for
+							neighbor.getB().state = false;
+				}
+			}
+		}
+
+		final boolean[] keep = new boolean[ markedPoints.size() ];
+
+		for ( int i = 0; i < keep.length; ++i )
+			keep[ i ] = markedPoints.get( i ).getB().state;
+
+		return keep;
 	}
 }
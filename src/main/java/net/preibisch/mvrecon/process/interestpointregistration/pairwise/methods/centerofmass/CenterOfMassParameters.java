@@ -37,4 +37,10 @@ public class CenterOfMassParameters
 	public CenterOfMassParameters( final int centerType ) { this.centerType = centerType; }
 
 	public int getCenterType() { return centerType; }
+
+	@Override
+	public String toString()
+	{
+		return "center=" + centerChoice[ centerType ];
+	}
 }
@@ -55,4 +55,10 @@ public class FRGLDMParameters
 	public float getRatioOfDistance() { return rod; }
 	public int getNumNeighbors() { return nn; }
 	public int getRedundancy() { return re; }
+
+	@Override
+	public String toString()
+	{
+		return "ratioOfDistance=" + rod + ", numNeighbors=" + nn + ", redundancy=" + re;
+	}
 }
@@ -72,6 +72,38 @@ public class GeometricHasher< I extends InterestPoint >
 		return correspondences;
 	}
 	
+	/**
+	 * Computes the descriptors of one view, which can then be matched against any number of other views
+	 * using {@link #extractCorrespondenceCandidates(ViewDescriptors, ViewDescriptors, double, double)}.
+	 *
+	 * @param nodeList - the interest points of the view
+	 * @param redundancy - the redundancy
+	 * @return the descriptors
+	 */
+	public ViewDescriptors< I > createViewDescriptors( final ArrayList< I > nodeList, final int redundancy )
+	{
+		final KDTree< I > tree = new KDTree<>( nodeList, nodeList );
+
+		return new ViewDescriptors<>( nodeList, createLocalCoordinateSystemPointDescriptors( tree, nodeList, redundancy, false ) );
+	}
+
+	public ArrayList< PointMatchGeneric< I > > extractCorrespondenceCandidates(
+			final ViewDescriptors< I > viewA,
+			final ViewDescriptors< I > viewB,
+			final double differenceThreshold,
+			final double ratioOfDistance )
+	{
+		final KNearestNeighborSearchOnKDTree< LocalCoordinateSystemPointDescriptor< I > > nnsearch = new KNearestNeighborSearchOnKDTree<>( viewB.getLookUpTree(), 2 );
+
+		// store the candidates for corresponding beads
+		final ArrayList< PointMatchGeneric< I > > correspondences = new ArrayList<>();
+
+		/* compute matching */
+		computeMatching( viewA.getDescriptors(), nnsearch, correspondences, differenceThreshold, ratioOfDistance );
+
+		return correspondences;
+	}
+
 	protected void computeMatching( 
 			final ArrayList< LocalCoordinateSystemPointDescriptor< I > > descriptors1,
 			final KNearestNeighborSearchOnKDTree< LocalCoordinateSystemPointDescriptor< I > > nnsearch2,
@@ -151,4 +183,38 @@ public class GeometricHasher< I extends InterestPoint >
 
 		return descriptors;
 	}
+
+	/**
+	 * The interest points of one view, their descriptors and (if the view is matched as B) a lookup tree for the
+	 * descriptors. Only read during matching, so it can be shared by all pairs a view takes part in.
+	 */
+	public static class ViewDescriptors< I extends InterestPoint >
+	{
+		final ArrayList< I > points;
+		final ArrayList< LocalCoordinateSystemPointDescriptor< I > > descriptors;
+		private volatile KDTree< LocalCoordinateSystemPointDescriptor< I > > lookUpTree = null;
+
+		public ViewDescriptors( final ArrayList< I > points, final ArrayList< LocalCoordinateSystemPointDescriptor< I > > descriptors )
+		{
+			this.points = points;
+			this.descriptors = descriptors;
+		}
+
+		public ArrayList< I > getPoints() { return points; }
+		public ArrayList< LocalCoordinateSystemPointDescriptor< I > > getDescriptors() { return descriptors; }
+
+		public KDTree< LocalCoordinateSystemPointDescriptor< I > > getLookUpTree()
+		{
+			if ( lookUpTree == null )
+			{
+				synchronized ( this )
+				{
+					if ( lookUpTree == null )
+						lookUpTree = new KDTree<>( descriptors, descriptors );
+				}
+			}
+
+			return lookUpTree;
+		}
+	}
 }
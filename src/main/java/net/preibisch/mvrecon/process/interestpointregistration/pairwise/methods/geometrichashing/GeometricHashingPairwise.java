@@ -28,12 +28,13 @@ import java.util.List;
 import net.preibisch.legacy.mpicbg.PointMatchGeneric;
 import net.preibisch.mvrecon.fiji.ImgLib2Temp.Pair;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
-import net.preibisch.mvrecon.process.interestpointregistration.pairwise.MatcherPairwise;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.CachingMatcherPairwise;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.PairwiseResult;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.methods.geometrichashing.GeometricHasher.ViewDescriptors;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.methods.ransac.RANSAC;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.methods.ransac.RANSACParameters;
 
-public class GeometricHashingPairwise< I extends InterestPoint > implements MatcherPairwise< I >
+public class GeometricHashingPairwise< I extends InterestPoint > implements CachingMatcherPairwise< I, ViewDescriptors< I > >
 {
 	final RANSACParameters rp;
 	final GeometricHashingParameters gp;
@@ -47,17 +48,22 @@ public class GeometricHashingPairwise< I extends InterestPoint > implements Matc
 	}
 
 	@Override
-	public PairwiseResult< I > match( final List< I > listAIn, final List< I > listBIn )
+	public ViewDescriptors< I > prepare( final List< I > list )
 	{
-		final PairwiseResult< I > result = new PairwiseResult<>( true );
-		final GeometricHasher< I > hasher = new GeometricHasher<>();
-		
-		final ArrayList< I > listA = new ArrayList<>(listAIn);
-		final ArrayList< I > listB = new ArrayList<>(listBIn);
+		final ArrayList< I > points = new ArrayList<>( list );
+
+		if ( points.size() < minPoints() )
+			return new ViewDescriptors<>( points, new ArrayList<>() );
+
+		return new GeometricHasher< I >().createViewDescriptors( points, gp.getRedundancy() );
+	}
 
-		final int minPoints = 3 + gp.getRedundancy() + 1;
+	@Override
+	public PairwiseResult< I > matchPrepared( final ViewDescriptors< I > viewA, final ViewDescriptors< I > viewB )
+	{
+		final PairwiseResult< I > result = new PairwiseResult<>( true );
 
-		if ( listA.size() < minPoints || listB.size() < minPoints )
+		if ( viewA.getPoints().size() < minPoints() || viewB.getPoints().size() < minPoints() )
 		{
 			result.setResult( System.currentTimeMillis(), "Not enough detections to match" );
 			result.setCandidates( new ArrayList< PointMatchGeneric< I > >() );
@@ -65,11 +71,10 @@ public class GeometricHashingPairwise< I extends InterestPoint > implements Matc
 			return result;
 		}
 
-		final ArrayList< PointMatchGeneric< I > > candidates = hasher.extractCorrespondenceCandidates( 
-				listA,
-				listB,
+		final ArrayList< PointMatchGeneric< I > > candidates = new GeometricHasher< I >().extractCorrespondenceCandidates(
+				viewA,
+				viewB,
 				gp.getDifferenceThreshold(),
-				gp.getRedundancy(),
 				gp.getRatioOfDistance() );
 
 		result.setCandidates( candidates );
@@ -77,7 +82,7 @@ public class GeometricHashingPairwise< I extends InterestPoint > implements Matc
 		// compute ransac and remove inconsistent candidates
 		final ArrayList< PointMatchGeneric< I > > inliers = new ArrayList<>();
 
-		final Pair< String, Double > ransacResult = RANSAC.computeRANSAC( candidates, inliers, gp.getModel(), rp.getMaxEpsilon(), rp.getMinInlierRatio(), rp.getMinInlierFactor(), rp.getNumIterations() );
+		final Pair< String, Double > ransacResult = RANSAC.computeRANSAC( candidates, inliers, gp.getModel(), rp );
 
 		result.setInliers( inliers, ransacResult.getB() );
 
@@ -86,6 +91,8 @@ public class GeometricHashingPairwise< I extends InterestPoint > implements Matc
 		return result;
 	}
 
+	protected int minPoints() { return 3 + gp.getRedundancy() + 1; }
+
 	/**
 	 * We run RANSAC on these points which makes copies, so no need to duplicate points
 	 */
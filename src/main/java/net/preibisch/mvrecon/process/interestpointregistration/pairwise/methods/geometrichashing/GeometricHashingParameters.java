@@ -58,4 +58,10 @@ public class GeometricHashingParameters
 	public float getDifferenceThreshold() { return dt; }
 	public float getRatioOfDistance() { return rod; }
 	public int getRedundancy() { return re; }
+
+	@Override
+	public String toString()
+	{
+		return "differenceThreshold=" + dt + ", ratioOfDistance=" + rod + ", redundancy=" + re;
+	}
 }
@@ -84,4 +84,11 @@ public class IterativeClosestPointParameters
 	public double getMaxEpsilonRANSAC() { return maxEpsilonRANSAC; }
 	public int getMaxIterationsRANSAC() { return maxIterationsRANSAC; }
 	public int getMinNumPoints() { return minNumPoints; }
+
+	@Override
+	public String toString()
+	{
+		return "maxDistance=" + d + ", maxIterations=" + maxIt + ", useRANSAC=" + useRANSAC + ", minInlierRatio=" + minInlierRatio +
+				", maxEpsilonRANSAC=" + maxEpsilonRANSAC + ", maxIterationsRANSAC=" + maxIterationsRANSAC + ", minNumPoints=" + minNumPoints;
+	}
 }
@@ -0,0 +1,372 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.interestpointregistration.pairwise.methods.ransac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import mpicbg.models.IllDefinedDataPointsException;
+import mpicbg.models.Model;
+import mpicbg.models.NotEnoughDataPointsException;
+import mpicbg.models.PointMatch;
+
+/**
+ * RANSAC that evaluates hypotheses in parallel and stops as soon as the number of iterations necessary
+ * to find the best model with a certain confidence was reached, which is estimated from the best inlier ratio
+ * found so far: log( 1 - confidence ) / log( 1 - ratio^minNumMatches ), at most maxIterations.
+ *
+ * Hypotheses are scored on primitive copies of the coordinates, each hypothesis draws its sample from its own
+ * seeded generator and the hypotheses are evaluated in rounds of fixed size, so the result is deterministic
+ * and independent of the number of threads. Like Model.filterRansac(), the best hypothesis is refined
+ * on its inliers until the inlier set does not grow anymore, and the inliers are finally passed through
+ * Model.filter().
+ */
+public class AdaptiveRANSAC
+{
+	public static int hypothesesPerTask = 64;
+	public static int tasksPerRound = 16;
+	public static double maxTrust = 4.0;
+	public static long seed = 234;
+
+	/**
+	 * Same contract as Model.filterRansac( candidates, inliers, maxIterations, maxEpsilon, minInlierRatio )
+	 *
+	 * @param model - the model, will be fit to the inliers
+	 * @param candidates - the candidates
+	 * @param inliers - the inliers will be added here
+	 * @param maxIterations - maximal number of hypotheses
+	 * @param maxEpsilon - maximal error of an inlier
+	 * @param minInlierRatio - minimal ratio of inliers
+	 * @param confidence - probability to draw at least one outlier-free sample, e.g. 0.999
+	 * @param service - the ExecutorService
+	 * @param <P> - PointMatch type
+	 * @return if a model was found
+	 * @throws NotEnoughDataPointsException if there are not enough candidates for the model
+	 */
+	public static < P extends PointMatch > boolean filterRansac(
+			final Model< ? > model,
+			final List< P > candidates,
+			final List< P > inliers,
+			final int maxIterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final double confidence,
+			final ExecutorService service ) throws NotEnoughDataPointsException
+	{
+		final int minNumMatches = model.getMinNumMatches();
+		final int numCandidates = candidates.size();
+
+		inliers.clear();
+
+		if ( numCandidates < minNumMatches )
+			throw new NotEnoughDataPointsException( numCandidates + " data points are not enough to solve the Model, at least " + minNumMatches + " data points required." );
+
+		final int n = candidates.get( 0 ).getP1().getL().length;
+
+		// p1 local, p2 world and weight of all candidates: [ dim ][ index ]
+		final double[][] p = new double[ n ][ numCandidates ];
+		final double[][] q = new double[ n ][ numCandidates ];
+		final double[] w = new double[ numCandidates ];
+
+		for ( int i = 0; i < numCandidates; ++i )
+		{
+			final PointMatch pm = candidates.get( i );
+			final double[] l = pm.getP1().getL();
+			final double[] t = pm.getP2().getW();
+
+			for ( int d = 0; d < n; ++d )
+			{
+				p[ d ][ i ] = l[ d ];
+				q[ d ][ i ] = t[ d ];
+			}
+
+			w[ i ] = pm.getWeight();
+		}
+
+		final double sqEpsilon = maxEpsilon * maxEpsilon;
+		final int minNumInliers = minNumMatches;
+
+		int[] best = null;
+		long numHypotheses = maxIterations;
+		long evaluated = 0;
+
+		while ( evaluated < Math.min( maxIterations, numHypotheses ) )
+		{
+			final ArrayList< Callable< int[] > > tasks = new ArrayList<>();
+
+			for ( int t = 0; t < tasksPerRound; ++t )
+			{
+				final long first = evaluated + t * hypothesesPerTask;
+				final long last = Math.min( maxIterations, first + hypothesesPerTask );
+
+				if ( first >= last )
+					break;
+
+				tasks.add( () ->
+				{
+					final Hypothesis h = new Hypothesis( model.copy(), p, q, w, sqEpsilon, minInlierRatio, minNumInliers );
+					int[] taskBest = null;
+
+					for ( long i = first; i < last; ++i )
+					{
+						final int[] result = h.evaluate( new SplittableRandom( seed ^ ( i * 0x9e3779b97f4a7c15L ) ) );
+
+						if ( result != null && ( taskBest == null || result.length > taskBest.length ) )
+							taskBest = result;
+					}
+
+					return taskBest;
+				});
+			}
+
+			try
+			{
+				// merged in order of the tasks, so that ties are resolved independently of the threads
+				for ( final Future< int[] > future : service.invokeAll( tasks ) )
+				{
+					final int[] result = future.get();
+
+					if ( result != null && ( best == null || result.length > best.length ) )
+						best = result;
+				}
+			}
+			catch ( InterruptedException | ExecutionException e )
+			{
+				throw new RuntimeException( "Failed to run RANSAC: " + e, e );
+			}
+
+			evaluated = Math.min( maxIterations, evaluated + (long)tasksPerRound * hypothesesPerTask );
+
+			if ( best != null )
+				numHypotheses = numHypotheses( (double)best.length / numCandidates, minNumMatches, confidence, maxIterations );
+		}
+
+		if ( best == null )
+			return false;
+
+		final ArrayList< P > ransacInliers = new ArrayList<>( best.length );
+
+		for ( final int i : best )
+			ransacInliers.add( candidates.get( i ) );
+
+		if ( model.filter( ransacInliers, inliers, maxTrust, minNumInliers ) )
+			return true;
+
+		inliers.clear();
+		return false;
+	}
+
+	/**
+	 * @param inlierRatio - the ratio of inliers
+	 * @param sampleSize - number of matches per sample
+	 * @param confidence - probability to draw at least one outlier-free sample
+	 * @param maxIterations - upper bound
+	 * @return the number of samples necessary
+	 */
+	public static long numHypotheses( final double inlierRatio, final int sampleSize, final double confidence, final long maxIterations )
+	{
+		final double outlierFree = Math.pow( inlierRatio, sampleSize );
+
+		if ( outlierFree >= 1.0 )
+			return 1;
+
+		if ( outlierFree <= 0.0 )
+			return maxIterations;
+
+		final double n = Math.ceil( Math.log( 1.0 - confidence ) / Math.log( 1.0 - outlierFree ) );
+
+		return Double.isNaN( n ) || n > maxIterations ? maxIterations : Math.max( 1, (long)n );
+	}
+
+	/*
+	 * Fits and scores hypotheses with one copy of the model, not thread-safe
+	 */
+	private static class Hypothesis
+	{
+		final Model< ? > model;
+		final double[][] p, q;
+		final double[] w;
+		final double sqEpsilon, minInlierRatio;
+		final int n, numCandidates, minNumMatches, minNumInliers;
+
+		final double[][] sp, sq;
+		final double[] sw;
+		final int[] sample;
+		final int[] inliers;
+		final double[] tmp;
+
+		Hypothesis(
+				final Model< ? > model,
+				final double[][] p,
+				final double[][] q,
+				final double[] w,
+				final double sqEpsilon,
+				final double minInlierRatio,
+				final int minNumInliers )
+		{
+			this.model = model;
+			this.p = p;
+			this.q = q;
+			this.w = w;
+			this.sqEpsilon = sqEpsilon;
+			this.minInlierRatio = minInlierRatio;
+			this.minNumInliers = minNumInliers;
+			this.n = p.length;
+			this.numCandidates = w.length;
+			this.minNumMatches = model.getMinNumMatches();
+
+			this.sp = new double[ n ][ minNumMatches ];
+			this.sq = new double[ n ][ minNumMatches ];
+			this.sw = new double[ minNumMatches ];
+			this.sample = new int[ minNumMatches ];
+			this.inliers = new int[ numCandidates ];
+			this.tmp = new double[ n ];
+		}
+
+		/*
+		 * @return the indices of the inliers if the hypothesis (refined on its inliers) is good, otherwise null
+		 */
+		int[] evaluate( final SplittableRandom rnd )
+		{
+			// choose minNumMatches distinct matches randomly
+			for ( int j = 0; j < minNumMatches; ++j )
+			{
+				int i;
+				boolean contained;
+
+				do
+				{
+					i = rnd.nextInt( numCandidates );
+					contained = false;
+
+					for ( int k = 0; k < j; ++k )
+						contained |= sample[ k ] == i;
+				}
+				while ( contained );
+
+				sample[ j ] = i;
+
+				for ( int d = 0; d < n; ++d )
+				{
+					sp[ d ][ j ] = p[ d ][ i ];
+					sq[ d ][ j ] = q[ d ][ i ];
+				}
+
+				sw[ j ] = w[ i ];
+			}
+
+			try
+			{
+				model.fit( sp, sq, sw );
+			}
+			catch ( NotEnoughDataPointsException | IllDefinedDataPointsException e )
+			{
+				return null;
+			}
+
+			int numInliers = 0;
+			int numTested = test();
+
+			// refine on the inliers as long as they are good and their number grows
+			while ( isGood( numTested ) && numInliers < numTested )
+			{
+				numInliers = numTested;
+
+				final double[][] ip = new double[ n ][ numInliers ];
+				final double[][] iq = new double[ n ][ numInliers ];
+				final double[] iw = new double[ numInliers ];
+
+				for ( int j = 0; j < numInliers; ++j )
+				{
+					final int i = inliers[ j ];
+
+					for ( int d = 0; d < n; ++d )
+					{
+						ip[ d ][ j ] = p[ d ][ i ];
+						iq[ d ][ j ] = q[ d ][ i ];
+					}
+
+					iw[ j ] = w[ i ];
+				}
+
+				try
+				{
+					model.fit( ip, iq, iw );
+				}
+				catch ( NotEnoughDataPointsException | IllDefinedDataPointsException e )
+				{
+					return null;
+				}
+
+				numTested = test();
+			}
+
+			if ( !isGood( numTested ) )
+				return null;
+
+			final int[] result = new int[ numTested ];
+			System.arraycopy( inliers, 0, result, 0, numTested );
+
+			return result;
+		}
+
+		boolean isGood( final int numInliers )
+		{
+			return numInliers >= minNumInliers && (double)numInliers / numCandidates > minInlierRatio;
+		}
+
+		/*
+		 * collects the indices of all candidates with an error below epsilon
+		 */
+		int test()
+		{
+			int numInliers = 0;
+
+			for ( int i = 0; i < numCandidates; ++i )
+			{
+				for ( int d = 0; d < n; ++d )
+					tmp[ d ] = p[ d ][ i ];
+
+				model.applyInPlace( tmp );
+
+				double sqDist = 0;
+
+				for ( int d = 0; d < n; ++d )
+				{
+					final double diff = tmp[ d ] - q[ d ][ i ];
+					sqDist += diff * diff;
+				}
+
+				if ( sqDist < sqEpsilon )
+					inliers[ numInliers++ ] = i;
+			}
+
+			return numInliers;
+		}
+	}
+}
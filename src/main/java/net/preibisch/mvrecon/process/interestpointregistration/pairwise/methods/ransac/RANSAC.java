@@ -34,6 +34,7 @@ import mpicbg.models.Model;
 import mpicbg.models.NotEnoughDataPointsException;
 import mpicbg.models.PointMatch;
 import net.preibisch.legacy.mpicbg.PointMatchGeneric;
+import net.preibisch.mvrecon.Threads;
 import net.preibisch.mvrecon.fiji.ImgLib2Temp.Pair;
 import net.preibisch.mvrecon.fiji.ImgLib2Temp.ValuePair;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
@@ -46,6 +47,18 @@ import net.preibisch.mvrecon.process.pointcloud.pointdescriptor.LinkedPoint;
  */
 public class RANSAC
 {
+	public static < I extends InterestPoint > Pair< String, Double > computeRANSAC(
+			final ArrayList< PointMatchGeneric < I > > correspondenceCandidates,
+			final ArrayList< PointMatchGeneric < I > > inlierList,
+			final Model<?> model,
+			final RANSACParameters rp )
+	{
+		return computeRANSAC(
+				correspondenceCandidates, inlierList, model,
+				rp.getMaxEpsilon(), rp.getMinInlierRatio(), rp.getMinInlierFactor(), rp.getNumIterations(),
+				rp.useAdaptive(), rp.getConfidence() );
+	}
+
 	public static < I extends InterestPoint > Pair< String, Double > computeRANSAC(
 			final ArrayList< PointMatchGeneric < I > > correspondenceCandidates,
 			final ArrayList< PointMatchGeneric < I > > inlierList,
@@ -54,6 +67,33 @@ public class RANSAC
 			final double minInlierRatio, 
 			final double minNumberInlierFactor, 
 			final int numIterations )
+	{
+		return computeRANSAC( correspondenceCandidates, inlierList, model, maxEpsilon, minInlierRatio, minNumberInlierFactor, numIterations, false, 0 );
+	}
+
+	/**
+	 * @param correspondenceCandidates - the candidates
+	 * @param inlierList - the inliers will be added here
+	 * @param model - the model
+	 * @param maxEpsilon - maximal error of an inlier
+	 * @param minInlierRatio - minimal ratio of inliers
+	 * @param minNumberInlierFactor - minimal number of inliers as a multiple of the minimal number of matches of the model
+	 * @param numIterations - number of RANSAC iterations (upper bound if adaptive)
+	 * @param adaptive - use the multithreaded AdaptiveRANSAC instead of Model.filterRansac
+	 * @param confidence - confidence for the number of iterations of AdaptiveRANSAC
+	 * @param <I> - interest point type
+	 * @return the message and the average error (NaN if no model was found)
+	 */
+	public static < I extends InterestPoint > Pair< String, Double > computeRANSAC(
+			final ArrayList< PointMatchGeneric < I > > correspondenceCandidates,
+			final ArrayList< PointMatchGeneric < I > > inlierList,
+			final Model<?> model,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final double minNumberInlierFactor,
+			final int numIterations,
+			final boolean adaptive,
+			final double confidence )
 	{
 		final int numCorrespondences = correspondenceCandidates.size();
 		final int minNumCorrespondences = Math.max( model.getMinNumMatches(), (int)Math.round( model.getMinNumMatches() * minNumberInlierFactor ) );
@@ -93,11 +133,7 @@ public class RANSAC
 					numIterations,
 					maxEpsilon, minInlierRatio );*/
 		
-			modelFound = model.filterRansac(
-					candidates,
-					inliers,
-					numIterations,
-					maxEpsilon, minInlierRatio ); 
+			modelFound = filterRansac( model, candidates, inliers, numIterations, maxEpsilon, minInlierRatio, adaptive, confidence );
 		}
 		catch ( NotEnoughDataPointsException e )
 		{
@@ -123,11 +159,7 @@ public class RANSAC
 
 				try
 				{
-					modelFound = model.filterRansac(
-							candidates,
-							inliers,
-							numIterations,
-							maxEpsilon, minInlierRatio );
+					modelFound = filterRansac( model, candidates, inliers, numIterations, maxEpsilon, minInlierRatio, adaptive, confidence );
 				}
 				catch ( NotEnoughDataPointsException e )
 				{
@@ -164,6 +196,22 @@ public class RANSAC
 		}
 	}
 
+	protected static boolean filterRansac(
+			final Model< ? > model,
+			final ArrayList< PointMatch > candidates,
+			final ArrayList< PointMatch > inliers,
+			final int numIterations,
+			final double maxEpsilon,
+			final double minInlierRatio,
+			final boolean adaptive,
+			final double confidence ) throws NotEnoughDataPointsException
+	{
+		if ( adaptive )
+			return AdaptiveRANSAC.filterRansac( model, candidates, inliers, numIterations, maxEpsilon, minInlierRatio, confidence, Threads.sharedExecutorService() );
+		else
+			return model.filterRansac( candidates, inliers, numIterations, maxEpsilon, minInlierRatio );
+	}
+
 	/**
 	 * a class that computes hash and equals only using the coordinates of a double[] array
 	 */
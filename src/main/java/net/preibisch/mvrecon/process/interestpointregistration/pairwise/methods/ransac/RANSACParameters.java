@@ -36,10 +36,16 @@ public class RANSACParameters
 	public static float min_inlier_ratio = 0.1f;
 	public static int num_iterations = 10000;
 	public static float min_inlier_factor = 3f;
+	public static boolean adaptive = false;
+	public static double confidence = 0.999;
 	
 	protected float maxEpsilon, minInlierRatio, minInlierFactor;
 	protected int numIterations;
 
+	// if true, AdaptiveRANSAC is used (multithreaded, numIterations is the upper bound), otherwise Model.filterRansac (default)
+	protected boolean useAdaptive = adaptive;
+	protected double ransacConfidence = confidence;
+
 	public RANSACParameters( final float maxEpsilon, final float minInlierRatio, final float minInlierFactor, final int numIterations )
 	{
 		this.maxEpsilon = maxEpsilon;
@@ -60,9 +66,20 @@ public class RANSACParameters
 	public float getMinInlierRatio() { return minInlierRatio; }
 	public float getMinInlierFactor() { return minInlierFactor; }
 	public int getNumIterations() { return numIterations; }
+	public boolean useAdaptive() { return useAdaptive; }
+	public double getConfidence() { return ransacConfidence; }
 
 	public RANSACParameters setMaxEpsilon( final float maxEpsilon ) { this.maxEpsilon = maxEpsilon; return this; }
 	public RANSACParameters setMinInlierRatio( final float minInlierRatio ) { this.minInlierRatio = minInlierRatio; return this;  }
 	public RANSACParameters setMinInlierFactor( final float minInlierFactor ) { this.minInlierFactor = minInlierFactor; return this;  }
 	public RANSACParameters setNumIterations( final int numIterations ) { this.numIterations = numIterations; return this;  }
+	public RANSACParameters setUseAdaptive( final boolean useAdaptive ) { this.useAdaptive = useAdaptive; return this;  }
+	public RANSACParameters setConfidence( final double confidence ) { this.ransacConfidence = confidence; return this;  }
+
+	@Override
+	public String toString()
+	{
+		return "maxEpsilon=" + maxEpsilon + ", minInlierRatio=" + minInlierRatio + ", minInlierFactor=" + minInlierFactor +
+				", numIterations=" + numIterations + ", adaptive=" + useAdaptive + ", confidence=" + ransacConfidence;
+	}
 }
@@ -65,6 +65,40 @@ public class RGLDMMatcher< I extends InterestPoint >
 		return findCorrespondingDescriptors( descriptorsA, descriptorsB, ratioOfDistance, differenceThreshold, limitSearchRadius, searchRadius );
 	}
 	
+	/**
+	 * Computes the descriptors of one view, which can then be matched against any number of other views using
+	 * {@link #extractCorrespondenceCandidates(ViewDescriptors, ViewDescriptors, double, double, boolean, double)}.
+	 *
+	 * @param nodeList - the interest points of the view
+	 * @param numNeighbors - number of neighbors
+	 * @param redundancy - the redundancy
+	 * @return the descriptors
+	 */
+	public ViewDescriptors< I > createViewDescriptors(
+			final ArrayList< I > nodeList,
+			final int numNeighbors,
+			final int redundancy )
+	{
+		final KDTree< I > tree = new KDTree< I >( nodeList, nodeList );
+
+		final Matcher matcher = new SubsetMatcher( numNeighbors, numNeighbors + redundancy );
+
+		return new ViewDescriptors<>(
+				nodeList,
+				createSimplePointDescriptors( tree, nodeList, matcher.getRequiredNumNeighbors(), matcher, new SquareDistance() ) );
+	}
+
+	public ArrayList< PointMatchGeneric< I > > extractCorrespondenceCandidates(
+			final ViewDescriptors< I > viewA,
+			final ViewDescriptors< I > viewB,
+			final double ratioOfDistance,
+			final double differenceThreshold,
+			final boolean limitSearchRadius,
+			final double searchRadius )
+	{
+		return findCorrespondingDescriptors( viewA.getDescriptors(), viewB.getDescriptors(), ratioOfDistance, differenceThreshold, limitSearchRadius, searchRadius );
+	}
+
 	protected static final < I extends InterestPoint, D extends AbstractPointDescriptor< I , D > > ArrayList< PointMatchGeneric< I > > findCorrespondingDescriptors(
 			final ArrayList< D > descriptorsA,
 			final ArrayList< D > descriptorsB,
@@ -156,4 +190,22 @@ public class RGLDMMatcher< I extends InterestPoint >
 		return descriptors;
 	}
 
+	/**
+	 * The interest points of one view and their descriptors. Only read during matching, so it can be shared by
+	 * all pairs a view takes part in.
+	 */
+	public static class ViewDescriptors< I extends InterestPoint >
+	{
+		final ArrayList< I > points;
+		final ArrayList< SimplePointDescriptor< I > > descriptors;
+
+		public ViewDescriptors( final ArrayList< I > points, final ArrayList< SimplePointDescriptor< I > > descriptors )
+		{
+			this.points = points;
+			this.descriptors = descriptors;
+		}
+
+		public ArrayList< I > getPoints() { return points; }
+		public ArrayList< SimplePointDescriptor< I > > getDescriptors() { return descriptors; }
+	}
 }
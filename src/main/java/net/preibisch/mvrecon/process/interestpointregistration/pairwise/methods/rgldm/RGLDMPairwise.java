@@ -28,12 +28,13 @@ import java.util.List;
 import net.preibisch.legacy.mpicbg.PointMatchGeneric;
 import net.preibisch.mvrecon.fiji.ImgLib2Temp.Pair;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
-import net.preibisch.mvrecon.process.interestpointregistration.pairwise.MatcherPairwise;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.CachingMatcherPairwise;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.PairwiseResult;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.methods.ransac.RANSAC;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.methods.ransac.RANSACParameters;
+import net.preibisch.mvrecon.process.interestpointregistration.pairwise.methods.rgldm.RGLDMMatcher.ViewDescriptors;
 
-public class RGLDMPairwise< I extends InterestPoint > implements MatcherPairwise< I >
+public class RGLDMPairwise< I extends InterestPoint > implements CachingMatcherPairwise< I, ViewDescriptors< I > >
 {
 	final RANSACParameters rp;
 	final RGLDMParameters dp;
@@ -51,17 +52,23 @@ public class RGLDMPairwise< I extends InterestPoint > implements MatcherPairwise
 	public boolean printResult() { return printResult; }
 
 	@Override
-	public PairwiseResult< I > match( final List< I > listAIn, final List< I > listBIn )
+	public ViewDescriptors< I > prepare( final List< I > list )
 	{
-		final PairwiseResult< I > result = new PairwiseResult< I >( true );
-		result.setPrintOut( printResult );
+		final ArrayList< I > points = new ArrayList<>( list );
 
-		final ArrayList< I > listA = new ArrayList<>( listAIn );
-		final ArrayList< I > listB = new ArrayList<>( listBIn );
+		if ( points.size() < minPoints() )
+			return new ViewDescriptors<>( points, new ArrayList<>() );
 
-		final int minPoints = dp.getNumNeighbors() + dp.getRedundancy() + 1;
+		return new RGLDMMatcher< I >().createViewDescriptors( points, dp.getNumNeighbors(), dp.getRedundancy() );
+	}
 
-		if ( listA.size() < minPoints || listB.size() < minPoints )
+	@Override
+	public PairwiseResult< I > matchPrepared( final ViewDescriptors< I > viewA, final ViewDescriptors< I > viewB )
+	{
+		final PairwiseResult< I > result = new PairwiseResult< I >( true );
+		result.setPrintOut( printResult );
+
+		if ( viewA.getPoints().size() < minPoints() || viewB.getPoints().size() < minPoints() )
 		{
 			result.setResult( System.currentTimeMillis(), "Not enough detections to match" );
 			result.setCandidates( new ArrayList< PointMatchGeneric< I > >() );
@@ -71,10 +78,8 @@ public class RGLDMPairwise< I extends InterestPoint > implements MatcherPairwise
 
 		final RGLDMMatcher< I > matcher = new RGLDMMatcher< I >();
 		final ArrayList< PointMatchGeneric< I > > candidates = matcher.extractCorrespondenceCandidates(
-				listA,
-				listB,
-				dp.getNumNeighbors(),
-				dp.getRedundancy(),
+				viewA,
+				viewB,
 				dp.getRatioOfDistance(),
 				dp.getDifferenceThreshold(),
 				dp.limitSearchRadius(),
@@ -85,7 +90,7 @@ public class RGLDMPairwise< I extends InterestPoint > implements MatcherPairwise
 		// compute ransac and remove inconsistent candidates
 		final ArrayList< PointMatchGeneric< I > > inliers = new ArrayList<>();
 	
-		final Pair< String, Double > ransacResult = RANSAC.computeRANSAC( candidates, inliers, dp.getModel(), rp.getMaxEpsilon(), rp.getMinInlierRatio(), rp.getMinInlierFactor(), rp.getNumIterations() );
+		final Pair< String, Double > ransacResult = RANSAC.computeRANSAC( candidates, inliers, dp.getModel(), rp );
 	
 		result.setInliers( inliers, ransacResult.getB() );
 	
@@ -94,6 +99,8 @@ public class RGLDMPairwise< I extends InterestPoint > implements MatcherPairwise
 		return result;
 	}
 
+	protected int minPoints() { return dp.getNumNeighbors() + dp.getRedundancy() + 1; }
+
 	/**
 	 * We only read the points, no reason to duplicate, RANSAC does its own duplication
 	 */
@@ -78,4 +78,11 @@ public class RGLDMParameters
 	public float getRatioOfDistance() { return rod; }
 	public int getNumNeighbors() { return nn; }
 	public int getRedundancy() { return re; }
+
+	@Override
+	public String toString()
+	{
+		return "differenceThreshold=" + dt + ", ratioOfDistance=" + rod + ", numNeighbors=" + nn + ", redundancy=" + re +
+				", limitSearchRadius=" + limitSearchRadius + ", searchRadius=" + searchRadius;
+	}
 }
@@ -26,18 +26,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Random;
 
 import mpicbg.spim.data.sequence.ViewDescription;
 import mpicbg.spim.data.sequence.ViewId;
 import mpicbg.spim.data.sequence.VoxelDimensions;
-import net.imglib2.KDTree;
-import net.imglib2.RealPoint;
-import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
-import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoints;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.ViewInterestPointLists;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.ViewInterestPoints;
@@ -90,36 +85,17 @@ public class DistanceHistogram
 			if ( unit == null )
 				unit = vd.getViewSetup().getVoxelSize().unit();
 
-			// assemble the list of points
-			final List< RealPoint > list = new ArrayList< RealPoint >();
+			// nearest neighbor distance of each point (computed once, cached)
+			final double[] nnDistances = NearestNeighborDistances.distances( ipl, voxelSize );
 
-			for ( final InterestPoint ip : ipl.getInterestPointsCopy() )
-			{
-				list.add ( new RealPoint(
-						ip.getL()[ 0 ] * voxelSize.dimension( 0 ),
-						ip.getL()[ 1 ] * voxelSize.dimension( 1 ),
-						ip.getL()[ 2 ] * voxelSize.dimension( 2 ) ) );
-			}
-
-			if ( list.size() < 2 )
+			if ( nnDistances.length < 2 )
 				continue;
 
-			// make the KDTree
-			final KDTree< RealPoint > tree = new KDTree< RealPoint >( list, list );
-
-			// Nearest neighbor for each point
-			final KNearestNeighborSearchOnKDTree< RealPoint > nn = new KNearestNeighborSearchOnKDTree< RealPoint >( tree, 2 );
-
-			for ( final RealPoint p : list )
+			for ( final double d : nnDistances )
 			{
 				// every n'th point only
 				if ( subsampling == 1 || rnd.nextDouble() < 1.0 / subsampling )
-				{
-					nn.search( p );
-					
-					// first nearest neighbor is the point itself, we need the second nearest
-					distances.add( nn.getDistance( 1 ) );
-				}
+					distances.add( d );
 			}
 		}
 
@@ -0,0 +1,190 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.interestpointremoval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import mpicbg.spim.data.sequence.VoxelDimensions;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.preibisch.mvrecon.Threads;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
+import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoints;
+import net.preibisch.mvrecon.process.fusion.FusionTools;
+import net.preibisch.mvrecon.process.fusion.ImagePortion;
+
+/**
+ * Nearest neighbor distances of interest points (in calibrated units), either to the closest other point of the
+ * same list or to the closest point of a relative list. They are computed in parallel and cached per InterestPoints
+ * instance, so repeated thin-outs and histograms (e.g. when tuning parameters) are served without rebuilding the
+ * k-d trees. An entry is recomputed if the interest points were replaced (InterestPoints.getInterestPointsVersion())
+ * or the voxel size changed. The returned arrays are shared and must not be modified.
+ */
+public class NearestNeighborDistances
+{
+	// points -> relative points (null for the same list) -> distances
+	private static final Map< InterestPoints, Map< InterestPoints, Entry > > cache = Collections.synchronizedMap( new WeakHashMap<>() );
+
+	/**
+	 * @param ipl - the interest points
+	 * @param voxelSize - voxel size of the view
+	 * @return for each point (in the order of ipl.getInterestPointsCopy()) the distance to the closest other point, infinity if there is none
+	 */
+	public static double[] distances( final InterestPoints ipl, final VoxelDimensions voxelSize )
+	{
+		return distances( ipl, null, voxelSize, Threads.sharedExecutorService() );
+	}
+
+	/**
+	 * @param ipl - the interest points
+	 * @param relative - the relative interest points
+	 * @param voxelSize - voxel size of the view
+	 * @return for each point (in the order of ipl.getInterestPointsCopy()) the distance to the closest relative point, infinity if there is none
+	 */
+	public static double[] distances( final InterestPoints ipl, final InterestPoints relative, final VoxelDimensions voxelSize )
+	{
+		return distances( ipl, relative, voxelSize, Threads.sharedExecutorService() );
+	}
+
+	/**
+	 * @param ipl - the interest points
+	 * @param relative - the relative interest points, null to use the closest other point of ipl
+	 * @param voxelSize - voxel size of the view
+	 * @param service - the ExecutorService
+	 * @return for each point (in the order of ipl.getInterestPointsCopy()) the nearest neighbor distance, infinity if there is none
+	 */
+	public static double[] distances( final InterestPoints ipl, final InterestPoints relative, final VoxelDimensions voxelSize, final ExecutorService service )
+	{
+		final double[] scale = new double[ 3 ];
+		voxelSize.dimensions( scale );
+
+		final long version = ipl.getInterestPointsVersion();
+		final long relativeVersion = relative == null ? version : relative.getInterestPointsVersion();
+
+		final Map< InterestPoints, Entry > entries = cache.get( ipl );
+		final Entry entry = entries == null ? null : entries.get( relative );
+
+		if ( entry != null && entry.version == version && entry.relativeVersion == relativeVersion && Arrays.equals( entry.scale, scale ) )
+			return entry.distances;
+
+		final double[] distances = compute( ipl.getInterestPointsCopy(), relative == null ? null : relative.getInterestPointsCopy(), scale, service );
+
+		cache.computeIfAbsent( ipl, k -> Collections.synchronizedMap( new WeakHashMap<>() ) ).put( relative, new Entry( version, relativeVersion, scale, distances ) );
+
+		return distances;
+	}
+
+	/**
+	 * Removes all cached distances of these interest points
+	 *
+	 * @param ipl - the interest points
+	 */
+	public static void invalidate( final InterestPoints ipl ) { cache.remove( ipl ); }
+
+	public static void clear() { cache.clear(); }
+
+	protected static double[] compute(
+			final List< InterestPoint > points,
+			final List< InterestPoint > relativePoints,
+			final double[] scale,
+			final ExecutorService service )
+	{
+		final List< RealPoint > list = scaled( points, scale );
+		final List< RealPoint > treeList = relativePoints == null ? list : scaled( relativePoints, scale );
+
+		final double[] distances = new double[ list.size() ];
+
+		// the first neighbor is the point itself if searching in the same list
+		final int k = relativePoints == null ? 2 : 1;
+
+		if ( treeList.size() < k )
+		{
+			Arrays.fill( distances, Double.POSITIVE_INFINITY );
+			return distances;
+		}
+
+		// the tree gets its own list so the order of list is preserved in any case
+		final List< RealPoint > treePoints = new ArrayList<>( treeList );
+		final KDTree< RealPoint > tree = new KDTree<>( treePoints, treePoints );
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>();
+
+		for ( final ImagePortion portion : FusionTools.divideIntoPortions( list.size() ) )
+		{
+			tasks.add( () ->
+			{
+				final KNearestNeighborSearchOnKDTree< RealPoint > nn = new KNearestNeighborSearchOnKDTree<>( tree, k );
+
+				final int start = (int)portion.getStartPosition();
+				final int end = start + (int)portion.getLoopSize();
+
+				for ( int i = start; i < end; ++i )
+				{
+					nn.search( list.get( i ) );
+					distances[ i ] = nn.getDistance( k - 1 );
+				}
+
+				return null;
+			});
+		}
+
+		FusionTools.execTasks( tasks, service, "compute nearest neighbor distances" );
+
+		return distances;
+	}
+
+	protected static List< RealPoint > scaled( final List< InterestPoint > points, final double[] scale )
+	{
+		final ArrayList< RealPoint > list = new ArrayList<>( points.size() );
+
+		for ( final InterestPoint ip : points )
+			list.add( new RealPoint(
+					ip.getL()[ 0 ] * scale[ 0 ],
+					ip.getL()[ 1 ] * scale[ 1 ],
+					ip.getL()[ 2 ] * scale[ 2 ] ) );
+
+		return list;
+	}
+
+	private static class Entry
+	{
+		final long version, relativeVersion;
+		final double[] scale;
+		final double[] distances;
+
+		Entry( final long version, final long relativeVersion, final double[] scale, final double[] distances )
+		{
+			this.version = version;
+			this.relativeVersion = relativeVersion;
+			this.scale = scale;
+			this.distances = distances;
+		}
+	}
+}
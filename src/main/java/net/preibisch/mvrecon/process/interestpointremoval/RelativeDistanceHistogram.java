@@ -26,18 +26,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Random;
 
 import mpicbg.spim.data.sequence.ViewDescription;
 import mpicbg.spim.data.sequence.ViewId;
 import mpicbg.spim.data.sequence.VoxelDimensions;
-import net.imglib2.KDTree;
-import net.imglib2.RealPoint;
-import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
-import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoints;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.ViewInterestPointLists;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.ViewInterestPoints;
@@ -110,29 +105,10 @@ public class RelativeDistanceHistogram
 			if ( unit == null )
 				unit = vd.getViewSetup().getVoxelSize().unit();
 
-			// assemble the list of points
-			final List< RealPoint > list = new ArrayList< RealPoint >();
+			// distance of each point to the nearest relative point (computed once, cached)
+			final double[] nnDistances = NearestNeighborDistances.distances( ipl, iplRelative, voxelSize );
 
-			for ( final InterestPoint ip : ipl.getInterestPointsCopy() )
-			{
-				list.add ( new RealPoint(
-						ip.getL()[ 0 ] * voxelSize.dimension( 0 ),
-						ip.getL()[ 1 ] * voxelSize.dimension( 1 ),
-						ip.getL()[ 2 ] * voxelSize.dimension( 2 ) ) );
-			}
-
-			// assemble the list of relative
-			final List< RealPoint > listRelative = new ArrayList< RealPoint >();
-
-			for ( final InterestPoint ip : iplRelative.getInterestPointsCopy() )
-			{
-				listRelative.add ( new RealPoint(
-						ip.getL()[ 0 ] * voxelSize.dimension( 0 ),
-						ip.getL()[ 1 ] * voxelSize.dimension( 1 ),
-						ip.getL()[ 2 ] * voxelSize.dimension( 2 ) ) );
-			}
-
-			if ( list.size() < 1 || listRelative.size() < 1 )
+			if ( nnDistances.length < 1 || iplRelative.getInterestPointsCopy().size() < 1 )
 			{
 				IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): "
 						+ "Not enough interestpoints for " + Group.pvid( viewId ) );
@@ -140,21 +116,11 @@ public class RelativeDistanceHistogram
 				continue;
 			}
 
-			// make the KDTree of the relative interest point list, we need to iterate over all other points
-			final KDTree< RealPoint > tree = new KDTree< RealPoint >( listRelative, listRelative );
-
-			// Nearest neighbor for each point
-			final NearestNeighborSearchOnKDTree< RealPoint > nn = new NearestNeighborSearchOnKDTree< RealPoint >( tree );
-
-			for ( final RealPoint p : list )
+			for ( final double d : nnDistances )
 			{
 				// every n'th point only
 				if ( subsampling == 1 || rnd.nextDouble() < 1.0 / subsampling )
-				{
-					nn.search( p );
-
-					distances.add( nn.getDistance() );
-				}
+					distances.add( d );
 			}
 		}
 
@@ -30,9 +30,6 @@ import java.util.List;
 import mpicbg.spim.data.sequence.ViewDescription;
 import mpicbg.spim.data.sequence.ViewId;
 import mpicbg.spim.data.sequence.VoxelDimensions;
-import net.imglib2.KDTree;
-import net.imglib2.RealPoint;
-import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
@@ -76,31 +73,9 @@ public class RelativeThinOut
 
 			final VoxelDimensions voxelSize = vd.getViewSetup().getVoxelSize();
 
-			final List< RealPoint > list = new ArrayList< RealPoint >();
-			final List< double[] > points = new ArrayList< double[] >();
+			final List< InterestPoint > points = oldIpl.getInterestPointsCopy();
 
-			for ( final InterestPoint ip : oldIpl.getInterestPointsCopy() )
-			{
-				list.add ( new RealPoint(
-						ip.getL()[ 0 ] * voxelSize.dimension( 0 ),
-						ip.getL()[ 1 ] * voxelSize.dimension( 1 ),
-						ip.getL()[ 2 ] * voxelSize.dimension( 2 ) ) );
-
-				points.add( ip.getL() );
-			}
-
-			// assemble the list of relative
-			final List< RealPoint > listRelative = new ArrayList< RealPoint >();
-
-			for ( final InterestPoint ip : iplRelative.getInterestPointsCopy() )
-			{
-				listRelative.add ( new RealPoint(
-						ip.getL()[ 0 ] * voxelSize.dimension( 0 ),
-						ip.getL()[ 1 ] * voxelSize.dimension( 1 ),
-						ip.getL()[ 2 ] * voxelSize.dimension( 2 ) ) );
-			}
-
-			if ( list.size() < 1 || listRelative.size() < 1 )
+			if ( points.size() < 1 || iplRelative.getInterestPointsCopy().size() < 1 )
 			{
 				IOFunctions.println( "(" + new Date( System.currentTimeMillis() ) + "): "
 						+ "Not enough interestpoints for " + Group.pvid( viewId ) );
@@ -108,11 +83,9 @@ public class RelativeThinOut
 				continue;
 			}
 
-			// make the KDTree
-			final KDTree< RealPoint > tree = new KDTree< RealPoint >( listRelative, listRelative );
+			// distance of every point to the nearest relative point (computed once, cached)
+			final double[] distances = NearestNeighborDistances.distances( oldIpl, iplRelative, voxelSize );
 
-			// Nearest neighbor for each point, populate the new list
-			final NearestNeighborSearchOnKDTree< RealPoint > nn = new NearestNeighborSearchOnKDTree< RealPoint >( tree );
 			final InterestPoints newIpl = InterestPoints.newInstance( oldIpl.getBaseDir(), viewId, rtop.getNewLabel() );
 			/*final InterestPointList newIpl = new InterestPointList(
 					oldIpl.getBaseDir(),
@@ -123,16 +96,12 @@ public class RelativeThinOut
 			final ArrayList< InterestPoint > newIPs = new ArrayList<>();
 
 			int id = 0;
-			for ( int j = 0; j < list.size(); ++j )
+			for ( int j = 0; j < points.size(); ++j )
 			{
-				final RealPoint p = list.get( j );
-				nn.search( p );
-				
-				// first nearest neighbor is the point itself, we need the second nearest
-				final double d = nn.getDistance();
-				
+				final double d = distances[ j ];
+
 				if ( ( keepRange && d >= minDistance && d <= maxDistance ) || ( !keepRange && ( d < minDistance || d > maxDistance ) ) )
-					newIPs.add( new InterestPoint( id++, points.get( j ).clone() ) );
+					newIPs.add( new InterestPoint( id++, points.get( j ).getL().clone() ) );
 			}
 
 			newIpl.setInterestPoints( newIPs );
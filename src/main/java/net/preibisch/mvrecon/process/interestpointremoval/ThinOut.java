@@ -29,9 +29,6 @@ import java.util.List;
 import mpicbg.spim.data.sequence.ViewDescription;
 import mpicbg.spim.data.sequence.ViewId;
 import mpicbg.spim.data.sequence.VoxelDimensions;
-import net.imglib2.KDTree;
-import net.imglib2.RealPoint;
-import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
 import net.preibisch.mvrecon.fiji.spimdata.interestpoints.InterestPoint;
@@ -61,32 +58,10 @@ public class ThinOut
 
 			final VoxelDimensions voxelSize = vd.getViewSetup().getVoxelSize();
 
-			// assemble the list of points (we need two lists as the KDTree sorts the list)
-			// we assume that the order of list2 and points is preserved!
-			final List< RealPoint > list1 = new ArrayList< RealPoint >();
-			final List< RealPoint > list2 = new ArrayList< RealPoint >();
-			final List< double[] > points = new ArrayList< double[] >();
+			// distance of every point to its nearest neighbor (computed once, cached)
+			final List< InterestPoint > points = oldIpl.getInterestPointsCopy();
+			final double[] distances = NearestNeighborDistances.distances( oldIpl, voxelSize );
 
-			for ( final InterestPoint ip : oldIpl.getInterestPointsCopy() )
-			{
-				list1.add ( new RealPoint(
-						ip.getL()[ 0 ] * voxelSize.dimension( 0 ),
-						ip.getL()[ 1 ] * voxelSize.dimension( 1 ),
-						ip.getL()[ 2 ] * voxelSize.dimension( 2 ) ) );
-
-				list2.add ( new RealPoint(
-						ip.getL()[ 0 ] * voxelSize.dimension( 0 ),
-						ip.getL()[ 1 ] * voxelSize.dimension( 1 ),
-						ip.getL()[ 2 ] * voxelSize.dimension( 2 ) ) );
-
-				points.add( ip.getL() );
-			}
-
-			// make the KDTree
-			final KDTree< RealPoint > tree = new KDTree< RealPoint >( list1, list1 );
-
-			// Nearest neighbor for each point, populate the new list
-			final KNearestNeighborSearchOnKDTree< RealPoint > nn = new KNearestNeighborSearchOnKDTree< RealPoint >( tree, 2 );
 			final InterestPoints newIpl = InterestPoints.newInstance( oldIpl.getBaseDir(), viewId, top.getNewLabel() );
 			/*final InterestPointList newIpl = new InterestPointList(
 					oldIpl.getBaseDir(),
@@ -97,16 +72,12 @@ public class ThinOut
 			final ArrayList< InterestPoint > newIPs = new ArrayList<>();
 
 			int id = 0;
-			for ( int j = 0; j < list2.size(); ++j )
+			for ( int j = 0; j < points.size(); ++j )
 			{
-				final RealPoint p = list2.get( j );
-				nn.search( p );
-				
-				// first nearest neighbor is the point itself, we need the second nearest
-				final double d = nn.getDistance( 1 );
-				
+				final double d = distances[ j ];
+
 				if ( ( keepRange && d >= minDistance && d <= maxDistance ) || ( !keepRange && ( d < minDistance || d > maxDistance ) ) )
-					newIPs.add( new InterestPoint( id++, points.get( j ).clone() ) );
+					newIPs.add( new InterestPoint( id++, points.get( j ).getL().clone() ) );
 			}
 
 			newIpl.setInterestPoints( newIPs );
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of recorded values over fixed buckets, plus count, sum, min and max.
+ */
+public class Histogram
+{
+	public static double[] defaultBuckets = new double[] { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000 };
+
+	private final double[] upperBounds;
+
+	// one more than upperBounds, the last one is +Inf
+	private final LongAdder[] buckets;
+
+	private final LongAdder count = new LongAdder();
+	private final DoubleAdder sum = new DoubleAdder();
+	private final AtomicLong min = new AtomicLong( Double.doubleToLongBits( Double.POSITIVE_INFINITY ) );
+	private final AtomicLong max = new AtomicLong( Double.doubleToLongBits( Double.NEGATIVE_INFINITY ) );
+
+	/**
+	 * @param upperBounds - inclusive upper bounds of the buckets in increasing order (+Inf is added automatically)
+	 */
+	public Histogram( final double[] upperBounds )
+	{
+		for ( int i = 1; i < upperBounds.length; ++i )
+			if ( upperBounds[ i ] <= upperBounds[ i - 1 ] )
+				throw new RuntimeException( "Histogram bucket bounds must be increasing." );
+
+		this.upperBounds = upperBounds.clone();
+		this.buckets = new LongAdder[ upperBounds.length + 1 ];
+
+		for ( int i = 0; i < buckets.length; ++i )
+			buckets[ i ] = new LongAdder();
+	}
+
+	public Histogram()
+	{
+		this( defaultBuckets );
+	}
+
+	public void record( final double value )
+	{
+		if ( !Metrics.enabled )
+			return;
+
+		int i = 0;
+		while ( i < upperBounds.length && value > upperBounds[ i ] )
+			++i;
+
+		buckets[ i ].increment();
+		count.increment();
+		sum.add( value );
+
+		long bits;
+		while ( value < Double.longBitsToDouble( bits = min.get() ) && !min.compareAndSet( bits, Double.doubleToLongBits( value ) ) );
+		while ( value > Double.longBitsToDouble( bits = max.get() ) && !max.compareAndSet( bits, Double.doubleToLongBits( value ) ) );
+	}
+
+	public long getCount() { return count.sum(); }
+	public double getSum() { return sum.sum(); }
+	public double getMin() { return getCount() == 0 ? Double.NaN : Double.longBitsToDouble( min.get() ); }
+	public double getMax() { return getCount() == 0 ? Double.NaN : Double.longBitsToDouble( max.get() ); }
+	public double getMean() { final long n = getCount(); return n == 0 ? Double.NaN : getSum() / n; }
+
+	/**
+	 * @return the inclusive upper bounds of the buckets (without +Inf)
+	 */
+	public double[] getUpperBounds() { return upperBounds.clone(); }
+
+	/**
+	 * @return the number of values per bucket (not cumulative), the last entry counts values above all upper bounds
+	 */
+	public long[] getBucketCounts()
+	{
+		final long[] counts = new long[ buckets.length ];
+
+		for ( int i = 0; i < counts.length; ++i )
+			counts[ i ] = buckets[ i ].sum();
+
+		return counts;
+	}
+
+	void reset()
+	{
+		for ( final LongAdder bucket : buckets )
+			bucket.reset();
+
+		count.reset();
+		sum.reset();
+		min.set( Double.doubleToLongBits( Double.POSITIVE_INFINITY ) );
+		max.set( Double.doubleToLongBits( Double.NEGATIVE_INFINITY ) );
+	}
+}
@@ -0,0 +1,350 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import net.preibisch.legacy.io.IOFunctions;
+
+/**
+ * Process-wide registry of timers, counters and histograms of the reconstruction pipeline (fusion, detection,
+ * matching, global optimization, deconvolution, export, image loading).
+ *
+ * Metrics are identified by a name (e.g. "detection_seconds") and optional label key/value pairs (e.g.
+ * "stage", "findPeaks"). They can be written as JSON or in the Prometheus text format. If the system property
+ * {@value #outputProperty} is set (e.g. -Dmvrecon.metrics=/path/metrics.prom), all metrics are written to that
+ * file when the JVM exits, Prometheus format for files ending with .prom or .txt, JSON otherwise.
+ */
+public class Metrics
+{
+	public static final String outputProperty = "mvrecon.metrics";
+
+	// prefix of all metric names in the Prometheus output
+	public static String prefix = "mvrecon_";
+
+	// if false, updates of all metrics are ignored
+	public static boolean enabled = true;
+
+	private static final ConcurrentHashMap< Key, Object > metrics = new ConcurrentHashMap<>();
+
+	// all metrics with the same name must have the same type, independent of their labels
+	private static final ConcurrentHashMap< String, Class< ? > > types = new ConcurrentHashMap<>();
+
+	static
+	{
+		final String output = System.getProperty( outputProperty );
+
+		if ( output != null && output.trim().length() > 0 )
+			Runtime.getRuntime().addShutdownHook( new Thread( () ->
+			{
+				try
+				{
+					write( new File( output.trim() ) );
+				}
+				catch ( IOException e )
+				{
+					IOFunctions.println( "Failed to write metrics to '" + output + "': " + e );
+				}
+			}, "mvrecon-metrics" ) );
+	}
+
+	/**
+	 * @param name - name of the counter, e.g. "bytes_read_total"
+	 * @param labels - optional label key/value pairs
+	 * @return the counter, created if necessary
+	 */
+	public static Counter counter( final String name, final String... labels )
+	{
+		return get( name, labels, Counter.class, Counter::new );
+	}
+
+	/**
+	 * @param name - name of the timer, e.g. "fusion_block_seconds"
+	 * @param labels - optional label key/value pairs
+	 * @return the timer, created if necessary
+	 */
+	public static Timer timer( final String name, final String... labels )
+	{
+		return get( name, labels, Timer.class, Timer::new );
+	}
+
+	/**
+	 * @param name - name of the histogram
+	 * @param labels - optional label key/value pairs
+	 * @return the histogram with {@link Histogram#defaultBuckets}, created if necessary
+	 */
+	public static Histogram histogram( final String name, final String... labels )
+	{
+		return get( name, labels, Histogram.class, Histogram::new );
+	}
+
+	/**
+	 * @param name - name of the histogram
+	 * @param upperBounds - the bucket bounds, only used if the histogram is created
+	 * @param labels - optional label key/value pairs
+	 * @return the histogram, created if necessary
+	 */
+	public static Histogram histogram( final String name, final double[] upperBounds, final String... labels )
+	{
+		return get( name, labels, Histogram.class, () -> new Histogram( upperBounds ) );
+	}
+
+	/**
+	 * Sets all metrics to zero (they remain registered)
+	 */
+	public static void reset()
+	{
+		for ( final Object metric : metrics.values() )
+		{
+			if ( metric instanceof Counter )
+				((Counter)metric).reset();
+			else
+				((Histogram)metric).reset();
+		}
+	}
+
+	/**
+	 * Writes all metrics, Prometheus text format if the file ends with .prom or .txt, JSON otherwise
+	 *
+	 * @param file - the output file
+	 * @throws IOException if writing fails
+	 */
+	public static void write( final File file ) throws IOException
+	{
+		final String name = file.getName().toLowerCase( Locale.ROOT );
+		final String content = ( name.endsWith( ".prom" ) || name.endsWith( ".txt" ) ) ? toPrometheus() : toJSON();
+
+		try ( final PrintWriter out = new PrintWriter( file, "UTF-8" ) )
+		{
+			out.print( content );
+		}
+	}
+
+	public static String toJSON()
+	{
+		final JsonArray array = new JsonArray();
+
+		for ( final Map.Entry< Key, Object > entry : sorted().entrySet() )
+		{
+			final Key key = entry.getKey();
+			final JsonObject json = new JsonObject();
+
+			json.addProperty( "name", key.name );
+
+			final JsonObject labels = new JsonObject();
+			for ( int i = 0; i < key.labels.length; i += 2 )
+				labels.addProperty( key.labels[ i ], key.labels[ i + 1 ] );
+			json.add( "labels", labels );
+
+			if ( entry.getValue() instanceof Counter )
+			{
+				json.addProperty( "type", "counter" );
+				json.addProperty( "value", ((Counter)entry.getValue()).get() );
+			}
+			else
+			{
+				final Histogram h = (Histogram)entry.getValue();
+
+				json.addProperty( "type", h instanceof Timer ? "timer" : "histogram" );
+				json.addProperty( "count", h.getCount() );
+				json.addProperty( "sum", h.getSum() );
+
+				if ( h.getCount() > 0 )
+				{
+					json.addProperty( "min", h.getMin() );
+					json.addProperty( "max", h.getMax() );
+					json.addProperty( "mean", h.getMean() );
+				}
+
+				final double[] bounds = h.getUpperBounds();
+				final long[] counts = h.getBucketCounts();
+				final JsonObject buckets = new JsonObject();
+
+				for ( int i = 0; i < counts.length; ++i )
+					buckets.addProperty( i < bounds.length ? Double.toString( bounds[ i ] ) : "+Inf", counts[ i ] );
+
+				json.add( "buckets", buckets );
+			}
+
+			array.add( json );
+		}
+
+		return new GsonBuilder().setPrettyPrinting().create().toJson( array );
+	}
+
+	public static String toPrometheus()
+	{
+		final StringBuilder sb = new StringBuilder();
+		String lastName = null;
+
+		for ( final Map.Entry< Key, Object > entry : sorted().entrySet() )
+		{
+			final Key key = entry.getKey();
+			final String name = prefix + key.name;
+
+			if ( !name.equals( lastName ) )
+			{
+				sb.append( "# TYPE " ).append( name ).append( entry.getValue() instanceof Counter ? " counter\n" : " histogram\n" );
+				lastName = name;
+			}
+
+			if ( entry.getValue() instanceof Counter )
+			{
+				sb.append( name ).append( labels( key, null ) ).append( ' ' ).append( ((Counter)entry.getValue()).get() ).append( '\n' );
+			}
+			else
+			{
+				final Histogram h = (Histogram)entry.getValue();
+				final double[] bounds = h.getUpperBounds();
+				final long[] counts = h.getBucketCounts();
+
+				long cumulative = 0;
+
+				for ( int i = 0; i < counts.length; ++i )
+				{
+					cumulative += counts[ i ];
+					sb.append( name ).append( "_bucket" ).append( labels( key, i < bounds.length ? Double.toString( bounds[ i ] ) : "+Inf" ) );
+					sb.append( ' ' ).append( cumulative ).append( '\n' );
+				}
+
+				sb.append( name ).append( "_sum" ).append( labels( key, null ) ).append( ' ' ).append( h.getSum() ).append( '\n' );
+				sb.append( name ).append( "_count" ).append( labels( key, null ) ).append( ' ' ).append( h.getCount() ).append( '\n' );
+			}
+		}
+
+		return sb.toString();
+	}
+
+	private static String labels( final Key key, final String le )
+	{
+		if ( key.labels.length == 0 && le == null )
+			return "";
+
+		final StringBuilder sb = new StringBuilder( "{" );
+
+		for ( int i = 0; i < key.labels.length; i += 2 )
+		{
+			if ( i > 0 )
+				sb.append( ',' );
+
+			sb.append( key.labels[ i ] ).append( "=\"" ).append( escape( key.labels[ i + 1 ] ) ).append( '"' );
+		}
+
+		if ( le != null )
+			sb.append( key.labels.length > 0 ? "," : "" ).append( "le=\"" ).append( le ).append( '"' );
+
+		return sb.append( '}' ).toString();
+	}
+
+	private static String escape( final String value )
+	{
+		return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+	}
+
+	private static TreeMap< Key, Object > sorted()
+	{
+		return new TreeMap<>( metrics );
+	}
+
+	private static < M > M get( final String name, final String[] labels, final Class< M > type, final Supplier< M > factory )
+	{
+		final Key key = new Key( name, labels );
+
+		// a Timer is also a Histogram, so the class has to match exactly
+		final Class< ? > registered = types.computeIfAbsent( key.name, n -> type );
+
+		if ( registered != type )
+			throw new RuntimeException( "Metric '" + name + "' is already registered as " + registered.getSimpleName() + ", not " + type.getSimpleName() + "." );
+
+		return type.cast( metrics.computeIfAbsent( key, k -> factory.get() ) );
+	}
+
+	private static class Key implements Comparable< Key >
+	{
+		final String name;
+		final String[] labels;
+
+		Key( final String name, final String[] labels )
+		{
+			if ( labels.length % 2 != 0 )
+				throw new RuntimeException( "Labels of metric '" + name + "' must be key/value pairs." );
+
+			this.name = sanitize( name );
+			this.labels = new String[ labels.length ];
+
+			for ( int i = 0; i < labels.length; i += 2 )
+			{
+				this.labels[ i ] = sanitize( labels[ i ] );
+				this.labels[ i + 1 ] = String.valueOf( labels[ i + 1 ] );
+			}
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof Key ) )
+				return false;
+
+			final Key k = (Key)o;
+			return name.equals( k.name ) && Arrays.equals( labels, k.labels );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( name, Arrays.hashCode( labels ) );
+		}
+
+		@Override
+		public int compareTo( final Key o )
+		{
+			final int c = name.compareTo( o.name );
+
+			if ( c != 0 )
+				return c;
+
+			return String.join( ",", labels ).compareTo( String.join( ",", o.labels ) );
+		}
+
+		private static final Pattern invalidCharacters = Pattern.compile( "[^a-zA-Z0-9_]" );
+
+		private static String sanitize( final String s )
+		{
+			return invalidCharacters.matcher( s ).replaceAll( "_" );
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures durations, recorded in seconds into a {@link Histogram}.
+ *
+ * <pre>
+ * try ( final Timer.Context t = Metrics.timer( "detection_seconds", "stage", "dog" ).start() )
+ * {
+ *     ...
+ * }
+ * </pre>
+ */
+public class Timer extends Histogram
+{
+	public static double[] defaultBucketsSeconds = new double[] { 0.001, 0.01, 0.1, 0.5, 1, 5, 10, 30, 60, 300, 600, 1800, 3600 };
+
+	public Timer( final double[] upperBounds )
+	{
+		super( upperBounds );
+	}
+
+	public Timer()
+	{
+		this( defaultBucketsSeconds );
+	}
+
+	public void record( final long duration, final TimeUnit unit )
+	{
+		record( unit.toNanos( duration ) / 1e9 );
+	}
+
+	public Context start()
+	{
+		return new Context();
+	}
+
+	/**
+	 * A running measurement, recorded when it is stopped or closed.
+	 */
+	public class Context implements AutoCloseable
+	{
+		private final long start = System.nanoTime();
+		private boolean stopped = false;
+
+		/**
+		 * @return the elapsed time in nanoseconds (only the first call records it)
+		 */
+		public long stop()
+		{
+			final long elapsed = System.nanoTime() - start;
+
+			if ( !stopped )
+			{
+				stopped = true;
+				record( elapsed, TimeUnit.NANOSECONDS );
+			}
+
+			return elapsed;
+		}
+
+		@Override
+		public void close()
+		{
+			stop();
+		}
+	}
+}
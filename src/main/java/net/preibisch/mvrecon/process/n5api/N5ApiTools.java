@@ -53,7 +53,6 @@ import mpicbg.spim.data.sequence.ViewDescription;
 import mpicbg.spim.data.sequence.ViewId;
 import mpicbg.spim.data.sequence.ViewSetup;
 import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.algorithm.blocks.BlockAlgoUtils;
 import net.imglib2.algorithm.blocks.BlockSupplier;
 import net.imglib2.algorithm.blocks.downsample.Downsample;
 import net.imglib2.img.Img;
@@ -63,11 +62,14 @@ import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.util.Cast;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
 import net.preibisch.mvrecon.process.interestpointregistration.pairwise.constellation.grouping.Group;
+import net.preibisch.mvrecon.process.metrics.Metrics;
+import net.preibisch.mvrecon.process.metrics.Timer;
 import util.Grid;
 
 public class N5ApiTools
@@ -413,36 +415,126 @@ public class N5ApiTools
 		return mrInfo;
 	}
 
+	/**
+	 * Everything needed to compute blocks of one downsampling level of one dataset. The previous scale is opened
+	 * only once (its cache is shared by all threads), so create one context per level and dataset and use it for
+	 * all blocks of that level.
+	 */
+	public static class DownsampleContext< T extends NativeType< T > & RealType< T > >
+	{
+		final N5Writer n5;
+		final MultiResolutionLevelInfo mrInfo;
+		final BlockSupplier< T > blocks;
+		final T type;
+
+		DownsampleContext(
+				final N5Writer n5,
+				final MultiResolutionLevelInfo mrInfo,
+				final RandomAccessibleInterval< T > previousScale )
+		{
+			this.n5 = n5;
+			this.mrInfo = mrInfo;
+			this.type = previousScale.getType().createVariable();
+
+			// threadSafe() gives every thread its own copy of the (stateful) downsampling operator
+			this.blocks = BlockSupplier.of( previousScale ).andThen( Downsample.downsample( mrInfo.relativeDownsampling ) ).threadSafe();
+		}
+
+		public MultiResolutionLevelInfo getLevelInfo() { return mrInfo; }
+	}
+
+	/**
+	 * @param n5 - the writer
+	 * @param mrInfo - the level to write
+	 * @param mrInfoPreviousScale - the level it is downsampled from (must be written completely)
+	 * @return a context that can be shared by all threads writing blocks of this level
+	 */
+	public static < T extends NativeType< T > & RealType< T > > DownsampleContext< T > createDownsampleContext(
+			final N5Writer n5,
+			final MultiResolutionLevelInfo mrInfo,
+			final MultiResolutionLevelInfo mrInfoPreviousScale )
+	{
+		if ( !supportedDataTypes.contains( mrInfo.dataType ) )
+		{
+			n5.close();
+			throw new RuntimeException("Unsupported pixel type: " + mrInfo.dataType );
+		}
+
+		final RandomAccessibleInterval<T> previousScale = N5Utils.open( n5, mrInfoPreviousScale.dataset );
+
+		return new DownsampleContext<>( n5, mrInfo, previousScale );
+	}
+
 	public static < T extends NativeType< T > & RealType< T > > void writeDownsampledBlock(
 			final N5Writer n5,
 			final MultiResolutionLevelInfo mrInfo,
 			final MultiResolutionLevelInfo mrInfoPreviousScale,
-			//final Function<long[][], String> viewIdToDataset, // gridBlock to dataset name (e.g. for s1, s2, ...)
-			//final Function<long[][], String> viewIdToDatasetPreviousScale, // gridblock to name of previous dataset (e.g. for s0 when writing s1, s1 when writing s2, ... )
-			//final int[] relativeDownsampling,
 			final long[][] gridBlock )
 	{
-		final String dataset = mrInfo.dataset;// viewIdToDataset.apply( gridBlock );
-		final String datasetPreviousScale = mrInfoPreviousScale.dataset; // viewIdToDatasetPreviousScale.apply( gridBlock );
+		writeDownsampledBlock( N5ApiTools.< T >createDownsampleContext( n5, mrInfo, mrInfoPreviousScale ), gridBlock );
+	}
 
-		final DataType dataType = mrInfo.dataType;// n5.getAttribute( datasetPreviousScale, DatasetAttributes.DATA_TYPE_KEY, DataType.class );
-		final int[] blockSize = mrInfo.blockSize;// n5.getAttribute( datasetPreviousScale, DatasetAttributes.BLOCK_SIZE_KEY, int[].class );
+	/**
+	 * Computes one block of the downsampled level directly into a primitive array (only the blocks of the previous
+	 * scale it depends on are read) and saves it.
+	 *
+	 * @param context - the context of this level, see createDownsampleContext()
+	 * @param gridBlock - the block to write
+	 */
+	public static < T extends NativeType< T > & RealType< T > > void writeDownsampledBlock(
+			final DownsampleContext< T > context,
+			final long[][] gridBlock )
+	{
+		final DataType dataType = context.mrInfo.dataType;
 
-		if ( !supportedDataTypes.contains( dataType ) )
+		final Timer.Context time = Metrics.timer( "export_block_seconds", "stage", "downsample" ).start();
+
+		final int[] size = new int[ gridBlock[ 1 ].length ];
+		for ( int d = 0; d < size.length; ++d )
+			size[ d ] = (int)gridBlock[ 1 ][ d ];
+
+		final int numPixels = (int)Intervals.numElements( size );
+		final RandomAccessibleInterval< T > block;
+
+		if ( dataType == UINT8 )
 		{
-			n5.close();
-			throw new RuntimeException("Unsupported pixel type: " + dataType );
+			final byte[] data = new byte[ numPixels ];
+			context.blocks.copy( gridBlock[ 0 ], data, size );
+			block = Cast.unchecked( ArrayImgs.unsignedBytes( data, gridBlock[ 1 ] ) );
+		}
+		else if ( dataType == UINT16 )
+		{
+			final short[] data = new short[ numPixels ];
+			context.blocks.copy( gridBlock[ 0 ], data, size );
+			block = Cast.unchecked( ArrayImgs.unsignedShorts( data, gridBlock[ 1 ] ) );
+		}
+		else
+		{
+			final float[] data = new float[ numPixels ];
+			context.blocks.copy( gridBlock[ 0 ], data, size );
+			block = Cast.unchecked( ArrayImgs.floats( data, gridBlock[ 1 ] ) );
 		}
 
-		final RandomAccessibleInterval<T> previousScale = N5Utils.open(n5, datasetPreviousScale);
-		final T type = previousScale.getType().createVariable();
+		N5Utils.saveNonEmptyBlock( block, context.n5, context.mrInfo.dataset, gridBlock[ 2 ], context.type );
 
-		final BlockSupplier< T > blocks = BlockSupplier.of( previousScale ).andThen( Downsample.downsample( mrInfo.relativeDownsampling ) );
-		final long[] dimensions = n5.getAttribute( dataset, DatasetAttributes.DIMENSIONS_KEY, long[].class );
-		final RandomAccessibleInterval< T > downsampled = BlockAlgoUtils.cellImg( blocks, dimensions, new int[] { 64 } );
+		time.stop();
+		Metrics.counter( "export_uncompressed_bytes_total" ).inc( numBytes( gridBlock[ 1 ], dataType ) );
+	}
 
-		final RandomAccessibleInterval<T> sourceGridBlock = Views.offsetInterval(downsampled, gridBlock[0], gridBlock[1]);
-		N5Utils.saveNonEmptyBlock(sourceGridBlock, n5, dataset, gridBlock[2], type);
+	/**
+	 * @param blockSize - size of a block
+	 * @param dataType - one of the supported data types
+	 * @return the uncompressed size of the block in bytes
+	 */
+	public static long numBytes( final long[] blockSize, final DataType dataType )
+	{
+		final long bytesPerPixel = dataType == UINT8 ? 1 : dataType == UINT16 ? 2 : 4;
+
+		long numPixels = 1;
+		for ( final long s : blockSize )
+			numPixels *= s;
+
+		return numPixels * bytesPerPixel;
 	}
 
 	public static List<long[][]> assembleJobs( final MultiResolutionLevelInfo mrInfo )
@@ -555,9 +647,14 @@ public class N5ApiTools
 
 		final SetupImgLoader< ? > imgLoader = data.getSequenceDescription().getImgLoader().getSetupImgLoader( viewId.getViewSetupId() );
 		final RandomAccessibleInterval< T > img = Cast.unchecked( imgLoader.getImage( viewId.getTimePointId() ) );
+		final Timer.Context time = Metrics.timer( "export_block_seconds", "stage", "resave" ).start();
+
 		final RandomAccessibleInterval< T > sourceGridBlock = Views.offsetInterval( img, gridBlock[ 0 ], gridBlock[ 1 ] );
 		N5Utils.saveNonEmptyBlock( sourceGridBlock, n5, dataset, gridBlock[ 2 ], img.getType().createVariable() );
 
+		time.stop();
+		Metrics.counter( "export_uncompressed_bytes_total" ).inc( numBytes( gridBlock[ 1 ], dataType ) );
+
 		System.out.println( "ViewId " + Group.pvid( viewId ) + ", written block: offset=" + Util.printCoordinates( gridBlock[0] ) + ", dimension=" + Util.printCoordinates( gridBlock[1] ) );
 	}
 
@@ -23,12 +23,19 @@
 package net.preibisch.mvrecon.process.psf;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import mpicbg.spim.data.sequence.ViewId;
 import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -41,10 +48,13 @@ import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.array.ArrayLocalizingCursor;
+import net.imglib2.img.cell.AbstractCellImg;
 import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 import net.preibisch.legacy.io.IOFunctions;
 import net.preibisch.mvrecon.Threads;
@@ -54,6 +64,13 @@ import net.preibisch.mvrecon.process.fusion.FusionTools;
 
 public class PSFExtraction< T extends RealType< T > & NativeType< T > >
 {
+	// multithreaded extraction from a RandomAccessibleInterval reads the image bucket by bucket (see extractPSFBucketed)
+	public static boolean useBuckets = true;
+
+	// bucket size if the image is not a cell image, and upper bound for buckets derived from the cell size
+	public static int defaultBucketSize = 64;
+	public static int maxBucketSize = 128;
+
 	final ArrayImg< T, ? > psf;
 	final boolean hadDetections;
 
@@ -64,16 +81,10 @@ public class PSFExtraction< T extends RealType< T > & NativeType< T > >
 			final long[] size,
 			final boolean multithreaded )
 	{
-		psf = new ArrayImgFactory< T >().create( size, type );
+		this( type, size, locations.size() > 0 );
 
-		if ( locations.size() == 0 )
-		{
-			hadDetections = false;
-		}
-		else
+		if ( hadDetections )
 		{
-			hadDetections = true;
-
 			if ( multithreaded )
 				extractPSFMultiThreaded( img, locations, psf );
 			else
@@ -81,6 +92,12 @@ public class PSFExtraction< T extends RealType< T > & NativeType< T > >
 		}
 	}
 
+	private PSFExtraction( final T type, final long[] size, final boolean hadDetections )
+	{
+		this.psf = new ArrayImgFactory< T >().create( size, type );
+		this.hadDetections = hadDetections;
+	}
+
 	public PSFExtraction(
 			final RealRandomAccessible< T > img,
 			final Collection< RealLocalizable > locations,
@@ -116,8 +133,18 @@ public class PSFExtraction< T extends RealType< T > & NativeType< T > >
 			final long[] size,
 			final boolean multithreaded )
 	{
-		// Mirror produces some artifacts ... so we use periodic
-		this( Views.extendPeriodic( img ), locations, type, size, multithreaded );
+		this( type, size, locations.size() > 0 );
+
+		if ( hadDetections )
+		{
+			// Mirror produces some artifacts ... so we use periodic
+			if ( multithreaded && useBuckets )
+				extractPSFBucketed( img, locations, psf, Threads.sharedExecutorService() );
+			else if ( multithreaded )
+				extractPSFMultiThreaded( Views.interpolate( Views.extendPeriodic( img ), new NLinearInterpolatorFactory< T >() ), locations, psf );
+			else
+				extractPSFLocal( Views.interpolate( Views.extendPeriodic( img ), new NLinearInterpolatorFactory< T >() ), locations, psf );
+		}
 	}
 
 	public PSFExtraction(
@@ -310,7 +337,7 @@ public class PSFExtraction< T extends RealType< T > & NativeType< T > >
 					int j = 0;
 					for ( final RealLocalizable position : locations )
 					{
-						if ( j % myTask == 0 )
+						if ( j % nPortions == myTask )
 						{
 							psfCursor.reset();
 							
@@ -356,6 +383,253 @@ public class PSFExtraction< T extends RealType< T > & NativeType< T > >
 		}
 	}
 
+	/**
+	 * Extracts the PSF by summing up the (n-linearly interpolated) local neighborhood of locations like
+	 * extractPSFLocal on a periodically extended image, but reads the image in spatial order: the locations
+	 * are sorted into buckets aligned with the cell grid of the image, each bucket copies the bounding box of
+	 * the neighborhoods of its locations once into a primitive block and interpolates from there. Buckets are
+	 * processed in parallel into per-task accumulators, which are summed up in a tree.
+	 *
+	 * @param img - the source image
+	 * @param locations - the locations inside the source image
+	 * @param psfGlobal - RAI to add the result to
+	 * @param service - the ExecutorService
+	 * @param <T> pixel type
+	 */
+	public static < T extends RealType< T > > void extractPSFBucketed(
+			final RandomAccessibleInterval< T > img,
+			final Collection< RealLocalizable > locations,
+			final RandomAccessibleInterval< T > psfGlobal,
+			final ExecutorService service )
+	{
+		final int n = img.numDimensions();
+		final RandomAccessible< T > extended = Views.extendPeriodic( img );
+
+		// buckets follow the cell grid of the image (subdivided if cells are large)
+		final int[] bucketSize = new int[ n ];
+
+		if ( img instanceof AbstractCellImg )
+			( (AbstractCellImg< ?, ?, ?, ? >)img ).getCellGrid().cellDimensions( bucketSize );
+		else
+			Arrays.fill( bucketSize, defaultBucketSize );
+
+		for ( int d = 0; d < n; ++d )
+			bucketSize[ d ] = (int)Math.ceil( (double)bucketSize[ d ] / Math.ceil( (double)bucketSize[ d ] / maxBucketSize ) );
+
+		final HashMap< List< Long >, ArrayList< RealLocalizable > > bucketMap = new HashMap<>();
+
+		for ( final RealLocalizable l : locations )
+		{
+			final ArrayList< Long > key = new ArrayList<>( n );
+
+			// z first so that the sorted buckets are in storage order
+			for ( int d = n - 1; d >= 0; --d )
+				key.add( (long)Math.floor( ( l.getDoublePosition( d ) - img.min( d ) ) / bucketSize[ d ] ) );
+
+			bucketMap.computeIfAbsent( key, k -> new ArrayList<>() ).add( l );
+		}
+
+		final ArrayList< List< Long > > keys = new ArrayList<>( bucketMap.keySet() );
+		keys.sort( ( a, b ) ->
+		{
+			for ( int i = 0; i < a.size(); ++i )
+			{
+				final int c = Long.compare( a.get( i ), b.get( i ) );
+				if ( c != 0 )
+					return c;
+			}
+			return 0;
+		} );
+
+		final ArrayList< ArrayList< RealLocalizable > > buckets = new ArrayList<>();
+		for ( final List< Long > key : keys )
+			buckets.add( bucketMap.get( key ) );
+
+		final long[] psfSize = Intervals.dimensionsAsLongArray( psfGlobal );
+		final int numPsfPixels = (int)Intervals.numElements( psfSize );
+
+		// contiguous ranges of buckets per task
+		final int numTasks = Math.min( buckets.size(), Threads.numThreads() * 4 );
+		final ArrayList< Callable< double[] > > tasks = new ArrayList<>();
+
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int from = (int)( (long)buckets.size() * t / numTasks );
+			final int to = (int)( (long)buckets.size() * ( t + 1 ) / numTasks );
+
+			tasks.add( () ->
+			{
+				final double[] acc = new double[ numPsfPixels ];
+
+				for ( int b = from; b < to; ++b )
+					extractBucket( extended, buckets.get( b ), psfSize, acc );
+
+				return acc;
+			});
+		}
+
+		final ArrayList< double[] > accumulators = new ArrayList<>();
+
+		try
+		{
+			for ( final Future< double[] > future : service.invokeAll( tasks ) )
+				accumulators.add( future.get() );
+
+			// pairwise reduction
+			while ( accumulators.size() > 1 )
+			{
+				final ArrayList< Callable< double[] > > reduce = new ArrayList<>();
+
+				for ( int i = 0; i < accumulators.size(); i += 2 )
+				{
+					final double[] a = accumulators.get( i );
+					final double[] b = i + 1 < accumulators.size() ? accumulators.get( i + 1 ) : null;
+
+					reduce.add( () ->
+					{
+						if ( b != null )
+							for ( int k = 0; k < a.length; ++k )
+								a[ k ] += b[ k ];
+
+						return a;
+					});
+				}
+
+				accumulators.clear();
+
+				for ( final Future< double[] > future : service.invokeAll( reduce ) )
+					accumulators.add( future.get() );
+			}
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			throw new RuntimeException( "Failed to extract PSF: " + e, e );
+		}
+
+		final double[] sum = accumulators.get( 0 );
+		final Cursor< T > cursor = Views.flatIterable( Views.zeroMin( psfGlobal ) ).cursor();
+
+		for ( int k = 0; k < numPsfPixels; ++k )
+		{
+			final T type = cursor.next();
+			type.setReal( type.getRealDouble() + sum[ k ] );
+		}
+	}
+
+	/*
+	 * adds the interpolated neighborhoods of all locations of one bucket to acc (flat, x fastest)
+	 */
+	protected static < T extends RealType< T > > void extractBucket(
+			final RandomAccessible< T > extended,
+			final List< RealLocalizable > locations,
+			final long[] psfSize,
+			final double[] acc )
+	{
+		final int n = psfSize.length;
+		final int numLocations = locations.size();
+
+		// first pixel (floor) and fractional offset of the neighborhood of each location
+		final long[][] start = new long[ numLocations ][ n ];
+		final double[][] frac = new double[ numLocations ][ n ];
+
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+
+		Arrays.fill( min, Long.MAX_VALUE );
+		Arrays.fill( max, Long.MIN_VALUE );
+
+		for ( int i = 0; i < numLocations; ++i )
+		{
+			final RealLocalizable l = locations.get( i );
+
+			for ( int d = 0; d < n; ++d )
+			{
+				final double pos = l.getDoublePosition( d );
+				final double floor = Math.floor( pos );
+
+				start[ i ][ d ] = (long)floor - psfSize[ d ] / 2;
+				frac[ i ][ d ] = pos - floor;
+
+				min[ d ] = Math.min( min[ d ], start[ i ][ d ] );
+				max[ d ] = Math.max( max[ d ], start[ i ][ d ] + psfSize[ d ] ); // +1 for the interpolation
+			}
+		}
+
+		// copy the block once, in storage order
+		final FinalInterval blockInterval = new FinalInterval( min, max );
+		final double[] block = new double[ (int)Intervals.numElements( blockInterval ) ];
+
+		final Cursor< T > c = Views.flatIterable( Views.interval( extended, blockInterval ) ).cursor();
+		for ( int k = 0; k < block.length; ++k )
+			block[ k ] = c.next().getRealDouble();
+
+		final long[] blockSize = Intervals.dimensionsAsLongArray( blockInterval );
+		final int[] stride = new int[ n ];
+
+		stride[ 0 ] = 1;
+		for ( int d = 1; d < n; ++d )
+			stride[ d ] = stride[ d - 1 ] * (int)blockSize[ d - 1 ];
+
+		// offset of every psf pixel within the block
+		final int[] psfOffsets = new int[ acc.length ];
+		final long[] p = new long[ n ];
+
+		for ( int k = 0; k < acc.length; ++k )
+		{
+			IntervalIndexer.indexToPosition( k, psfSize, p );
+
+			int o = 0;
+			for ( int d = 0; d < n; ++d )
+				o += (int)p[ d ] * stride[ d ];
+
+			psfOffsets[ k ] = o;
+		}
+
+		// n-linear interpolation: the 2^n corners have the same weights for all pixels of one location
+		final int numCorners = 1 << n;
+		final int[] cornerOffset = new int[ numCorners ];
+		final double[] cornerWeight = new double[ numCorners ];
+
+		for ( int i = 0; i < numLocations; ++i )
+		{
+			int base = 0;
+			for ( int d = 0; d < n; ++d )
+				base += (int)( start[ i ][ d ] - min[ d ] ) * stride[ d ];
+
+			for ( int corner = 0; corner < numCorners; ++corner )
+			{
+				int o = 0;
+				double w = 1;
+
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( ( corner & ( 1 << d ) ) != 0 )
+					{
+						o += stride[ d ];
+						w *= frac[ i ][ d ];
+					}
+					else
+					{
+						w *= 1.0 - frac[ i ][ d ];
+					}
+				}
+
+				cornerOffset[ corner ] = base + o;
+				cornerWeight[ corner ] = w;
+			}
+
+			for ( int k = 0; k < acc.length; ++k )
+			{
+				double v = 0;
+
+				for ( int corner = 0; corner < numCorners; ++corner )
+					v += cornerWeight[ corner ] * block[ cornerOffset[ corner ] + psfOffsets[ k ] ];
+
+				acc[ k ] += v;
+			}
+		}
+	}
+
 	/**
 	 * Transforms the extracted PSF using the affine transformation of the corresponding view
 	 * 
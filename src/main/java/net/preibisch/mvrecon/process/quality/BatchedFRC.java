@@ -0,0 +1,388 @@
+/*-
+ * #%L
+ * Software for the reconstruction of multi-view microscopic acquisitions
+ * like Selective Plane Illumination Microscopy (SPIM) Data.
+ * %%
+ * Copyright (C) 2012 - 2024 Multiview Reconstruction developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+package net.preibisch.mvrecon.process.quality;
+
+import java.util.Arrays;
+import java.util.List;
+
+import ij.process.FHT;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Computes the Fourier Ring Correlation for many locations at once, giving the same curves as
+ * {@link FRC#calculateFrcCurve(ij.process.ImageProcessor, ij.process.ImageProcessor)} applied to the
+ * patches of {@link FRCRealRandomAccessible#getFloatProcessor(RandomAccessible, int, int, int, int)}.
+ *
+ * All patches of a batch of locations are copied into one contiguous float buffer. Each patch is transformed with
+ * the same fast Hartley transform as in FRC ({@link FHT}), but the complex transform is never assembled: the ring
+ * sums are computed directly from H(k) and H(-k). The interpolated samples along each ring are precomputed as tables
+ * of (frequency index, weight), so the ring sums are plain dot products.
+ *
+ * An instance is immutable and can be shared by all threads, only the scratch buffers (and the FHT tables) are per call.
+ */
+public class BatchedFRC
+{
+	final int length, patchSize, fftSize, curveLength;
+
+	// Tukey window, identical to FRC.getSquareTaperedImage()
+	final float[] taper;
+
+	// per radius: index of the frequency k, index of -k, summed interpolation weight; and the number of samples
+	final int[][] ringIndex, ringNegIndex;
+	final double[][] ringWeight;
+	final int[] ringNumSamples;
+
+	final FRC frc = new FRC();
+
+	/**
+	 * @param length - size of the square patches
+	 * @param perimeterSamplingFactor - see {@link FRC#perimeterSamplingFactor}
+	 * @param useHalfCircle - see {@link FRC#useHalfCircle}
+	 */
+	public BatchedFRC( final int length, final double perimeterSamplingFactor, final boolean useHalfCircle )
+	{
+		if ( length < 4 )
+			throw new RuntimeException( "FRC patch size must be at least 4, but is " + length );
+
+		this.length = length;
+
+		// FRC pads the images to an even size
+		this.patchSize = length % 2 == 0 ? length : length + 1;
+
+		int n = 16;
+		while ( n < patchSize )
+			n *= 2;
+
+		if ( n > 16384 )
+			throw new RuntimeException( "FRC patch size " + length + " is too large." );
+
+		this.fftSize = n;
+		this.taper = windowFunction( patchSize );
+
+		// ring tables, sampled exactly like FRC.calculateFrcCurve()
+		final double centre = n / 2;
+		final double max = ( length / 2 ) - 1;
+		this.curveLength = (int)max;
+
+		this.ringIndex = new int[ curveLength ][];
+		this.ringNegIndex = new int[ curveLength ][];
+		this.ringWeight = new double[ curveLength ][];
+		this.ringNumSamples = new int[ curveLength ];
+
+		final double[] weights = new double[ n * n ];
+		final int[] touched = new int[ n * n ];
+		final double limit = useHalfCircle ? Math.PI : 2 * Math.PI;
+
+		for ( int radius = 1; radius < max; ++radius )
+		{
+			final double angleStep = 1 / ( perimeterSamplingFactor * radius );
+			int numTouched = 0;
+			int numSum = 0;
+
+			for ( double angle = 0; angle < limit; angle += angleStep, ++numSum )
+			{
+				final double x = centre + radius * Math.cos( angle );
+				final double y = centre + radius * Math.sin( angle );
+
+				final int xbase = (int)x;
+				final int ybase = (int)y;
+				final double xf = Math.max( 0, x - xbase );
+				final double yf = Math.max( 0, y - ybase );
+
+				// same weights as FRC.getInterpolatedValues(), including its order of the upper two pixels
+				final int[] px = new int[] { xbase, xbase + 1, xbase + 1, xbase };
+				final int[] py = new int[] { ybase, ybase, ybase + 1, ybase + 1 };
+				final double[] w = new double[] { ( 1 - yf ) * ( 1 - xf ), ( 1 - yf ) * xf, yf * ( 1 - xf ), yf * xf };
+
+				for ( int j = 0; j < 4; ++j )
+				{
+					final int i = frequencyIndex( px[ j ], py[ j ] );
+
+					if ( weights[ i ] == 0 )
+						touched[ numTouched++ ] = i;
+
+					weights[ i ] += w[ j ];
+				}
+			}
+
+			final int[] index = Arrays.copyOf( touched, numTouched );
+			final int[] negIndex = new int[ numTouched ];
+			final double[] weight = new double[ numTouched ];
+
+			for ( int j = 0; j < numTouched; ++j )
+			{
+				final int i = index[ j ];
+				negIndex[ j ] = ( ( n - i / n ) % n ) * n + ( n - i % n ) % n;
+				weight[ j ] = weights[ i ];
+				weights[ i ] = 0;
+			}
+
+			ringIndex[ radius ] = index;
+			ringNegIndex[ radius ] = negIndex;
+			ringWeight[ radius ] = weight;
+			ringNumSamples[ radius ] = numSum;
+		}
+	}
+
+	public BatchedFRC( final int length )
+	{
+		this( length, new FRC().perimeterSamplingFactor, new FRC().useHalfCircle );
+	}
+
+	public int getLength() { return length; }
+	public int getFFTSize() { return fftSize; }
+
+	/**
+	 * Computes the FRC quality (see {@link FRCRealRandomAccessible#computeFRC(RandomAccessible, net.imglib2.Point, int)}
+	 * and {@link FRCRealRandomAccessible#computeRelativeFRC(RandomAccessible, net.imglib2.Point, int, int)}) for a batch
+	 * of locations in the calling thread.
+	 *
+	 * @param input - the (extended) 3d image
+	 * @param locations - the locations
+	 * @param relative - compute the relative FRC
+	 * @param relativeFRCDist - the z-distance of the planes used as reference for the relative FRC
+	 * @return the quality for each location
+	 */
+	public double[] computeQualities(
+			final RandomAccessible< FloatType > input,
+			final List< ? extends Localizable > locations,
+			final boolean relative,
+			final int relativeFRCDist )
+	{
+		final int[] zOffsets = relative ? new int[] { -1, 1, -relativeFRCDist, relativeFRCDist } : new int[] { -1, 1 };
+		final int patchPixels = patchSize * patchSize;
+
+		final float[] patches = extractPatches( input, locations, zOffsets );
+
+		// scratch for the transform, reused for all locations of the batch (FHT is not thread-safe)
+		final float[] dataA = new float[ fftSize * fftSize ];
+		final float[] dataB = new float[ fftSize * fftSize ];
+		final FHT fht = new FHT();
+		fht.setShowProgress( false );
+
+		final double[] qualities = new double[ locations.size() ];
+
+		for ( int l = 0; l < qualities.length; ++l )
+		{
+			final int offset = l * zOffsets.length * patchPixels;
+			final double[][] frcCurve = calculateFrcCurve( patches, offset, offset + patchPixels, dataA, dataB, fht );
+
+			if ( !relative )
+			{
+				qualities[ l ] = FRCRealRandomAccessible.integral( frcCurve );
+				continue;
+			}
+
+			try
+			{
+				final double[][] frcCurveDist = frc.getSmoothedCurve(
+						calculateFrcCurve( patches, offset + 2 * patchPixels, offset + 3 * patchPixels, dataA, dataB, fht ) );
+
+				double integral = 0;
+
+				for ( int i = 0; i < frcCurve.length; ++i )
+				{
+					if ( !Double.isFinite( frcCurveDist[ i ][ 1 ] ) || !Double.isFinite( frcCurve[ i ][ 1 ] ) )
+					{
+						integral = 0;
+						break;
+					}
+
+					integral += frcCurve[ i ][ 1 ] - frcCurveDist[ i ][ 1 ];
+				}
+
+				qualities[ l ] = integral;
+			}
+			catch ( Exception e )
+			{
+				// is thrown if everything is zero
+				qualities[ l ] = 0;
+			}
+		}
+
+		return qualities;
+	}
+
+	/**
+	 * Copies the patches around all locations into one buffer, location by location and plane by plane (in the
+	 * order of zOffsets), each patch has patchSize x patchSize pixels. Equivalent to
+	 * {@link FRCRealRandomAccessible#getFloatProcessor(RandomAccessible, int, int, int, int)} plus the padding of FRC.
+	 *
+	 * @param input - the (extended) 3d image
+	 * @param locations - the locations
+	 * @param zOffsets - z-offsets of the planes relative to each location
+	 * @return the patches
+	 */
+	public float[] extractPatches(
+			final RandomAccessible< FloatType > input,
+			final List< ? extends Localizable > locations,
+			final int[] zOffsets )
+	{
+		final int patchPixels = patchSize * patchSize;
+		final float[] patches = new float[ locations.size() * zOffsets.length * patchPixels ];
+
+		// getFloatProcessor covers [ x - length/2, x + length/2 - 1 ]
+		final int extent = 2 * ( length / 2 );
+		final RandomAccess< FloatType > ra = input.randomAccess();
+
+		int offset = 0;
+
+		for ( final Localizable l : locations )
+		{
+			final int minX = l.getIntPosition( 0 ) - length / 2;
+			final int minY = l.getIntPosition( 1 ) - length / 2;
+
+			for ( final int zOffset : zOffsets )
+			{
+				ra.setPosition( l.getIntPosition( 2 ) + zOffset, 2 );
+
+				for ( int y = 0; y < extent; ++y )
+				{
+					ra.setPosition( minX, 0 );
+					ra.setPosition( minY + y, 1 );
+
+					for ( int x = 0, i = offset + y * patchSize; x < extent; ++x, ++i )
+					{
+						patches[ i ] = ra.get().get();
+						ra.fwd( 0 );
+					}
+				}
+
+				offset += patchPixels;
+			}
+		}
+
+		return patches;
+	}
+
+	/**
+	 * Calculates the FRC curve of two patches, see {@link FRC#calculateFrcCurve(ij.process.ImageProcessor, ij.process.ImageProcessor)}
+	 *
+	 * @param patches - the patch buffer
+	 * @param offsetA - offset of the first patch
+	 * @param offsetB - offset of the second patch
+	 * @param dataA - scratch of size fftSize^2
+	 * @param dataB - scratch of size fftSize^2
+	 * @param fht - transforms the patches (one instance per thread)
+	 * @return An array of triplets representing [][radius,correlation,N]
+	 */
+	public double[][] calculateFrcCurve(
+			final float[] patches,
+			final int offsetA,
+			final int offsetB,
+			final float[] dataA,
+			final float[] dataB,
+			final FHT fht )
+	{
+		final int n = fftSize;
+
+		Arrays.fill( dataA, 0 );
+		Arrays.fill( dataB, 0 );
+
+		// tapered patches, the taper is zero at the border so it can be ignored (as in FRC)
+		for ( int y = 1; y < patchSize - 1; ++y )
+		{
+			final float yTmp = taper[ y ];
+
+			for ( int x = 1, i = y * patchSize + 1, ii = y * n + 1; x < patchSize - 1; ++x, ++i, ++ii )
+			{
+				dataA[ ii ] = patches[ offsetA + i ] * taper[ x ] * yTmp;
+				dataB[ ii ] = patches[ offsetB + i ] * taper[ x ] * yTmp;
+			}
+		}
+
+		fht.rc2DFHT( dataA, false, n );
+		fht.rc2DFHT( dataB, false, n );
+
+		final double[][] frcCurve = new double[ curveLength ][ 3 ];
+
+		// Radius zero is always 1
+		frcCurve[ 0 ][ 0 ] = 0;
+		frcCurve[ 0 ][ 1 ] = 1;
+		frcCurve[ 0 ][ 2 ] = 1;
+
+		for ( int radius = 1; radius < curveLength; ++radius )
+		{
+			final int[] index = ringIndex[ radius ];
+			final int[] negIndex = ringNegIndex[ radius ];
+			final double[] weight = ringWeight[ radius ];
+
+			double sum1 = 0, sum2 = 0, sum3 = 0;
+
+			for ( int j = 0; j < index.length; ++j )
+			{
+				final int k = index[ j ];
+				final int nk = negIndex[ j ];
+
+				// with the Hartley transform H: 2 Re F(k) = H(k) + H(-k) and 2 Im F(k) = H(-k) - H(k), so
+				// 2 Re( F_A(k) conj(F_B(k)) ) = H_A(k) H_B(k) + H_A(-k) H_B(-k), the common factor 1/2 cancels out
+				final double ak = dataA[ k ], ank = dataA[ nk ];
+				final double bk = dataB[ k ], bnk = dataB[ nk ];
+
+				final double w = weight[ j ];
+
+				sum1 += w * ( ak * bk + ank * bnk );
+				sum2 += w * ( ak * ak + ank * ank );
+				sum3 += w * ( bk * bk + bnk * bnk );
+			}
+
+			frcCurve[ radius ][ 0 ] = radius;
+			frcCurve[ radius ][ 1 ] = sum1 / Math.sqrt( sum2 * sum3 );
+			frcCurve[ radius ][ 2 ] = ringNumSamples[ radius ];
+		}
+
+		return frcCurve;
+	}
+
+	/*
+	 * index of the frequency at position (x,y) of the quadrant-swapped (centered) transform in the unswapped FHT
+	 */
+	protected int frequencyIndex( final int x, final int y )
+	{
+		final int n = fftSize;
+		return ( ( y + n / 2 ) % n ) * n + ( x + n / 2 ) % n;
+	}
+
+	/*
+	 * identical to FRC.getWindowFunction()
+	 */
+	protected static float[] windowFunction( final int size )
+	{
+		final int boundary = size / 8;
+		final int upperBoundary = size - boundary;
+		final float[] taper = new float[ size ];
+
+		for ( int i = 0; i < size; i++ )
+		{
+			if ( ( i < boundary ) || ( i > size - upperBoundary ) )
+				taper[ i ] = (float)Math.pow( Math.sin( 12.566370614359172D * i / size ), 2.0D );
+			else
+				taper[ i ] = 1;
+		}
+
+		return taper;
+	}
+}
@@ -73,6 +73,17 @@ public class FRCRealRandomAccessible< T extends RealType< T > > implements RealR
 
 	public static int relativeFRCDist = 5;
 
+	/**
+	 * Compute the FRC with {@link BatchedFRC} (batches of locations, shared ring tables)
+	 * instead of one ImageJ FHT-based {@link FRC} per location
+	 */
+	public static boolean useBatchedFRC = true;
+
+	/**
+	 * Maximal number of locations per batch (each one holds 2 or 4 patches in memory)
+	 */
+	public static int defaultBatchSize = 32;
+
 	public FRCRealRandomAccessible(
 			final RandomAccessibleInterval< T > input,
 			final List< Point > locations,
@@ -93,30 +104,64 @@ public class FRCRealRandomAccessible< T extends RealType< T > > implements RealR
 
 		IJ.showProgress( 0.01 );
 
-		for ( final Point l : locations )
+		if ( useBatchedFRC )
 		{
-			tasks.add( new Callable< Void >()
+			final BatchedFRC batchedFRC = new BatchedFRC( length );
+
+			// small enough batches so all threads stay busy
+			final int batchSize = Math.max( 1, Math.min( defaultBatchSize, locations.size() / ( Threads.numThreads() * 4 ) ) );
+
+			for ( int i = 0; i < locations.size(); i += batchSize )
 			{
-				@Override
-				public Void call() throws Exception
+				final List< Point > batch = locations.subList( i, Math.min( locations.size(), i + batchSize ) );
+
+				tasks.add( new Callable< Void >()
 				{
-					final double quality;
+					@Override
+					public Void call() throws Exception
+					{
+						final double[] qualities = batchedFRC.computeQualities( floatInput, batch, relative, relativeFRCDist );
 
-					if ( relative )
-						quality = computeRelativeFRC( floatInput, l, length, relativeFRCDist );
-					else
-						quality = computeFRC( floatInput, l, length );
+						synchronized ( qualityList )
+						{
+							for ( int j = 0; j < qualities.length; ++j )
+								qualityList.add( batch.get( j ), new FloatType( (float)qualities[ j ] ) );
+						}
 
-					synchronized ( qualityList )
-					{
-						qualityList.add( l, new FloatType( (float)quality ) );
+						IJ.showProgress( (double)progress.addAndGet( batch.size() ) / locations.size() );
+
+						return null;
 					}
+				});
+			}
+		}
+		else
+		{
+			for ( final Point l : locations )
+			{
+				tasks.add( new Callable< Void >()
+				{
+					@Override
+					public Void call() throws Exception
+					{
+						final double quality;
+
+						if ( relative )
+							quality = computeRelativeFRC( floatInput, l, length, relativeFRCDist );
+						else
+							quality = computeFRC( floatInput, l, length );
+
+						synchronized ( qualityList )
+						{
+							qualityList.add( l, new FloatType( (float)quality ) );
+						}
 
-					IJ.showProgress( (double)progress.incrementAndGet() / locations.size() );
+						IJ.showProgress( (double)progress.incrementAndGet() / locations.size() );
 
-					return null;
-				}
-			});
+						return null;
+					}
+				});
+			}
 		}
 
 		if ( service == null )
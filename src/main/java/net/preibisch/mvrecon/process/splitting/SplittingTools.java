@@ -30,6 +30,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import bdv.ViewerImgLoader;
 import mpicbg.spim.data.registration.ViewRegistration;
@@ -53,16 +57,14 @@ import net.imglib2.Dimensions;
 import net.imglib2.FinalDimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
-import net.imglib2.KDTree;
 import net.imglib2.iterator.LocalizingZeroMinIntervalIterator;
-import net.imglib2.neighborsearch.RadiusNeighborSearch;
-import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.util.Util;
 import net.imglib2.util.ValuePair;
 import net.preibisch.legacy.io.IOFunctions;
+import net.preibisch.mvrecon.Threads;
 import net.preibisch.mvrecon.fiji.plugin.Split_Views;
 import net.preibisch.mvrecon.fiji.spimdata.SpimData2;
 import net.preibisch.mvrecon.fiji.spimdata.imgloaders.splitting.SplitImgLoader;
@@ -147,7 +149,8 @@ public class SplittingTools
 		// only relevant if addIPs is selected
 		final String fakeLabel = "splitPoints_" + System.currentTimeMillis();
 
-		final Random rnd = new Random( 23424459 );
+		// split all setups (cheap), interest points are computed afterwards in parallel
+		final ArrayList< Callable< Map< ViewId, ViewInterestPointLists > > > tasks = new ArrayList<>();
 
 		for ( final ViewSetup oldSetup : oldSetups )
 		{
@@ -165,8 +168,7 @@ public class SplittingTools
 			IOFunctions.println( "ViewId " + oldSetup.getId() + " with interval " + Util.printInterval( input ) + " will be split as follows: " );
 
 			final ArrayList< Interval > intervals = distributeIntervalsFixedOverlap( input, overlapPx, targetSize, minStepSize, optimize );
-
-			final HashMap< Interval, ViewSetup > interval2ViewSetup = new HashMap<>();
+			final ArrayList< ViewSetup > splitSetups = new ArrayList<>();
 
 			for ( int i = 0; i < intervals.size(); ++i )
 			{
@@ -193,10 +195,9 @@ public class SplittingTools
 				final Illumination newIllum = assingIlluminationsFromTileIds ? new Illumination( oldTile.getId(), "old_tile_" + oldTile.getId() ) : illum;
 				final ViewSetup newSetup = new ViewSetup( newId, null, newDim, voxDim, newTile, channel, angle, newIllum );
 				newSetups.add( newSetup );
+				splitSetups.add( newSetup );
 
-				interval2ViewSetup.put( interval, newSetup );
-
-				// update registrations and interest points for all timepoints
+				// update registrations for all timepoints
 				for ( final TimePoint t : timepoints.getTimePointsOrdered() )
 				{
 					final ViewId oldViewId = new ViewId( t.getId(), oldSetup.getId() );
@@ -214,175 +215,40 @@ public class SplittingTools
 					final ViewId newViewId = new ViewId( t.getId(), newSetup.getId() );
 					final ViewRegistration newVR = new ViewRegistration( newViewId.getTimePointId(), newViewId.getViewSetupId(), transformList );
 					newRegistrations.put( newViewId, newVR );
+				}
 
-					// Interest points
-					final ViewInterestPointLists newVipl = new ViewInterestPointLists( newViewId.getTimePointId(), newViewId.getViewSetupId() );
-					final ViewInterestPointLists oldVipl = spimData.getViewInterestPoints().getViewInterestPointLists( oldViewId );
-
-					// only update interest points for present views
-					// oldVipl may be null for missing views
-					if (spimData.getSequenceDescription().getMissingViews() != null && !spimData.getSequenceDescription().getMissingViews().getMissingViews().contains( oldViewId ) )
-					{
-						for ( final String label : oldVipl.getHashMap().keySet() )
-						{
-							int id = 0;
-
-							final ArrayList< InterestPoint > newIp1 = new ArrayList<>();
-							final InterestPoints oldIpl1 = oldVipl.getInterestPointList( label );
-							final List< InterestPoint > oldIp1 = oldIpl1.getInterestPointsCopy();
-
-							for ( final InterestPoint ip : oldIp1 )
-							{
-								if ( contains( ip.getL(), interval ) )
-								{
-									final double[] l = ip.getL().clone();
-									for ( int d = 0; d < interval.numDimensions(); ++d )
-										l[ d ] -= interval.min( d );// + (rnd.nextDouble() - 0.5);
-	
-									newIp1.add( new InterestPoint( id++, l ) );
-								}
-							}
-
-							final InterestPoints newIpl1 = InterestPoints.newInstance( oldIpl1.getBaseDir(), newViewId, label + "_split" );
-							newIpl1.setInterestPoints( newIp1 );
-							newIpl1.setParameters( oldIpl1.getParameters() );
-							newIpl1.setCorrespondingInterestPoints( new ArrayList<>() );
-							newVipl.addInterestPointList( label + "_split", newIpl1 ); // still add
-						}
-
-						// adding random corresponding interest points in overlapping areas of introduced split views
-						if ( addIPs )
-						{
-							final ArrayList< InterestPoint > newIp = new ArrayList<>();
-							int id = 0;
-
-							// for each overlapping tile that has not been processed yet
-							for ( int j = 0; j < i; ++j )
-							{
-								final Interval otherInterval = intervals.get( j );
-								final Interval intersection = Intervals.intersect( interval, otherInterval );
+				newId++;
+			}
 
-								//System.out.println( "vs. interval " + j + ": " + Util.printInterval( otherInterval ));
-								//System.out.println( "error: " + error );
+			// interest points of all split views of one old view, independent of all other old views
+			for ( final TimePoint t : timepoints.getTimePointsOrdered() )
+			{
+				final ViewId oldViewId = new ViewId( t.getId(), oldSetup.getId() );
 
-								// find the overlap
-								if ( !Intervals.isEmpty( intersection ) )
-								{
-									final ViewSetup otherSetup = interval2ViewSetup.get( otherInterval );
-									final ViewId otherViewId = new ViewId( t.getId(), otherSetup.getId() );
-									final ViewInterestPointLists otherIPLists = newInterestpoints.get( otherViewId );
-
-									//System.out.println( "Intersection between " + Util.printInterval( interval ) + " & " + Util.printInterval( otherInterval ) + ":");
-									//System.out.println( Util.printInterval( intersection ) );
-
-									// add points as function of the area
-									final int n = intersection.numDimensions();
-									long numPixels = 1;
-									for ( int d = 0; d < n; ++d )
-										numPixels *= intersection.dimension( d );
-
-									final int numPoints = Math.min( maxPoints, Math.max( minPoints, (int)Math.round( Math.ceil( pointDensity * numPixels / (100.0*100.0*100.0) ) ) ) );
-									System.out.println(numPixels / (100.0*100.0*100.0) + " " + numPoints  );
-
-									final List< InterestPoint > otherPoints = otherIPLists.getInterestPointList( fakeLabel ).getInterestPointsCopy();
-									int otherId = otherPoints.size() > 0 ? otherPoints.get( otherPoints.size() - 1 ).getId() + 1 : 0;
-
-									// find the area that does not contain interest points yet
-									final KDTree< InterestPoint > tree2;
-									final RadiusNeighborSearch< InterestPoint > search2;
-
-									if ( excludeRadius > 0 )
-									{
-										// build a tree that contains new added interest points
-										final List< InterestPoint > otherIPglobal = new ArrayList<>();
-										for ( final InterestPoint ip : otherPoints )
-										{
-											final double[] l = ip.getL().clone();
-											for ( int d = 0; d < n; ++d )
-												l[ d ] += otherInterval.min( d );
-
-											otherIPglobal.add( new InterestPoint( ip.getId(), l ) );
-										}
-
-										if ( otherIPglobal.size() > 0 )
-										{
-											tree2 = new KDTree<>( otherIPglobal, otherIPglobal );
-											search2 = new RadiusNeighborSearchOnKDTree<>( tree2 );
-										}
-										else
-										{
-											tree2 = null;
-											search2 = null;
-										}
-									}
-									else
-									{
-										tree2  = null;
-										search2 = null;
-									}
-
-									final double[] tmp = new double[ n ];
-
-									for ( int k = 0; k < numPoints; ++k )
-									{
-										final double[] p = new double[ n ];
-										final double[] op = new double[ n ];
-
-										for ( int d = 0; d < n; ++d )
-										{
-											final double l = rnd.nextDouble() * intersection.dimension( d ) + intersection.min( d );
-											p[ d ] = (l + (rnd.nextDouble()-0.5)*error ) - interval.min( d );
-											op[ d ] = (l + (rnd.nextDouble()-0.5)*error ) - otherInterval.min( d );
-											tmp[ d ] = l;
-										}
-										//System.out.println( Arrays.toString( tmp ) + ", " + Arrays.toString( op ));
-
-										int numNeighbors = 0;
-
-										if ( excludeRadius > 0 )
-										{
-											final InterestPoint tmpIP = new InterestPoint( 0, tmp );
-											if ( search2 != null )
-											{
-												search2.search( tmpIP, excludeRadius, false);
-												numNeighbors += search2.numNeighbors();
-											}
-										}
-
-										// if it's not too close to other points add the same point to both overlapping split tiles
-										if ( numNeighbors == 0 )
-										{
-											newIp.add( new InterestPoint( id++, p ) );
-											otherPoints.add( new InterestPoint( otherId++, op ) );
-										}
-									}
-
-									otherIPLists.getInterestPointList( fakeLabel ).setInterestPoints( otherPoints );
-								}
-							}
+				// deterministic independent of the order the tasks are executed in
+				final long seed = 23424459l + 31l * oldViewId.getViewSetupId() + 1000003l * oldViewId.getTimePointId();
 
-							final InterestPoints newIpl = InterestPoints.newInstance( spimData.getBasePathURI(), newViewId, fakeLabel );
-							newIpl.setInterestPoints( newIp );
-							newIpl.setParameters(
-									"Fake points for image splitting: overlapPx=" + Arrays.toString( overlapPx ) +
-									", targetSize=" + Arrays.toString( targetSize ) +
-									", minStepSize=" + Arrays.toString( minStepSize ) +
-									", optimize=" + optimize +
-									", pointDensity=" + pointDensity +
-									", minPoints=" + minPoints +
-									", maxPoints=" + maxPoints +
-									", error=" + error +
-									", excludeRadius=" + excludeRadius );
-							newIpl.setCorrespondingInterestPoints( new ArrayList<>() );
-							newVipl.addInterestPointList( fakeLabel, newIpl ); // still add
-						}
+				tasks.add( () -> splitInterestPoints(
+						spimData, oldViewId, intervals, splitSetups, addIPs, fakeLabel,
+						overlapPx, targetSize, minStepSize, optimize,
+						pointDensity, minPoints, maxPoints, error, excludeRadius, new Random( seed ) ) );
+			}
+		}
 
-					}
-					newInterestpoints.put( newViewId, newVipl );
-				}
+		final ExecutorService service = Threads.createFixedExecutorService();
 
-				newId++;
-			}
+		try
+		{
+			for ( final Future< Map< ViewId, ViewInterestPointLists > > future : service.invokeAll( tasks ) )
+				newInterestpoints.putAll( future.get() );
+		}
+		catch ( final InterruptedException | ExecutionException e )
+		{
+			throw new RuntimeException( "Failed to split interest points: " + e, e );
+		}
+		finally
+		{
+			service.shutdown();
 		}
 
 		// missing views
@@ -451,6 +317,270 @@ public class SplittingTools
 		return spimDataNew;
 	}
 
+	/*
+	 * Computes the interest points of all split views of one old view: the existing points are distributed
+	 * to the split views, and (optionally) fake corresponding points are added in the overlaps of the split
+	 * views. Fake points that are already placed are kept in one spatial grid for all split views of the old
+	 * view (in the coordinates of the old view), so the exclude radius test does not require rebuilding any trees.
+	 */
+	private static Map< ViewId, ViewInterestPointLists > splitInterestPoints(
+			final SpimData2 spimData,
+			final ViewId oldViewId,
+			final List< Interval > intervals,
+			final List< ViewSetup > splitSetups,
+			final boolean addIPs,
+			final String fakeLabel,
+			final long[] overlapPx,
+			final long[] targetSize,
+			final long[] minStepSize,
+			final boolean optimize,
+			final double pointDensity,
+			final int minPoints,
+			final int maxPoints,
+			final double error,
+			final double excludeRadius,
+			final Random rnd )
+	{
+		final Map< ViewId, ViewInterestPointLists > newInterestpoints = new HashMap<>();
+		final ArrayList< ViewInterestPointLists > newVipls = new ArrayList<>();
+
+		for ( final ViewSetup newSetup : splitSetups )
+		{
+			final ViewInterestPointLists newVipl = new ViewInterestPointLists( oldViewId.getTimePointId(), newSetup.getId() );
+			newVipls.add( newVipl );
+			newInterestpoints.put( new ViewId( oldViewId.getTimePointId(), newSetup.getId() ), newVipl );
+		}
+
+		// only update interest points for present views
+		// oldVipl may be null for missing views
+		if ( spimData.getSequenceDescription().getMissingViews() == null || spimData.getSequenceDescription().getMissingViews().getMissingViews().contains( oldViewId ) )
+			return newInterestpoints;
+
+		final ViewInterestPointLists oldVipl = spimData.getViewInterestPoints().getViewInterestPointLists( oldViewId );
+
+		for ( final String label : oldVipl.getHashMap().keySet() )
+		{
+			// load & copy the points only once for all split views
+			final InterestPoints oldIpl1 = oldVipl.getInterestPointList( label );
+			final List< InterestPoint > oldIp1 = oldIpl1.getInterestPointsCopy();
+
+			for ( int i = 0; i < intervals.size(); ++i )
+			{
+				final Interval interval = intervals.get( i );
+				final ViewId newViewId = new ViewId( oldViewId.getTimePointId(), splitSetups.get( i ).getId() );
+
+				int id = 0;
+
+				final ArrayList< InterestPoint > newIp1 = new ArrayList<>();
+
+				for ( final InterestPoint ip : oldIp1 )
+				{
+					if ( contains( ip.getL(), interval ) )
+					{
+						final double[] l = ip.getL().clone();
+						for ( int d = 0; d < interval.numDimensions(); ++d )
+							l[ d ] -= interval.min( d );// + (rnd.nextDouble() - 0.5);
+
+						newIp1.add( new InterestPoint( id++, l ) );
+					}
+				}
+
+				final InterestPoints newIpl1 = InterestPoints.newInstance( oldIpl1.getBaseDir(), newViewId, label + "_split" );
+				newIpl1.setInterestPoints( newIp1 );
+				newIpl1.setParameters( oldIpl1.getParameters() );
+				newIpl1.setCorrespondingInterestPoints( new ArrayList<>() );
+				newVipls.get( i ).addInterestPointList( label + "_split", newIpl1 ); // still add
+			}
+		}
+
+		// adding random corresponding interest points in overlapping areas of introduced split views
+		if ( addIPs )
+		{
+			final ArrayList< ArrayList< InterestPoint > > fakePoints = new ArrayList<>();
+			for ( int i = 0; i < intervals.size(); ++i )
+				fakePoints.add( new ArrayList<>() );
+
+			final PlacedPointGrid placed = excludeRadius > 0 ? new PlacedPointGrid( excludeRadius ) : null;
+
+			for ( int i = 0; i < intervals.size(); ++i )
+			{
+				final Interval interval = intervals.get( i );
+				final ArrayList< InterestPoint > newIp = fakePoints.get( i );
+
+				// for each overlapping tile that has not been processed yet
+				for ( int j = 0; j < i; ++j )
+				{
+					final Interval otherInterval = intervals.get( j );
+					final Interval intersection = Intervals.intersect( interval, otherInterval );
+
+					// find the overlap
+					if ( Intervals.isEmpty( intersection ) )
+						continue;
+
+					final ArrayList< InterestPoint > otherPoints = fakePoints.get( j );
+
+					// add points as function of the area
+					final int n = intersection.numDimensions();
+					long numPixels = 1;
+					for ( int d = 0; d < n; ++d )
+						numPixels *= intersection.dimension( d );
+
+					final int numPoints = Math.min( maxPoints, Math.max( minPoints, (int)Math.round( Math.ceil( pointDensity * numPixels / (100.0*100.0*100.0) ) ) ) );
+
+					// points of this pair only exclude points of later pairs
+					final ArrayList< double[] > placedNow = new ArrayList<>();
+					final ArrayList< double[] > placedNowOther = new ArrayList<>();
+
+					final double[] tmp = new double[ n ];
+
+					for ( int k = 0; k < numPoints; ++k )
+					{
+						final double[] p = new double[ n ];
+						final double[] op = new double[ n ];
+
+						for ( int d = 0; d < n; ++d )
+						{
+							final double l = rnd.nextDouble() * intersection.dimension( d ) + intersection.min( d );
+							p[ d ] = (l + (rnd.nextDouble()-0.5)*error ) - interval.min( d );
+							op[ d ] = (l + (rnd.nextDouble()-0.5)*error ) - otherInterval.min( d );
+							tmp[ d ] = l;
+						}
+
+						// if it's not too close to other points of the other split view add the same point to both overlapping split tiles
+						if ( placed == null || !placed.hasNeighbor( tmp, j ) )
+						{
+							newIp.add( new InterestPoint( newIp.size(), p ) );
+							otherPoints.add( new InterestPoint( otherPoints.size(), op ) );
+
+							if ( placed != null )
+							{
+								// each split view excludes around its own (jittered) copy of the point
+								final double[] global = p.clone();
+								final double[] globalOther = op.clone();
+
+								for ( int d = 0; d < n; ++d )
+								{
+									global[ d ] += interval.min( d );
+									globalOther[ d ] += otherInterval.min( d );
+								}
+
+								placedNow.add( global );
+								placedNowOther.add( globalOther );
+							}
+						}
+					}
+
+					if ( placed != null )
+					{
+						for ( final double[] global : placedNow )
+							placed.add( global, i );
+
+						for ( final double[] global : placedNowOther )
+							placed.add( global, j );
+					}
+				}
+			}
+
+			final String parameters =
+					"Fake points for image splitting: overlapPx=" + Arrays.toString( overlapPx ) +
+					", targetSize=" + Arrays.toString( targetSize ) +
+					", minStepSize=" + Arrays.toString( minStepSize ) +
+					", optimize=" + optimize +
+					", pointDensity=" + pointDensity +
+					", minPoints=" + minPoints +
+					", maxPoints=" + maxPoints +
+					", error=" + error +
+					", excludeRadius=" + excludeRadius;
+
+			for ( int i = 0; i < intervals.size(); ++i )
+			{
+				final ViewId newViewId = new ViewId( oldViewId.getTimePointId(), splitSetups.get( i ).getId() );
+
+				final InterestPoints newIpl = InterestPoints.newInstance( spimData.getBasePathURI(), newViewId, fakeLabel );
+				newIpl.setInterestPoints( fakePoints.get( i ) );
+				newIpl.setParameters( parameters );
+				newIpl.setCorrespondingInterestPoints( new ArrayList<>() );
+				newVipls.get( i ).addInterestPointList( fakeLabel, newIpl ); // still add
+			}
+		}
+
+		return newInterestpoints;
+	}
+
+	/*
+	 * Uniform grid (cell size = radius) of the fake points of all split views (in the coordinates of the old view),
+	 * answers whether a location has a point of a certain split view within the radius.
+	 */
+	private static class PlacedPointGrid
+	{
+		final double radius, radiusSq;
+		final HashMap< Long, ArrayList< PlacedPoint > > cells = new HashMap<>();
+
+		PlacedPointGrid( final double radius )
+		{
+			this.radius = radius;
+			this.radiusSq = radius * radius;
+		}
+
+		void add( final double[] l, final int tile )
+		{
+			cells.computeIfAbsent( key( cell( l, 0 ), cell( l, 1 ), cell( l, 2 ) ), k -> new ArrayList<>() ).add( new PlacedPoint( l, tile ) );
+		}
+
+		boolean hasNeighbor( final double[] l, final int tile )
+		{
+			final long cx = cell( l, 0 ), cy = cell( l, 1 ), cz = cell( l, 2 );
+
+			for ( long z = cz - 1; z <= cz + 1; ++z )
+				for ( long y = cy - 1; y <= cy + 1; ++y )
+					for ( long x = cx - 1; x <= cx + 1; ++x )
+					{
+						final ArrayList< PlacedPoint > points = cells.get( key( x, y, z ) );
+
+						if ( points == null )
+							continue;
+
+						for ( final PlacedPoint p : points )
+						{
+							if ( p.tile != tile )
+								continue;
+
+							double distSq = 0;
+							for ( int d = 0; d < l.length; ++d )
+								distSq += ( l[ d ] - p.l[ d ] ) * ( l[ d ] - p.l[ d ] );
+
+							if ( distSq <= radiusSq )
+								return true;
+						}
+					}
+
+			return false;
+		}
+
+		long cell( final double[] l, final int d )
+		{
+			return d < l.length ? (long)Math.floor( l[ d ] / radius ) : 0;
+		}
+
+		// collisions only add candidates, distances are always checked
+		static long key( final long x, final long y, final long z )
+		{
+			return ( x & 0x1fffff ) | ( ( y & 0x1fffff ) << 21 ) | ( ( z & 0x1fffff ) << 42 );
+		}
+	}
+
+	private static class PlacedPoint
+	{
+		final double[] l;
+		final int tile;
+
+		PlacedPoint( final double[] l, final int tile )
+		{
+			this.l = l;
+			this.tile = tile;
+		}
+	}
+
 	private static final int maxIntervalSpread( final List< ViewSetup > oldSetups, final long[] overlapPx, final long[] targetSize, final long[] minStepSize, final boolean optimize  )
 	{
 		int max = 1;